@@ -22,6 +22,13 @@
 package com.kingsrook.qbits.standardprocesstrace;
 
 
+import java.util.HashMap;
+import java.util.Map;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceIdGeneratorInterface;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceRecordIdCapturePolicy;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceSamplingPolicy;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceTailSamplingPolicy;
+import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
 import com.kingsrook.qqq.backend.core.model.metadata.producers.MetaDataCustomizerInterface;
 import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitConfig;
 import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
@@ -40,6 +47,37 @@ public class StandardProcessTraceQBitConfig implements QBitConfig
    private String userIdReferenceFieldName;
 
    private boolean includeBackendActivityStats = false;
+   private boolean includeProcessTraceSteps    = false;
+   private boolean includeEtlPageTimeline      = false;
+
+   private boolean useBatchedQueryStatIngestion = false;
+   private int     queryStatBatchSize           = 256;
+
+   private boolean useWriteBehindWriter     = false;
+   private int     writeBehindQueueCapacity = 10_000;
+   private int     writeBehindMaxBatchSize  = 500;
+   private int     writeBehindMaxWaitMillis = 250;
+   private int     writeBehindMaxRecordIds  = 1_000_000;
+
+   private boolean useSingleWriteHeader = false;
+
+   private ProcessTraceIdGeneratorInterface processTraceIdGenerator;
+
+   private int     summaryLineRecordIdPageSize    = 1000;
+   private boolean useEncodedSummaryLineRecordIds = false;
+   private boolean useTypedSummaryLineRecordIds   = false;
+
+   private ProcessTraceRecordIdCapturePolicy                           defaultRecordIdCapturePolicy;
+   private Map<Status, ProcessTraceRecordIdCapturePolicy>              recordIdCapturePoliciesByStatus  = new HashMap<>();
+   private Map<String, Map<Status, ProcessTraceRecordIdCapturePolicy>> recordIdCapturePoliciesByProcess = new HashMap<>();
+
+   private ProcessTraceSamplingPolicy              defaultSamplingPolicy;
+   private Map<String, ProcessTraceSamplingPolicy> samplingPoliciesByProcess = new HashMap<>();
+
+   private ProcessTraceTailSamplingPolicy              defaultTailSamplingPolicy;
+   private Map<String, ProcessTraceTailSamplingPolicy> tailSamplingPoliciesByProcess = new HashMap<>();
+
+   private boolean publishRecommendedPageSizes = false;
 
 
 
@@ -176,6 +214,86 @@ public class StandardProcessTraceQBitConfig implements QBitConfig
 
 
 
+   /*******************************************************************************
+    * Getter for includeProcessTraceSteps
+    * @see #withIncludeProcessTraceSteps(boolean)
+    *******************************************************************************/
+   public boolean getIncludeProcessTraceSteps()
+   {
+      return (this.includeProcessTraceSteps);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for includeProcessTraceSteps
+    * @see #withIncludeProcessTraceSteps(boolean)
+    *******************************************************************************/
+   public void setIncludeProcessTraceSteps(boolean includeProcessTraceSteps)
+   {
+      this.includeProcessTraceSteps = includeProcessTraceSteps;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for includeProcessTraceSteps
+    *
+    * @param includeProcessTraceSteps
+    * indicate whether or not the ProcessTraceStep table should be included in the
+    * QInstance (and records should be built in that table under processTrace
+    * records - one per backend step, with its timing, and the backend activity
+    * while it ran).
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withIncludeProcessTraceSteps(boolean includeProcessTraceSteps)
+   {
+      this.includeProcessTraceSteps = includeProcessTraceSteps;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for includeEtlPageTimeline
+    * @see #withIncludeEtlPageTimeline(boolean)
+    *******************************************************************************/
+   public boolean getIncludeEtlPageTimeline()
+   {
+      return (this.includeEtlPageTimeline);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for includeEtlPageTimeline
+    * @see #withIncludeEtlPageTimeline(boolean)
+    *******************************************************************************/
+   public void setIncludeEtlPageTimeline(boolean includeEtlPageTimeline)
+   {
+      this.includeEtlPageTimeline = includeEtlPageTimeline;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for includeEtlPageTimeline
+    *
+    * @param includeEtlPageTimeline
+    * indicate whether or not the ProcessTraceEtlPageTimeline table should be
+    * included in the QInstance (and a record built in that table under
+    * processTrace records for streamed ETL processes whose steps report page
+    * timings, via ProcessTraceEtlPageTimer).
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withIncludeEtlPageTimeline(boolean includeEtlPageTimeline)
+   {
+      this.includeEtlPageTimeline = includeEtlPageTimeline;
+      return (this);
+   }
+
+
+
    /*******************************************************************************
     * Getter for tableMetaDataCustomizer
     * @see #withTableMetaDataCustomizer(MetaDataCustomizerInterface)
@@ -212,4 +330,761 @@ public class StandardProcessTraceQBitConfig implements QBitConfig
    }
 
 
+
+   /*******************************************************************************
+    * Getter for useWriteBehindWriter
+    * @see #withUseWriteBehindWriter(boolean)
+    *******************************************************************************/
+   public boolean getUseWriteBehindWriter()
+   {
+      return (this.useWriteBehindWriter);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useWriteBehindWriter
+    * @see #withUseWriteBehindWriter(boolean)
+    *******************************************************************************/
+   public void setUseWriteBehindWriter(boolean useWriteBehindWriter)
+   {
+      this.useWriteBehindWriter = useWriteBehindWriter;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useWriteBehindWriter
+    *
+    * @param useWriteBehindWriter
+    * indicate whether process traces should be written by a background writer
+    * thread (see ProcessTraceWriter), rather than synchronously by the
+    * thread running the process.  Traces are put into a bounded in-memory queue,
+    * and written in batches, across many processes.  Traces that do not fit in
+    * the queue are dropped (and counted).
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withUseWriteBehindWriter(boolean useWriteBehindWriter)
+   {
+      this.useWriteBehindWriter = useWriteBehindWriter;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for writeBehindQueueCapacity
+    * @see #withWriteBehindQueueCapacity(int)
+    *******************************************************************************/
+   public int getWriteBehindQueueCapacity()
+   {
+      return (this.writeBehindQueueCapacity);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for writeBehindQueueCapacity
+    * @see #withWriteBehindQueueCapacity(int)
+    *******************************************************************************/
+   public void setWriteBehindQueueCapacity(int writeBehindQueueCapacity)
+   {
+      this.writeBehindQueueCapacity = writeBehindQueueCapacity;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for writeBehindQueueCapacity
+    *
+    * @param writeBehindQueueCapacity
+    * max number of finished process traces that can be waiting in the
+    * write-behind queue.  Only used if useWriteBehindWriter is true, and only
+    * read when the writer is first started.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withWriteBehindQueueCapacity(int writeBehindQueueCapacity)
+   {
+      this.writeBehindQueueCapacity = writeBehindQueueCapacity;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for writeBehindMaxBatchSize
+    * @see #withWriteBehindMaxBatchSize(int)
+    *******************************************************************************/
+   public int getWriteBehindMaxBatchSize()
+   {
+      return (this.writeBehindMaxBatchSize);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for writeBehindMaxBatchSize
+    * @see #withWriteBehindMaxBatchSize(int)
+    *******************************************************************************/
+   public void setWriteBehindMaxBatchSize(int writeBehindMaxBatchSize)
+   {
+      this.writeBehindMaxBatchSize = writeBehindMaxBatchSize;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for writeBehindMaxBatchSize
+    *
+    * @param writeBehindMaxBatchSize
+    * max number of process traces that the write-behind writer will combine
+    * into a single batch of insert and update actions.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withWriteBehindMaxBatchSize(int writeBehindMaxBatchSize)
+   {
+      this.writeBehindMaxBatchSize = writeBehindMaxBatchSize;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for writeBehindMaxWaitMillis
+    * @see #withWriteBehindMaxWaitMillis(int)
+    *******************************************************************************/
+   public int getWriteBehindMaxWaitMillis()
+   {
+      return (this.writeBehindMaxWaitMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for writeBehindMaxWaitMillis
+    * @see #withWriteBehindMaxWaitMillis(int)
+    *******************************************************************************/
+   public void setWriteBehindMaxWaitMillis(int writeBehindMaxWaitMillis)
+   {
+      this.writeBehindMaxWaitMillis = writeBehindMaxWaitMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for writeBehindMaxWaitMillis
+    *
+    * @param writeBehindMaxWaitMillis
+    * max number of milliseconds that the write-behind writer will wait for
+    * more traces to arrive (to make a bigger batch) before writing what it has.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withWriteBehindMaxWaitMillis(int writeBehindMaxWaitMillis)
+   {
+      this.writeBehindMaxWaitMillis = writeBehindMaxWaitMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for writeBehindMaxRecordIds
+    * @see #withWriteBehindMaxRecordIds(int)
+    *******************************************************************************/
+   public int getWriteBehindMaxRecordIds()
+   {
+      return (this.writeBehindMaxRecordIds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for writeBehindMaxRecordIds
+    * @see #withWriteBehindMaxRecordIds(int)
+    *******************************************************************************/
+   public void setWriteBehindMaxRecordIds(int writeBehindMaxRecordIds)
+   {
+      this.writeBehindMaxRecordIds = writeBehindMaxRecordIds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for writeBehindMaxRecordIds
+    *
+    * @param writeBehindMaxRecordIds
+    * max number of summary line record ids (after any capture policy) that the
+    * traces in the write-behind queue may hold between them - as each trace
+    * keeps its lines' full lists of ids, this bounds the queue's memory, not
+    * just its count of traces.  A trace that would go over is written right
+    * away, by the thread that submits it, instead of being queued.  Default
+    * 1,000,000; only read when the writer is first started.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withWriteBehindMaxRecordIds(int writeBehindMaxRecordIds)
+   {
+      this.writeBehindMaxRecordIds = writeBehindMaxRecordIds;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useSingleWriteHeader
+    * @see #withUseSingleWriteHeader(boolean)
+    *******************************************************************************/
+   public boolean getUseSingleWriteHeader()
+   {
+      return (this.useSingleWriteHeader);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useSingleWriteHeader
+    * @see #withUseSingleWriteHeader(boolean)
+    *******************************************************************************/
+   public void setUseSingleWriteHeader(boolean useSingleWriteHeader)
+   {
+      this.useSingleWriteHeader = useSingleWriteHeader;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useSingleWriteHeader
+    *
+    * @param useSingleWriteHeader
+    * indicate whether the processTrace header record should be written just once,
+    * when the process finishes (as an insert), rather than being inserted when
+    * the process starts and updated when it finishes.  While the process runs,
+    * the header is held by the tracer (and in the process's state, for processes
+    * that break for a frontend and are later resumed).
+    * <p>Note that in this mode, a process that is still running (or that never
+    * finishes) does not have a processTrace record.</p>
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withUseSingleWriteHeader(boolean useSingleWriteHeader)
+   {
+      this.useSingleWriteHeader = useSingleWriteHeader;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for processTraceIdGenerator
+    * @see #withProcessTraceIdGenerator(ProcessTraceIdGeneratorInterface)
+    *******************************************************************************/
+   public ProcessTraceIdGeneratorInterface getProcessTraceIdGenerator()
+   {
+      return (this.processTraceIdGenerator);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for processTraceIdGenerator
+    * @see #withProcessTraceIdGenerator(ProcessTraceIdGeneratorInterface)
+    *******************************************************************************/
+   public void setProcessTraceIdGenerator(ProcessTraceIdGeneratorInterface processTraceIdGenerator)
+   {
+      this.processTraceIdGenerator = processTraceIdGenerator;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for processTraceIdGenerator
+    *
+    * @param processTraceIdGenerator
+    * object that assigns ids to processTrace records inside the JVM (e.g., a
+    * SnowflakeProcessTraceIdGenerator), so the tracer doesn't have to wait for
+    * the header to be inserted to know its id.  Requires that the backend for
+    * the processTrace table store supplied primary keys.  If null (the
+    * default), ids come from the backend.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withProcessTraceIdGenerator(ProcessTraceIdGeneratorInterface processTraceIdGenerator)
+   {
+      this.processTraceIdGenerator = processTraceIdGenerator;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for summaryLineRecordIdPageSize
+    * @see #withSummaryLineRecordIdPageSize(int)
+    *******************************************************************************/
+   public int getSummaryLineRecordIdPageSize()
+   {
+      return (this.summaryLineRecordIdPageSize);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for summaryLineRecordIdPageSize
+    * @see #withSummaryLineRecordIdPageSize(int)
+    *******************************************************************************/
+   public void setSummaryLineRecordIdPageSize(int summaryLineRecordIdPageSize)
+   {
+      this.summaryLineRecordIdPageSize = summaryLineRecordIdPageSize;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for summaryLineRecordIdPageSize
+    *
+    * @param summaryLineRecordIdPageSize
+    * number of processTraceSummaryLineRecordInt records to insert per insert
+    * action, when storing the ids of the records that make up a summary line.
+    * Only one page of these records is held in memory at a time.  Default is 1000.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withSummaryLineRecordIdPageSize(int summaryLineRecordIdPageSize)
+   {
+      this.summaryLineRecordIdPageSize = summaryLineRecordIdPageSize;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useEncodedSummaryLineRecordIds
+    * @see #withUseEncodedSummaryLineRecordIds(boolean)
+    *******************************************************************************/
+   public boolean getUseEncodedSummaryLineRecordIds()
+   {
+      return (this.useEncodedSummaryLineRecordIds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useEncodedSummaryLineRecordIds
+    * @see #withUseEncodedSummaryLineRecordIds(boolean)
+    *******************************************************************************/
+   public void setUseEncodedSummaryLineRecordIds(boolean useEncodedSummaryLineRecordIds)
+   {
+      this.useEncodedSummaryLineRecordIds = useEncodedSummaryLineRecordIds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useEncodedSummaryLineRecordIds
+    *
+    * @param useEncodedSummaryLineRecordIds
+    * if true, then instead of one processTraceSummaryLineRecordInt record per
+    * record in a summary line, store all of the line's record ids in one
+    * processTraceSummaryLineRecordIdSet record (see EncodedRecordIdSet).  Also
+    * controls whether that table (and its join and widget) are produced.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withUseEncodedSummaryLineRecordIds(boolean useEncodedSummaryLineRecordIds)
+   {
+      this.useEncodedSummaryLineRecordIds = useEncodedSummaryLineRecordIds;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for defaultRecordIdCapturePolicy
+    * @see #withDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy)
+    *******************************************************************************/
+   public ProcessTraceRecordIdCapturePolicy getDefaultRecordIdCapturePolicy()
+   {
+      return (this.defaultRecordIdCapturePolicy);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for defaultRecordIdCapturePolicy
+    * @see #withDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy)
+    *******************************************************************************/
+   public void setDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy defaultRecordIdCapturePolicy)
+   {
+      this.defaultRecordIdCapturePolicy = defaultRecordIdCapturePolicy;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for defaultRecordIdCapturePolicy
+    *
+    * @param defaultRecordIdCapturePolicy
+    * policy for which record ids to store for summary lines that don't have
+    * a more specific policy (see withRecordIdCapturePolicy).  If null (the
+    * default), all record ids are stored.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy defaultRecordIdCapturePolicy)
+   {
+      this.defaultRecordIdCapturePolicy = defaultRecordIdCapturePolicy;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter to add a record id capture policy for summary lines with a
+    * given status, in all processes.
+    *
+    * @param status summary line status that the policy applies to
+    * @param policy which of the line's record ids to store.  If null, there's
+    * no policy at this level (the next less specific one is used).
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withRecordIdCapturePolicy(Status status, ProcessTraceRecordIdCapturePolicy policy)
+   {
+      this.recordIdCapturePoliciesByStatus.put(status, policy);
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter to add a record id capture policy for summary lines with a
+    * given status, in one process (which takes precedence over a policy for
+    * the status in all processes).
+    *
+    * @param processName name of the process that the policy applies to
+    * @param status summary line status that the policy applies to
+    * @param policy which of the line's record ids to store.  If null, there's
+    * no policy at this level (the next less specific one is used).
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withRecordIdCapturePolicy(String processName, Status status, ProcessTraceRecordIdCapturePolicy policy)
+   {
+      this.recordIdCapturePoliciesByProcess.computeIfAbsent(processName, k -> new HashMap<>()).put(status, policy);
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * get the record id capture policy for a summary line - the most specific
+    * (non-null) of: the policy for the process and status; for the status; the
+    * default; else, the policy to store all ids.  Never returns null.
+    *******************************************************************************/
+   public ProcessTraceRecordIdCapturePolicy getRecordIdCapturePolicy(String processName, Status status)
+   {
+      Map<Status, ProcessTraceRecordIdCapturePolicy> processPolicies = processName == null ? null : recordIdCapturePoliciesByProcess.get(processName);
+      if(processPolicies != null && processPolicies.get(status) != null)
+      {
+         return (processPolicies.get(status));
+      }
+
+      if(recordIdCapturePoliciesByStatus.get(status) != null)
+      {
+         return (recordIdCapturePoliciesByStatus.get(status));
+      }
+
+      return (defaultRecordIdCapturePolicy == null ? ProcessTraceRecordIdCapturePolicy.all() : defaultRecordIdCapturePolicy);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useTypedSummaryLineRecordIds
+    * @see #withUseTypedSummaryLineRecordIds(boolean)
+    *******************************************************************************/
+   public boolean getUseTypedSummaryLineRecordIds()
+   {
+      return (this.useTypedSummaryLineRecordIds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useTypedSummaryLineRecordIds
+    * @see #withUseTypedSummaryLineRecordIds(boolean)
+    *******************************************************************************/
+   public void setUseTypedSummaryLineRecordIds(boolean useTypedSummaryLineRecordIds)
+   {
+      this.useTypedSummaryLineRecordIds = useTypedSummaryLineRecordIds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useTypedSummaryLineRecordIds
+    *
+    * @param useTypedSummaryLineRecordIds
+    * if true, then record ids for summary lines are stored according to the type
+    * of their table's primary key - in processTraceSummaryLineRecordInt, or the
+    * processTraceSummaryLineRecordLong or processTraceSummaryLineRecordString
+    * tables - rather than only storing ids that can be converted to integers.
+    * Also controls whether those two tables (and their joins and widgets) are
+    * produced.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withUseTypedSummaryLineRecordIds(boolean useTypedSummaryLineRecordIds)
+   {
+      this.useTypedSummaryLineRecordIds = useTypedSummaryLineRecordIds;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    * Getter for defaultSamplingPolicy
+    * @see #withDefaultSamplingPolicy(ProcessTraceSamplingPolicy)
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy getDefaultSamplingPolicy()
+   {
+      return (this.defaultSamplingPolicy);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for defaultSamplingPolicy
+    * @see #withDefaultSamplingPolicy(ProcessTraceSamplingPolicy)
+    *******************************************************************************/
+   public void setDefaultSamplingPolicy(ProcessTraceSamplingPolicy defaultSamplingPolicy)
+   {
+      this.defaultSamplingPolicy = defaultSamplingPolicy;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for defaultSamplingPolicy
+    *
+    * @param defaultSamplingPolicy
+    * head-based sampling policy for runs of processes that don't have their own
+    * policy (see withSamplingPolicy).  If null (the default), all runs of such
+    * processes are traced.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withDefaultSamplingPolicy(ProcessTraceSamplingPolicy defaultSamplingPolicy)
+   {
+      this.defaultSamplingPolicy = defaultSamplingPolicy;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter to add a head-based sampling policy for one process (which
+    * takes precedence over the default policy).
+    *
+    * @param processName name of the process that the policy applies to
+    * @param policy which of the process's runs to trace
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withSamplingPolicy(String processName, ProcessTraceSamplingPolicy policy)
+   {
+      this.samplingPoliciesByProcess.put(processName, policy);
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * get the sampling policy for a process - its own, else the default (which
+    * may be null, meaning, all runs are traced).
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy getSamplingPolicy(String processName)
+   {
+      ProcessTraceSamplingPolicy processPolicy = processName == null ? null : samplingPoliciesByProcess.get(processName);
+      return (processPolicy == null ? defaultSamplingPolicy : processPolicy);
+   }
+
+
+
+
+   /*******************************************************************************
+    * Getter for defaultTailSamplingPolicy
+    * @see #withDefaultTailSamplingPolicy(ProcessTraceTailSamplingPolicy)
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy getDefaultTailSamplingPolicy()
+   {
+      return (this.defaultTailSamplingPolicy);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for defaultTailSamplingPolicy
+    * @see #withDefaultTailSamplingPolicy(ProcessTraceTailSamplingPolicy)
+    *******************************************************************************/
+   public void setDefaultTailSamplingPolicy(ProcessTraceTailSamplingPolicy defaultTailSamplingPolicy)
+   {
+      this.defaultTailSamplingPolicy = defaultTailSamplingPolicy;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for defaultTailSamplingPolicy
+    *
+    * @param defaultTailSamplingPolicy
+    * tail-based sampling policy for processes that don't have their own policy
+    * (see withTailSamplingPolicy).  If null (the default), all traces of such
+    * processes are stored.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withDefaultTailSamplingPolicy(ProcessTraceTailSamplingPolicy defaultTailSamplingPolicy)
+   {
+      this.defaultTailSamplingPolicy = defaultTailSamplingPolicy;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter to add a tail-based sampling policy for one process (which
+    * takes precedence over the default policy).
+    *
+    * @param processName name of the process that the policy applies to
+    * @param policy which of the process's finished traces to store
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withTailSamplingPolicy(String processName, ProcessTraceTailSamplingPolicy policy)
+   {
+      this.tailSamplingPoliciesByProcess.put(processName, policy);
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * get the tail sampling policy for a process - its own, else the default
+    * (which may be null, meaning, all traces are stored).
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy getTailSamplingPolicy(String processName)
+   {
+      ProcessTraceTailSamplingPolicy processPolicy = processName == null ? null : tailSamplingPoliciesByProcess.get(processName);
+      return (processPolicy == null ? defaultTailSamplingPolicy : processPolicy);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useBatchedQueryStatIngestion
+    * @see #withUseBatchedQueryStatIngestion(boolean)
+    *******************************************************************************/
+   public boolean getUseBatchedQueryStatIngestion()
+   {
+      return (this.useBatchedQueryStatIngestion);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useBatchedQueryStatIngestion
+    * @see #withUseBatchedQueryStatIngestion(boolean)
+    *******************************************************************************/
+   public void setUseBatchedQueryStatIngestion(boolean useBatchedQueryStatIngestion)
+   {
+      this.useBatchedQueryStatIngestion = useBatchedQueryStatIngestion;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useBatchedQueryStatIngestion
+    *
+    * @param useBatchedQueryStatIngestion
+    * if true, then the QueryStats for a traced process are appended to a buffer
+    * for the thread that ran the query, and added to the process's backend activity
+    * stats in bulk - when the buffer fills, or at step and process boundaries (or
+    * when the thread's trace context changes) - rather than one at a time, as each
+    * query finishes.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withUseBatchedQueryStatIngestion(boolean useBatchedQueryStatIngestion)
+   {
+      this.useBatchedQueryStatIngestion = useBatchedQueryStatIngestion;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for queryStatBatchSize
+    * @see #withQueryStatBatchSize(int)
+    *******************************************************************************/
+   public int getQueryStatBatchSize()
+   {
+      return (this.queryStatBatchSize);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for queryStatBatchSize
+    * @see #withQueryStatBatchSize(int)
+    *******************************************************************************/
+   public void setQueryStatBatchSize(int queryStatBatchSize)
+   {
+      this.queryStatBatchSize = queryStatBatchSize;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for queryStatBatchSize
+    *
+    * @param queryStatBatchSize
+    * number of QueryStats that each thread's buffer holds, before they are added
+    * to the process's stats (when useBatchedQueryStatIngestion is on).  Default 256.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withQueryStatBatchSize(int queryStatBatchSize)
+   {
+      this.queryStatBatchSize = queryStatBatchSize;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for publishRecommendedPageSizes
+    * @see #withPublishRecommendedPageSizes(boolean)
+    *******************************************************************************/
+   public boolean getPublishRecommendedPageSizes()
+   {
+      return (this.publishRecommendedPageSizes);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for publishRecommendedPageSizes
+    * @see #withPublishRecommendedPageSizes(boolean)
+    *******************************************************************************/
+   public void setPublishRecommendedPageSizes(boolean publishRecommendedPageSizes)
+   {
+      this.publishRecommendedPageSizes = publishRecommendedPageSizes;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for publishRecommendedPageSizes
+    *
+    * @param publishRecommendedPageSizes
+    * indicate whether or not, at the start of each process that has a
+    * destination table, the tracer should look up the page size that
+    * ProcessTracePageSizeAdvisor recommends for it (from stored backend
+    * activity stats), and put it in the process's values, as
+    * ProcessTracePageSizeAdvisor.FIELD_RECOMMENDED_PAGE_SIZE, for the process's
+    * steps to read.  Requires includeBackendActivityStats.
+    * @return this
+    *******************************************************************************/
+   public StandardProcessTraceQBitConfig withPublishRecommendedPageSizes(boolean publishRecommendedPageSizes)
+   {
+      this.publishRecommendedPageSizes = publishRecommendedPageSizes;
+      return (this);
+   }
+
 }
@@ -24,8 +24,13 @@ package com.kingsrook.qbits.standardprocesstrace;
 
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceEtlPageTimeline;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordIdSet;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordLong;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordString;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducerMultiOutput;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
@@ -63,6 +68,27 @@ public class StandardProcessTraceQBitProducer implements QBitMetaDataProducer<St
          {
             section.withTable(ProcessTraceBackendActivityStats.TABLE_NAME);
          }
+
+         if(config.getIncludeProcessTraceSteps())
+         {
+            section.withTable(ProcessTraceStep.TABLE_NAME);
+         }
+
+         if(config.getIncludeEtlPageTimeline())
+         {
+            section.withTable(ProcessTraceEtlPageTimeline.TABLE_NAME);
+         }
+
+         if(config.getUseEncodedSummaryLineRecordIds())
+         {
+            section.withTable(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME);
+         }
+
+         if(config.getUseTypedSummaryLineRecordIds())
+         {
+            section.withTable(ProcessTraceSummaryLineRecordLong.TABLE_NAME);
+            section.withTable(ProcessTraceSummaryLineRecordString.TABLE_NAME);
+         }
       }
 
       return (section);
@@ -79,8 +79,8 @@ public class ProcessTraceBackendActivityStatsMetaDataProducer extends MetaDataPr
          .withRecordLabelFields("processTraceId", "qqqBackendId", "qqqTableId", "actionName")
          .withPrimaryKeyField("id")
          .withFieldsFromEntity(ProcessTraceBackendActivityStats.class)
-         .withSection(SectionFactory.defaultT1("id", "processTraceId", "qqqBackendId", "qqqTableId", "actionName"))
-         .withSection(SectionFactory.defaultT2("callCount", "recordCount", "runtimeMillis"))
+         .withSection(SectionFactory.defaultT1("id", "processTraceId", "stepNo", "stepName", "qqqBackendId", "qqqTableId", "actionName"))
+         .withSection(SectionFactory.defaultT2("callCount", "recordCount", "runtimeMillis", "firstResultMillis", "p50Millis", "p95Millis", "p99Millis", "maxMillis", "maxFirstResultMillis", "latencyHistogram"))
          .withExposedJoin(new ExposedJoin().withLabel("Process Trace").withJoinPath(List.of(ProcessTraceJoinBackendActivityStatsMetaDataProducer.NAME)).withJoinTable(ProcessTrace.TABLE_NAME));
 
       table.withoutCapabilities(Capability.allWriteCapabilities());
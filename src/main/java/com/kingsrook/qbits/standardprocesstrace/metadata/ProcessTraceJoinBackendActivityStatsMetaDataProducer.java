@@ -25,6 +25,7 @@ package com.kingsrook.qbits.standardprocesstrace.metadata;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
 import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducer;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
 import com.kingsrook.qqq.backend.core.model.metadata.joins.JoinOn;
@@ -65,6 +66,14 @@ public class ProcessTraceJoinBackendActivityStatsMetaDataProducer extends MetaDa
          .withRightTable(ProcessTraceBackendActivityStats.TABLE_NAME)
          .withType(JoinType.ONE_TO_MANY)
          .withJoinOn(new JoinOn("id", "processTraceId"))
+
+         //////////////////////////////////////////////////////////////////////
+         // group the widget's stats by step, in the order the steps started //
+         // (stats from outside any step being step 0) - then in the order   //
+         // they were stored, which is by table & action within each step.   //
+         //////////////////////////////////////////////////////////////////////
+         .withOrderBy(new QFilterOrderBy("stepNo"))
+         .withOrderBy(new QFilterOrderBy("id"))
       );
    }
 
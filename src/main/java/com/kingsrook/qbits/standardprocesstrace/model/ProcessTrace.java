@@ -25,10 +25,16 @@ package com.kingsrook.qbits.standardprocesstrace.model;
 import java.time.Instant;
 import java.util.List;
 import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceBackendActivityStatsMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceEtlPageTimelineMetaDataProducer;
 import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinBackendActivityStatsMetaDataProducer;
 import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinBackendActivityStatsWidgetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinEtlPageTimelineMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinEtlPageTimelineWidgetMetaDataProducer;
 import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinKeyRecordQQQTableMetaDataProducer;
 import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinQQQProcessMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinStepMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceJoinStepWidgetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceStepMetaDataProducer;
 import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceTableCustomizer;
 import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizers;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
@@ -98,7 +104,7 @@ public class ProcessTrace extends QRecordEntity
             .withRecordLabelFormat("%s - %s")
             .withRecordLabelFields("qqqProcessId", "processUUID")
             .withSection(new QFieldSection("identity", new QIcon().withName("badge"), Tier.T1, List.of("id", "qqqProcessId", "processUUID", "userId")))
-            .withSection(new QFieldSection("data", new QIcon().withName("text_snippet"), Tier.T2, List.of("startTimestamp", "endTimestamp", "runtimeMillis", "keyRecordQqqTableId", "keyRecordId", "recordCount", "exceptionMessage")))
+            .withSection(new QFieldSection("data", new QIcon().withName("text_snippet"), Tier.T2, List.of("startTimestamp", "endTimestamp", "runtimeMillis", "activeRuntimeMillis", "waitingMillis", "breakCount", "keyRecordQqqTableId", "keyRecordId", "recordCount", "exceptionMessage")))
             .withSection(new QFieldSection("summaryLines", new QIcon().withName("horizontal_rule"), Tier.T2).withWidgetName(summaryLinesChildJoinName))
             .withExposedJoin(new ExposedJoin().withLabel("Summary Lines").withJoinPath(List.of(summaryLinesChildJoinName)).withJoinTable(ProcessTraceSummaryLine.TABLE_NAME))
             .withExposedJoin(new ExposedJoin().withLabel("Key Record Table").withJoinPath(List.of(ProcessTraceJoinKeyRecordQQQTableMetaDataProducer.NAME)).withJoinTable(QQQTable.TABLE_NAME))
@@ -107,6 +113,28 @@ public class ProcessTrace extends QRecordEntity
          table.withCustomizer(TableCustomizers.POST_QUERY_RECORD, new QCodeReference(ProcessTraceTableCustomizer.class));
          table.getField("keyRecordId").withFieldAdornment(new FieldAdornment(AdornmentType.LINK).withValue(AdornmentType.LinkValues.TO_RECORD_FROM_TABLE_DYNAMIC, true));
 
+         if(new ProcessTraceStepMetaDataProducer().isEnabled())
+         {
+            table.getSections().add(new QFieldSection("steps", new QIcon().withName("timeline"), Tier.T2)
+               .withWidgetName(ProcessTraceJoinStepWidgetMetaDataProducer.NAME));
+
+            table.withExposedJoin(new ExposedJoin()
+               .withLabel("Steps")
+               .withJoinPath(List.of(ProcessTraceJoinStepMetaDataProducer.NAME))
+               .withJoinTable(ProcessTraceStep.TABLE_NAME));
+         }
+
+         if(new ProcessTraceEtlPageTimelineMetaDataProducer().isEnabled())
+         {
+            table.getSections().add(new QFieldSection("etlPageTimeline", new QIcon().withName("view_timeline"), Tier.T2)
+               .withWidgetName(ProcessTraceJoinEtlPageTimelineWidgetMetaDataProducer.NAME));
+
+            table.withExposedJoin(new ExposedJoin()
+               .withLabel("ETL Page Timeline")
+               .withJoinPath(List.of(ProcessTraceJoinEtlPageTimelineMetaDataProducer.NAME))
+               .withJoinTable(ProcessTraceEtlPageTimeline.TABLE_NAME));
+         }
+
          if(new ProcessTraceBackendActivityStatsMetaDataProducer().isEnabled())
          {
             table.getSections().add(new QFieldSection("backendActivityStats", new QIcon().withName("query_stats"), Tier.T2)
@@ -136,6 +164,15 @@ public class ProcessTrace extends QRecordEntity
    @QField(displayFormat = DisplayFormat.COMMAS)
    private Integer runtimeMillis;
 
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer activeRuntimeMillis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer waitingMillis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer breakCount;
+
    @QField(label = "Process", possibleValueSourceName = QQQProcess.TABLE_NAME)
    private Integer qqqProcessId;
 
@@ -517,4 +554,97 @@ public class ProcessTrace extends QRecordEntity
       return (this);
    }
 
+
+
+   /*******************************************************************************
+    ** Getter for activeRuntimeMillis
+    *******************************************************************************/
+   public Integer getActiveRuntimeMillis()
+   {
+      return (this.activeRuntimeMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for activeRuntimeMillis
+    *******************************************************************************/
+   public void setActiveRuntimeMillis(Integer activeRuntimeMillis)
+   {
+      this.activeRuntimeMillis = activeRuntimeMillis;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for activeRuntimeMillis
+    *******************************************************************************/
+   public ProcessTrace withActiveRuntimeMillis(Integer activeRuntimeMillis)
+   {
+      this.activeRuntimeMillis = activeRuntimeMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for waitingMillis
+    *******************************************************************************/
+   public Integer getWaitingMillis()
+   {
+      return (this.waitingMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for waitingMillis
+    *******************************************************************************/
+   public void setWaitingMillis(Integer waitingMillis)
+   {
+      this.waitingMillis = waitingMillis;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for waitingMillis
+    *******************************************************************************/
+   public ProcessTrace withWaitingMillis(Integer waitingMillis)
+   {
+      this.waitingMillis = waitingMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for breakCount
+    *******************************************************************************/
+   public Integer getBreakCount()
+   {
+      return (this.breakCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for breakCount
+    *******************************************************************************/
+   public void setBreakCount(Integer breakCount)
+   {
+      this.breakCount = breakCount;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for breakCount
+    *******************************************************************************/
+   public ProcessTrace withBreakCount(Integer breakCount)
+   {
+      this.breakCount = breakCount;
+      return (this);
+   }
+
 }
@@ -22,11 +22,13 @@
 package com.kingsrook.qbits.standardprocesstrace.model;
 
 
+import com.kingsrook.qbits.standardprocesstrace.utils.LatencyHistogram;
 import com.kingsrook.qqq.backend.core.model.backends.QQQBackend;
 import com.kingsrook.qqq.backend.core.model.data.QField;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
 import com.kingsrook.qqq.backend.core.model.metadata.fields.DisplayFormat;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.ValueTooLongBehavior;
 import com.kingsrook.qqq.backend.core.model.tables.QQQTable;
 
 
@@ -44,6 +46,12 @@ public class ProcessTraceBackendActivityStats extends QRecordEntity
    @QField(possibleValueSourceName = ProcessTrace.TABLE_NAME)
    private Long processTraceId;
 
+   @QField(label = "Step No")
+   private Integer stepNo;
+
+   @QField(label = "Step", maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.TRUNCATE_ELLIPSIS)
+   private String stepName;
+
    @QField(label = "Backend", possibleValueSourceName = QQQBackend.TABLE_NAME)
    private Integer qqqBackendId;
 
@@ -62,6 +70,27 @@ public class ProcessTraceBackendActivityStats extends QRecordEntity
    @QField(displayFormat = DisplayFormat.COMMAS)
    private Integer runtimeMillis;
 
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer firstResultMillis;
+
+   @QField(label = "P50 Millis", displayFormat = DisplayFormat.COMMAS)
+   private Integer p50Millis;
+
+   @QField(label = "P95 Millis", displayFormat = DisplayFormat.COMMAS)
+   private Integer p95Millis;
+
+   @QField(label = "P99 Millis", displayFormat = DisplayFormat.COMMAS)
+   private Integer p99Millis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer maxMillis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer maxFirstResultMillis;
+
+   @QField(isEditable = false)
+   private String latencyHistogram;
+
 
 
    /*******************************************************************************
@@ -83,6 +112,27 @@ public class ProcessTraceBackendActivityStats extends QRecordEntity
 
 
 
+   /*******************************************************************************
+    * Fluent setter for the latency fields (percentiles, max, and the encoded
+    * histogram itself) from a histogram of the calls' millis.
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withLatency(LatencyHistogram latency)
+   {
+      if(latency == null || latency.getTotalCount() == 0)
+      {
+         return (this);
+      }
+
+      this.p50Millis = latency.getPercentile(0.50);
+      this.p95Millis = latency.getPercentile(0.95);
+      this.p99Millis = latency.getPercentile(0.99);
+      this.maxMillis = latency.getMax();
+      this.latencyHistogram = latency.encode();
+      return (this);
+   }
+
+
+
    /*******************************************************************************
     * Getter for id
     * @see #withId(Long)
@@ -346,4 +396,305 @@ public class ProcessTraceBackendActivityStats extends QRecordEntity
    }
 
 
+
+   /*******************************************************************************
+    * Getter for p50Millis
+    * @see #withP50Millis(Integer)
+    *******************************************************************************/
+   public Integer getP50Millis()
+   {
+      return (this.p50Millis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for p50Millis
+    * @see #withP50Millis(Integer)
+    *******************************************************************************/
+   public void setP50Millis(Integer p50Millis)
+   {
+      this.p50Millis = p50Millis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for p50Millis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withP50Millis(Integer p50Millis)
+   {
+      this.p50Millis = p50Millis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for p95Millis
+    * @see #withP95Millis(Integer)
+    *******************************************************************************/
+   public Integer getP95Millis()
+   {
+      return (this.p95Millis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for p95Millis
+    * @see #withP95Millis(Integer)
+    *******************************************************************************/
+   public void setP95Millis(Integer p95Millis)
+   {
+      this.p95Millis = p95Millis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for p95Millis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withP95Millis(Integer p95Millis)
+   {
+      this.p95Millis = p95Millis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for p99Millis
+    * @see #withP99Millis(Integer)
+    *******************************************************************************/
+   public Integer getP99Millis()
+   {
+      return (this.p99Millis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for p99Millis
+    * @see #withP99Millis(Integer)
+    *******************************************************************************/
+   public void setP99Millis(Integer p99Millis)
+   {
+      this.p99Millis = p99Millis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for p99Millis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withP99Millis(Integer p99Millis)
+   {
+      this.p99Millis = p99Millis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for maxMillis
+    * @see #withMaxMillis(Integer)
+    *******************************************************************************/
+   public Integer getMaxMillis()
+   {
+      return (this.maxMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxMillis
+    * @see #withMaxMillis(Integer)
+    *******************************************************************************/
+   public void setMaxMillis(Integer maxMillis)
+   {
+      this.maxMillis = maxMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxMillis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withMaxMillis(Integer maxMillis)
+   {
+      this.maxMillis = maxMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for latencyHistogram
+    * @see #withLatencyHistogram(String)
+    *******************************************************************************/
+   public String getLatencyHistogram()
+   {
+      return (this.latencyHistogram);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for latencyHistogram
+    * @see #withLatencyHistogram(String)
+    *******************************************************************************/
+   public void setLatencyHistogram(String latencyHistogram)
+   {
+      this.latencyHistogram = latencyHistogram;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for latencyHistogram
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withLatencyHistogram(String latencyHistogram)
+   {
+      this.latencyHistogram = latencyHistogram;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for firstResultMillis
+    * @see #withFirstResultMillis(Integer)
+    *******************************************************************************/
+   public Integer getFirstResultMillis()
+   {
+      return (this.firstResultMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for firstResultMillis
+    * @see #withFirstResultMillis(Integer)
+    *******************************************************************************/
+   public void setFirstResultMillis(Integer firstResultMillis)
+   {
+      this.firstResultMillis = firstResultMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for firstResultMillis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withFirstResultMillis(Integer firstResultMillis)
+   {
+      this.firstResultMillis = firstResultMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for maxFirstResultMillis
+    * @see #withMaxFirstResultMillis(Integer)
+    *******************************************************************************/
+   public Integer getMaxFirstResultMillis()
+   {
+      return (this.maxFirstResultMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxFirstResultMillis
+    * @see #withMaxFirstResultMillis(Integer)
+    *******************************************************************************/
+   public void setMaxFirstResultMillis(Integer maxFirstResultMillis)
+   {
+      this.maxFirstResultMillis = maxFirstResultMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxFirstResultMillis
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withMaxFirstResultMillis(Integer maxFirstResultMillis)
+   {
+      this.maxFirstResultMillis = maxFirstResultMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for stepName
+    * @see #withStepName(String)
+    *******************************************************************************/
+   public String getStepName()
+   {
+      return (this.stepName);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for stepName
+    * @see #withStepName(String)
+    *******************************************************************************/
+   public void setStepName(String stepName)
+   {
+      this.stepName = stepName;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for stepName
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withStepName(String stepName)
+   {
+      this.stepName = stepName;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for stepNo
+    * @see #withStepNo(Integer)
+    *******************************************************************************/
+   public Integer getStepNo()
+   {
+      return (this.stepNo);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for stepNo
+    * @see #withStepNo(Integer)
+    *******************************************************************************/
+   public void setStepNo(Integer stepNo)
+   {
+      this.stepNo = stepNo;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for stepNo
+    *
+    * @param stepNo
+    * number of the step (1-based, in the order the steps first started in the
+    * process) that the stats are for - or 0, for stats from outside any step.
+    * @return this
+    *******************************************************************************/
+   public ProcessTraceBackendActivityStats withStepNo(Integer stepNo)
+   {
+      this.stepNo = stepNo;
+      return (this);
+   }
+
 }
@@ -0,0 +1,490 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.model;
+
+
+import com.kingsrook.qbits.standardprocesstrace.utils.EtlPageTimeline;
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.DisplayFormat;
+
+
+/*******************************************************************************
+ * QRecord Entity for ProcessTraceEtlPageTimeline table - one record per trace
+ * of a streamed ETL process whose steps reported page timings (see
+ * {@link com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceEtlPageTimer}),
+ * with totals over the pages, the bottleneck, and the encoded timeline (see
+ * {@link EtlPageTimeline#decode(String)}).
+ * Note: not using meta-data producing annotations, so it can be disabled via config
+ *******************************************************************************/
+public class ProcessTraceEtlPageTimeline extends QRecordEntity
+{
+   public static final String TABLE_NAME = "processTraceEtlPageTimeline";
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Long id;
+
+   @QField(possibleValueSourceName = ProcessTrace.TABLE_NAME)
+   private Long processTraceId;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer pageCount;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer recordCount;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer extractWaitMillis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer transformMillis;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer loadMillis;
+
+   @QField(maxLength = 50)
+   private String bottleneck;
+
+   @QField(label = "Bottleneck %")
+   private Integer bottleneckPercent;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer pagesPerBucket;
+
+   @QField(isEditable = false)
+   private String timeline;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a timeline - setting the totals, bottleneck, and
+    ** encoded timeline from it.
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline(EtlPageTimeline etlPageTimeline)
+   {
+      EtlPageTimeline.Bottleneck bottleneck = etlPageTimeline.getBottleneck();
+
+      this.pageCount = toInteger(etlPageTimeline.getPageCount());
+      this.recordCount = toInteger(etlPageTimeline.getRecordCount());
+      this.extractWaitMillis = toInteger(etlPageTimeline.getExtractWaitMillis());
+      this.transformMillis = toInteger(etlPageTimeline.getTransformMillis());
+      this.loadMillis = toInteger(etlPageTimeline.getLoadMillis());
+      this.bottleneck = bottleneck == null ? null : bottleneck.getLabel();
+      this.bottleneckPercent = etlPageTimeline.getBottleneckPercent();
+      this.pagesPerBucket = etlPageTimeline.getPagesPerBucket();
+      this.timeline = etlPageTimeline.encode();
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static Integer toInteger(long value)
+   {
+      return ((int) Math.min(value, Integer.MAX_VALUE));
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public Long getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public void setId(Long id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for id
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withId(Long id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for processTraceId
+    * @see #withProcessTraceId(Long)
+    *******************************************************************************/
+   public Long getProcessTraceId()
+   {
+      return (this.processTraceId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for processTraceId
+    * @see #withProcessTraceId(Long)
+    *******************************************************************************/
+   public void setProcessTraceId(Long processTraceId)
+   {
+      this.processTraceId = processTraceId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for processTraceId
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withProcessTraceId(Long processTraceId)
+   {
+      this.processTraceId = processTraceId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for pageCount
+    * @see #withPageCount(Integer)
+    *******************************************************************************/
+   public Integer getPageCount()
+   {
+      return (this.pageCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for pageCount
+    * @see #withPageCount(Integer)
+    *******************************************************************************/
+   public void setPageCount(Integer pageCount)
+   {
+      this.pageCount = pageCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for pageCount
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withPageCount(Integer pageCount)
+   {
+      this.pageCount = pageCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for recordCount
+    * @see #withRecordCount(Integer)
+    *******************************************************************************/
+   public Integer getRecordCount()
+   {
+      return (this.recordCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for recordCount
+    * @see #withRecordCount(Integer)
+    *******************************************************************************/
+   public void setRecordCount(Integer recordCount)
+   {
+      this.recordCount = recordCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for recordCount
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withRecordCount(Integer recordCount)
+   {
+      this.recordCount = recordCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for extractWaitMillis
+    * @see #withExtractWaitMillis(Integer)
+    *******************************************************************************/
+   public Integer getExtractWaitMillis()
+   {
+      return (this.extractWaitMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for extractWaitMillis
+    * @see #withExtractWaitMillis(Integer)
+    *******************************************************************************/
+   public void setExtractWaitMillis(Integer extractWaitMillis)
+   {
+      this.extractWaitMillis = extractWaitMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for extractWaitMillis
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withExtractWaitMillis(Integer extractWaitMillis)
+   {
+      this.extractWaitMillis = extractWaitMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for transformMillis
+    * @see #withTransformMillis(Integer)
+    *******************************************************************************/
+   public Integer getTransformMillis()
+   {
+      return (this.transformMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for transformMillis
+    * @see #withTransformMillis(Integer)
+    *******************************************************************************/
+   public void setTransformMillis(Integer transformMillis)
+   {
+      this.transformMillis = transformMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for transformMillis
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withTransformMillis(Integer transformMillis)
+   {
+      this.transformMillis = transformMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for loadMillis
+    * @see #withLoadMillis(Integer)
+    *******************************************************************************/
+   public Integer getLoadMillis()
+   {
+      return (this.loadMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for loadMillis
+    * @see #withLoadMillis(Integer)
+    *******************************************************************************/
+   public void setLoadMillis(Integer loadMillis)
+   {
+      this.loadMillis = loadMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for loadMillis
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withLoadMillis(Integer loadMillis)
+   {
+      this.loadMillis = loadMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for bottleneck
+    * @see #withBottleneck(String)
+    *******************************************************************************/
+   public String getBottleneck()
+   {
+      return (this.bottleneck);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for bottleneck
+    * @see #withBottleneck(String)
+    *******************************************************************************/
+   public void setBottleneck(String bottleneck)
+   {
+      this.bottleneck = bottleneck;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for bottleneck
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withBottleneck(String bottleneck)
+   {
+      this.bottleneck = bottleneck;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for bottleneckPercent
+    * @see #withBottleneckPercent(Integer)
+    *******************************************************************************/
+   public Integer getBottleneckPercent()
+   {
+      return (this.bottleneckPercent);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for bottleneckPercent
+    * @see #withBottleneckPercent(Integer)
+    *******************************************************************************/
+   public void setBottleneckPercent(Integer bottleneckPercent)
+   {
+      this.bottleneckPercent = bottleneckPercent;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for bottleneckPercent
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withBottleneckPercent(Integer bottleneckPercent)
+   {
+      this.bottleneckPercent = bottleneckPercent;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for pagesPerBucket
+    * @see #withPagesPerBucket(Integer)
+    *******************************************************************************/
+   public Integer getPagesPerBucket()
+   {
+      return (this.pagesPerBucket);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for pagesPerBucket
+    * @see #withPagesPerBucket(Integer)
+    *******************************************************************************/
+   public void setPagesPerBucket(Integer pagesPerBucket)
+   {
+      this.pagesPerBucket = pagesPerBucket;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for pagesPerBucket
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withPagesPerBucket(Integer pagesPerBucket)
+   {
+      this.pagesPerBucket = pagesPerBucket;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for timeline
+    * @see #withTimeline(String)
+    *******************************************************************************/
+   public String getTimeline()
+   {
+      return (this.timeline);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for timeline
+    * @see #withTimeline(String)
+    *******************************************************************************/
+   public void setTimeline(String timeline)
+   {
+      this.timeline = timeline;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for timeline
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline withTimeline(String timeline)
+   {
+      this.timeline = timeline;
+      return (this);
+   }
+
+}
@@ -0,0 +1,422 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.model;
+
+
+import java.time.Instant;
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.DisplayFormat;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.ValueTooLongBehavior;
+
+
+/*******************************************************************************
+ * QRecord Entity for ProcessTraceStep table - one record per backend step that
+ * a traced process ran, with its timing, and the backend activity that
+ * happened while it was running.
+ * Note: not using meta-data producing annotations, so it can be disabled via config
+ *******************************************************************************/
+public class ProcessTraceStep extends QRecordEntity
+{
+   public static final String TABLE_NAME = "processTraceStep";
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Long id;
+
+   @QField(possibleValueSourceName = ProcessTrace.TABLE_NAME)
+   private Long processTraceId;
+
+   @QField(label = "Step No")
+   private Integer stepNo;
+
+   @QField(maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.TRUNCATE_ELLIPSIS)
+   private String stepName;
+
+   @QField(isEditable = false)
+   private Instant startTimestamp;
+
+   @QField(isEditable = false)
+   private Instant endTimestamp;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer runtimeMillis;
+
+   @QField(label = "Backend Calls", displayFormat = DisplayFormat.COMMAS)
+   private Integer backendCallCount;
+
+   @QField(label = "Backend Records", displayFormat = DisplayFormat.COMMAS)
+   private Integer backendRecordCount;
+
+   @QField(label = "Backend Millis", displayFormat = DisplayFormat.COMMAS)
+   private Integer backendRuntimeMillis;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public ProcessTraceStep()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public ProcessTraceStep(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public Long getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public void setId(Long id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for id
+    *******************************************************************************/
+   public ProcessTraceStep withId(Long id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for processTraceId
+    * @see #withProcessTraceId(Long)
+    *******************************************************************************/
+   public Long getProcessTraceId()
+   {
+      return (this.processTraceId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for processTraceId
+    * @see #withProcessTraceId(Long)
+    *******************************************************************************/
+   public void setProcessTraceId(Long processTraceId)
+   {
+      this.processTraceId = processTraceId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for processTraceId
+    *******************************************************************************/
+   public ProcessTraceStep withProcessTraceId(Long processTraceId)
+   {
+      this.processTraceId = processTraceId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for stepNo
+    * @see #withStepNo(Integer)
+    *******************************************************************************/
+   public Integer getStepNo()
+   {
+      return (this.stepNo);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for stepNo
+    * @see #withStepNo(Integer)
+    *******************************************************************************/
+   public void setStepNo(Integer stepNo)
+   {
+      this.stepNo = stepNo;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for stepNo
+    *******************************************************************************/
+   public ProcessTraceStep withStepNo(Integer stepNo)
+   {
+      this.stepNo = stepNo;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for stepName
+    * @see #withStepName(String)
+    *******************************************************************************/
+   public String getStepName()
+   {
+      return (this.stepName);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for stepName
+    * @see #withStepName(String)
+    *******************************************************************************/
+   public void setStepName(String stepName)
+   {
+      this.stepName = stepName;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for stepName
+    *******************************************************************************/
+   public ProcessTraceStep withStepName(String stepName)
+   {
+      this.stepName = stepName;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for startTimestamp
+    * @see #withStartTimestamp(Instant)
+    *******************************************************************************/
+   public Instant getStartTimestamp()
+   {
+      return (this.startTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for startTimestamp
+    * @see #withStartTimestamp(Instant)
+    *******************************************************************************/
+   public void setStartTimestamp(Instant startTimestamp)
+   {
+      this.startTimestamp = startTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for startTimestamp
+    *******************************************************************************/
+   public ProcessTraceStep withStartTimestamp(Instant startTimestamp)
+   {
+      this.startTimestamp = startTimestamp;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for endTimestamp
+    * @see #withEndTimestamp(Instant)
+    *******************************************************************************/
+   public Instant getEndTimestamp()
+   {
+      return (this.endTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for endTimestamp
+    * @see #withEndTimestamp(Instant)
+    *******************************************************************************/
+   public void setEndTimestamp(Instant endTimestamp)
+   {
+      this.endTimestamp = endTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for endTimestamp
+    *******************************************************************************/
+   public ProcessTraceStep withEndTimestamp(Instant endTimestamp)
+   {
+      this.endTimestamp = endTimestamp;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for runtimeMillis
+    * @see #withRuntimeMillis(Integer)
+    *******************************************************************************/
+   public Integer getRuntimeMillis()
+   {
+      return (this.runtimeMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for runtimeMillis
+    * @see #withRuntimeMillis(Integer)
+    *******************************************************************************/
+   public void setRuntimeMillis(Integer runtimeMillis)
+   {
+      this.runtimeMillis = runtimeMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for runtimeMillis
+    *******************************************************************************/
+   public ProcessTraceStep withRuntimeMillis(Integer runtimeMillis)
+   {
+      this.runtimeMillis = runtimeMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for backendCallCount
+    * @see #withBackendCallCount(Integer)
+    *******************************************************************************/
+   public Integer getBackendCallCount()
+   {
+      return (this.backendCallCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for backendCallCount
+    * @see #withBackendCallCount(Integer)
+    *******************************************************************************/
+   public void setBackendCallCount(Integer backendCallCount)
+   {
+      this.backendCallCount = backendCallCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for backendCallCount
+    *******************************************************************************/
+   public ProcessTraceStep withBackendCallCount(Integer backendCallCount)
+   {
+      this.backendCallCount = backendCallCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for backendRecordCount
+    * @see #withBackendRecordCount(Integer)
+    *******************************************************************************/
+   public Integer getBackendRecordCount()
+   {
+      return (this.backendRecordCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for backendRecordCount
+    * @see #withBackendRecordCount(Integer)
+    *******************************************************************************/
+   public void setBackendRecordCount(Integer backendRecordCount)
+   {
+      this.backendRecordCount = backendRecordCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for backendRecordCount
+    *******************************************************************************/
+   public ProcessTraceStep withBackendRecordCount(Integer backendRecordCount)
+   {
+      this.backendRecordCount = backendRecordCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for backendRuntimeMillis
+    * @see #withBackendRuntimeMillis(Integer)
+    *******************************************************************************/
+   public Integer getBackendRuntimeMillis()
+   {
+      return (this.backendRuntimeMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for backendRuntimeMillis
+    * @see #withBackendRuntimeMillis(Integer)
+    *******************************************************************************/
+   public void setBackendRuntimeMillis(Integer backendRuntimeMillis)
+   {
+      this.backendRuntimeMillis = backendRuntimeMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for backendRuntimeMillis
+    *******************************************************************************/
+   public ProcessTraceStep withBackendRuntimeMillis(Integer backendRuntimeMillis)
+   {
+      this.backendRuntimeMillis = backendRuntimeMillis;
+      return (this);
+   }
+
+}
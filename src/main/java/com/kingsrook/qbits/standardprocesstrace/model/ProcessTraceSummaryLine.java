@@ -23,6 +23,12 @@ package com.kingsrook.qbits.standardprocesstrace.model;
 
 
 import java.util.List;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineJoinRecordIdSetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineJoinRecordLongWidgetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineJoinRecordStringWidgetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineRecordIdSetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineRecordIdSetWidgetMetaDataProducer;
+import com.kingsrook.qbits.standardprocesstrace.metadata.ProcessTraceSummaryLineRecordLongMetaDataProducer;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
 import com.kingsrook.qqq.backend.core.model.data.QAssociation;
@@ -90,7 +96,7 @@ public class ProcessTraceSummaryLine extends QRecordEntity
             .withRecordLabelFormat("%s - %s")
             .withRecordLabelFields("processTraceId", "status")
             .withSection(new QFieldSection("identity", new QIcon().withName("badge"), Tier.T1, List.of("id", "processTraceId")))
-            .withSection(new QFieldSection("data", new QIcon().withName("text_snippet"), Tier.T2, List.of("recordCount", "status", "message")))
+            .withSection(new QFieldSection("data", new QIcon().withName("text_snippet"), Tier.T2, List.of("recordCount", "status", "message", "recordIdsTruncated")))
             .withSection(new QFieldSection("records", new QIcon().withName("view_compact"), Tier.T2).withWidgetName(childJoinName))
             .withExposedJoin(new ExposedJoin().withLabel("Process Trace").withJoinPath(List.of(parentJoinName)).withJoinTable(ProcessTrace.TABLE_NAME))
             .withAssociation(new Association().withName(RECORD_INT_ASSOCIATION_NAME).withAssociatedTableName(ProcessTraceSummaryLineRecordInt.TABLE_NAME).withJoinName(childJoinName));
@@ -101,6 +107,26 @@ public class ProcessTraceSummaryLine extends QRecordEntity
             .withValues(iconAndColorValues(Status.WARNING.name(), "warning_amber", AdornmentType.ChipValues.COLOR_WARNING))
             .withValues(iconAndColorValues(Status.ERROR.name(), "report", AdornmentType.ChipValues.COLOR_ERROR)));
 
+         if(new ProcessTraceSummaryLineRecordIdSetMetaDataProducer().isEnabled())
+         {
+            table.getSections().add(new QFieldSection("encodedRecords", new QIcon().withName("data_array"), Tier.T2)
+               .withWidgetName(ProcessTraceSummaryLineRecordIdSetWidgetMetaDataProducer.NAME));
+
+            table.withExposedJoin(new ExposedJoin()
+               .withLabel("Record Id Set")
+               .withJoinPath(List.of(ProcessTraceSummaryLineJoinRecordIdSetMetaDataProducer.NAME))
+               .withJoinTable(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME));
+         }
+
+         if(new ProcessTraceSummaryLineRecordLongMetaDataProducer().isEnabled())
+         {
+            table.getSections().add(new QFieldSection("longRecords", new QIcon().withName("view_compact"), Tier.T2)
+               .withWidgetName(ProcessTraceSummaryLineJoinRecordLongWidgetMetaDataProducer.NAME));
+
+            table.getSections().add(new QFieldSection("stringRecords", new QIcon().withName("view_compact"), Tier.T2)
+               .withWidgetName(ProcessTraceSummaryLineJoinRecordStringWidgetMetaDataProducer.NAME));
+         }
+
          return (table);
       }
    }
@@ -122,6 +148,9 @@ public class ProcessTraceSummaryLine extends QRecordEntity
    @QField(maxLength = 250, valueTooLongBehavior = ValueTooLongBehavior.TRUNCATE_ELLIPSIS)
    private String message;
 
+   @QField(label = "Record Ids Truncated")
+   private Boolean recordIdsTruncated;
+
    @QAssociation(name = RECORD_INT_ASSOCIATION_NAME)
    private List<ProcessTraceSummaryLineRecordInt> processTraceSummaryLineRecordIntList;
 
@@ -330,4 +359,40 @@ public class ProcessTraceSummaryLine extends QRecordEntity
       return (this);
    }
 
+
+
+
+   /*******************************************************************************
+    ** Getter for recordIdsTruncated
+    *******************************************************************************/
+   public Boolean getRecordIdsTruncated()
+   {
+      return (this.recordIdsTruncated);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for recordIdsTruncated
+    *******************************************************************************/
+   public void setRecordIdsTruncated(Boolean recordIdsTruncated)
+   {
+      this.recordIdsTruncated = recordIdsTruncated;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for recordIdsTruncated
+    **
+    ** @param recordIdsTruncated true if not all of the line's record ids were
+    ** stored (e.g., due to a ProcessTraceRecordIdCapturePolicy) - in which case,
+    ** recordCount is still the line's full count.
+    *******************************************************************************/
+   public ProcessTraceSummaryLine withRecordIdsTruncated(Boolean recordIdsTruncated)
+   {
+      this.recordIdsTruncated = recordIdsTruncated;
+      return (this);
+   }
+
 }
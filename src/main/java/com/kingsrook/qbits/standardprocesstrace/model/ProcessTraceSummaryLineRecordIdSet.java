@@ -0,0 +1,277 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.model;
+
+
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.DisplayFormat;
+import com.kingsrook.qqq.backend.core.model.tables.QQQTable;
+
+
+/*******************************************************************************
+ * QRecord Entity for ProcessTraceSummaryLineRecordIdSet table - an alternative
+ * to processTraceSummaryLineRecordInt, holding all of a summary line's record
+ * ids in one row, as an EncodedRecordIdSet.
+ * Note: not using meta-data producing annotations, so it can be disabled via config
+ *******************************************************************************/
+public class ProcessTraceSummaryLineRecordIdSet extends QRecordEntity
+{
+   public static final String TABLE_NAME = "processTraceSummaryLineRecordIdSet";
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Long id;
+
+   @QField(possibleValueSourceName = ProcessTraceSummaryLine.TABLE_NAME)
+   private Long processTraceSummaryLineId;
+
+   @QField(label = "Table", possibleValueSourceName = QQQTable.TABLE_NAME)
+   private Integer qqqTableId;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer recordCount;
+
+   @QField(displayFormat = DisplayFormat.COMMAS)
+   private Integer runCount;
+
+   @QField(isEditable = false)
+   private String encodedRecordIds;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public Long getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public void setId(Long id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for id
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withId(Long id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for processTraceSummaryLineId
+    * @see #withProcessTraceSummaryLineId(Long)
+    *******************************************************************************/
+   public Long getProcessTraceSummaryLineId()
+   {
+      return (this.processTraceSummaryLineId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for processTraceSummaryLineId
+    * @see #withProcessTraceSummaryLineId(Long)
+    *******************************************************************************/
+   public void setProcessTraceSummaryLineId(Long processTraceSummaryLineId)
+   {
+      this.processTraceSummaryLineId = processTraceSummaryLineId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for processTraceSummaryLineId
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withProcessTraceSummaryLineId(Long processTraceSummaryLineId)
+   {
+      this.processTraceSummaryLineId = processTraceSummaryLineId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for qqqTableId
+    * @see #withQqqTableId(Integer)
+    *******************************************************************************/
+   public Integer getQqqTableId()
+   {
+      return (this.qqqTableId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for qqqTableId
+    * @see #withQqqTableId(Integer)
+    *******************************************************************************/
+   public void setQqqTableId(Integer qqqTableId)
+   {
+      this.qqqTableId = qqqTableId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for qqqTableId
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withQqqTableId(Integer qqqTableId)
+   {
+      this.qqqTableId = qqqTableId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for recordCount
+    * @see #withRecordCount(Integer)
+    *******************************************************************************/
+   public Integer getRecordCount()
+   {
+      return (this.recordCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for recordCount
+    * @see #withRecordCount(Integer)
+    *******************************************************************************/
+   public void setRecordCount(Integer recordCount)
+   {
+      this.recordCount = recordCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for recordCount
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withRecordCount(Integer recordCount)
+   {
+      this.recordCount = recordCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for runCount
+    * @see #withRunCount(Integer)
+    *******************************************************************************/
+   public Integer getRunCount()
+   {
+      return (this.runCount);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for runCount
+    * @see #withRunCount(Integer)
+    *******************************************************************************/
+   public void setRunCount(Integer runCount)
+   {
+      this.runCount = runCount;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for runCount
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withRunCount(Integer runCount)
+   {
+      this.runCount = runCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for encodedRecordIds
+    * @see #withEncodedRecordIds(String)
+    *******************************************************************************/
+   public String getEncodedRecordIds()
+   {
+      return (this.encodedRecordIds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for encodedRecordIds
+    * @see #withEncodedRecordIds(String)
+    *******************************************************************************/
+   public void setEncodedRecordIds(String encodedRecordIds)
+   {
+      this.encodedRecordIds = encodedRecordIds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for encodedRecordIds
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordIdSet withEncodedRecordIds(String encodedRecordIds)
+   {
+      this.encodedRecordIds = encodedRecordIds;
+      return (this);
+   }
+
+}
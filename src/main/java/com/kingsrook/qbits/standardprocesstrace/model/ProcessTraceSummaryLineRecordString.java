@@ -0,0 +1,204 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.model;
+
+
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.tables.QQQTable;
+
+
+/*******************************************************************************
+ * QRecord Entity for ProcessTraceSummaryLineRecordString table - like processTraceSummaryLineRecordInt,
+ * but for records from tables whose primary keys are Strings
+ * (or any other non-numeric type).
+ * Note: not using meta-data producing annotations, so it can be disabled via config
+ *******************************************************************************/
+public class ProcessTraceSummaryLineRecordString extends QRecordEntity
+{
+   public static final String TABLE_NAME = "processTraceSummaryLineRecordString";
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Long id;
+
+   @QField(possibleValueSourceName = ProcessTraceSummaryLine.TABLE_NAME)
+   private Long processTraceSummaryLineId;
+
+   @QField(label = "Table", possibleValueSourceName = QQQTable.TABLE_NAME)
+   private Integer qqqTableId;
+
+   @QField()
+   private String recordId;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public Long getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for id
+    * @see #withId(Long)
+    *******************************************************************************/
+   public void setId(Long id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for id
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString withId(Long id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for processTraceSummaryLineId
+    * @see #withProcessTraceSummaryLineId(Long)
+    *******************************************************************************/
+   public Long getProcessTraceSummaryLineId()
+   {
+      return (this.processTraceSummaryLineId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for processTraceSummaryLineId
+    * @see #withProcessTraceSummaryLineId(Long)
+    *******************************************************************************/
+   public void setProcessTraceSummaryLineId(Long processTraceSummaryLineId)
+   {
+      this.processTraceSummaryLineId = processTraceSummaryLineId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for processTraceSummaryLineId
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString withProcessTraceSummaryLineId(Long processTraceSummaryLineId)
+   {
+      this.processTraceSummaryLineId = processTraceSummaryLineId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for qqqTableId
+    * @see #withQqqTableId(Integer)
+    *******************************************************************************/
+   public Integer getQqqTableId()
+   {
+      return (this.qqqTableId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for qqqTableId
+    * @see #withQqqTableId(Integer)
+    *******************************************************************************/
+   public void setQqqTableId(Integer qqqTableId)
+   {
+      this.qqqTableId = qqqTableId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for qqqTableId
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString withQqqTableId(Integer qqqTableId)
+   {
+      this.qqqTableId = qqqTableId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for recordId
+    * @see #withRecordId(String)
+    *******************************************************************************/
+   public String getRecordId()
+   {
+      return (this.recordId);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for recordId
+    * @see #withRecordId(String)
+    *******************************************************************************/
+   public void setRecordId(String recordId)
+   {
+      this.recordId = recordId;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for recordId
+    *******************************************************************************/
+   public ProcessTraceSummaryLineRecordString withRecordId(String recordId)
+   {
+      this.recordId = recordId;
+      return (this);
+   }
+
+}
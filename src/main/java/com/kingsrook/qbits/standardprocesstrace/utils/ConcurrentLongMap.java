@@ -0,0 +1,538 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+
+/*******************************************************************************
+ * Concurrent map from primitive longs to (non-null) objects - e.g., for looking
+ * up state by processTraceId on a hot path, without boxing the key, or hashing
+ * (and comparing) wrapper objects.
+ *
+ * <p>The map is split into segments (by the high bits of the key's hash), each
+ * an open-addressing (linear probing) table of parallel key and value arrays,
+ * guarded by a StampedLock.  Lookups are optimistic reads - they take no lock,
+ * and allocate nothing, unless a write to the same segment overlaps them (in
+ * which case they retry under a read lock).  Writes lock just their segment.</p>
+ *
+ * <p>Only the operations needed in this QBit are provided - this is not a
+ * general-purpose Map.</p>
+ *******************************************************************************/
+public class ConcurrentLongMap<V>
+{
+   private static final int SEGMENT_BITS     = 4;
+   private static final int SEGMENT_COUNT    = 1 << SEGMENT_BITS;
+   private static final int INITIAL_CAPACITY = 16;
+
+   private final Segment<V>[] segments;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongMap()
+   {
+      segments = new Segment[SEGMENT_COUNT];
+      for(int i = 0; i < SEGMENT_COUNT; i++)
+      {
+         segments[i] = new Segment<>();
+      }
+   }
+
+
+
+   /***************************************************************************
+    * get the value for a key - or null if it isn't in the map.
+    ***************************************************************************/
+   public V get(long key)
+   {
+      long       hash    = hash(key);
+      Segment<V> segment = segmentFor(hash);
+
+      long stamp = segment.lock.tryOptimisticRead();
+      V    value = segment.find(key, (int) hash);
+      if(!segment.lock.validate(stamp))
+      {
+         stamp = segment.lock.readLock();
+         try
+         {
+            value = segment.find(key, (int) hash);
+         }
+         finally
+         {
+            segment.lock.unlockRead(stamp);
+         }
+      }
+
+      return (value);
+   }
+
+
+
+   /***************************************************************************
+    * put a value in the map, returning the value it replaced (if any).
+    ***************************************************************************/
+   public V put(long key, V value)
+   {
+      if(value == null)
+      {
+         throw (new IllegalArgumentException("Null values are not supported"));
+      }
+
+      long       hash    = hash(key);
+      Segment<V> segment = segmentFor(hash);
+
+      long stamp = segment.lock.writeLock();
+      try
+      {
+         return (segment.put(key, (int) hash, value, true));
+      }
+      finally
+      {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * get the value for a key - or, if it isn't in the map, put the value from
+    * the given function into the map (atomically), and return that.
+    ***************************************************************************/
+   public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction)
+   {
+      V value = get(key);
+      if(value != null)
+      {
+         return (value);
+      }
+
+      long       hash    = hash(key);
+      Segment<V> segment = segmentFor(hash);
+
+      long stamp = segment.lock.writeLock();
+      try
+      {
+         value = segment.find(key, (int) hash);
+         if(value == null)
+         {
+            value = mappingFunction.apply(key);
+            if(value != null)
+            {
+               segment.put(key, (int) hash, value, false);
+            }
+         }
+         return (value);
+      }
+      finally
+      {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * remove a key from the map, returning its value (or null if it wasn't in
+    * the map).
+    ***************************************************************************/
+   public V remove(long key)
+   {
+      long       hash    = hash(key);
+      Segment<V> segment = segmentFor(hash);
+
+      long stamp = segment.lock.writeLock();
+      try
+      {
+         return (segment.remove(key, (int) hash));
+      }
+      finally
+      {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * remove a key from the map, only if it is mapped to the given value (the
+    * same object).  Returns whether it was removed.
+    ***************************************************************************/
+   public boolean remove(long key, V expectedValue)
+   {
+      long       hash    = hash(key);
+      Segment<V> segment = segmentFor(hash);
+
+      long stamp = segment.lock.writeLock();
+      try
+      {
+         if(expectedValue == null || segment.find(key, (int) hash) != expectedValue)
+         {
+            return (false);
+         }
+
+         segment.remove(key, (int) hash);
+         return (true);
+      }
+      finally
+      {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * remove all entries whose values match a predicate - returning how many
+    * were removed.
+    ***************************************************************************/
+   public int removeIfValue(Predicate<? super V> predicate)
+   {
+      int removed = 0;
+      for(Segment<V> segment : segments)
+      {
+         long stamp = segment.lock.writeLock();
+         try
+         {
+            removed += segment.removeIfValue(predicate);
+         }
+         finally
+         {
+            segment.lock.unlockWrite(stamp);
+         }
+      }
+      return (removed);
+   }
+
+
+
+   /***************************************************************************
+    * run a consumer over all of the values in the map (holding a read lock on
+    * each segment while its values are consumed - so the consumer must not
+    * write to this map).
+    ***************************************************************************/
+   public void forEachValue(Consumer<? super V> consumer)
+   {
+      for(Segment<V> segment : segments)
+      {
+         long stamp = segment.lock.readLock();
+         try
+         {
+            segment.forEachValue(consumer);
+         }
+         finally
+         {
+            segment.lock.unlockRead(stamp);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * number of entries in the map (summed over the segments - so, while other
+    * threads are writing, just an estimate).
+    ***************************************************************************/
+   public int size()
+   {
+      int size = 0;
+      for(Segment<V> segment : segments)
+      {
+         size += segment.size;
+      }
+      return (size);
+   }
+
+
+
+   /***************************************************************************
+    * remove all entries from the map.
+    ***************************************************************************/
+   public void clear()
+   {
+      removeIfValue(v -> true);
+   }
+
+
+
+   /***************************************************************************
+    * mix the bits of a key (murmur3's 64-bit finalizer) - the low bits are used
+    * to index within a segment, and the high bits to pick the segment.
+    ***************************************************************************/
+   private static long hash(long key)
+   {
+      long h = key;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return (h);
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private Segment<V> segmentFor(long hash)
+   {
+      return (segments[(int) (hash >>> (64 - SEGMENT_BITS))]);
+   }
+
+
+
+   /***************************************************************************
+    * one segment of the map - an open-addressing table, with linear probing,
+    * kept at most half full.  Slots with a null value are empty.
+    ***************************************************************************/
+   private static class Segment<V>
+   {
+      private final StampedLock lock = new StampedLock();
+
+      private long[]   keys   = new long[INITIAL_CAPACITY];
+      private Object[] values = new Object[INITIAL_CAPACITY];
+      private int      size   = 0;
+
+
+
+      /***************************************************************************
+       * find the value for a key.  May be called under an optimistic read - so
+       * must not fail (or loop forever) if the arrays change underneath it; the
+       * caller validates the stamp, and retries if they did.
+       ***************************************************************************/
+      @SuppressWarnings("unchecked")
+      private V find(long key, int hash)
+      {
+         long[]   keys   = this.keys;
+         Object[] values = this.values;
+         if(keys.length != values.length)
+         {
+            return (null);
+         }
+
+         int mask  = values.length - 1;
+         int index = hash & mask;
+         for(int probes = 0; probes <= mask; probes++)
+         {
+            Object value = values[index];
+            if(value == null)
+            {
+               return (null);
+            }
+
+            if(keys[index] == key)
+            {
+               return ((V) value);
+            }
+
+            index = (index + 1) & mask;
+         }
+
+         return (null);
+      }
+
+
+
+      /***************************************************************************
+       * put a value (under the write lock), replacing any existing one if
+       * replace is true.  Returns the previous value, if any.
+       ***************************************************************************/
+      @SuppressWarnings("unchecked")
+      private V put(long key, int hash, V value, boolean replace)
+      {
+         if((size + 1) * 2 > values.length)
+         {
+            resize(values.length * 2);
+         }
+
+         int mask  = values.length - 1;
+         int index = hash & mask;
+         while(values[index] != null)
+         {
+            if(keys[index] == key)
+            {
+               V previous = (V) values[index];
+               if(replace)
+               {
+                  values[index] = value;
+               }
+               return (previous);
+            }
+            index = (index + 1) & mask;
+         }
+
+         keys[index] = key;
+         values[index] = value;
+         size++;
+         return (null);
+      }
+
+
+
+      /***************************************************************************
+       * remove a key (under the write lock), returning its value, if any.
+       ***************************************************************************/
+      @SuppressWarnings("unchecked")
+      private V remove(long key, int hash)
+      {
+         int mask  = values.length - 1;
+         int index = hash & mask;
+         while(values[index] != null)
+         {
+            if(keys[index] == key)
+            {
+               V previous = (V) values[index];
+               removeAt(index);
+               return (previous);
+            }
+            index = (index + 1) & mask;
+         }
+
+         return (null);
+      }
+
+
+
+      /***************************************************************************
+       * remove all entries whose values match a predicate (under the write lock).
+       ***************************************************************************/
+      @SuppressWarnings("unchecked")
+      private int removeIfValue(Predicate<? super V> predicate)
+      {
+         int removed = 0;
+         int index   = 0;
+         while(index < values.length)
+         {
+            ///////////////////////////////////////////////////////////////////////
+            // removeAt may shift a later entry into this slot - so only move on //
+            // if nothing was removed here                                       //
+            ///////////////////////////////////////////////////////////////////////
+            if(values[index] != null && predicate.test((V) values[index]))
+            {
+               removeAt(index);
+               removed++;
+            }
+            else
+            {
+               index++;
+            }
+         }
+         return (removed);
+      }
+
+
+
+      /***************************************************************************
+       * (under a read lock)
+       ***************************************************************************/
+      @SuppressWarnings("unchecked")
+      private void forEachValue(Consumer<? super V> consumer)
+      {
+         for(Object value : values)
+         {
+            if(value != null)
+            {
+               consumer.accept((V) value);
+            }
+         }
+      }
+
+
+
+      /***************************************************************************
+       * empty a slot, then shift back any following entries in the same probe
+       * run that would no longer be reachable ("backward shift deletion") - so
+       * no tombstones are needed.
+       ***************************************************************************/
+      private void removeAt(int index)
+      {
+         int mask = values.length - 1;
+         values[index] = null;
+         size--;
+
+         int next = index;
+         while(true)
+         {
+            next = (next + 1) & mask;
+            if(values[next] == null)
+            {
+               return;
+            }
+
+            /////////////////////////////////////////////////////////////////////
+            // if the entry's home slot is cyclically in (index, next], it can //
+            // still be found where it is; else, move it into the empty slot.  //
+            /////////////////////////////////////////////////////////////////////
+            int home = (int) hash(keys[next]) & mask;
+            boolean reachable = (index <= next) ? (index < home && home <= next) : (index < home || home <= next);
+            if(!reachable)
+            {
+               keys[index] = keys[next];
+               values[index] = values[next];
+               values[next] = null;
+               index = next;
+            }
+         }
+      }
+
+
+
+      /***************************************************************************
+       * re-hash into new arrays (under the write lock).  The new arrays are
+       * fully built before being published, and keys before values, so that
+       * an optimistic reader never sees a values array larger than its keys.
+       ***************************************************************************/
+      private void resize(int newCapacity)
+      {
+         long[]   newKeys   = new long[newCapacity];
+         Object[] newValues = new Object[newCapacity];
+         int      mask      = newCapacity - 1;
+
+         for(int i = 0; i < values.length; i++)
+         {
+            if(values[i] != null)
+            {
+               int index = (int) hash(keys[i]) & mask;
+               while(newValues[index] != null)
+               {
+                  index = (index + 1) & mask;
+               }
+               newKeys[index] = keys[i];
+               newValues[index] = values[i];
+            }
+         }
+
+         this.keys = newKeys;
+         this.values = newValues;
+      }
+   }
+
+}
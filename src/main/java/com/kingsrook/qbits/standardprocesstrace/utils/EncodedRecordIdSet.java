@@ -0,0 +1,331 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/*******************************************************************************
+ * Compact, immutable set of integer record ids - stored as sorted runs of
+ * consecutive ids, and encoded (for storage in a single string column) as
+ * base64 of variable-length-integer deltas between runs.
+ *
+ * <p>Most summary lines are made up of mostly-consecutive ids (e.g., records
+ * inserted or queried in id order), so a line with a million ids often encodes
+ * to just a few bytes.  The encoding is:</p>
+ * <ul>
+ *    <li>1 byte - format version (currently 1)</li>
+ *    <li>varint - number of runs</li>
+ *    <li>for each run: zig-zag varint of (run start - previous run's end), then
+ *    varint of (run length - 1)</li>
+ * </ul>
+ *******************************************************************************/
+public class EncodedRecordIdSet implements Iterable<Integer>
+{
+   private static final byte   VERSION       = 1;
+   private static final String ENCODING_NAME = "record id set";
+
+   private static final EncodedRecordIdSet EMPTY = new EncodedRecordIdSet(new int[0], new int[0]);
+
+   private final int[] runStarts;
+   private final int[] runLengths;
+   private final int   size;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   private EncodedRecordIdSet(int[] runStarts, int[] runLengths)
+   {
+      this.runStarts = runStarts;
+      this.runLengths = runLengths;
+
+      long size = 0;
+      for(int runLength : runLengths)
+      {
+         size += runLength;
+      }
+      this.size = (int) Math.min(size, Integer.MAX_VALUE);
+   }
+
+
+
+   /***************************************************************************
+    * build a set from a collection of primary keys.  Keys that aren't
+    * integers are skipped, as are duplicates - where whole-valued numbers of
+    * other types (e.g., a BigDecimal of 7.00) count as integers (as by
+    * {@link ProcessTraceRecordIdType#toInteger(Serializable)}).
+    ***************************************************************************/
+   public static EncodedRecordIdSet of(Iterable<? extends Serializable> primaryKeys)
+   {
+      if(primaryKeys == null)
+      {
+         return (EMPTY);
+      }
+
+      int[] ids   = new int[16];
+      int   count = 0;
+      for(Serializable primaryKey : primaryKeys)
+      {
+         Integer id = ProcessTraceRecordIdType.toInteger(primaryKey);
+         if(id != null)
+         {
+            if(count == ids.length)
+            {
+               ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+         }
+      }
+
+      return (ofSorted(ids, count));
+   }
+
+
+
+   /***************************************************************************
+    * build a set from the first count values in an array (which is sorted in
+    * place).
+    ***************************************************************************/
+   private static EncodedRecordIdSet ofSorted(int[] ids, int count)
+   {
+      if(count == 0)
+      {
+         return (EMPTY);
+      }
+
+      Arrays.sort(ids, 0, count);
+
+      int[] runStarts  = new int[8];
+      int[] runLengths = new int[8];
+      int   runCount   = 0;
+      for(int i = 0; i < count; i++)
+      {
+         int id = ids[i];
+         if(runCount > 0)
+         {
+            long runEnd = (long) runStarts[runCount - 1] + runLengths[runCount - 1] - 1;
+            if(id == runEnd)
+            {
+               continue;
+            }
+            else if(id == runEnd + 1)
+            {
+               runLengths[runCount - 1]++;
+               continue;
+            }
+         }
+
+         if(runCount == runStarts.length)
+         {
+            runStarts = Arrays.copyOf(runStarts, runCount * 2);
+            runLengths = Arrays.copyOf(runLengths, runCount * 2);
+         }
+         runStarts[runCount] = id;
+         runLengths[runCount] = 1;
+         runCount++;
+      }
+
+      return (new EncodedRecordIdSet(Arrays.copyOf(runStarts, runCount), Arrays.copyOf(runLengths, runCount)));
+   }
+
+
+
+   /***************************************************************************
+    * decode a string made by {@link #encode()}.
+    ***************************************************************************/
+   public static EncodedRecordIdSet decode(String encoded)
+   {
+      if(encoded == null || encoded.isEmpty())
+      {
+         return (EMPTY);
+      }
+
+      byte[] bytes = Base64.getDecoder().decode(encoded);
+      if(bytes.length == 0 || bytes[0] != VERSION)
+      {
+         throw (new IllegalArgumentException("Unrecognized encoded record id set version"));
+      }
+
+      ////////////////////////////////////////////////////////////////////
+      // each run takes at least 2 bytes - so a count of more runs than //
+      // there are bytes is malformed (and mustn't be allocated for).   //
+      ////////////////////////////////////////////////////////////////////
+      int[] position = new int[] { 1 };
+      long  runCount = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+      if(runCount > bytes.length)
+      {
+         throw (new IllegalArgumentException("Malformed encoded record id set"));
+      }
+
+      int[] runStarts  = new int[(int) runCount];
+      int[] runLengths = new int[(int) runCount];
+
+      long previousEnd = 0;
+      for(int i = 0; i < runCount; i++)
+      {
+         long start = previousEnd + zigZagDecode(VarLongCodec.readVarLong(bytes, position, ENCODING_NAME));
+         runStarts[i] = (int) start;
+         runLengths[i] = (int) VarLongCodec.readVarLong(bytes, position, ENCODING_NAME) + 1;
+         previousEnd = start + runLengths[i] - 1;
+      }
+
+      return (new EncodedRecordIdSet(runStarts, runLengths));
+   }
+
+
+
+   /***************************************************************************
+    * encode this set as a (base64) string.
+    ***************************************************************************/
+   public String encode()
+   {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 + runStarts.length * 4);
+      outputStream.write(VERSION);
+      VarLongCodec.writeVarLong(outputStream, runStarts.length);
+
+      long previousEnd = 0;
+      for(int i = 0; i < runStarts.length; i++)
+      {
+         VarLongCodec.writeVarLong(outputStream, zigZagEncode(runStarts[i] - previousEnd));
+         VarLongCodec.writeVarLong(outputStream, runLengths[i] - 1);
+         previousEnd = (long) runStarts[i] + runLengths[i] - 1;
+      }
+
+      return (Base64.getEncoder().encodeToString(outputStream.toByteArray()));
+   }
+
+
+
+   /***************************************************************************
+    * check if an id is in this set (by binary search over the runs).
+    ***************************************************************************/
+   public boolean contains(int id)
+   {
+      int index = Arrays.binarySearch(runStarts, id);
+      if(index >= 0)
+      {
+         return (true);
+      }
+
+      int runIndex = -index - 2;
+      return (runIndex >= 0 && id <= (long) runStarts[runIndex] + runLengths[runIndex] - 1);
+   }
+
+
+
+   /***************************************************************************
+    * number of ids in the set.
+    ***************************************************************************/
+   public int size()
+   {
+      return (size);
+   }
+
+
+
+   /***************************************************************************
+    * number of runs of consecutive ids in the set.
+    ***************************************************************************/
+   public int getRunCount()
+   {
+      return (runStarts.length);
+   }
+
+
+
+   /***************************************************************************
+    * iterate over the ids in the set, in ascending order.
+    ***************************************************************************/
+   @Override
+   public Iterator<Integer> iterator()
+   {
+      return (new Iterator<>()
+      {
+         private int  runIndex = 0;
+         private long offset   = 0;
+
+
+
+         /***************************************************************************
+          *
+          ***************************************************************************/
+         @Override
+         public boolean hasNext()
+         {
+            return (runIndex < runStarts.length);
+         }
+
+
+
+         /***************************************************************************
+          *
+          ***************************************************************************/
+         @Override
+         public Integer next()
+         {
+            if(!hasNext())
+            {
+               throw (new NoSuchElementException());
+            }
+
+            int id = (int) (runStarts[runIndex] + offset);
+            offset++;
+            if(offset >= runLengths[runIndex])
+            {
+               runIndex++;
+               offset = 0;
+            }
+            return (id);
+         }
+      });
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static long zigZagEncode(long value)
+   {
+      return ((value << 1) ^ (value >> 63));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static long zigZagDecode(long value)
+   {
+      return ((value >>> 1) ^ -(value & 1));
+   }
+
+}
@@ -0,0 +1,487 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+
+/*******************************************************************************
+ * Compact timeline of the pages of records that a streamed ETL process ran
+ * through its transform &amp; load steps - how long the consumer side of the
+ * record pipe waited for each page to be extracted, how long the page took
+ * to transform, and to load, and how many records it had - plus totals over
+ * all of the pages, and which of the three was the bottleneck.
+ *
+ * <p>A long run can have a great many pages, so they're kept in a bounded
+ * number of buckets:  pages are added to the last bucket until it has
+ * pagesPerBucket pages; when all of the buckets are in use, adjacent pairs of
+ * buckets are merged, and pagesPerBucket doubles.  So the timeline always
+ * covers the whole run, at a resolution that decreases as it gets longer -
+ * still enough to see how throughput changes over the run.  Not thread-safe
+ * (pages are added by the thread running the process).</p>
+ *
+ * <p>Encoded (for storage in a single string column) as base64 of:</p>
+ * <ul>
+ *    <li>1 byte - format version (currently 1)</li>
+ *    <li>varint - pages per bucket</li>
+ *    <li>varint - number of buckets</li>
+ *    <li>for each bucket: varints of its page count, record count, extract
+ *    wait, transform &amp; load millis, then of (its end offset - previous
+ *    bucket's end offset)</li>
+ * </ul>
+ *******************************************************************************/
+public class EtlPageTimeline
+{
+   public static final int DEFAULT_MAX_BUCKETS = 512;
+
+   private static final byte   VERSION       = 1;
+   private static final String ENCODING_NAME = "ETL page timeline";
+
+   ///////////////////////////////////////////////
+   // per bucket, in the buckets array, in turn //
+   ///////////////////////////////////////////////
+   private static final int PAGES        = 0;
+   private static final int RECORDS      = 1;
+   private static final int EXTRACT_WAIT = 2;
+   private static final int TRANSFORM    = 3;
+   private static final int LOAD         = 4;
+   private static final int END_OFFSET   = 5;
+   private static final int FIELD_COUNT  = 6;
+
+   private final int    maxBuckets;
+   private final long[] buckets;
+   private int          bucketCount    = 0;
+   private int          pagesPerBucket = 1;
+
+   private long pageCount         = 0;
+   private long recordCount       = 0;
+   private long extractWaitMillis = 0;
+   private long transformMillis   = 0;
+   private long loadMillis        = 0;
+
+
+
+   /***************************************************************************
+    * which part of the pipeline took the most time.  EXTRACT means the
+    * consumer side of the pipe (transform &amp; load) was mostly waiting for the
+    * producer (extract) - TRANSFORM or LOAD means the consumer was the
+    * constraint.
+    ***************************************************************************/
+   public enum Bottleneck
+   {
+      EXTRACT("extract-bound"),
+      TRANSFORM("transform-bound"),
+      LOAD("load-bound");
+
+      private final String label;
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      Bottleneck(String label)
+      {
+         this.label = label;
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for label
+       *******************************************************************************/
+      public String getLabel()
+      {
+         return (this.label);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * a span of consecutive pages in the timeline.
+    *
+    * @param pageCount number of pages in the span
+    * @param recordCount records in those pages
+    * @param extractWaitMillis time spent waiting for the pages to be extracted
+    * @param transformMillis time spent transforming the pages
+    * @param loadMillis time spent loading the pages
+    * @param endOffsetMillis when the span's last page finished loading, as
+    * millis since the timeline started
+    ***************************************************************************/
+   public record Bucket(long pageCount, long recordCount, long extractWaitMillis, long transformMillis, long loadMillis, long endOffsetMillis)
+   {
+      /***************************************************************************
+       * total of the span's extract wait, transform &amp; load millis.
+       ***************************************************************************/
+      public long totalMillis()
+      {
+         return (extractWaitMillis + transformMillis + loadMillis);
+      }
+
+
+
+      /***************************************************************************
+       * records per second through the span (null if it took no time).
+       ***************************************************************************/
+      public Double recordsPerSecond()
+      {
+         long totalMillis = totalMillis();
+         return (totalMillis == 0 ? null : recordCount * 1000.0 / totalMillis);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   public EtlPageTimeline()
+   {
+      this(DEFAULT_MAX_BUCKETS);
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param maxBuckets max number of buckets to keep (rounded up to an even
+    ** number, of at least 2)
+    *******************************************************************************/
+   public EtlPageTimeline(int maxBuckets)
+   {
+      this.maxBuckets = Math.max(2, maxBuckets + (maxBuckets & 1));
+      this.buckets = new long[this.maxBuckets * FIELD_COUNT];
+   }
+
+
+
+   /***************************************************************************
+    * add a page to the end of the timeline.  Negative values are recorded as 0.
+    *
+    * @param extractWaitMillis time between the previous page finishing (or the
+    * step starting) and this page's transform starting
+    * @param transformMillis time from this page's transform starting, to its
+    * load starting
+    * @param loadMillis time from this page's load starting to it finishing
+    * @param pageRecordCount number of records in the page
+    * @param endOffsetMillis when the page finished loading, as millis since
+    * the timeline started
+    ***************************************************************************/
+   public void addPage(long extractWaitMillis, long transformMillis, long loadMillis, int pageRecordCount, long endOffsetMillis)
+   {
+      extractWaitMillis = Math.max(0, extractWaitMillis);
+      transformMillis = Math.max(0, transformMillis);
+      loadMillis = Math.max(0, loadMillis);
+      pageRecordCount = Math.max(0, pageRecordCount);
+
+      this.pageCount++;
+      this.recordCount += pageRecordCount;
+      this.extractWaitMillis += extractWaitMillis;
+      this.transformMillis += transformMillis;
+      this.loadMillis += loadMillis;
+
+      if(bucketCount == 0 || buckets[(bucketCount - 1) * FIELD_COUNT + PAGES] >= pagesPerBucket)
+      {
+         if(bucketCount == maxBuckets)
+         {
+            mergeBucketPairs();
+         }
+
+         //////////////////////////////////////////////////////////////////
+         // after a merge, the last bucket may still have room (if there //
+         // was an odd number of buckets) - else, start a new one        //
+         //////////////////////////////////////////////////////////////////
+         if(bucketCount == 0 || buckets[(bucketCount - 1) * FIELD_COUNT + PAGES] >= pagesPerBucket)
+         {
+            bucketCount++;
+         }
+      }
+
+      int base = (bucketCount - 1) * FIELD_COUNT;
+      buckets[base + PAGES]++;
+      buckets[base + RECORDS] += pageRecordCount;
+      buckets[base + EXTRACT_WAIT] += extractWaitMillis;
+      buckets[base + TRANSFORM] += transformMillis;
+      buckets[base + LOAD] += loadMillis;
+      buckets[base + END_OFFSET] = Math.max(buckets[base + END_OFFSET], Math.max(0, endOffsetMillis));
+   }
+
+
+
+   /***************************************************************************
+    * halve the number of buckets, by merging each adjacent pair.
+    ***************************************************************************/
+   private void mergeBucketPairs()
+   {
+      int mergedCount = 0;
+      for(int i = 0; i < bucketCount; i += 2, mergedCount++)
+      {
+         int to   = mergedCount * FIELD_COUNT;
+         int from = i * FIELD_COUNT;
+         System.arraycopy(buckets, from, buckets, to, FIELD_COUNT);
+
+         if(i + 1 < bucketCount)
+         {
+            int next = from + FIELD_COUNT;
+            for(int field = PAGES; field < END_OFFSET; field++)
+            {
+               buckets[to + field] += buckets[next + field];
+            }
+            buckets[to + END_OFFSET] = buckets[next + END_OFFSET];
+         }
+      }
+
+      Arrays.fill(buckets, mergedCount * FIELD_COUNT, bucketCount * FIELD_COUNT, 0);
+      bucketCount = mergedCount;
+      pagesPerBucket *= 2;
+   }
+
+
+
+   /***************************************************************************
+    * which of extract wait, transform, and load took the most time over all of
+    * the pages (null if none took any time).
+    ***************************************************************************/
+   public Bottleneck getBottleneck()
+   {
+      if(getTotalMillis() == 0)
+      {
+         return (null);
+      }
+
+      if(loadMillis >= transformMillis && loadMillis >= extractWaitMillis)
+      {
+         return (Bottleneck.LOAD);
+      }
+
+      return (transformMillis >= extractWaitMillis ? Bottleneck.TRANSFORM : Bottleneck.EXTRACT);
+   }
+
+
+
+   /***************************************************************************
+    * the bottleneck's share of the total time, as a whole percentage (null if
+    * no time was taken).
+    ***************************************************************************/
+   public Integer getBottleneckPercent()
+   {
+      Bottleneck bottleneck = getBottleneck();
+      if(bottleneck == null)
+      {
+         return (null);
+      }
+
+      long bottleneckMillis = switch(bottleneck)
+      {
+         case EXTRACT -> extractWaitMillis;
+         case TRANSFORM -> transformMillis;
+         case LOAD -> loadMillis;
+      };
+
+      return ((int) Math.round(bottleneckMillis * 100.0 / getTotalMillis()));
+   }
+
+
+
+   /***************************************************************************
+    * e.g., "load-bound 78%" (null if no time was taken).
+    ***************************************************************************/
+   public String getBottleneckDescription()
+   {
+      Bottleneck bottleneck = getBottleneck();
+      return (bottleneck == null ? null : bottleneck.getLabel() + " " + getBottleneckPercent() + "%");
+   }
+
+
+
+   /***************************************************************************
+    * total of the extract wait, transform &amp; load millis, over all pages.
+    ***************************************************************************/
+   public long getTotalMillis()
+   {
+      return (extractWaitMillis + transformMillis + loadMillis);
+   }
+
+
+
+   /***************************************************************************
+    * the timeline's buckets, in order.
+    ***************************************************************************/
+   public List<Bucket> getBuckets()
+   {
+      List<Bucket> rs = new ArrayList<>(bucketCount);
+      for(int i = 0; i < bucketCount; i++)
+      {
+         int base = i * FIELD_COUNT;
+         rs.add(new Bucket(buckets[base + PAGES], buckets[base + RECORDS], buckets[base + EXTRACT_WAIT], buckets[base + TRANSFORM], buckets[base + LOAD], buckets[base + END_OFFSET]));
+      }
+      return (rs);
+   }
+
+
+
+   /***************************************************************************
+    * encode this timeline as a (base64) string.
+    ***************************************************************************/
+   public String encode()
+   {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 + bucketCount * 8);
+      outputStream.write(VERSION);
+      VarLongCodec.writeVarLong(outputStream, pagesPerBucket);
+      VarLongCodec.writeVarLong(outputStream, bucketCount);
+
+      long previousEndOffset = 0;
+      for(int i = 0; i < bucketCount; i++)
+      {
+         int base = i * FIELD_COUNT;
+         for(int field = PAGES; field < END_OFFSET; field++)
+         {
+            VarLongCodec.writeVarLong(outputStream, buckets[base + field]);
+         }
+         VarLongCodec.writeVarLong(outputStream, buckets[base + END_OFFSET] - previousEndOffset);
+         previousEndOffset = buckets[base + END_OFFSET];
+      }
+
+      return (Base64.getEncoder().encodeToString(outputStream.toByteArray()));
+   }
+
+
+
+   /***************************************************************************
+    * decode a string made by {@link #encode()}.
+    ***************************************************************************/
+   public static EtlPageTimeline decode(String encoded)
+   {
+      if(encoded == null || encoded.isEmpty())
+      {
+         return (new EtlPageTimeline());
+      }
+
+      byte[] bytes = Base64.getDecoder().decode(encoded);
+      if(bytes.length == 0 || bytes[0] != VERSION)
+      {
+         throw (new IllegalArgumentException("Unrecognized encoded ETL page timeline version"));
+      }
+
+      int[] position       = new int[] { 1 };
+      long  pagesPerBucket = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+      long  bucketCount    = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+      if(pagesPerBucket < 1 || pagesPerBucket > Integer.MAX_VALUE || bucketCount > bytes.length)
+      {
+         throw (new IllegalArgumentException("Malformed encoded ETL page timeline"));
+      }
+
+      EtlPageTimeline timeline = new EtlPageTimeline(Math.max(DEFAULT_MAX_BUCKETS, (int) bucketCount));
+      timeline.pagesPerBucket = (int) pagesPerBucket;
+      timeline.bucketCount = (int) bucketCount;
+
+      long endOffset = 0;
+      for(int i = 0; i < bucketCount; i++)
+      {
+         int base = i * FIELD_COUNT;
+         for(int field = PAGES; field < END_OFFSET; field++)
+         {
+            timeline.buckets[base + field] = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+         }
+         endOffset += VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+         timeline.buckets[base + END_OFFSET] = endOffset;
+
+         timeline.pageCount += timeline.buckets[base + PAGES];
+         timeline.recordCount += timeline.buckets[base + RECORDS];
+         timeline.extractWaitMillis += timeline.buckets[base + EXTRACT_WAIT];
+         timeline.transformMillis += timeline.buckets[base + TRANSFORM];
+         timeline.loadMillis += timeline.buckets[base + LOAD];
+      }
+
+      return (timeline);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for pagesPerBucket
+    *******************************************************************************/
+   public int getPagesPerBucket()
+   {
+      return (this.pagesPerBucket);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for pageCount
+    *******************************************************************************/
+   public long getPageCount()
+   {
+      return (this.pageCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for recordCount
+    *******************************************************************************/
+   public long getRecordCount()
+   {
+      return (this.recordCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for extractWaitMillis
+    *******************************************************************************/
+   public long getExtractWaitMillis()
+   {
+      return (this.extractWaitMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for transformMillis
+    *******************************************************************************/
+   public long getTransformMillis()
+   {
+      return (this.transformMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for loadMillis
+    *******************************************************************************/
+   public long getLoadMillis()
+   {
+      return (this.loadMillis);
+   }
+
+}
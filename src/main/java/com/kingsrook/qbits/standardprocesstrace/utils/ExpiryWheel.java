@@ -0,0 +1,136 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+
+/*******************************************************************************
+ * Hashed timing wheel, for expiring items by deadline - where the cost of each
+ * advance is in proportion to the items that come due, not all of the items.
+ *
+ * <p>Time is divided into ticks; each item is put (lock-free) into the slot for
+ * the tick of its deadline (modulo the number of slots).  When the wheel is
+ * advanced, the slots for the ticks that have passed are swapped out for empty
+ * ones, and each of their items is given to a handler - which returns a new
+ * deadline for the item (e.g., if it has been active since it was scheduled,
+ * or it is in its slot for a later rotation of the wheel), to re-schedule it,
+ * or a value &lt;= 0, to drop it.  So, items whose deadlines move later aren't
+ * re-scheduled each time they move - just once, when their old deadline comes
+ * due.</p>
+ *
+ * <p>Advancing is meant to be done by one thread at a time.</p>
+ *******************************************************************************/
+public class ExpiryWheel<T>
+{
+   private final long                           tickMillis;
+   private final int                            mask;
+   private final AtomicReferenceArray<Queue<T>> slots;
+   private volatile long                        nextTick;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param tickMillis length of a tick (the granularity of expiry)
+    ** @param minSlots minimum number of slots (rounded up to a power of 2) -
+    ** ideally enough to cover the longest typical deadline, in ticks.
+    ** @param nowMillis the current time, which the wheel starts at.
+    *******************************************************************************/
+   public ExpiryWheel(long tickMillis, int minSlots, long nowMillis)
+   {
+      this.tickMillis = Math.max(1, tickMillis);
+
+      int slotCount = Integer.highestOneBit(Math.max(2, minSlots) - 1) << 1;
+      this.mask = slotCount - 1;
+      this.slots = new AtomicReferenceArray<>(slotCount);
+      for(int i = 0; i < slotCount; i++)
+      {
+         slots.set(i, new ConcurrentLinkedQueue<>());
+      }
+
+      this.nextTick = nowMillis / this.tickMillis;
+   }
+
+
+
+   /***************************************************************************
+    * put an item in the wheel, to be given to the handler once its deadline
+    * has passed (at the first advance after then).
+    ***************************************************************************/
+   public void schedule(T item, long deadlineMillis)
+   {
+      ////////////////////////////////////////////////////////////////////////
+      // round up to the tick after the deadline - but never to a tick that //
+      // has already been processed                                         //
+      ////////////////////////////////////////////////////////////////////////
+      long tick = Math.max(deadlineMillis / tickMillis + 1, nextTick);
+      slots.get((int) (tick & mask)).add(item);
+   }
+
+
+
+   /***************************************************************************
+    * process the slots for all ticks up to the current time, giving each of
+    * their items to the handler (and re-scheduling those it gives a deadline
+    * for).  Returns the number of items that were given to the handler.
+    ***************************************************************************/
+   public int advance(long nowMillis, ToLongFunction<T> handler)
+   {
+      long currentTick = nowMillis / tickMillis;
+      long firstTick   = nextTick;
+      if(currentTick < firstTick)
+      {
+         return (0);
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // if more than a full rotation has passed, each slot only needs to //
+      // be processed once                                                //
+      //////////////////////////////////////////////////////////////////////
+      long lastTick = Math.min(currentTick, firstTick + mask);
+      int  handled  = 0;
+      for(long tick = firstTick; tick <= lastTick; tick++)
+      {
+         nextTick = tick + 1;
+         Queue<T> due = slots.getAndSet((int) (tick & mask), new ConcurrentLinkedQueue<>());
+         for(T item = due.poll(); item != null; item = due.poll())
+         {
+            handled++;
+            long newDeadlineMillis = handler.applyAsLong(item);
+            if(newDeadlineMillis > 0)
+            {
+               schedule(item, newDeadlineMillis);
+            }
+         }
+      }
+
+      nextTick = currentTick + 1;
+      return (handled);
+   }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/*******************************************************************************
+ * Compact, mergeable histogram of latencies (in milliseconds) - for finding
+ * the tail (p95, p99, max) of the calls to a backend table & action, rather
+ * than just their sum.
+ *
+ * <p>Buckets are log-linear (as in HDR histograms): values under 8 each get
+ * their own bucket; above that, each power of 2 is split into 8 buckets - so
+ * any percentile is reported within 12.5% of its true value (and the max is
+ * exact).  Each power of 2's buckets are only allocated once a value falls in
+ * it, so a histogram whose calls all take about the same time stays small.
+ * Recording is lock-free.</p>
+ *
+ * <p>Encoded (for storage in a single string column) as base64 of:</p>
+ * <ul>
+ *    <li>1 byte - format version (currently 1)</li>
+ *    <li>varint - max value</li>
+ *    <li>varint - number of non-empty buckets</li>
+ *    <li>for each non-empty bucket: varint of (bucket index - previous
+ *    non-empty bucket's index), then varint of its count</li>
+ * </ul>
+ *******************************************************************************/
+public class LatencyHistogram
+{
+   private static final byte   VERSION       = 1;
+   private static final String ENCODING_NAME = "latency histogram";
+
+   private static final int SUB_BUCKET_BITS  = 3;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+   //////////////////////////////////////////////////////////////////////////
+   // values are capped at Integer.MAX_VALUE (as they're stored in Integer //
+   // fields) - so, a linear group for 0-7, plus one per power of 2 from 8 //
+   // up to 2^30.                                                          //
+   //////////////////////////////////////////////////////////////////////////
+   private static final int GROUP_COUNT  = 32 - SUB_BUCKET_BITS;
+   private static final int BUCKET_COUNT = GROUP_COUNT * SUB_BUCKET_COUNT;
+
+   private final AtomicReferenceArray<AtomicLongArray> groups = new AtomicReferenceArray<>(GROUP_COUNT);
+   private final AtomicLong                            max    = new AtomicLong(-1);
+
+
+
+   /***************************************************************************
+    * add a value to the histogram.  Negative values are recorded as 0.
+    ***************************************************************************/
+   public void record(long valueMillis)
+   {
+      long value = Math.max(0, Math.min(valueMillis, Integer.MAX_VALUE));
+      int  index = bucketIndex(value);
+      int  group = index >>> SUB_BUCKET_BITS;
+
+      AtomicLongArray counts = groups.get(group);
+      if(counts == null)
+      {
+         groups.compareAndSet(group, null, new AtomicLongArray(SUB_BUCKET_COUNT));
+         counts = groups.get(group);
+      }
+      counts.incrementAndGet(index & (SUB_BUCKET_COUNT - 1));
+
+      /////////////////////////////////////////////////////////////////////
+      // plain read first, so that only a new max has to write the field //
+      /////////////////////////////////////////////////////////////////////
+      if(value > max.get())
+      {
+         max.accumulateAndGet(value, Math::max);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * add all of the values from another histogram into this one.
+    ***************************************************************************/
+   public void merge(LatencyHistogram other)
+   {
+      if(other == null)
+      {
+         return;
+      }
+
+      for(int index = 0; index < BUCKET_COUNT; index++)
+      {
+         long count = other.getCount(index);
+         if(count > 0)
+         {
+            addCount(index, count);
+         }
+      }
+
+      long otherMax = other.max.get();
+      if(otherMax > max.get())
+      {
+         max.accumulateAndGet(otherMax, Math::max);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * total number of values recorded.
+    ***************************************************************************/
+   public long getTotalCount()
+   {
+      long total = 0;
+      for(int index = 0; index < BUCKET_COUNT; index++)
+      {
+         total += getCount(index);
+      }
+      return (total);
+   }
+
+
+
+   /***************************************************************************
+    * the largest value recorded - or null, if the histogram is empty.
+    ***************************************************************************/
+   public Integer getMax()
+   {
+      long value = max.get();
+      return (value < 0 ? null : (int) value);
+   }
+
+
+
+   /***************************************************************************
+    * get the value at a percentile (e.g., 0.99) - that is, the upper end of the
+    * bucket holding that rank (but no more than the max).  Null if the
+    * histogram is empty.
+    ***************************************************************************/
+   public Integer getPercentile(double percentile)
+   {
+      long total = getTotalCount();
+      if(total == 0)
+      {
+         return (null);
+      }
+
+      long rank       = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, percentile)) * total));
+      long cumulative = 0;
+      for(int index = 0; index < BUCKET_COUNT; index++)
+      {
+         cumulative += getCount(index);
+         if(cumulative >= rank)
+         {
+            return ((int) Math.min(bucketUpperBound(index), max.get()));
+         }
+      }
+
+      return (getMax());
+   }
+
+
+
+   /***************************************************************************
+    * encode this histogram as a (base64) string.
+    ***************************************************************************/
+   public String encode()
+   {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(32);
+      outputStream.write(VERSION);
+      VarLongCodec.writeVarLong(outputStream, Math.max(0, max.get()));
+
+      long[] counts        = new long[BUCKET_COUNT];
+      int    nonEmptyCount = 0;
+      for(int index = 0; index < BUCKET_COUNT; index++)
+      {
+         counts[index] = getCount(index);
+         if(counts[index] > 0)
+         {
+            nonEmptyCount++;
+         }
+      }
+      VarLongCodec.writeVarLong(outputStream, nonEmptyCount);
+
+      int previousIndex = 0;
+      for(int index = 0; index < BUCKET_COUNT; index++)
+      {
+         if(counts[index] > 0)
+         {
+            VarLongCodec.writeVarLong(outputStream, index - previousIndex);
+            VarLongCodec.writeVarLong(outputStream, counts[index]);
+            previousIndex = index;
+         }
+      }
+
+      return (Base64.getEncoder().encodeToString(outputStream.toByteArray()));
+   }
+
+
+
+   /***************************************************************************
+    * decode a string made by {@link #encode()}.
+    ***************************************************************************/
+   public static LatencyHistogram decode(String encoded)
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      if(encoded == null || encoded.isEmpty())
+      {
+         return (histogram);
+      }
+
+      byte[] bytes = Base64.getDecoder().decode(encoded);
+      if(bytes.length == 0 || bytes[0] != VERSION)
+      {
+         throw (new IllegalArgumentException("Unrecognized encoded latency histogram version"));
+      }
+
+      int[] position      = new int[] { 1 };
+      long  maxValue      = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+      long  nonEmptyCount = VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+
+      int index = 0;
+      for(long i = 0; i < nonEmptyCount; i++)
+      {
+         index += (int) VarLongCodec.readVarLong(bytes, position, ENCODING_NAME);
+         if(index < 0 || index >= BUCKET_COUNT)
+         {
+            throw (new IllegalArgumentException("Malformed encoded latency histogram"));
+         }
+         histogram.addCount(index, VarLongCodec.readVarLong(bytes, position, ENCODING_NAME));
+      }
+
+      if(nonEmptyCount > 0)
+      {
+         histogram.max.set(maxValue);
+      }
+
+      return (histogram);
+   }
+
+
+
+   /***************************************************************************
+    * get the index of the bucket that a (non-negative, int-ranged) value
+    * goes in.
+    ***************************************************************************/
+   static int bucketIndex(long value)
+   {
+      if(value < SUB_BUCKET_COUNT)
+      {
+         return ((int) value);
+      }
+
+      ///////////////////////////////////////////////////////////////////////
+      // group is which power of 2 (past the linear group) the value is    //
+      // in; sub-bucket is the next SUB_BUCKET_BITS bits below its top bit //
+      ///////////////////////////////////////////////////////////////////////
+      int topBit    = 63 - Long.numberOfLeadingZeros(value);
+      int group     = topBit - SUB_BUCKET_BITS + 1;
+      int subBucket = (int) (value >>> (topBit - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+      return ((group << SUB_BUCKET_BITS) | subBucket);
+   }
+
+
+
+   /***************************************************************************
+    * get the largest value that goes in a bucket.
+    ***************************************************************************/
+   static long bucketUpperBound(int index)
+   {
+      int group     = index >>> SUB_BUCKET_BITS;
+      int subBucket = index & (SUB_BUCKET_COUNT - 1);
+      if(group == 0)
+      {
+         return (subBucket);
+      }
+
+      int shift = group - 1;
+      return (((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1);
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private long getCount(int index)
+   {
+      AtomicLongArray counts = groups.get(index >>> SUB_BUCKET_BITS);
+      return (counts == null ? 0 : counts.get(index & (SUB_BUCKET_COUNT - 1)));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private void addCount(int index, long count)
+   {
+      int             group  = index >>> SUB_BUCKET_BITS;
+      AtomicLongArray counts = groups.get(group);
+      if(counts == null)
+      {
+         groups.compareAndSet(group, null, new AtomicLongArray(SUB_BUCKET_COUNT));
+         counts = groups.get(group);
+      }
+      counts.addAndGet(index & (SUB_BUCKET_COUNT - 1), count);
+   }
+
+}
@@ -23,21 +23,34 @@ package com.kingsrook.qbits.standardprocesstrace.utils;
 
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
 import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
-import com.kingsrook.qqq.backend.core.model.backends.QQQBackendTableManager;
-import com.kingsrook.qqq.backend.core.model.tables.QQQTableTableManager;
+import com.kingsrook.qqq.backend.core.model.metadata.QBackendMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
 import com.kingsrook.qqq.backend.core.utils.PrefixedDefaultThreadFactory;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
@@ -48,8 +61,33 @@ import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
  * Singleton that collects QueryStats, associated with a processTraceId.
  *
  * <p>Runs a scheduled executor thread to clean itself up - e.g., in case processes
- * leak (e.g., started in a frontend but exited before final step).  Configured by
- * {@link #setCleanupIntervalMillis(long)} and {@link #setCleanupMaxAge(long)}</p>
+ * leak (e.g., started in a frontend but exited before final step).  Processes
+ * whose stats haven't been added to for {@link #setCleanupMaxAge(long)} are
+ * expired, by an {@link ExpiryWheel} that's advanced every
+ * {@link #setCleanupIntervalMillis(long)} - so each run only looks at the
+ * processes that are due, rather than scanning (and locking) the whole map,
+ * and a long-running process that's still active is never expired.</p>
+ *
+ * <p>Stats are accumulated in concurrent maps of striped counters (LongAdders),
+ * so that many threads (e.g., of a multi-threaded ETL process) can add to them
+ * without a global lock, and without allocating anything per stat (once the
+ * counters for a key exist).  Processes are looked up by primitive
+ * processTraceId in a {@link ConcurrentLongMap}, so the per-QueryStat path
+ * doesn't box (or hash wrapper objects for) the id - though, usually, that
+ * path doesn't look the process up at all, but adds to the stats referenced by
+ * the thread's {@link ProcessTraceContext}.</p>
+ *
+ * <p>Memory use is bounded: there's a cap on the number of processes held
+ * ({@link #setMaxProcesses(int)} - at which the least recently active are
+ * evicted), and on the number of keys per process
+ * ({@link #setMaxKeysPerProcess(int)} - past which stats go to an "other"
+ * key).  Heap pressure (a heap pool still over
+ * {@link #setMemoryPressureThreshold(double)} of its max after a collection,
+ * per MemoryPoolMXBean notifications) evicts the least recently active half of
+ * the processes.  The thresholds and listener are removed by
+ * {@link #shutdown()}.  Evictions, overflows, stats added for processes that
+ * were no longer held, and an estimate of the bytes held are available from
+ * {@link #getMetrics()}.</p>
  *******************************************************************************/
 public class ProcessTraceBackendActivityStatsManager
 {
@@ -57,71 +95,828 @@ public class ProcessTraceBackendActivityStatsManager
 
    private static ProcessTraceBackendActivityStatsManager processTraceBackendActivityStatsManager = null;
 
-   private Map<Long, ProcessStats> stats = Collections.synchronizedMap(new HashMap<>());
+   public static final int    DEFAULT_MAX_PROCESSES             = 10_000;
+   public static final int    DEFAULT_MAX_KEYS_PER_PROCESS      = 250;
+   public static final double DEFAULT_MEMORY_PRESSURE_THRESHOLD = 0.9;
+
+   ////////////////////////////////////////////////////////////////////////
+   // rough sizes (object headers, map entries, counters) of what's held //
+   // for each process, and for each key within a process - for metrics  //
+   ////////////////////////////////////////////////////////////////////////
+   private static final long ESTIMATED_BYTES_PER_PROCESS = 256;
+   private static final long ESTIMATED_BYTES_PER_KEY     = 320;
+
+   ////////////////////////////////////////////////////////////////////////////
+   // stats for keys past a process's maxKeysPerProcess are stored here (or, //
+   // within a step, under the process's own copy of it, for the step)       //
+   ////////////////////////////////////////////////////////////////////////////
+   public static final Key OTHER_KEY = new Key(null, null, "other");
+
+   private static final AtomicLong processStatsSequence = new AtomicLong(0);
+
+   private ConcurrentLongMap<ProcessStats> stats = new ConcurrentLongMap<>();
 
-   private long CLEANUP_INTERVAL_MILLIS = 60 * 60 * 1000;
+   private volatile int    maxProcesses            = DEFAULT_MAX_PROCESSES;
+   private volatile int    maxKeysPerProcess       = DEFAULT_MAX_KEYS_PER_PROCESS;
+   private volatile double memoryPressureThreshold = DEFAULT_MEMORY_PRESSURE_THRESHOLD;
+
+   private List<MemoryPoolMXBean> memoryPressurePools    = new ArrayList<>();
+   private NotificationListener   memoryPressureListener = null;
+
+   private final LongAdder evictedByAge            = new LongAdder();
+   private final LongAdder evictedByCapacity       = new LongAdder();
+   private final LongAdder evictedByMemoryPressure = new LongAdder();
+   private final LongAdder overflowedStats         = new LongAdder();
+   private final LongAdder releasedContextStats    = new LongAdder();
+
+   private volatile InternedKeys internedKeys = null;
+
+   private long CLEANUP_INTERVAL_MILLIS = 60 * 1000;
    private long CLEANUP_MAX_AGE         = 12 * 60 * 60 * 1000;
 
+   ///////////////////////////////////////////////////////////////////////////
+   // processes' last-activity times are only updated when they have moved  //
+   // by this much - so the per-stat path doesn't write a shared field each //
+   // time.  a tenth of the max age (up to a second).                       //
+   ///////////////////////////////////////////////////////////////////////////
+   private volatile long activityResolutionMillis = 1000;
+
+   private volatile ExpiryWheel<ProcessStats> expiryWheel;
+
    private ScheduledExecutorService scheduledExecutorService;
 
 
 
    /***************************************************************************
-    * container for all data collected for a particular process trace.
-    *
-    * stores start milliseconds (for cleanup), plus map of keys to stats.
+    * container for all data collected for a particular process trace.
+    *
+    * stores a sequence number (to order processes that were last active in the
+    * same millisecond), start & last-activity milliseconds (for eviction &
+    * expiry), plus map of keys to stats, and the steps that have
+    * finished (held here, so they survive the process breaking & resuming).
+    * Also the name of the step that's running (which stats are attributed
+    * to), and the order in which steps first started.
+    * Also referenced directly by {@link ProcessTraceContext}s, and by the
+    * expiry wheel.
+    ***************************************************************************/
+   static final class ProcessStats
+   {
+      private final long            processTraceId;
+      private final long            sequence;
+      private final long            startMillis;
+      private final Map<Key, Stats> stats = new ConcurrentHashMap<>();
+
+      private final Queue<ProcessTraceStep> steps     = new ConcurrentLinkedQueue<>();
+      private final Map<String, Integer>    stepOrder = new ConcurrentHashMap<>();
+
+      ////////////////////////////////////////////////////////////////////////
+      // this process's "other" key - whose per-step keys are cached on it, //
+      // so they only grow with this process's steps, and go with it        //
+      ////////////////////////////////////////////////////////////////////////
+      private final Key otherKey = new Key(OTHER_KEY.backendName(), OTHER_KEY.tableName(), OTHER_KEY.actionName());
+
+      private volatile long    lastActivityMillis;
+      private volatile String  stepName;
+      private volatile boolean released;
+      private volatile boolean releasedWarned;
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      private ProcessStats(long processTraceId)
+      {
+         this.processTraceId = processTraceId;
+         this.sequence = processStatsSequence.incrementAndGet();
+         this.startMillis = System.currentTimeMillis();
+         this.lastActivityMillis = startMillis;
+      }
+
+
+
+      /***************************************************************************
+       * note that the process is active - if the last noted activity is at
+       * least resolutionMillis old.
+       ***************************************************************************/
+      private void touch(long resolutionMillis)
+      {
+         long now = System.currentTimeMillis();
+         if(now - lastActivityMillis >= resolutionMillis)
+         {
+            lastActivityMillis = now;
+         }
+      }
+
+
+
+      /***************************************************************************
+       * drop the stats, once this object is removed from the manager (as the
+       * expiry wheel, or a context, may still reference it for a while).
+       ***************************************************************************/
+      private void release()
+      {
+         released = true;
+         stats.clear();
+         steps.clear();
+         stepOrder.clear();
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for processTraceId
+       *******************************************************************************/
+      long processTraceId()
+      {
+         return (this.processTraceId);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for sequence
+       *******************************************************************************/
+      long sequence()
+      {
+         return (this.sequence);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for startMillis
+       *******************************************************************************/
+      long startMillis()
+      {
+         return (this.startMillis);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for lastActivityMillis
+       *******************************************************************************/
+      long lastActivityMillis()
+      {
+         return (this.lastActivityMillis);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for stats
+       *******************************************************************************/
+      Map<Key, Stats> stats()
+      {
+         return (this.stats);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for released
+       *******************************************************************************/
+      boolean released()
+      {
+         return (this.released);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * point-in-time view of what the manager is holding, and what it has had to
+    * evict (since it was created).
+    *
+    * @param processCount number of processes with stats held
+    * @param keyCount number of keys with stats held, over all processes
+    * @param estimatedBytes rough estimate of the heap used by those stats
+    * @param evictedByAge processes expired by the cleanup job, for inactivity
+    * @param evictedByCapacity processes removed to stay under maxProcesses
+    * @param evictedByMemoryPressure processes removed due to heap pressure
+    * @param overflowedStats stats that went to the "other" key, because their
+    * process already had maxKeysPerProcess keys
+    * @param releasedContextStats stats that were dropped, because they were
+    * added (through a context) after their process's stats were collected,
+    * evicted, or expired
+    ***************************************************************************/
+   public record Metrics(int processCount, long keyCount, long estimatedBytes, long evictedByAge, long evictedByCapacity, long evictedByMemoryPressure, long overflowedStats, long releasedContextStats)
+   {
+   }
+
+
+
+   /***************************************************************************
+    * running totals of the backend activity for a process (across all of its
+    * keys) - e.g., to find how much happened during a step, from the totals at
+    * its start & end.
+    ***************************************************************************/
+   public record Totals(long callCount, long recordCount, long runtimeMillis)
+   {
+      /***************************************************************************
+       * the difference between these totals and an earlier set (null meaning
+       * none).
+       ***************************************************************************/
+      public Totals minus(Totals earlier)
+      {
+         if(earlier == null)
+         {
+            return (this);
+         }
+
+         return (new Totals(callCount - earlier.callCount, recordCount - earlier.recordCount, runtimeMillis - earlier.runtimeMillis));
+      }
+   }
+
+
+
+   /***************************************************************************
+    * what backend/table/action (and step) a set of stats are associated with.
+    *
+    * e.g., memoryBackend, personTable, insertAction, (in the) load step
+    *
+    * <p>Keys for a step are derived from the step-less key for a table &amp;
+    * action by {@link #forStep(String)}, as stats are added while the step
+    * runs - and are interned on that key, so this too doesn't allocate per
+    * stat.</p>
+    *
+    * <p>Keys for QueryStats are interned (see {@link #getKey(QInstance, String, String)}),
+    * so the same object is used for every stat on a table & action, and it
+    * caches the qqqBackendId and qqqTableId that it is stored with, once they
+    * have been resolved.</p>
+    ***************************************************************************/
+   public static final class Key implements Serializable
+   {
+      private final String backendName;
+      private final String tableName;
+      private final String actionName;
+      private final String stepName;
+      private final int    hashCode;
+
+      private transient volatile ResolvedIds      resolvedIds;
+      private transient volatile Key              lastKeyForStep;
+      private transient volatile Map<String, Key> keysByStep;
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      public Key(String backendName, String tableName, String actionName)
+      {
+         this(backendName, tableName, actionName, null);
+      }
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      public Key(String backendName, String tableName, String actionName, String stepName)
+      {
+         this.backendName = backendName;
+         this.tableName = tableName;
+         this.actionName = actionName;
+         this.stepName = stepName;
+         this.hashCode = Objects.hash(backendName, tableName, actionName, stepName);
+      }
+
+
+
+      /***************************************************************************
+       * get the key for this key's backend, table &amp; action, in a step (or
+       * with no step, if stepName is null).  The last one returned is kept, so
+       * the common case (many stats in the same step) is just a compare.
+       ***************************************************************************/
+      public Key forStep(String stepName)
+      {
+         if(Objects.equals(this.stepName, stepName))
+         {
+            return (this);
+         }
+
+         Key last = lastKeyForStep;
+         if(last != null && Objects.equals(last.stepName, stepName))
+         {
+            return (last);
+         }
+
+         Map<String, Key> map = keysByStep;
+         if(map == null)
+         {
+            synchronized(this)
+            {
+               map = keysByStep;
+               if(map == null)
+               {
+                  map = new ConcurrentHashMap<>();
+                  keysByStep = map;
+               }
+            }
+         }
+
+         Key key;
+         if(stepName == null)
+         {
+            key = new Key(backendName, tableName, actionName);
+         }
+         else
+         {
+            key = map.computeIfAbsent(stepName, s -> new Key(backendName, tableName, actionName, s));
+         }
+
+         /////////////////////////////////////////////////////////////////////
+         // step keys are for the same table, so can share the resolved ids //
+         /////////////////////////////////////////////////////////////////////
+         if(key.resolvedIds == null)
+         {
+            key.resolvedIds = resolvedIds;
+         }
+
+         lastKeyForStep = key;
+         return (key);
+      }
+
+
+
+      /***************************************************************************
+       * the qqqBackendId and qqqTableId for a key, in the instance they were
+       * resolved in.
+       ***************************************************************************/
+      private record ResolvedIds(QInstance qInstance, Integer qqqBackendId, Integer qqqTableId)
+      {
+      }
+
+
+
+      /***************************************************************************
+       * get the qqqBackendId and qqqTableId for this key - resolving them the
+       * first time they're needed in an instance, and then re-using them.  Ids
+       * that fail to resolve aren't kept, so they'll be tried again next time.
+       ***************************************************************************/
+      private ResolvedIds getResolvedIds(QInstance qInstance)
+      {
+         ResolvedIds ids = resolvedIds;
+         if(ids != null && ids.qInstance() == qInstance)
+         {
+            return (ids);
+         }
+
+         Integer qqqBackendId = StringUtils.hasContent(backendName) ? ProcessTraceQQQIdCache.getQQQBackendId(qInstance, backendName) : null;
+         Integer qqqTableId   = StringUtils.hasContent(tableName) ? ProcessTraceQQQIdCache.getQQQTableId(qInstance, tableName) : null;
+         ids = new ResolvedIds(qInstance, qqqBackendId, qqqTableId);
+
+         boolean backendResolved = qqqBackendId != null || !StringUtils.hasContent(backendName);
+         boolean tableResolved   = qqqTableId != null || !StringUtils.hasContent(tableName);
+         if(backendResolved && tableResolved)
+         {
+            resolvedIds = ids;
+         }
+
+         return (ids);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for backendName
+       *******************************************************************************/
+      public String backendName()
+      {
+         return (this.backendName);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for tableName
+       *******************************************************************************/
+      public String tableName()
+      {
+         return (this.tableName);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for actionName
+       *******************************************************************************/
+      public String actionName()
+      {
+         return (this.actionName);
+      }
+
+
+
+      /*******************************************************************************
+       ** Getter for stepName
+       *******************************************************************************/
+      public String stepName()
+      {
+         return (this.stepName);
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public boolean equals(Object o)
+      {
+         if(this == o)
+         {
+            return (true);
+         }
+
+         if(!(o instanceof Key that))
+         {
+            return (false);
+         }
+
+         return (hashCode == that.hashCode
+            && Objects.equals(backendName, that.backendName)
+            && Objects.equals(tableName, that.tableName)
+            && Objects.equals(actionName, that.actionName)
+            && Objects.equals(stepName, that.stepName));
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public int hashCode()
+      {
+         return (hashCode);
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public String toString()
+      {
+         return ("Key[backendName=" + backendName + ", tableName=" + tableName + ", actionName=" + actionName + ", stepName=" + stepName + "]");
+      }
+   }
+
+
+
+   /***************************************************************************
+    * interned keys, for one instance:  tableName to actionName to key.
+    ***************************************************************************/
+   private record InternedKeys(QInstance qInstance, Map<String, Map<String, Key>> keysByTableAndAction)
+   {
+   }
+
+
+
+   /***************************************************************************
+    * the stats collected for individual keys - mutable, striped counters, which
+    * concurrent threads can add to without contending on a single value.
+    ***************************************************************************/
+   private static class Stats
+   {
+      private final LongAdder        calls                = new LongAdder();
+      private final LongAdder        records              = new LongAdder();
+      private final LongAdder        millis               = new LongAdder();
+      private final LongAdder        firstResultMillis    = new LongAdder();
+      private final LongAccumulator  maxFirstResultMillis = new LongAccumulator(Math::max, -1);
+      private final LatencyHistogram latency              = new LatencyHistogram();
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      private void add(Integer addCalls, Integer addRecords, Integer addMillis, Integer addFirstResultMillis)
+      {
+         if(addCalls != null)
+         {
+            calls.add(addCalls);
+         }
+
+         if(addRecords != null)
+         {
+            records.add(addRecords);
+         }
+
+         if(addMillis != null)
+         {
+            millis.add(addMillis);
+
+            ///////////////////////////////////////////////////////////////////
+            // only a single call's millis can go in the latency histogram - //
+            // a pre-aggregated add only counts towards the sum              //
+            ///////////////////////////////////////////////////////////////////
+            if(addCalls != null && addCalls == 1)
+            {
+               latency.record(addMillis);
+            }
+         }
+
+         if(addFirstResultMillis != null)
+         {
+            firstResultMillis.add(addFirstResultMillis);
+            if(addCalls != null && addCalls == 1)
+            {
+               maxFirstResultMillis.accumulate(addFirstResultMillis);
+            }
+         }
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      private void add(int addCalls, int addRecords, int addMillis, int addFirstResultMillis)
+      {
+         calls.add(addCalls);
+         records.add(addRecords);
+         millis.add(addMillis);
+         firstResultMillis.add(addFirstResultMillis);
+
+         if(addCalls == 1)
+         {
+            latency.record(addMillis);
+            maxFirstResultMillis.accumulate(addFirstResultMillis);
+         }
+      }
+
+
+
+      /***************************************************************************
+       * get the max first-result millis of the single calls added (or null,
+       * if there weren't any).
+       ***************************************************************************/
+      private Integer getMaxFirstResultMillis()
+      {
+         long max = maxFirstResultMillis.get();
+         return (max < 0 ? null : (int) Math.min(max, Integer.MAX_VALUE));
+      }
+
+
+
+      /***************************************************************************
+       * get the sum of a counter, as an Integer (as stored in the stats table),
+       * capped rather than overflowing.
+       ***************************************************************************/
+      private static Integer sumAsInteger(LongAdder counter)
+      {
+         return ((int) Math.min(counter.sum(), Integer.MAX_VALUE));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Singleton constructor
+    *******************************************************************************/
+   private ProcessTraceBackendActivityStatsManager()
+   {
+      expiryWheel = newExpiryWheel();
+      scheduleCleanupJob();
+      registerMemoryPressureListener();
+   }
+
+
+
+   /***************************************************************************
+    * set a collection usage threshold on the heap's pools (those that support
+    * one, have a max, and don't already have a threshold set by someone else),
+    * and listen for the MemoryMXBean's notifications of them being exceeded.
+    ***************************************************************************/
+   private synchronized void registerMemoryPressureListener()
+   {
+      try
+      {
+         for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+         {
+            if(pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() == 0 && pool.getUsage().getMax() > 0)
+            {
+               pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * memoryPressureThreshold));
+               memoryPressurePools.add(pool);
+            }
+         }
+
+         NotificationListener listener = (notification, handback) ->
+         {
+            if(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+            {
+               handleMemoryPressure();
+            }
+         };
+         ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+         memoryPressureListener = listener;
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Unable to register memory pressure listener for ProcessTraceBackendActivityStatsManager", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * undo {@link #registerMemoryPressureListener()} - remove the listener from
+    * the MemoryMXBean, and clear the thresholds this object set on the heap's
+    * pools, as they're JVM-wide.
+    ***************************************************************************/
+   private synchronized void unregisterMemoryPressureListener()
+   {
+      try
+      {
+         if(memoryPressureListener != null)
+         {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(memoryPressureListener);
+         }
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Unable to remove memory pressure listener for ProcessTraceBackendActivityStatsManager", e);
+      }
+      finally
+      {
+         memoryPressureListener = null;
+      }
+
+      for(MemoryPoolMXBean pool : memoryPressurePools)
+      {
+         try
+         {
+            pool.setCollectionUsageThreshold(0);
+         }
+         catch(Exception e)
+         {
+            LOG.warn("Unable to clear memory pressure threshold", e, logPair("pool", pool.getName()));
+         }
+      }
+      memoryPressurePools.clear();
+   }
+
+
+
+   /***************************************************************************
+    * the heap is (still, after a collection) over the threshold - so give back
+    * what we can:  evict the least recently active half of the processes.
+    ***************************************************************************/
+   void handleMemoryPressure()
+   {
+      int removed;
+      synchronized(this)
+      {
+         removed = evictLeastRecentlyActive((stats.size() + 1) / 2, evictedByMemoryPressure);
+      }
+      LOG.warn("Evicted process trace stats due to memory pressure", logPair("evicted", removed), logPair("size", stats.size()));
+   }
+
+
+
+   /***************************************************************************
+    * if the number of processes is at the cap, evict the least recently active
+    * tenth of them.
+    * Called before adding a process - and not from inside a write to the map
+    * (as eviction needs to lock all of its segments).
+    ***************************************************************************/
+   private void evictIfFull()
+   {
+      if(stats.size() >= maxProcesses)
+      {
+         synchronized(this)
+         {
+            if(stats.size() >= maxProcesses)
+            {
+               evictLeastRecentlyActive(Math.max(1, maxProcesses / 10), evictedByCapacity);
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * remove (about) the given number of processes - the least recently active
+    * ones (so a long-running process that's still adding stats is kept over
+    * newer ones that have gone quiet, e.g., left at a frontend step).  Returns
+    * how many were removed.
+    ***************************************************************************/
+   private int evictLeastRecentlyActive(int count, LongAdder evictionCounter)
+   {
+      if(count <= 0)
+      {
+         return (0);
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // snapshot each process's activity (which may move while sorting), //
+      // find the count'th least recently active, then remove it and all  //
+      // that were less recently active (or equally, but created earlier) //
+      //////////////////////////////////////////////////////////////////////
+      ActivitySnapshot[] snapshots = new ActivitySnapshot[stats.size() + 64];
+      int[]              found     = new int[] { 0 };
+      stats.forEachValue(processStats ->
+      {
+         if(found[0] < snapshots.length)
+         {
+            snapshots[found[0]++] = new ActivitySnapshot(processStats.lastActivityMillis(), processStats.sequence());
+         }
+      });
+
+      if(found[0] == 0)
+      {
+         return (0);
+      }
+
+      Arrays.sort(snapshots, 0, found[0]);
+      ActivitySnapshot cutoff  = snapshots[Math.min(count, found[0]) - 1];
+      int              removed = stats.removeIfValue(processStats ->
+      {
+         if(new ActivitySnapshot(processStats.lastActivityMillis(), processStats.sequence()).compareTo(cutoff) <= 0)
+         {
+            processStats.release();
+            return (true);
+         }
+         return (false);
+      });
+      evictionCounter.add(removed);
+      return (removed);
+   }
+
+
+
+   /***************************************************************************
+    * a process's last activity, as of when eviction looked - ordered least
+    * recently active first (and, for the same millisecond, created first).
     ***************************************************************************/
-   private record ProcessStats(long startMillis, Map<Key, Stats> stats)
+   private record ActivitySnapshot(long lastActivityMillis, long sequence) implements Comparable<ActivitySnapshot>
    {
-      /*******************************************************************************
-       ** Constructor that uses default values
-       **
-       *******************************************************************************/
-      public ProcessStats()
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public int compareTo(ActivitySnapshot that)
       {
-         this(System.currentTimeMillis(), new LinkedHashMap<>());
+         int rs = Long.compare(lastActivityMillis, that.lastActivityMillis);
+         return (rs != 0 ? rs : Long.compare(sequence, that.sequence));
       }
    }
 
 
 
    /***************************************************************************
-    * what backend/table/action a set of stats are associated with.
     *
-    * e.g., memoryBackend, personTable, insertAction
     ***************************************************************************/
-   public record Key(String backendName, String tableName, String actionName) implements Serializable
+   private void scheduleCleanupJob()
    {
+      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new PrefixedDefaultThreadFactory("ProcessTraceBackendActivityStatsManager-cleanup"));
+      scheduledExecutorService.scheduleAtFixedRate(this::cleanup, CLEANUP_INTERVAL_MILLIS, CLEANUP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
    }
 
 
 
    /***************************************************************************
-    * the stats collected for individual keys.
+    * make an expiry wheel, ticking at the cleanup interval, with enough slots
+    * for the max age (so that, typically, an entry is only looked at when it's
+    * due).
     ***************************************************************************/
-   private record Stats(Integer calls, Integer records, Integer millis)
+   private ExpiryWheel<ProcessStats> newExpiryWheel()
    {
+      long ticksPerMaxAge = CLEANUP_MAX_AGE / Math.max(1, CLEANUP_INTERVAL_MILLIS) + 1;
+      return (new ExpiryWheel<>(CLEANUP_INTERVAL_MILLIS, (int) Math.min(1 << 16, 2 * ticksPerMaxAge), System.currentTimeMillis()));
    }
 
 
 
-   /*******************************************************************************
-    ** Singleton constructor
-    *******************************************************************************/
-   private ProcessTraceBackendActivityStatsManager()
+   /***************************************************************************
+    * replace the expiry wheel (e.g., after the interval or max age changes),
+    * and schedule all of the current processes in the new one.
+    ***************************************************************************/
+   private void rebuildExpiryWheel()
    {
-      scheduleCleanupJob();
+      ExpiryWheel<ProcessStats> wheel = newExpiryWheel();
+      expiryWheel = wheel;
+
+      long maxAge = CLEANUP_MAX_AGE;
+      stats.forEachValue(processStats -> wheel.schedule(processStats, processStats.lastActivityMillis() + maxAge));
    }
 
 
 
    /***************************************************************************
-    *
+    * schedule a new process in the expiry wheel.
     ***************************************************************************/
-   private void scheduleCleanupJob()
+   private void scheduleExpiry(ProcessStats processStats)
    {
-      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new PrefixedDefaultThreadFactory("ProcessTraceBackendActivityStatsManager-cleanup"));
-      scheduledExecutorService.scheduleAtFixedRate(this::cleanup, CLEANUP_INTERVAL_MILLIS, CLEANUP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      expiryWheel.schedule(processStats, processStats.lastActivityMillis() + CLEANUP_MAX_AGE);
    }
 
 
@@ -141,12 +936,72 @@ public class ProcessTraceBackendActivityStatsManager
 
 
    /***************************************************************************
-    * shutdown the scheduled job.  also clear stats.
+    * shutdown the scheduled job, and remove the memory pressure listener (and
+    * the thresholds it set).  also clear stats.
     ***************************************************************************/
    public void shutdown()
    {
       scheduledExecutorService.shutdown();
+      unregisterMemoryPressureListener();
       stats.clear();
+      expiryWheel = newExpiryWheel();
+      internedKeys = null;
+   }
+
+
+
+   /***************************************************************************
+    * get the canonical key for a table and action, in an instance - with the
+    * table's backend name looked up just the first time the pair is seen.
+    *
+    * <p>Once a pair has been seen, this does no lookups in the instance, and
+    * allocates nothing - so it's meant for the per-QueryStat path.  If a
+    * different instance is passed in (e.g., after a hot-swap), the interned
+    * keys are all discarded, and built again for the new instance.</p>
+    ***************************************************************************/
+   public Key getKey(QInstance qInstance, String tableName, String actionName)
+   {
+      if(qInstance == null || tableName == null || actionName == null)
+      {
+         return (new Key(getBackendName(qInstance, tableName), tableName, actionName));
+      }
+
+      InternedKeys interned = internedKeys;
+      if(interned == null || interned.qInstance() != qInstance)
+      {
+         interned = new InternedKeys(qInstance, new ConcurrentHashMap<>());
+         internedKeys = interned;
+      }
+
+      Map<String, Key> keysByAction = interned.keysByTableAndAction().get(tableName);
+      if(keysByAction == null)
+      {
+         keysByAction = interned.keysByTableAndAction().computeIfAbsent(tableName, t -> new ConcurrentHashMap<>());
+      }
+
+      Key key = keysByAction.get(actionName);
+      if(key == null)
+      {
+         key = keysByAction.computeIfAbsent(actionName, a -> new Key(getBackendName(qInstance, tableName), tableName, a));
+      }
+
+      return (key);
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static String getBackendName(QInstance qInstance, String tableName)
+   {
+      if(qInstance == null || tableName == null)
+      {
+         return (null);
+      }
+
+      QBackendMetaData backend = qInstance.getBackendForTable(tableName);
+      return (backend == null ? null : backend.getName());
    }
 
 
@@ -156,21 +1011,136 @@ public class ProcessTraceBackendActivityStatsManager
     ***************************************************************************/
    public void initProcess(Long processTraceId)
    {
-      stats.put(processTraceId, new ProcessStats());
+      if(processTraceId == null)
+      {
+         return;
+      }
+
+      evictIfFull();
+      ProcessStats processStats = new ProcessStats(processTraceId);
+      ProcessStats previous     = stats.put(processTraceId, processStats);
+      if(previous != null)
+      {
+         previous.release();
+      }
+      scheduleExpiry(processStats);
+   }
+
+
+
+   /***************************************************************************
+    * get a context (to bind to a thread running a process), that adds directly
+    * to the stats for a process trace id - initializing storage for them, if
+    * it isn't already.
+    ***************************************************************************/
+   public ProcessTraceContext getContext(long processTraceId)
+   {
+      ProcessStats processStats = getOrCreateProcessStats(processTraceId);
+      processStats.touch(activityResolutionMillis);
+      return (new ProcessTraceContext(processTraceId, processStats));
    }
 
 
 
    /***************************************************************************
-    * clean up stat entries for processes that were originally created before
-    * CLEANUP_MAX_AGE (per {@link #setCleanupMaxAge(long)} milliseconds ago.
+    *
+    ***************************************************************************/
+   private ProcessStats getOrCreateProcessStats(long processTraceId)
+   {
+      ///////////////////////////////////////////////////////////////////////
+      // plain get first - only falling back to computeIfAbsent (which may //
+      // lock a segment of the map) the first time a process is seen       //
+      ///////////////////////////////////////////////////////////////////////
+      ProcessStats processStats = stats.get(processTraceId);
+      if(processStats == null)
+      {
+         evictIfFull();
+
+         ProcessStats newProcessStats = new ProcessStats(processTraceId);
+         processStats = stats.computeIfAbsent(processTraceId, k -> newProcessStats);
+         if(processStats == newProcessStats)
+         {
+            scheduleExpiry(processStats);
+         }
+      }
+      return (processStats);
+   }
+
+
+
+   /***************************************************************************
+    * discard the stats for a process trace, without building any records from
+    * them - e.g., if the trace isn't going to be stored.
+    ***************************************************************************/
+   public void removeStats(Long processTraceId)
+   {
+      if(processTraceId != null)
+      {
+         ProcessStats processStats = stats.remove(processTraceId);
+         if(processStats != null)
+         {
+            processStats.release();
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * expire the stats for processes that haven't been active for CLEANUP_MAX_AGE
+    * (per {@link #setCleanupMaxAge(long)}) milliseconds - by advancing the expiry
+    * wheel, which only hands over the processes whose deadlines have passed.
+    * Those that have been active since they were scheduled are re-scheduled
+    * for their new deadline.
     ***************************************************************************/
    private void cleanup()
    {
-      long limitStartMillis = System.currentTimeMillis() - CLEANUP_MAX_AGE;
-      LOG.info("Starting cleanup of ProcessTraceBackendActivityStatsManager", logPair("size", stats.size()));
-      stats.entrySet().removeIf(entry -> entry.getValue().startMillis < limitStartMillis);
-      LOG.info("Finished cleanup of ProcessTraceBackendActivityStatsManager", logPair("size", stats.size()));
+      try
+      {
+         long  now     = System.currentTimeMillis();
+         long  maxAge  = CLEANUP_MAX_AGE;
+         int[] expired = new int[] { 0 };
+
+         expiryWheel.advance(now, processStats ->
+         {
+            ////////////////////////////////////////////////////////////////
+            // if the process is already gone from the map (or replaced), //
+            // just drop it from the wheel                                //
+            ////////////////////////////////////////////////////////////////
+            if(stats.get(processStats.processTraceId()) != processStats)
+            {
+               return (0);
+            }
+
+            long deadlineMillis = processStats.lastActivityMillis() + maxAge;
+            if(deadlineMillis > now)
+            {
+               return (deadlineMillis);
+            }
+
+            if(expired[0] == 0)
+            {
+               LOG.info("Starting cleanup of ProcessTraceBackendActivityStatsManager", logPair("size", stats.size()));
+            }
+
+            if(stats.remove(processStats.processTraceId(), processStats))
+            {
+               processStats.release();
+               expired[0]++;
+            }
+            return (0);
+         });
+
+         if(expired[0] > 0)
+         {
+            evictedByAge.add(expired[0]);
+            LOG.info("Finished cleanup of ProcessTraceBackendActivityStatsManager", logPair("size", stats.size()), logPair("evicted", expired[0]));
+         }
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error in cleanup of ProcessTraceBackendActivityStatsManager", e);
+      }
    }
 
 
@@ -183,22 +1153,49 @@ public class ProcessTraceBackendActivityStatsManager
    public List<ProcessTraceBackendActivityStats> getAndRemoveStats(Long processTraceId) throws QException
    {
       List<ProcessTraceBackendActivityStats> rs = new ArrayList<>();
+      if(processTraceId == null)
+      {
+         return (rs);
+      }
 
       ProcessStats processStats = stats.remove(processTraceId);
       if(processStats != null)
       {
-         for(Map.Entry<Key, Stats> entry : CollectionUtils.nonNullMap(processStats.stats()).entrySet())
+         //////////////////////////////////////////////////////////////////////
+         // order the records by step (in the order the steps first started, //
+         // with stats from outside of any step first), then table & action, //
+         // so that, stored in this order, they're grouped by step           //
+         //////////////////////////////////////////////////////////////////////
+         Map<String, Integer>        stepOrder = processStats.stepOrder;
+         List<Map.Entry<Key, Stats>> entries   = new ArrayList<>(CollectionUtils.nonNullMap(processStats.stats()).entrySet());
+         entries.sort(Comparator.comparing((Map.Entry<Key, Stats> e) -> e.getKey().stepName() == null ? -1 : stepOrder.getOrDefault(e.getKey().stepName(), Integer.MAX_VALUE))
+            .thenComparing(e -> e.getKey().stepName(), Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(e -> e.getKey().tableName(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(e -> e.getKey().actionName(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+         QInstance qInstance = QContext.getQInstance();
+         for(Map.Entry<Key, Stats> entry : entries)
          {
+            Key.ResolvedIds resolvedIds = entry.getKey().getResolvedIds(qInstance);
+            String          stepName    = entry.getKey().stepName();
+            Integer         stepIndex   = stepName == null ? null : stepOrder.get(stepName);
             rs.add(new ProcessTraceBackendActivityStats()
                .withProcessTraceId(processTraceId)
-               .withQqqBackendId(getBackendId(entry.getKey().backendName()))
-               .withQqqTableId(getTableId(entry.getKey().tableName()))
+               .withStepNo(stepName == null ? 0 : (stepIndex == null ? null : stepIndex + 1))
+               .withStepName(stepName)
+               .withQqqBackendId(resolvedIds.qqqBackendId())
+               .withQqqTableId(resolvedIds.qqqTableId())
                .withActionName(entry.getKey().actionName())
-               .withCallCount(entry.getValue().calls())
-               .withRecordCount(entry.getValue().records())
-               .withRuntimeMillis(entry.getValue().millis())
+               .withCallCount(Stats.sumAsInteger(entry.getValue().calls))
+               .withRecordCount(Stats.sumAsInteger(entry.getValue().records))
+               .withRuntimeMillis(Stats.sumAsInteger(entry.getValue().millis))
+               .withFirstResultMillis(Stats.sumAsInteger(entry.getValue().firstResultMillis))
+               .withMaxFirstResultMillis(entry.getValue().getMaxFirstResultMillis())
+               .withLatency(entry.getValue().latency)
             );
          }
+
+         processStats.release();
       }
 
       return (rs);
@@ -207,73 +1204,289 @@ public class ProcessTraceBackendActivityStatsManager
 
 
    /***************************************************************************
-    *
+    * get the running totals of backend activity for a process - summed over
+    * its keys when called (so the per-stat path has nothing extra to do).  Null
+    * if the process isn't known.
     ***************************************************************************/
-   private Integer getBackendId(String backendName)
+   public Totals getTotals(long processTraceId)
    {
-      if(!StringUtils.hasContent(backendName))
+      ProcessStats processStats = stats.get(processTraceId);
+      if(processStats == null)
       {
          return (null);
       }
 
-      try
+      long callCount     = 0;
+      long recordCount   = 0;
+      long runtimeMillis = 0;
+      for(Stats statsForKey : processStats.stats().values())
       {
-         return QQQBackendTableManager.getQQQBackendId(QContext.getQInstance(), backendName);
+         callCount += statsForKey.calls.sum();
+         recordCount += statsForKey.records.sum();
+         runtimeMillis += statsForKey.millis.sum();
       }
-      catch(Exception e)
+
+      return (new Totals(callCount, recordCount, runtimeMillis));
+   }
+
+
+
+   /***************************************************************************
+    * set the step that a process is running - so that stats added for the
+    * process (from any thread) until the next call are attributed to it.  Null
+    * when a step finishes (stats outside of steps have no step).  Ignored if
+    * the process isn't known.
+    ***************************************************************************/
+   public void setCurrentStep(long processTraceId, String stepName)
+   {
+      ProcessStats processStats = stats.get(processTraceId);
+      if(processStats != null)
       {
-         return (null);
+         if(stepName != null)
+         {
+            processStats.stepOrder.putIfAbsent(stepName, processStats.stepOrder.size());
+         }
+         processStats.stepName = stepName;
       }
    }
 
 
 
    /***************************************************************************
-    *
+    * hold a finished step for a process, until it's collected (by
+    * {@link #getAndRemoveSteps(Long)}) when the process finishes.  Ignored if
+    * the process isn't known (e.g., it was evicted).
     ***************************************************************************/
-   private Integer getTableId(String tableName)
+   public void addStep(long processTraceId, ProcessTraceStep step)
    {
-      if(!StringUtils.hasContent(tableName))
+      ProcessStats processStats = stats.get(processTraceId);
+      if(processStats != null && step != null)
       {
-         return (null);
+         processStats.steps.add(step);
       }
+   }
 
-      try
+
+
+   /***************************************************************************
+    * get the steps held for a process, in the order they finished, and stop
+    * holding them.  Call before {@link #getAndRemoveStats(Long)}, which drops
+    * the process entirely.
+    ***************************************************************************/
+   public List<ProcessTraceStep> getAndRemoveSteps(Long processTraceId)
+   {
+      List<ProcessTraceStep> rs = new ArrayList<>();
+      if(processTraceId == null)
       {
-         return QQQTableTableManager.getQQQTableId(QContext.getQInstance(), tableName);
+         return (rs);
       }
-      catch(Exception e)
+
+      ProcessStats processStats = stats.get(processTraceId);
+      if(processStats != null)
       {
-         return (null);
+         for(ProcessTraceStep step = processStats.steps.poll(); step != null; step = processStats.steps.poll())
+         {
+            rs.add(step);
+         }
       }
+
+      return (rs);
    }
 
 
 
    /***************************************************************************
-    * increment the stat values for a given process.
+    * increment the stat values for a given process.  The processTraceId is
+    * a primitive, so the per-QueryStat path doesn't box it.
     *
     * @param key the backend, table, and action
     * @param addCalls the number of calls to add (typically 1 at a time?)
     * @param addRecords the number of records to add
     * @param addMillis the number of milliseconds of runtime to add
     ***************************************************************************/
-   public void add(Long processTraceId, Key key, Integer addCalls, Integer addRecords, Integer addMillis)
+   public void add(long processTraceId, Key key, Integer addCalls, Integer addRecords, Integer addMillis)
    {
-      ProcessStats    processStats     = stats.computeIfAbsent(processTraceId, k -> new ProcessStats());
-      Map<Key, Stats> countsForProcess = processStats.stats();
+      add(processTraceId, key, addCalls, addRecords, addMillis, null);
+   }
+
+
+
+   /***************************************************************************
+    * increment the stat values for a given process - including the time to
+    * the first result, separate from the total runtime.
+    *
+    * @param key the backend, table, and action
+    * @param addCalls the number of calls to add (typically 1 at a time?)
+    * @param addRecords the number of records to add
+    * @param addMillis the number of milliseconds of runtime (the calls' full
+    * duration) to add
+    * @param addFirstResultMillis the number of milliseconds until the calls'
+    * first results to add
+    ***************************************************************************/
+   public void add(long processTraceId, Key key, Integer addCalls, Integer addRecords, Integer addMillis, Integer addFirstResultMillis)
+   {
+      if(key == null)
+      {
+         return;
+      }
+
+      getStatsForKey(getOrCreateProcessStats(processTraceId), key).add(addCalls, addRecords, addMillis, addFirstResultMillis);
+   }
+
+
+
+   /***************************************************************************
+    * increment the stat values for the process that a context is for - going
+    * straight to its stats, without looking the process up.
+    *
+    * @param key the backend, table, and action
+    * @param addCalls the number of calls to add (typically 1 at a time?)
+    * @param addRecords the number of records to add
+    * @param addMillis the number of milliseconds of runtime to add
+    ***************************************************************************/
+   public void add(ProcessTraceContext context, Key key, Integer addCalls, Integer addRecords, Integer addMillis)
+   {
+      add(context, key, addCalls, addRecords, addMillis, null);
+   }
+
+
+
+   /***************************************************************************
+    * increment the stat values for the process that a context is for - going
+    * straight to its stats, without looking the process up - including the
+    * time to the first result, separate from the total runtime.
+    *
+    * @param key the backend, table, and action
+    * @param addCalls the number of calls to add (typically 1 at a time?)
+    * @param addRecords the number of records to add
+    * @param addMillis the number of milliseconds of runtime (the calls' full
+    * duration) to add
+    * @param addFirstResultMillis the number of milliseconds until the calls'
+    * first results to add
+    ***************************************************************************/
+   public void add(ProcessTraceContext context, Key key, Integer addCalls, Integer addRecords, Integer addMillis, Integer addFirstResultMillis)
+   {
+      if(context == null || key == null)
+      {
+         return;
+      }
+
+      if(context.isReleased())
+      {
+         dropForReleasedContext(context, 1);
+         return;
+      }
+
+      getStatsForKey(context.getProcessStats(), key).add(addCalls, addRecords, addMillis, addFirstResultMillis);
+   }
+
+
+
+   /***************************************************************************
+    * increment the stat values for the process that a context is for, from
+    * primitive counts - e.g., when a {@link ProcessTraceQueryStatBuffer} is
+    * drained.
+    ***************************************************************************/
+   void addCounts(ProcessTraceContext context, Key key, int addCalls, int addRecords, int addMillis, int addFirstResultMillis)
+   {
+      if(context == null || key == null)
+      {
+         return;
+      }
+
+      if(context.isReleased())
+      {
+         dropForReleasedContext(context, 1);
+         return;
+      }
+
+      getStatsForKey(context.getProcessStats(), key).add(addCalls, addRecords, addMillis, addFirstResultMillis);
+   }
+
+
+
+   /***************************************************************************
+    * note that stats were added through a context whose process's stats are no
+    * longer held (so they can't go anywhere) - counting them in the metrics,
+    * and warning the first time it happens for the process.  e.g., a thread
+    * still bound to the context of a process that finished, or was evicted.
+    ***************************************************************************/
+   void dropForReleasedContext(ProcessTraceContext context, int statCount)
+   {
+      releasedContextStats.add(statCount);
+
+      ProcessStats processStats = context.getProcessStats();
+      if(!processStats.releasedWarned)
+      {
+         processStats.releasedWarned = true;
+         LOG.warn("Dropping query stats added for a process trace whose stats are no longer held", logPair("processTraceId", context.getProcessTraceId()), logPair("count", statCount));
+      }
+   }
+
+
 
-      if(countsForProcess != null)
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private Stats getStatsForKey(ProcessStats processStats, Key key)
+   {
+      ///////////////////////////////////////////////////////////////////////
+      // plain get first - only falling back to computeIfAbsent (which may //
+      // lock a bin of the map) the first time a key is seen               //
+      ///////////////////////////////////////////////////////////////////////
+      processStats.touch(activityResolutionMillis);
+
+      ////////////////////////////////////////////////////////////
+      // attribute the stats to the step that's running, if any //
+      ////////////////////////////////////////////////////////////
+      String stepName = processStats.stepName;
+      if(stepName != null)
+      {
+         key = key.forStep(stepName);
+      }
+
+      Map<Key, Stats> countsForProcess = processStats.stats();
+      Stats           statsForKey      = countsForProcess.get(key);
+      if(statsForKey == null)
       {
-         Stats statsForKey = countsForProcess.computeIfAbsent(key, (k) -> new Stats(0, 0, 0));
-         countsForProcess.put(key, new Stats(statsForKey.calls + addCalls, statsForKey.records + addRecords, statsForKey.millis + addMillis));
+         //////////////////////////////////////////////////////////////////
+         // once a process has its max number of keys, stats for any new //
+         // ones are lumped together under the "other" key               //
+         //////////////////////////////////////////////////////////////////
+         if(countsForProcess.size() >= maxKeysPerProcess)
+         {
+            overflowedStats.increment();
+            statsForKey = countsForProcess.computeIfAbsent(processStats.otherKey.forStep(stepName), k -> new Stats());
+         }
+         else
+         {
+            statsForKey = countsForProcess.computeIfAbsent(key, k -> new Stats());
+         }
       }
+
+      return (statsForKey);
+   }
+
+
+
+   /***************************************************************************
+    * get a point-in-time view of what's held, and what's been evicted.
+    ***************************************************************************/
+   public Metrics getMetrics()
+   {
+      long[] keyCount = new long[] { 0 };
+      stats.forEachValue(processStats -> keyCount[0] += processStats.stats().size());
+
+      int processCount = stats.size();
+      return (new Metrics(processCount, keyCount[0], processCount * ESTIMATED_BYTES_PER_PROCESS + keyCount[0] * ESTIMATED_BYTES_PER_KEY,
+         evictedByAge.sum(), evictedByCapacity.sum(), evictedByMemoryPressure.sum(), overflowedStats.sum(), releasedContextStats.sum()));
    }
 
 
 
    /***************************************************************************
-    * sets the cleanup job's scheduled interval.  Also reschedules the job.
+    * sets the cleanup job's scheduled interval (which is also the resolution
+    * of the expiry wheel).  Also reschedules the job.
     *
     * @param cleanupIntervalMillis milliseconds between runs of the cleanup job
     ***************************************************************************/
@@ -281,18 +1494,68 @@ public class ProcessTraceBackendActivityStatsManager
    {
       CLEANUP_INTERVAL_MILLIS = cleanupIntervalMillis;
       scheduledExecutorService.shutdown();
+      rebuildExpiryWheel();
       scheduleCleanupJob();
    }
 
 
 
    /***************************************************************************
-    * @param cleanupMaxAge max age (in millis) that a process is allowed to be
-    * before it gets cleaned up when a cleanup job runs.
+    * @param cleanupMaxAge max time (in millis) that a process is allowed to go
+    * without any stats being added for it, before it gets cleaned up when a
+    * cleanup job runs.
     ***************************************************************************/
    public void setCleanupMaxAge(long cleanupMaxAge)
    {
       CLEANUP_MAX_AGE = cleanupMaxAge;
+      activityResolutionMillis = Math.max(1, Math.min(1000, cleanupMaxAge / 10));
+      rebuildExpiryWheel();
+   }
+
+
+
+   /***************************************************************************
+    * @param maxProcesses max number of processes to hold stats for - when a
+    * new one would go past it, the least recently active tenth are evicted
+    * first.
+    ***************************************************************************/
+   public void setMaxProcesses(int maxProcesses)
+   {
+      this.maxProcesses = Math.max(1, maxProcesses);
+   }
+
+
+
+   /***************************************************************************
+    * @param maxKeysPerProcess max number of backend/table/action keys to keep
+    * stats for, per process - past which, stats go to the {@link #OTHER_KEY}.
+    ***************************************************************************/
+   public void setMaxKeysPerProcess(int maxKeysPerProcess)
+   {
+      this.maxKeysPerProcess = Math.max(1, maxKeysPerProcess);
+   }
+
+
+
+   /***************************************************************************
+    * @param memoryPressureThreshold fraction (greater than 0, up to 1) of a heap
+    * pool's max, which, if still in use after a collection, causes the least
+    * recently active half of the processes to be evicted.  Applied to the
+    * pools whose threshold this object set (i.e., not ones with a threshold
+    * set elsewhere, nor any, once shut down).
+    ***************************************************************************/
+   public synchronized void setMemoryPressureThreshold(double memoryPressureThreshold)
+   {
+      if(memoryPressureThreshold <= 0 || memoryPressureThreshold > 1)
+      {
+         throw (new IllegalArgumentException("Memory pressure threshold must be greater than 0 and at most 1 (was: " + memoryPressureThreshold + ")"));
+      }
+
+      this.memoryPressureThreshold = memoryPressureThreshold;
+      for(MemoryPoolMXBean pool : memoryPressurePools)
+      {
+         pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * memoryPressureThreshold));
+      }
    }
 
 }
@@ -0,0 +1,226 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+
+/*******************************************************************************
+ * The process trace that work on the current thread should be attributed to -
+ * bound by {@link StandardProcessTracer} while a traced process runs, and read
+ * by {@link StandardProcessTraceQueryStatConsumer} for each QueryStat.
+ *
+ * <p>Holds the processTraceId, and a direct reference to the accumulator for
+ * the process's backend activity stats - so attributing a stat is a single
+ * ThreadLocal read (no session value to look up & parse, nor map lookup by
+ * id).  Since it is per-thread rather than per-session, two processes running
+ * at once in the same session each get their own stats.</p>
+ *
+ * <p>Binding returns the context that was bound before, which the binder should
+ * restore when it's done - so a process run from within another one (on the
+ * same thread) hands attribution back to the outer one when it finishes.</p>
+ *
+ * <p>The context doesn't follow work onto other threads by itself - so a step
+ * that fans work out (to an executor, or to virtual threads) should wrap the
+ * tasks (with {@link #wrap(Runnable)} or {@link #wrap(Callable)}), or the
+ * executor (with {@link #wrap(ExecutorService)} - e.g., around
+ * <code>Executors.newVirtualThreadPerTaskExecutor()</code>), so that the
+ * child tasks' QueryStats are attributed to the process too.</p>
+ *******************************************************************************/
+public final class ProcessTraceContext
+{
+   private static final ThreadLocal<ProcessTraceContext> CURRENT = new ThreadLocal<>();
+
+   private final long                                                 processTraceId;
+   private final ProcessTraceBackendActivityStatsManager.ProcessStats processStats;
+
+
+
+   /*******************************************************************************
+    ** Constructor - see {@link ProcessTraceBackendActivityStatsManager#getContext(long)}
+    **
+    *******************************************************************************/
+   ProcessTraceContext(long processTraceId, ProcessTraceBackendActivityStatsManager.ProcessStats processStats)
+   {
+      this.processTraceId = processTraceId;
+      this.processStats = processStats;
+   }
+
+
+
+   /***************************************************************************
+    * get the context bound to the current thread - or null if there isn't one.
+    ***************************************************************************/
+   public static ProcessTraceContext current()
+   {
+      return (CURRENT.get());
+   }
+
+
+
+   /***************************************************************************
+    * bind a context to the current thread (or, given null, unbind any), and
+    * return the one that was bound before (to be given back to this method,
+    * to restore it, when the caller is done).
+    ***************************************************************************/
+   public static ProcessTraceContext bind(ProcessTraceContext context)
+   {
+      ProcessTraceContext previous = CURRENT.get();
+      if(previous != null && previous != context)
+      {
+         /////////////////////////////////////////////////////////////////////
+         // stats buffered for the outgoing context (in batched mode) go to //
+         // it before anything is attributed to the new one                 //
+         /////////////////////////////////////////////////////////////////////
+         ProcessTraceQueryStatBuffer.drainCurrentThread();
+      }
+
+      if(context == null)
+      {
+         CURRENT.remove();
+      }
+      else
+      {
+         CURRENT.set(context);
+      }
+      return (previous);
+   }
+
+
+
+   /***************************************************************************
+    * wrap a task so that, when it runs (on whatever thread), it has the context
+    * that is bound to the current thread now (and then restores what that
+    * thread had before).  If there's no context bound now, the task is
+    * returned as-is.
+    ***************************************************************************/
+   public static Runnable wrap(Runnable runnable)
+   {
+      ProcessTraceContext context = CURRENT.get();
+      if(context == null || runnable == null)
+      {
+         return (runnable);
+      }
+
+      return (() ->
+      {
+         ProcessTraceContext previous = bind(context);
+         try
+         {
+            runnable.run();
+         }
+         finally
+         {
+            bind(previous);
+         }
+      });
+   }
+
+
+
+   /***************************************************************************
+    * wrap a task so that, when it runs (on whatever thread), it has the context
+    * that is bound to the current thread now (and then restores what that
+    * thread had before).  If there's no context bound now, the task is
+    * returned as-is.
+    ***************************************************************************/
+   public static <T> Callable<T> wrap(Callable<T> callable)
+   {
+      ProcessTraceContext context = CURRENT.get();
+      if(context == null || callable == null)
+      {
+         return (callable);
+      }
+
+      return (() ->
+      {
+         ProcessTraceContext previous = bind(context);
+         try
+         {
+            return (callable.call());
+         }
+         finally
+         {
+            bind(previous);
+         }
+      });
+   }
+
+
+
+   /***************************************************************************
+    * wrap an executor, so each task given to it runs with the context that was
+    * bound to the submitting thread (as of when the task was submitted).
+    ***************************************************************************/
+   public static Executor wrap(Executor executor)
+   {
+      return (runnable -> executor.execute(wrap(runnable)));
+   }
+
+
+
+   /***************************************************************************
+    * wrap an executor service, so each task given to it runs with the context
+    * that was bound to the submitting thread (as of when the task was
+    * submitted).
+    ***************************************************************************/
+   public static ExecutorService wrap(ExecutorService executorService)
+   {
+      return (new ProcessTraceContextExecutorService(executorService));
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for processTraceId
+    *******************************************************************************/
+   public long getProcessTraceId()
+   {
+      return (this.processTraceId);
+   }
+
+
+
+   /***************************************************************************
+    * whether the stats this context adds to are no longer held by the manager
+    * (as the process finished, or was evicted or expired) - so anything added
+    * through it now is lost.
+    ***************************************************************************/
+   public boolean isReleased()
+   {
+      return (processStats.released());
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for processStats
+    *******************************************************************************/
+   ProcessTraceBackendActivityStatsManager.ProcessStats getProcessStats()
+   {
+      return (this.processStats);
+   }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/*******************************************************************************
+ * ExecutorService decorator that carries the submitting thread's
+ * {@link ProcessTraceContext} into each task it runs - so backend activity in
+ * the tasks is attributed to the process that submitted them.  Get one from
+ * {@link ProcessTraceContext#wrap(ExecutorService)}.
+ *
+ * <p>Lifecycle methods just go to the wrapped executor.</p>
+ *******************************************************************************/
+public class ProcessTraceContextExecutorService implements ExecutorService
+{
+   private final ExecutorService delegate;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   public ProcessTraceContextExecutorService(ExecutorService delegate)
+   {
+      this.delegate = delegate;
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks)
+   {
+      return (tasks.stream().map(ProcessTraceContext::wrap).toList());
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public void execute(Runnable command)
+   {
+      delegate.execute(ProcessTraceContext.wrap(command));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> Future<T> submit(Callable<T> task)
+   {
+      return (delegate.submit(ProcessTraceContext.wrap(task)));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> Future<T> submit(Runnable task, T result)
+   {
+      return (delegate.submit(ProcessTraceContext.wrap(task), result));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public Future<?> submit(Runnable task)
+   {
+      return (delegate.submit(ProcessTraceContext.wrap(task)));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException
+   {
+      return (delegate.invokeAll(wrapAll(tasks)));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException
+   {
+      return (delegate.invokeAll(wrapAll(tasks), timeout, unit));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException
+   {
+      return (delegate.invokeAny(wrapAll(tasks)));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+   {
+      return (delegate.invokeAny(wrapAll(tasks), timeout, unit));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public void shutdown()
+   {
+      delegate.shutdown();
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public List<Runnable> shutdownNow()
+   {
+      return (delegate.shutdownNow());
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public boolean isShutdown()
+   {
+      return (delegate.isShutdown());
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public boolean isTerminated()
+   {
+      return (delegate.isTerminated());
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      return (delegate.awaitTermination(timeout, unit));
+   }
+
+}
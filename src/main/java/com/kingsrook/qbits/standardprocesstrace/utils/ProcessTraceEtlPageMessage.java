@@ -0,0 +1,103 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import com.kingsrook.qqq.backend.core.processes.tracing.ProcessTracerMessage;
+
+
+/*******************************************************************************
+ * process tracer message reporting the timing of one page of records through a
+ * streamed ETL process's transform &amp; load steps - usually sent via
+ * {@link ProcessTraceEtlPageTimer}, rather than built directly.
+ *
+ * <p>{@link StandardProcessTracer} derives the page's extract wait from the end
+ * of the previous page (or the start of the step), and adds the page to the
+ * trace's {@link EtlPageTimeline}.</p>
+ *******************************************************************************/
+public class ProcessTraceEtlPageMessage extends ProcessTracerMessage
+{
+   private final long transformStartMillis;
+   private final long loadStartMillis;
+   private final long loadEndMillis;
+   private final int  recordCount;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param transformStartMillis when the page's transform started
+    ** @param loadStartMillis when the page's load started
+    ** @param loadEndMillis when the page's load finished
+    ** @param recordCount number of records in the page
+    *******************************************************************************/
+   public ProcessTraceEtlPageMessage(long transformStartMillis, long loadStartMillis, long loadEndMillis, int recordCount)
+   {
+      super("ETL page");
+      this.transformStartMillis = transformStartMillis;
+      this.loadStartMillis = loadStartMillis;
+      this.loadEndMillis = loadEndMillis;
+      this.recordCount = recordCount;
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for transformStartMillis
+    *******************************************************************************/
+   public long getTransformStartMillis()
+   {
+      return (this.transformStartMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for loadStartMillis
+    *******************************************************************************/
+   public long getLoadStartMillis()
+   {
+      return (this.loadStartMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for loadEndMillis
+    *******************************************************************************/
+   public long getLoadEndMillis()
+   {
+      return (this.loadEndMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for recordCount
+    *******************************************************************************/
+   public int getRecordCount()
+   {
+      return (this.recordCount);
+   }
+
+}
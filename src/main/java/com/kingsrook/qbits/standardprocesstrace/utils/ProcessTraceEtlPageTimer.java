@@ -0,0 +1,128 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
+
+
+/*******************************************************************************
+ * marks the points in a page of a streamed ETL process's run where timings
+ * are taken - for the process's trace's ETL page timeline.  QQQ doesn't tell
+ * a process tracer when each page goes through the record pipe, so a process's
+ * transform &amp; load steps call these from their runOnePage methods:
+ *
+ * <pre>
+ * // in the transform step:
+ * public void runOnePage(RunBackendStepInput input, RunBackendStepOutput output)
+ * {
+ *    ProcessTraceEtlPageTimer.markTransformStart(input);
+ *    ...
+ * }
+ *
+ * // in the load step:
+ * public void runOnePage(RunBackendStepInput input, RunBackendStepOutput output)
+ * {
+ *    ProcessTraceEtlPageTimer.markLoadStart();
+ *    ...
+ *    ProcessTraceEtlPageTimer.markLoadEnd(input);
+ * }
+ * </pre>
+ *
+ * <p>The marks are held per-thread (each page's transform &amp; load run on the
+ * same thread, one after the other), and {@link #markLoadEnd(RunBackendStepInput)}
+ * sends them to the process's tracer as a {@link ProcessTraceEtlPageMessage}
+ * - which is ignored unless the tracer is storing ETL page timelines.</p>
+ *******************************************************************************/
+public class ProcessTraceEtlPageTimer
+{
+   ////////////////////////////////////////////////////////
+   // transform start millis, load start millis, records //
+   ////////////////////////////////////////////////////////
+   private static final ThreadLocal<long[]> marks = ThreadLocal.withInitial(() -> new long[3]);
+
+
+
+   /***************************************************************************
+    * mark the start of a page's transform - with the number of records in the
+    * page (i.e., taken from the record pipe).
+    ***************************************************************************/
+   public static void markTransformStart(RunBackendStepInput runBackendStepInput)
+   {
+      long[] threadMarks = marks.get();
+      threadMarks[0] = System.currentTimeMillis();
+      threadMarks[1] = 0;
+      threadMarks[2] = runBackendStepInput == null || runBackendStepInput.getRecords() == null ? 0 : runBackendStepInput.getRecords().size();
+   }
+
+
+
+   /***************************************************************************
+    * mark the start of a page's load (i.e., the end of its transform).
+    ***************************************************************************/
+   public static void markLoadStart()
+   {
+      marks.get()[1] = System.currentTimeMillis();
+   }
+
+
+
+   /***************************************************************************
+    * mark the end of a page's load - sending the page's timings to the
+    * process's tracer, via the step input.  If the transform start wasn't
+    * marked, the page is counted from its load start (and its record count is
+    * the number of records loaded); if the load start wasn't, the transform &amp;
+    * load are both counted as load; if neither start was marked, nothing is
+    * sent.
+    ***************************************************************************/
+   public static void markLoadEnd(RunBackendStepInput runBackendStepInput)
+   {
+      long   now         = System.currentTimeMillis();
+      long[] threadMarks = marks.get();
+
+      long transformStartMillis = threadMarks[0];
+      long loadStartMillis      = threadMarks[1];
+      int  recordCount          = (int) threadMarks[2];
+
+      threadMarks[0] = 0;
+      threadMarks[1] = 0;
+      threadMarks[2] = 0;
+
+      if(runBackendStepInput == null || (transformStartMillis == 0 && loadStartMillis == 0))
+      {
+         return;
+      }
+
+      if(transformStartMillis == 0)
+      {
+         transformStartMillis = loadStartMillis;
+         recordCount = runBackendStepInput.getRecords() == null ? 0 : runBackendStepInput.getRecords().size();
+      }
+      else if(loadStartMillis == 0)
+      {
+         loadStartMillis = transformStartMillis;
+      }
+
+      runBackendStepInput.traceMessage(new ProcessTraceEtlPageMessage(transformStartMillis, loadStartMillis, now, recordCount));
+   }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+/*******************************************************************************
+ * Interface for objects that assign ids to processTrace records inside the
+ * JVM - e.g., so that a trace's id is known (and work can be attributed to
+ * it) before its header record is stored.
+ *
+ * <p>Implementations must be thread-safe, must never return the same id twice
+ * (including across all of the JVMs writing to the same processTrace table),
+ * and should return ids that increase over time, so that inserts into the
+ * table's primary key index stay append-friendly.</p>
+ *
+ * @see SnowflakeProcessTraceIdGenerator
+ *******************************************************************************/
+public interface ProcessTraceIdGeneratorInterface
+{
+
+   /***************************************************************************
+    * get the next id to assign to a processTrace record.
+    ***************************************************************************/
+   Long nextId();
+
+}
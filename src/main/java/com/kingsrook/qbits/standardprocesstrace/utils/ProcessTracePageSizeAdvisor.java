@@ -0,0 +1,304 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStatsAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QCapturedContext;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSystemUserSession;
+import com.kingsrook.qqq.backend.core.utils.memoization.Memoization;
+
+
+/*******************************************************************************
+ * Works out, from the traces this QBit has stored, the page size (records per
+ * write call) that has given a process the best throughput into a
+ * destination table.
+ *
+ * <p>For the most recent (successful, finished) traces of the process, the
+ * insert, update &amp; delete stats against the table give the records per
+ * call that each run used; runs are grouped by that page size (in buckets a
+ * quarter of a power of two wide, so that runs with a short last page still
+ * group together), and each group's throughput is the records the runs
+ * processed, per second of their active runtime (not counting time spent
+ * waiting at a break, e.g., for a user on a review screen).  The
+ * recommendation is the page size of the fastest group that has at least a
+ * minimum number of runs - so it can only pick among page sizes that have
+ * actually been run (a process that always uses the same page size gets
+ * that size back).</p>
+ *
+ * <p>Recommendations are memoized (per instance, process, and table) for an
+ * hour, as they're read at the start of every run of a process.</p>
+ *******************************************************************************/
+public class ProcessTracePageSizeAdvisor
+{
+   //////////////////////////////////////////////////////////////////////////
+   // name of the process value that the tracer publishes a recommendation //
+   // in, at the start of a process (if configured to).                    //
+   //////////////////////////////////////////////////////////////////////////
+   public static final String FIELD_RECOMMENDED_PAGE_SIZE = "processTraceRecommendedPageSize";
+
+   public static final int DEFAULT_MAX_TRACES               = 100;
+   public static final int DEFAULT_MIN_TRACES_PER_PAGE_SIZE = 3;
+
+   private static final Duration TIMEOUT  = Duration.ofHours(1);
+   private static final int      MAX_SIZE = 1_000;
+
+   private static final List<String> WRITE_ACTION_NAMES = List.of(
+      ProcessTraceBackendActivityStatsAction.INSERT.getId(),
+      ProcessTraceBackendActivityStatsAction.UPDATE.getId(),
+      ProcessTraceBackendActivityStatsAction.DELETE.getId());
+
+   private static Memoization<CacheKey, Optional<Recommendation>> memoization = new Memoization<CacheKey, Optional<Recommendation>>().withTimeout(TIMEOUT).withMaxSize(MAX_SIZE);
+
+
+
+   /***************************************************************************
+    * key for the cache.  QInstance doesn't override equals, so instances are
+    * compared by identity.
+    ***************************************************************************/
+   private record CacheKey(QInstance qInstance, String processName, String tableName)
+   {
+   }
+
+
+
+   /***************************************************************************
+    * a page size that has been run, and how it did.
+    *
+    * @param pageSize average records per write call, over the runs
+    * @param traceCount number of runs (traces) at this page size
+    * @param recordCount records processed by those runs
+    * @param runtimeMillis total active runtime of those runs
+    ***************************************************************************/
+   public record Candidate(int pageSize, int traceCount, long recordCount, long runtimeMillis)
+   {
+      /***************************************************************************
+       * records processed per second, over the runs at this page size.
+       ***************************************************************************/
+      public double recordsPerSecond()
+      {
+         return (recordCount * 1000.0 / Math.max(1, runtimeMillis));
+      }
+   }
+
+
+
+   /***************************************************************************
+    * the recommended page size for a process &amp; table, along with all of
+    * the candidates it was chosen from (ordered by page size).
+    ***************************************************************************/
+   public record Recommendation(int pageSize, double recordsPerSecond, int traceCount, List<Candidate> candidates)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** private constructor, to block instantiation of this utility class.
+    *******************************************************************************/
+   private ProcessTracePageSizeAdvisor()
+   {
+   }
+
+
+
+   /***************************************************************************
+    * get the recommended page size for writing to a table from a process, or
+    * null if there isn't one (e.g., not enough traces).
+    ***************************************************************************/
+   public static Integer getRecommendedPageSize(String processName, String tableName)
+   {
+      return (getRecommendation(processName, tableName).map(Recommendation::pageSize).orElse(null));
+   }
+
+
+
+   /***************************************************************************
+    * get the recommendation for writing to a table from a process, from the
+    * cache, or computed (with the default limits) in the current instance.
+    ***************************************************************************/
+   public static Optional<Recommendation> getRecommendation(String processName, String tableName)
+   {
+      if(processName == null || tableName == null)
+      {
+         return (Optional.empty());
+      }
+
+      CacheKey cacheKey = new CacheKey(QContext.getQInstance(), processName, tableName);
+      return (memoization.getResult(cacheKey, ProcessTracePageSizeAdvisor::computeRecommendationAsSystemUser).orElse(Optional.empty()));
+   }
+
+
+
+   /***************************************************************************
+    * compute the recommendation for a cache key (with the default limits) as
+    * the system user - as the writer stores traces - rather than with the
+    * session of whoever's process is starting, which may not be able to read
+    * them (and whose result would then be cached for everyone).  The caller's
+    * context is put back after.
+    ***************************************************************************/
+   private static Optional<Recommendation> computeRecommendationAsSystemUser(CacheKey cacheKey) throws QException
+   {
+      QCapturedContext capturedContext = QContext.capture();
+      try
+      {
+         QContext.init(cacheKey.qInstance(), new QSystemUserSession());
+         return (computeRecommendation(cacheKey.qInstance(), cacheKey.processName(), cacheKey.tableName(), DEFAULT_MAX_TRACES, DEFAULT_MIN_TRACES_PER_PAGE_SIZE));
+      }
+      finally
+      {
+         QContext.init(capturedContext);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * compute (without the cache) the recommendation for writing to a table
+    * from a process, looking at up to maxTraces of its most recent traces,
+    * and only considering page sizes with at least minTracesPerPageSize runs.
+    ***************************************************************************/
+   public static Optional<Recommendation> computeRecommendation(QInstance qInstance, String processName, String tableName, int maxTraces, int minTracesPerPageSize) throws QException
+   {
+      Integer qqqProcessId = ProcessTraceQQQIdCache.getQQQProcessId(qInstance, processName);
+      Integer qqqTableId   = ProcessTraceQQQIdCache.getQQQTableId(qInstance, tableName);
+      if(qqqProcessId == null || qqqTableId == null)
+      {
+         return (Optional.empty());
+      }
+
+      /////////////////////////////////////////////////////////////////////////
+      // recent traces of the process that finished without an exception -   //
+      // a run that failed part-way says little about its page size's speed. //
+      /////////////////////////////////////////////////////////////////////////
+      Map<Long, ProcessTrace> tracesById = new HashMap<>();
+      for(QRecord record : QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()
+         .withCriteria("qqqProcessId", QCriteriaOperator.EQUALS, qqqProcessId)
+         .withCriteria("runtimeMillis", QCriteriaOperator.IS_NOT_BLANK)
+         .withCriteria("exceptionMessage", QCriteriaOperator.IS_BLANK)
+         .withOrderBy(new QFilterOrderBy("id", false))
+         .withLimit(maxTraces)))
+      {
+         ProcessTrace processTrace = new ProcessTrace(record);
+         tracesById.put(processTrace.getId(), processTrace);
+      }
+
+      if(tracesById.isEmpty())
+      {
+         return (Optional.empty());
+      }
+
+      //////////////////////////////////////////////////////////////////////////
+      // total up each trace's writes to the table - a trace can have several //
+      // stats records for it (per action, per step).                         //
+      //////////////////////////////////////////////////////////////////////////
+      Map<Long, long[]> writesByTraceId = new HashMap<>();
+      for(QRecord record : QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter()
+         .withCriteria("processTraceId", QCriteriaOperator.IN, new ArrayList<>(tracesById.keySet()))
+         .withCriteria("qqqTableId", QCriteriaOperator.EQUALS, qqqTableId)
+         .withCriteria("actionName", QCriteriaOperator.IN, WRITE_ACTION_NAMES)))
+      {
+         ProcessTraceBackendActivityStats stats = new ProcessTraceBackendActivityStats(record);
+         if(stats.getCallCount() == null || stats.getRecordCount() == null)
+         {
+            continue;
+         }
+
+         long[] writes = writesByTraceId.computeIfAbsent(stats.getProcessTraceId(), id -> new long[2]);
+         writes[0] += stats.getCallCount();
+         writes[1] += stats.getRecordCount();
+      }
+
+      ///////////////////////////////////////////////////////////////////////////
+      // group the traces by page size, into buckets a quarter-octave wide.    //
+      // a trace's throughput is over its whole run (page size affects extract //
+      // and transform too), by its own record count if it has one.            //
+      ///////////////////////////////////////////////////////////////////////////
+      Map<Integer, long[]>    bucketTotals = new TreeMap<>();
+      Map<Integer, Set<Long>> bucketTraces = new HashMap<>();
+      for(Map.Entry<Long, long[]> entry : writesByTraceId.entrySet())
+      {
+         long callCount    = entry.getValue()[0];
+         long writtenCount = entry.getValue()[1];
+         if(callCount <= 0 || writtenCount <= 0)
+         {
+            continue;
+         }
+
+         ProcessTrace processTrace = tracesById.get(entry.getKey());
+         long         recordCount  = processTrace.getRecordCount() == null ? writtenCount : processTrace.getRecordCount();
+         int          bucket       = (int) Math.round(4 * Math.log((double) writtenCount / callCount) / Math.log(2));
+
+         long[] totals = bucketTotals.computeIfAbsent(bucket, b -> new long[4]);
+         totals[0] += callCount;
+         totals[1] += writtenCount;
+         totals[2] += recordCount;
+         totals[3] += Objects.requireNonNullElse(processTrace.getActiveRuntimeMillis(), processTrace.getRuntimeMillis());
+         bucketTraces.computeIfAbsent(bucket, b -> new HashSet<>()).add(entry.getKey());
+      }
+
+      List<Candidate> candidates = new ArrayList<>();
+      for(Map.Entry<Integer, long[]> entry : bucketTotals.entrySet())
+      {
+         long[] totals = entry.getValue();
+         candidates.add(new Candidate((int) Math.round((double) totals[1] / totals[0]), bucketTraces.get(entry.getKey()).size(), totals[2], totals[3]));
+      }
+
+      Optional<Candidate> best = candidates.stream()
+         .filter(c -> c.traceCount() >= minTracesPerPageSize)
+         .max(Comparator.comparingDouble(Candidate::recordsPerSecond));
+
+      return (best.map(c -> new Recommendation(c.pageSize(), c.recordsPerSecond(), c.traceCount(), candidates)));
+   }
+
+
+
+   /***************************************************************************
+    * clear the cache of recommendations.
+    ***************************************************************************/
+   public static void clearCache()
+   {
+      memoization.clear();
+   }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.time.Duration;
+import com.kingsrook.qqq.backend.core.model.backends.QQQBackendTableManager;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.processes.QQQProcessTableManager;
+import com.kingsrook.qqq.backend.core.model.tables.QQQTableTableManager;
+import com.kingsrook.qqq.backend.core.utils.memoization.Memoization;
+
+
+/*******************************************************************************
+ * In-memory cache in front of the QQQTable, QQQProcess, and QQQBackend table
+ * managers - so that the tracer (which needs these ids for every key-record
+ * message, summary line, and stats record) doesn't run a lookup action for
+ * each one.
+ *
+ * <p>Entries are keyed by the QInstance they were resolved in (as well as by
+ * name), so a new instance (e.g., after a hot-swap) gets its own entries.
+ * Lookups that fail are logged by Memoization, and give null.</p>
+ *******************************************************************************/
+public class ProcessTraceQQQIdCache
+{
+   private static final Duration TIMEOUT  = Duration.ofHours(1);
+   private static final int      MAX_SIZE = 10_000;
+
+   private static Memoization<CacheKey, Integer> tableIdMemoization   = new Memoization<CacheKey, Integer>().withTimeout(TIMEOUT).withMaxSize(MAX_SIZE);
+   private static Memoization<CacheKey, Integer> processIdMemoization = new Memoization<CacheKey, Integer>().withTimeout(TIMEOUT).withMaxSize(MAX_SIZE);
+   private static Memoization<CacheKey, Integer> backendIdMemoization = new Memoization<CacheKey, Integer>().withTimeout(TIMEOUT).withMaxSize(MAX_SIZE);
+
+
+
+   /***************************************************************************
+    * key for the caches.  QInstance doesn't override equals, so instances are
+    * compared by identity.
+    ***************************************************************************/
+   private record CacheKey(QInstance qInstance, String name)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** private constructor, to block instantiation of this utility class.
+    *******************************************************************************/
+   private ProcessTraceQQQIdCache()
+   {
+   }
+
+
+
+   /***************************************************************************
+    * get the id of a table in the QQQTable table (inserting it there if needed).
+    ***************************************************************************/
+   public static Integer getQQQTableId(QInstance qInstance, String tableName)
+   {
+      if(tableName == null)
+      {
+         return (null);
+      }
+
+      return (tableIdMemoization.getResult(new CacheKey(qInstance, tableName), key -> QQQTableTableManager.getQQQTableId(key.qInstance(), key.name())).orElse(null));
+   }
+
+
+
+   /***************************************************************************
+    * get the id of a process in the QQQProcess table (inserting it there if
+    * needed).
+    ***************************************************************************/
+   public static Integer getQQQProcessId(QInstance qInstance, String processName)
+   {
+      if(processName == null)
+      {
+         return (null);
+      }
+
+      return (processIdMemoization.getResult(new CacheKey(qInstance, processName), key -> QQQProcessTableManager.getQQQProcessId(key.qInstance(), key.name())).orElse(null));
+   }
+
+
+
+   /***************************************************************************
+    * get the id of a backend in the QQQBackend table (inserting it there if
+    * needed).
+    ***************************************************************************/
+   public static Integer getQQQBackendId(QInstance qInstance, String backendName)
+   {
+      if(backendName == null)
+      {
+         return (null);
+      }
+
+      return (backendIdMemoization.getResult(new CacheKey(qInstance, backendName), key -> QQQBackendTableManager.getQQQBackendId(key.qInstance(), key.name())).orElse(null));
+   }
+
+
+
+   /***************************************************************************
+    * clear all of the caches.
+    ***************************************************************************/
+   public static void clear()
+   {
+      tableIdMemoization.clear();
+      processIdMemoization.clear();
+      backendIdMemoization.clear();
+   }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Arrays;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.querystats.QueryStat;
+
+
+/*******************************************************************************
+ * Per-thread buffer of QueryStats, for the batched ingestion mode (see
+ * StandardProcessTraceQBitConfig.withUseBatchedQueryStatIngestion).
+ *
+ * <p>Appending a stat just copies its table name, action, and counts into
+ * parallel arrays owned by the thread - no lock, no key lookup, no map update.
+ * Those happen when the buffer is drained into the
+ * {@link ProcessTraceBackendActivityStatsManager}: when it fills; when the
+ * thread's {@link ProcessTraceContext} changes (so, when a process breaks or
+ * finishes, or a wrapped task ends); and when the tracer finishes a step or
+ * the process.</p>
+ *
+ * <p>A buffer only ever holds stats for one context (and instance) - if
+ * either changes, what's buffered is drained first.</p>
+ *
+ * <p>So stats buffered on the process's own thread, and on threads running
+ * tasks wrapped by {@link ProcessTraceContext#wrap(Runnable)} (and the like),
+ * are always drained before the process's stats are collected.  A thread that
+ * binds the context some other way, and never unbinds it, keeps its buffer
+ * until it next appends - by when the process may be gone, in which case the
+ * buffered stats are dropped (and counted, and logged, by the manager).</p>
+ *******************************************************************************/
+public class ProcessTraceQueryStatBuffer
+{
+   private static final QLogger LOG = QLogger.getLogger(ProcessTraceQueryStatBuffer.class);
+
+   private static final ThreadLocal<ProcessTraceQueryStatBuffer> BUFFERS = new ThreadLocal<>();
+
+   private final String[] tableNames;
+   private final String[] actionNames;
+   private final int[]    recordCounts;
+   private final int[]    millis;
+   private final int[]    firstResultMillis;
+   private int            count = 0;
+
+   private ProcessTraceContext context;
+   private QInstance           qInstance;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   private ProcessTraceQueryStatBuffer(int capacity)
+   {
+      tableNames = new String[capacity];
+      actionNames = new String[capacity];
+      recordCounts = new int[capacity];
+      millis = new int[capacity];
+      firstResultMillis = new int[capacity];
+   }
+
+
+
+   /***************************************************************************
+    * append a query stat for a context to the current thread's buffer (making
+    * the buffer, with the given capacity, if needed).  The stat's duration is
+    * passed in, as worked out by the consumer when it was given the stat (when
+    * the query finished) - it isn't measured when the buffer is drained.
+    ***************************************************************************/
+   static void append(ProcessTraceContext context, QInstance qInstance, QueryStat queryStat, Integer durationMillis, int capacity)
+   {
+      ProcessTraceQueryStatBuffer buffer = BUFFERS.get();
+      if(buffer == null || buffer.tableNames.length != capacity)
+      {
+         if(buffer != null)
+         {
+            buffer.drain();
+         }
+
+         buffer = new ProcessTraceQueryStatBuffer(Math.max(1, capacity));
+         BUFFERS.set(buffer);
+      }
+
+      if(buffer.count > 0 && (buffer.context != context || buffer.qInstance != qInstance))
+      {
+         buffer.drain();
+      }
+
+      buffer.context = context;
+      buffer.qInstance = qInstance;
+
+      Integer recordCount       = queryStat.getRecordCount();
+      Integer firstResultMillis = queryStat.getFirstResultMillis();
+      buffer.tableNames[buffer.count] = queryStat.getTableName();
+      buffer.actionNames[buffer.count] = queryStat.getBackendAction();
+      buffer.recordCounts[buffer.count] = recordCount == null ? 0 : recordCount;
+      buffer.millis[buffer.count] = durationMillis == null ? 0 : durationMillis;
+      buffer.firstResultMillis[buffer.count] = firstResultMillis == null ? 0 : firstResultMillis;
+      buffer.count++;
+
+      if(buffer.count == buffer.tableNames.length)
+      {
+         buffer.drain();
+      }
+   }
+
+
+
+   /***************************************************************************
+    * add anything buffered on the current thread to the stats manager.
+    ***************************************************************************/
+   public static void drainCurrentThread()
+   {
+      ProcessTraceQueryStatBuffer buffer = BUFFERS.get();
+      if(buffer != null)
+      {
+         buffer.drain();
+      }
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private void drain()
+   {
+      if(count == 0)
+      {
+         return;
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // if the process's stats have already been collected (or evicted), //
+      // adding to them would be lost - so say so, and drop the buffer    //
+      //////////////////////////////////////////////////////////////////////
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      if(context.isReleased())
+      {
+         manager.dropForReleasedContext(context, count);
+         clear();
+         return;
+      }
+
+      Exception firstError = null;
+      for(int i = 0; i < count; i++)
+      {
+         try
+         {
+            ProcessTraceBackendActivityStatsManager.Key key = manager.getKey(qInstance, tableNames[i], actionNames[i]);
+            manager.addCounts(context, key, 1, recordCounts[i], millis[i], firstResultMillis[i]);
+         }
+         catch(Exception e)
+         {
+            firstError = firstError == null ? e : firstError;
+         }
+      }
+
+      if(firstError != null)
+      {
+         LOG.warn("Error draining buffered query stats for process trace", firstError);
+      }
+
+      clear();
+   }
+
+
+
+   /***************************************************************************
+    * empty the buffer - and don't hold on to the context (and so the process's
+    * stats) or instance past it.
+    ***************************************************************************/
+   private void clear()
+   {
+      Arrays.fill(tableNames, 0, count, null);
+      Arrays.fill(actionNames, 0, count, null);
+      count = 0;
+      context = null;
+      qInstance = null;
+   }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/*******************************************************************************
+ * Policy for which of the record ids (primary keys) in a process summary line
+ * are stored with its trace - e.g., all of them (the default), none of them,
+ * the first N of them, or a random sample of N of them.
+ *
+ * <p>Policies are set on the StandardProcessTraceQBitConfig, per summary line
+ * status, and optionally per process.  Whatever the policy, the line's full
+ * count is still stored in processTraceSummaryLine.recordCount, and its
+ * recordIdsTruncated field says if not all of the ids were kept.</p>
+ *******************************************************************************/
+public class ProcessTraceRecordIdCapturePolicy implements Serializable
+{
+   private final Mode mode;
+   private final int  limit;
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   public enum Mode
+   {
+      ALL,
+      NONE,
+      CAP,
+      SAMPLE
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   private ProcessTraceRecordIdCapturePolicy(Mode mode, int limit)
+   {
+      if(limit < 0)
+      {
+         throw (new IllegalArgumentException("Record id capture limit may not be negative (was " + limit + ")"));
+      }
+
+      this.mode = mode;
+      this.limit = limit;
+   }
+
+
+
+   /***************************************************************************
+    * policy to store all record ids.
+    ***************************************************************************/
+   public static ProcessTraceRecordIdCapturePolicy all()
+   {
+      return (new ProcessTraceRecordIdCapturePolicy(Mode.ALL, 0));
+   }
+
+
+
+   /***************************************************************************
+    * policy to store no record ids.
+    ***************************************************************************/
+   public static ProcessTraceRecordIdCapturePolicy none()
+   {
+      return (new ProcessTraceRecordIdCapturePolicy(Mode.NONE, 0));
+   }
+
+
+
+   /***************************************************************************
+    * policy to store the first (up to) limit record ids.
+    ***************************************************************************/
+   public static ProcessTraceRecordIdCapturePolicy cap(int limit)
+   {
+      return (new ProcessTraceRecordIdCapturePolicy(Mode.CAP, limit));
+   }
+
+
+
+   /***************************************************************************
+    * policy to store a uniform random sample of (up to) limit record ids.
+    ***************************************************************************/
+   public static ProcessTraceRecordIdCapturePolicy sample(int limit)
+   {
+      return (new ProcessTraceRecordIdCapturePolicy(Mode.SAMPLE, limit));
+   }
+
+
+
+   /***************************************************************************
+    * get the record ids to store, from a summary line's full list of them.  The
+    * input list is not modified (and, if all ids are kept, is returned as-is).
+    ***************************************************************************/
+   public List<Serializable> apply(List<Serializable> primaryKeys)
+   {
+      if(primaryKeys == null)
+      {
+         return (null);
+      }
+
+      return switch(mode)
+      {
+         case ALL -> primaryKeys;
+         case NONE -> new ArrayList<>();
+         case CAP -> primaryKeys.size() <= limit ? primaryKeys : new ArrayList<>(primaryKeys.subList(0, limit));
+         case SAMPLE -> primaryKeys.size() <= limit ? primaryKeys : reservoirSample(primaryKeys);
+      };
+   }
+
+
+
+   /***************************************************************************
+    * standard reservoir sampling ("algorithm R") - one pass over the input,
+    * keeping only limit values in memory.
+    ***************************************************************************/
+   private List<Serializable> reservoirSample(List<Serializable> primaryKeys)
+   {
+      ThreadLocalRandom  random    = ThreadLocalRandom.current();
+      List<Serializable> reservoir = new ArrayList<>(limit);
+
+      int index = 0;
+      for(Serializable primaryKey : primaryKeys)
+      {
+         if(index < limit)
+         {
+            reservoir.add(primaryKey);
+         }
+         else
+         {
+            int replaceIndex = random.nextInt(index + 1);
+            if(replaceIndex < limit)
+            {
+               reservoir.set(replaceIndex, primaryKey);
+            }
+         }
+         index++;
+      }
+
+      return (reservoir);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for mode
+    *******************************************************************************/
+   public Mode getMode()
+   {
+      return (this.mode);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for limit
+    *******************************************************************************/
+   public int getLimit()
+   {
+      return (this.limit);
+   }
+
+}
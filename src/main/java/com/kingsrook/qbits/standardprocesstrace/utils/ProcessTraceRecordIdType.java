@@ -0,0 +1,234 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+
+
+/*******************************************************************************
+ * The types of primary keys that summary line record ids are stored as - each
+ * going to its own table (processTraceSummaryLineRecordInt, -RecordLong, or
+ * -RecordString).
+ *
+ * <p>A table's type is resolved once (per summary line) from its meta-data, by
+ * {@link #forTable(QTableMetaData)}, and then its keys are converted with
+ * {@link #toInteger(Serializable)} or {@link #toLong(Serializable)} - which,
+ * unlike ValueUtils, return null rather than throwing for values they can't
+ * convert, so that a loop over a large number of keys never pays for building
+ * exceptions.</p>
+ *******************************************************************************/
+public enum ProcessTraceRecordIdType
+{
+   INTEGER,
+   LONG,
+   STRING;
+
+   private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+   private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+
+
+   /***************************************************************************
+    * get the type to use for a table's primary keys.  Tables that aren't known
+    * (or whose primary key field can't be found) are treated as INTEGER - e.g.,
+    * the type that was always used before other types were supported.
+    ***************************************************************************/
+   public static ProcessTraceRecordIdType forTable(QTableMetaData table)
+   {
+      if(table == null || table.getPrimaryKeyField() == null)
+      {
+         return (INTEGER);
+      }
+
+      QFieldMetaData primaryKeyField = table.getFields() == null ? null : table.getFields().get(table.getPrimaryKeyField());
+      if(primaryKeyField == null || primaryKeyField.getType() == null)
+      {
+         return (INTEGER);
+      }
+
+      return switch(primaryKeyField.getType())
+      {
+         case INTEGER -> INTEGER;
+         case LONG -> LONG;
+         default -> STRING;
+      };
+   }
+
+
+
+   /***************************************************************************
+    * convert a primary key to an Integer - or null if it isn't one (e.g., it's
+    * a non-numeric string, or a number that's out of range, or has a fraction).
+    ***************************************************************************/
+   public static Integer toInteger(Serializable value)
+   {
+      if(value instanceof Integer i)
+      {
+         return (i);
+      }
+
+      Long l = toLong(value);
+      if(l == null || l < Integer.MIN_VALUE || l > Integer.MAX_VALUE)
+      {
+         return (null);
+      }
+
+      return (l.intValue());
+   }
+
+
+
+   /***************************************************************************
+    * convert a primary key to a Long - or null if it isn't one.  Numbers of any
+    * type are converted if their value is a whole number in range - e.g., a
+    * BigDecimal of 7.00 (as some backends return for numeric columns), or a
+    * Double of 7.0, but not 7.5.
+    ***************************************************************************/
+   public static Long toLong(Serializable value)
+   {
+      if(value instanceof Long l)
+      {
+         return (l);
+      }
+      else if(value instanceof Integer || value instanceof Short || value instanceof Byte)
+      {
+         return (((Number) value).longValue());
+      }
+      else if(value instanceof CharSequence charSequence)
+      {
+         return (parseLong(charSequence));
+      }
+      else if(value instanceof BigInteger bigInteger)
+      {
+         return (bigInteger.bitLength() < Long.SIZE ? bigInteger.longValueExact() : null);
+      }
+      else if(value instanceof BigDecimal bigDecimal)
+      {
+         return (toLong(bigDecimal));
+      }
+      else if(value instanceof Double || value instanceof Float)
+      {
+         return (toLong(((Number) value).doubleValue()));
+      }
+      else if(value instanceof Number number)
+      {
+         ///////////////////////////////////////////////////////////////////
+         // e.g., AtomicLong, or some other Number - taken as long as its //
+         // long value is its whole value.                                //
+         ///////////////////////////////////////////////////////////////////
+         long l = number.longValue();
+         return (number.doubleValue() == (double) l ? l : null);
+      }
+
+      return (null);
+   }
+
+
+
+   /***************************************************************************
+    * convert a BigDecimal to a Long - or null if it has a fraction, or is out
+    * of range.  Checked before calling longValueExact, so it never throws.
+    ***************************************************************************/
+   private static Long toLong(BigDecimal bigDecimal)
+   {
+      if(bigDecimal.signum() == 0)
+      {
+         return (0L);
+      }
+
+      BigDecimal stripped = bigDecimal.stripTrailingZeros();
+      if(stripped.scale() > 0 || stripped.compareTo(LONG_MIN) < 0 || stripped.compareTo(LONG_MAX) > 0)
+      {
+         return (null);
+      }
+
+      return (stripped.longValueExact());
+   }
+
+
+
+   /***************************************************************************
+    * convert a double to a Long - or null if it has a fraction, is out of
+    * range, or isn't a number at all.
+    ***************************************************************************/
+   private static Long toLong(double d)
+   {
+      if(Double.isNaN(d) || Double.isInfinite(d) || d != Math.rint(d) || d < -0x1p63 || d >= 0x1p63)
+      {
+         return (null);
+      }
+
+      return ((long) d);
+   }
+
+
+
+   /***************************************************************************
+    * parse a string of digits (with optional leading sign and surrounding
+    * whitespace) as a long, returning null (instead of throwing) if it isn't
+    * one.  Only up to 18 digits are accepted, which can't overflow.
+    ***************************************************************************/
+   private static Long parseLong(CharSequence charSequence)
+   {
+      int start = 0;
+      int end   = charSequence.length();
+      while(start < end && Character.isWhitespace(charSequence.charAt(start)))
+      {
+         start++;
+      }
+      while(end > start && Character.isWhitespace(charSequence.charAt(end - 1)))
+      {
+         end--;
+      }
+
+      boolean negative = false;
+      if(start < end && (charSequence.charAt(start) == '-' || charSequence.charAt(start) == '+'))
+      {
+         negative = charSequence.charAt(start) == '-';
+         start++;
+      }
+
+      if(start == end || end - start > 18)
+      {
+         return (null);
+      }
+
+      long result = 0;
+      for(int i = start; i < end; i++)
+      {
+         char c = charSequence.charAt(i);
+         if(c < '0' || c > '9')
+         {
+            return (null);
+         }
+         result = result * 10 + (c - '0');
+      }
+
+      return (negative ? -result : result);
+   }
+
+}
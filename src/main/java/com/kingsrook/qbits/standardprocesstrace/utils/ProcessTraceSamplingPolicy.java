@@ -0,0 +1,311 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/*******************************************************************************
+ * Head-based sampling policy for process traces - that is, a decision made
+ * when a process starts, about whether its run is traced or not.
+ *
+ * <p>A policy can have any of:</p>
+ * <ul>
+ *    <li>a rate - the fraction (0 to 1) of runs to trace.  By default, each run
+ *    is decided at random; or, with {@link #withHashOnKeyRecord(boolean)}, by a
+ *    hash of the run's key record (e.g., its input table and record ids), so
+ *    that all runs for the same record get the same decision.</li>
+ *    <li>a maximum number of traces per minute (per process) - enforced by a
+ *    token bucket, so a burst of runs doesn't produce a burst of traces.</li>
+ *    <li>an {@link UnsampledBehavior} - whether runs that aren't sampled are
+ *    not traced at all (SKIP, the default), or get a LIGHT trace (the header
+ *    and summary lines, but no record ids or backend activity stats).</li>
+ * </ul>
+ *
+ * <p>Policies are set on the StandardProcessTraceQBitConfig, by default, and
+ * optionally per process.</p>
+ *******************************************************************************/
+public class ProcessTraceSamplingPolicy
+{
+   private double            rate              = 1.0;
+   private Integer           maxTracesPerMinute;
+   private boolean           hashOnKeyRecord   = false;
+   private UnsampledBehavior unsampledBehavior = UnsampledBehavior.SKIP;
+
+   private final Map<String, TokenBucket> tokenBucketsByProcess = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    * what to do with a process run that isn't sampled.
+    ***************************************************************************/
+   public enum UnsampledBehavior
+   {
+      SKIP,
+      LIGHT
+   }
+
+
+
+   /***************************************************************************
+    * policy that samples (up to) the given fraction of runs.
+    ***************************************************************************/
+   public static ProcessTraceSamplingPolicy rate(double rate)
+   {
+      return (new ProcessTraceSamplingPolicy().withRate(rate));
+   }
+
+
+
+   /***************************************************************************
+    * policy that samples (up to) the given number of runs per minute (per
+    * process).
+    ***************************************************************************/
+   public static ProcessTraceSamplingPolicy maxTracesPerMinute(int maxTracesPerMinute)
+   {
+      return (new ProcessTraceSamplingPolicy().withMaxTracesPerMinute(maxTracesPerMinute));
+   }
+
+
+
+   /***************************************************************************
+    * decide if a run of a process should be traced.
+    *
+    * @param processName name of the process - token buckets are kept per name.
+    * @param samplingKey value to hash (if this policy hashes on key record) -
+    * e.g., a string identifying the run's key record.  If null, the run is
+    * decided at random.
+    ***************************************************************************/
+   public boolean sample(String processName, String samplingKey)
+   {
+      if(rate < 1.0)
+      {
+         double draw = (hashOnKeyRecord && samplingKey != null) ? hashToUnitInterval(samplingKey) : ThreadLocalRandom.current().nextDouble();
+         if(draw >= rate)
+         {
+            return (false);
+         }
+      }
+
+      if(maxTracesPerMinute != null)
+      {
+         TokenBucket tokenBucket = tokenBucketsByProcess.computeIfAbsent(String.valueOf(processName), k -> new TokenBucket(maxTracesPerMinute));
+         return (tokenBucket.tryAcquire(System.nanoTime()));
+      }
+
+      return (true);
+   }
+
+
+
+   /***************************************************************************
+    * map a string to a well-distributed double in [0, 1) - the same string
+    * always getting the same value (in any JVM).
+    ***************************************************************************/
+   static double hashToUnitInterval(String samplingKey)
+   {
+      ///////////////////////////////////////////////////////////////////
+      // String.hashCode is stable, but poorly distributed in its low  //
+      // bits - so mix it (murmur3's 64-bit finalizer) before scaling. //
+      ///////////////////////////////////////////////////////////////////
+      long h = samplingKey.hashCode();
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return ((h >>> 11) * 0x1.0p-53);
+   }
+
+
+
+   /***************************************************************************
+    * token bucket - holding up to capacity tokens, refilled continuously at
+    * capacity per minute.  Each sampled run takes one token.
+    ***************************************************************************/
+   private static class TokenBucket
+   {
+      private static final long NANOS_PER_MINUTE = 60L * 1_000_000_000L;
+
+      private final int capacity;
+
+      private double tokens;
+      private long   lastRefillNanos;
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      private TokenBucket(int capacity)
+      {
+         this.capacity = capacity;
+         this.tokens = capacity;
+         this.lastRefillNanos = System.nanoTime();
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      private synchronized boolean tryAcquire(long nowNanos)
+      {
+         long elapsedNanos = nowNanos - lastRefillNanos;
+         if(elapsedNanos > 0)
+         {
+            tokens = Math.min(capacity, tokens + ((double) elapsedNanos * capacity / NANOS_PER_MINUTE));
+            lastRefillNanos = nowNanos;
+         }
+
+         if(tokens >= 1)
+         {
+            tokens -= 1;
+            return (true);
+         }
+
+         return (false);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for rate
+    ** @see #withRate(double)
+    *******************************************************************************/
+   public double getRate()
+   {
+      return (this.rate);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for rate
+    **
+    ** @param rate fraction of runs to sample - from 0 (none) to 1 (all, the
+    ** default).
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy withRate(double rate)
+   {
+      if(rate < 0 || rate > 1)
+      {
+         throw (new IllegalArgumentException("Sampling rate must be between 0 and 1 (was " + rate + ")"));
+      }
+
+      this.rate = rate;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for maxTracesPerMinute
+    ** @see #withMaxTracesPerMinute(Integer)
+    *******************************************************************************/
+   public Integer getMaxTracesPerMinute()
+   {
+      return (this.maxTracesPerMinute);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for maxTracesPerMinute
+    **
+    ** @param maxTracesPerMinute if given, the most runs (of each process) to
+    ** sample per minute - after the rate is applied.  Null (the default) means
+    ** no limit.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy withMaxTracesPerMinute(Integer maxTracesPerMinute)
+   {
+      if(maxTracesPerMinute != null && maxTracesPerMinute < 0)
+      {
+         throw (new IllegalArgumentException("Max traces per minute may not be negative (was " + maxTracesPerMinute + ")"));
+      }
+
+      this.maxTracesPerMinute = maxTracesPerMinute;
+      this.tokenBucketsByProcess.clear();
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for hashOnKeyRecord
+    ** @see #withHashOnKeyRecord(boolean)
+    *******************************************************************************/
+   public boolean getHashOnKeyRecord()
+   {
+      return (this.hashOnKeyRecord);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for hashOnKeyRecord
+    **
+    ** @param hashOnKeyRecord if true, apply the rate by hashing the run's key
+    ** record, rather than at random - so the same record is always (or never)
+    ** traced.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy withHashOnKeyRecord(boolean hashOnKeyRecord)
+   {
+      this.hashOnKeyRecord = hashOnKeyRecord;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for unsampledBehavior
+    ** @see #withUnsampledBehavior(UnsampledBehavior)
+    *******************************************************************************/
+   public UnsampledBehavior getUnsampledBehavior()
+   {
+      return (this.unsampledBehavior);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for unsampledBehavior
+    **
+    ** @param unsampledBehavior what to do with runs that aren't sampled - SKIP
+    ** them (the default), or give them a LIGHT trace.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceSamplingPolicy withUnsampledBehavior(UnsampledBehavior unsampledBehavior)
+   {
+      this.unsampledBehavior = unsampledBehavior == null ? UnsampledBehavior.SKIP : unsampledBehavior;
+      return (this);
+   }
+
+}
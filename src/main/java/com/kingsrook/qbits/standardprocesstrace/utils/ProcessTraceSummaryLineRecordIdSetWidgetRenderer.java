@@ -0,0 +1,108 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.util.Map;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordIdSet;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
+import com.kingsrook.qqq.backend.core.actions.dashboard.widgets.AbstractWidgetRenderer;
+import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryOutput;
+import com.kingsrook.qqq.backend.core.model.actions.widgets.RenderWidgetInput;
+import com.kingsrook.qqq.backend.core.model.actions.widgets.RenderWidgetOutput;
+import com.kingsrook.qqq.backend.core.model.dashboard.widgets.ChildRecordListData;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.AdornmentType;
+import com.kingsrook.qqq.backend.core.model.tables.QQQTable;
+import com.kingsrook.qqq.backend.core.utils.ValueUtils;
+
+
+/*******************************************************************************
+ * Widget renderer for the records in a summary line's
+ * processTraceSummaryLineRecordIdSet - expanding (up to maxRows of) its
+ * encoded ids, on demand, into virtual processTraceSummaryLineRecordInt
+ * records - so they look the same as lines stored the other way.
+ *******************************************************************************/
+public class ProcessTraceSummaryLineRecordIdSetWidgetRenderer extends AbstractWidgetRenderer
+{
+   public static final int DEFAULT_MAX_ROWS = 250;
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public RenderWidgetOutput render(RenderWidgetInput input) throws QException
+   {
+      Serializable maxRowsValue = input.getWidgetMetaData().getDefaultValues() == null ? null : input.getWidgetMetaData().getDefaultValues().get("maxRows");
+      int          maxRows      = maxRowsValue == null ? DEFAULT_MAX_ROWS : ValueUtils.getValueAsInteger(maxRowsValue);
+      Long         lineId       = ValueUtils.getValueAsLong(input.getQueryParams().get("id"));
+
+      QueryOutput queryOutput = new QueryOutput(new QueryInput(ProcessTraceSummaryLineRecordInt.TABLE_NAME));
+      int         totalRows   = 0;
+
+      QRecord recordIdSetRecord = lineId == null ? null : GetAction.execute(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME, Map.of("processTraceSummaryLineId", lineId));
+      if(recordIdSetRecord != null)
+      {
+         EncodedRecordIdSet recordIdSet = EncodedRecordIdSet.decode(recordIdSetRecord.getValueString("encodedRecordIds"));
+         totalRows = recordIdSet.size();
+
+         Integer qqqTableId     = recordIdSetRecord.getValueInteger("qqqTableId");
+         QRecord qqqTableRecord = qqqTableId == null ? null : GetAction.execute(QQQTable.TABLE_NAME, qqqTableId);
+
+         for(Integer recordId : recordIdSet)
+         {
+            if(queryOutput.getRecords().size() >= maxRows)
+            {
+               break;
+            }
+
+            QRecord record = new QRecord()
+               .withValue("processTraceSummaryLineId", lineId)
+               .withValue("qqqTableId", qqqTableId)
+               .withValue("recordId", recordId);
+
+            //////////////////////////////////////////////////////////////////////////////
+            // same display values as ProcessTraceSummaryLineRecordIntTableCustomizer - //
+            // so the record id links to the record in its table                        //
+            //////////////////////////////////////////////////////////////////////////////
+            if(qqqTableRecord != null)
+            {
+               record.setDisplayValue("qqqTableId", qqqTableRecord.getValueString("label"));
+               record.setDisplayValue("recordId:" + AdornmentType.LinkValues.TO_RECORD_FROM_TABLE_DYNAMIC, qqqTableRecord.getValueString("name"));
+            }
+
+            queryOutput.addRecord(record);
+         }
+      }
+
+      String title = input.getWidgetMetaData().getLabel();
+      return (new RenderWidgetOutput(new ChildRecordListData(title, queryOutput, QContext.getQInstance().getTable(ProcessTraceSummaryLineRecordInt.TABLE_NAME), null, null, totalRows)));
+   }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/*******************************************************************************
+ * Tail-based sampling policy for process traces - that is, a decision made
+ * when a process finishes (with its whole trace buffered in memory until
+ * then), about whether its trace is worth storing.
+ *
+ * <p>A trace is kept if any of the policy's rules match:</p>
+ * <ul>
+ *    <li>the process threw an exception (on by default).</li>
+ *    <li>its runtime was above a percentile of the recent runtimes of the same
+ *    process (see {@link #withRuntimePercentile(Double)}).  Until a process has
+ *    enough history, its traces are all kept.</li>
+ *    <li>its record count was at least a threshold.</li>
+ *    <li>a random draw, at the keep rate (e.g., to keep a small sample of
+ *    routine runs as a baseline).</li>
+ * </ul>
+ *
+ * <p>Policies are set on the StandardProcessTraceQBitConfig, by default, and
+ * optionally per process.  Processes with a tail sampling policy always use
+ * single-write header mode, so that nothing is written until the decision is
+ * made.</p>
+ *******************************************************************************/
+public class ProcessTraceTailSamplingPolicy
+{
+   public static final int DEFAULT_RUNTIME_HISTORY_SIZE     = 1000;
+   public static final int DEFAULT_MIN_RUNTIME_HISTORY_SIZE = 20;
+
+   private boolean keepOnException       = true;
+   private Double  runtimePercentile;
+   private int     runtimeHistorySize    = DEFAULT_RUNTIME_HISTORY_SIZE;
+   private int     minRuntimeHistorySize = DEFAULT_MIN_RUNTIME_HISTORY_SIZE;
+   private Integer minRecordCount;
+   private double  keepRate              = 0;
+
+   private final Map<String, RuntimeHistory> runtimeHistoryByProcess = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    * decide if a finished process's trace should be stored - and, add its
+    * runtime to the history for its process.
+    *
+    * @param processName name of the process - runtime history is kept per name.
+    * @param runtimeMillis how long the process actively ran - not counting time
+    * spent waiting between a break &amp; resume (null if not known).
+    * @param recordCount how many records the process ran on (null if not known).
+    * @param processException exception from the process, if any.
+    ***************************************************************************/
+   public boolean shouldKeep(String processName, Long runtimeMillis, Integer recordCount, Exception processException)
+   {
+      boolean keep = false;
+
+      if(keepOnException && processException != null)
+      {
+         keep = true;
+      }
+
+      if(!keep && minRecordCount != null && recordCount != null && recordCount >= minRecordCount)
+      {
+         keep = true;
+      }
+
+      if(runtimePercentile != null && runtimeMillis != null)
+      {
+         //////////////////////////////////////////////////////////////////////
+         // compare to the history before adding this run to it - but always //
+         // add it (even if already kept), so the history is of all runs     //
+         //////////////////////////////////////////////////////////////////////
+         RuntimeHistory runtimeHistory = runtimeHistoryByProcess.computeIfAbsent(String.valueOf(processName), k -> new RuntimeHistory(runtimeHistorySize));
+         Long           threshold      = runtimeHistory.getPercentile(runtimePercentile, minRuntimeHistorySize);
+         if(!keep && (threshold == null || runtimeMillis > threshold))
+         {
+            keep = true;
+         }
+         runtimeHistory.add(runtimeMillis);
+      }
+
+      if(!keep && keepRate > 0 && ThreadLocalRandom.current().nextDouble() < keepRate)
+      {
+         keep = true;
+      }
+
+      return (keep);
+   }
+
+
+
+   /***************************************************************************
+    * ring buffer of the most recent runtimes of a process.
+    ***************************************************************************/
+   private static class RuntimeHistory
+   {
+      private final long[] runtimes;
+
+      private int count = 0;
+      private int next  = 0;
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      private RuntimeHistory(int size)
+      {
+         this.runtimes = new long[Math.max(size, 1)];
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      private synchronized void add(long runtimeMillis)
+      {
+         runtimes[next] = runtimeMillis;
+         next = (next + 1) % runtimes.length;
+         count = Math.min(count + 1, runtimes.length);
+      }
+
+
+
+      /***************************************************************************
+       * get the value at a percentile (0 to 1) of the history - or null if there
+       * aren't yet minCount values in it.
+       ***************************************************************************/
+      private Long getPercentile(double percentile, int minCount)
+      {
+         long[] sorted;
+         synchronized(this)
+         {
+            if(count == 0 || count < minCount)
+            {
+               return (null);
+            }
+            sorted = Arrays.copyOf(runtimes, count);
+         }
+
+         Arrays.sort(sorted);
+         int index = (int) Math.ceil(percentile * sorted.length) - 1;
+         return (sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for keepOnException
+    ** @see #withKeepOnException(boolean)
+    *******************************************************************************/
+   public boolean getKeepOnException()
+   {
+      return (this.keepOnException);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for keepOnException
+    **
+    ** @param keepOnException if true (the default), keep the traces of processes
+    ** that threw an exception.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withKeepOnException(boolean keepOnException)
+   {
+      this.keepOnException = keepOnException;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for runtimePercentile
+    ** @see #withRuntimePercentile(Double)
+    *******************************************************************************/
+   public Double getRuntimePercentile()
+   {
+      return (this.runtimePercentile);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for runtimePercentile
+    **
+    ** @param runtimePercentile if given (from 0 to 1 - e.g., 0.95), keep the
+    ** traces of runs slower than that percentile of the process's recent runs
+    ** (see withRuntimeHistorySize).
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withRuntimePercentile(Double runtimePercentile)
+   {
+      if(runtimePercentile != null && (runtimePercentile < 0 || runtimePercentile > 1))
+      {
+         throw (new IllegalArgumentException("Runtime percentile must be between 0 and 1 (was " + runtimePercentile + ")"));
+      }
+
+      this.runtimePercentile = runtimePercentile;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for runtimeHistorySize
+    ** @see #withRuntimeHistorySize(int)
+    *******************************************************************************/
+   public int getRuntimeHistorySize()
+   {
+      return (this.runtimeHistorySize);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for runtimeHistorySize
+    **
+    ** @param runtimeHistorySize how many of each process's most recent runtimes
+    ** to compute the runtime percentile from (default 1000).
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withRuntimeHistorySize(int runtimeHistorySize)
+   {
+      this.runtimeHistorySize = runtimeHistorySize;
+      this.runtimeHistoryByProcess.clear();
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for minRuntimeHistorySize
+    ** @see #withMinRuntimeHistorySize(int)
+    *******************************************************************************/
+   public int getMinRuntimeHistorySize()
+   {
+      return (this.minRuntimeHistorySize);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for minRuntimeHistorySize
+    **
+    ** @param minRuntimeHistorySize how many runtimes a process must have in its
+    ** history before the runtime percentile rule is applied (default 20) - until
+    ** then, its traces are kept.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withMinRuntimeHistorySize(int minRuntimeHistorySize)
+   {
+      this.minRuntimeHistorySize = minRuntimeHistorySize;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for minRecordCount
+    ** @see #withMinRecordCount(Integer)
+    *******************************************************************************/
+   public Integer getMinRecordCount()
+   {
+      return (this.minRecordCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for minRecordCount
+    **
+    ** @param minRecordCount if given, keep the traces of runs with at least this
+    ** many records.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withMinRecordCount(Integer minRecordCount)
+   {
+      this.minRecordCount = minRecordCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for keepRate
+    ** @see #withKeepRate(double)
+    *******************************************************************************/
+   public double getKeepRate()
+   {
+      return (this.keepRate);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for keepRate
+    **
+    ** @param keepRate fraction (from 0, the default, to 1) of traces to keep at
+    ** random, that no other rule kept.
+    ** @return this
+    *******************************************************************************/
+   public ProcessTraceTailSamplingPolicy withKeepRate(double keepRate)
+   {
+      if(keepRate < 0 || keepRate > 1)
+      {
+         throw (new IllegalArgumentException("Keep rate must be between 0 and 1 (was " + keepRate + ")"));
+      }
+
+      this.keepRate = keepRate;
+      return (this);
+   }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceEtlPageTimeline;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+
+
+/*******************************************************************************
+ * All of the records that need to be written for one process trace when its
+ * process finishes - e.g., the processTrace header (either an insert or an
+ * update), plus its summary lines, steps, ETL page timeline, and backend
+ * activity stats.
+ *
+ * <p>Built by {@link StandardProcessTracer}, and handed off to the
+ * {@link ProcessTraceWriter} - which may write it immediately, or may queue it
+ * up to be written in a batch with other traces.</p>
+ *******************************************************************************/
+public class ProcessTraceWrite
+{
+   private final QInstance qInstance;
+
+   private QRecord                                headerInsert;
+   private QRecord                                headerUpdate;
+   private List<ProcessTraceSummaryLine>          summaryLines;
+   private List<ProcessTraceStep>                 steps;
+   private ProcessTraceEtlPageTimeline            etlPageTimeline;
+   private List<ProcessTraceBackendActivityStats> backendActivityStats;
+
+   private Map<ProcessTraceSummaryLine, SummaryLineRecordIds> summaryLineRecordIds = new IdentityHashMap<>();
+   private Map<ProcessTraceSummaryLine, Integer>              storedRecordIdCounts = new IdentityHashMap<>();
+
+
+
+   /***************************************************************************
+    * the ids of the records that make up a summary line - which the writer
+    * stores (as processTraceSummaryLineRecordInt records, or the table for
+    * their recordIdType) after the line is inserted.  The list is the one from
+    * the process's summary line - it is not copied, so that memory use doesn't
+    * grow with the number of records.
+    ***************************************************************************/
+   public record SummaryLineRecordIds(Integer qqqTableId, ProcessTraceRecordIdType recordIdType, List<Serializable> primaryKeys)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param qInstance the instance that the trace's process ran in - e.g., what
+    ** the writer should use when it stores the records.
+    *******************************************************************************/
+   public ProcessTraceWrite(QInstance qInstance)
+   {
+      this.qInstance = qInstance;
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for qInstance
+    *******************************************************************************/
+   public QInstance getQInstance()
+   {
+      return (this.qInstance);
+   }
+
+
+
+   /***************************************************************************
+    * set the processTraceId on all of the child records in this object - e.g.,
+    * after the header has been inserted, and its id is known.
+    ***************************************************************************/
+   public void applyProcessTraceId(Long processTraceId)
+   {
+      if(summaryLines != null)
+      {
+         summaryLines.forEach(summaryLine -> summaryLine.setProcessTraceId(processTraceId));
+      }
+
+      if(steps != null)
+      {
+         steps.forEach(step -> step.setProcessTraceId(processTraceId));
+      }
+
+      if(etlPageTimeline != null)
+      {
+         etlPageTimeline.setProcessTraceId(processTraceId);
+      }
+
+      if(backendActivityStats != null)
+      {
+         backendActivityStats.forEach(stats -> stats.setProcessTraceId(processTraceId));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for headerInsert
+    *******************************************************************************/
+   public QRecord getHeaderInsert()
+   {
+      return (this.headerInsert);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for headerInsert
+    **
+    ** @param headerInsert processTrace record to be inserted (e.g., in single-write
+    ** header mode).  Child records in this object get the id of this record
+    ** assigned to them after it is inserted.
+    *******************************************************************************/
+   public ProcessTraceWrite withHeaderInsert(QRecord headerInsert)
+   {
+      this.headerInsert = headerInsert;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for headerUpdate
+    *******************************************************************************/
+   public QRecord getHeaderUpdate()
+   {
+      return (this.headerUpdate);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for headerUpdate
+    *******************************************************************************/
+   public ProcessTraceWrite withHeaderUpdate(QRecord headerUpdate)
+   {
+      this.headerUpdate = headerUpdate;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for summaryLines
+    *******************************************************************************/
+   public List<ProcessTraceSummaryLine> getSummaryLines()
+   {
+      return (this.summaryLines);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for summaryLines
+    *******************************************************************************/
+   public ProcessTraceWrite withSummaryLines(List<ProcessTraceSummaryLine> summaryLines)
+   {
+      this.summaryLines = summaryLines;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter to add the record ids for one of the summary lines in this
+    ** object.
+    **
+    ** @param summaryLine the line (from this object's summaryLines list) that
+    ** the records belong to.
+    ** @param qqqTableId id of the table that the records are from.
+    ** @param recordIdType type of that table's primary key.
+    ** @param primaryKeys the records' primary keys.
+    *******************************************************************************/
+   public ProcessTraceWrite withSummaryLineRecordIds(ProcessTraceSummaryLine summaryLine, Integer qqqTableId, ProcessTraceRecordIdType recordIdType, List<Serializable> primaryKeys)
+   {
+      this.summaryLineRecordIds.put(summaryLine, new SummaryLineRecordIds(qqqTableId, recordIdType, primaryKeys));
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for the record ids for one of the summary lines in this object (or
+    ** null, if it doesn't have any).
+    *******************************************************************************/
+   public SummaryLineRecordIds getSummaryLineRecordIds(ProcessTraceSummaryLine summaryLine)
+   {
+      return (this.summaryLineRecordIds.get(summaryLine));
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for the total number of record ids in this object's summary lines.
+    *******************************************************************************/
+   public long getRecordIdCount()
+   {
+      long recordIdCount = 0;
+      for(SummaryLineRecordIds recordIds : summaryLineRecordIds.values())
+      {
+         if(recordIds.primaryKeys() != null)
+         {
+            recordIdCount += recordIds.primaryKeys().size();
+         }
+      }
+      return (recordIdCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for how many of a summary line's record ids (from the start of its
+    ** list of primary keys) have been stored - e.g., by an earlier attempt to
+    ** write this trace, which a retry should carry on from.
+    *******************************************************************************/
+   public int getStoredRecordIdCount(ProcessTraceSummaryLine summaryLine)
+   {
+      return (this.storedRecordIdCounts.getOrDefault(summaryLine, 0));
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for how many of a summary line's record ids have been stored.
+    *******************************************************************************/
+   public void setStoredRecordIdCount(ProcessTraceSummaryLine summaryLine, int storedRecordIdCount)
+   {
+      this.storedRecordIdCounts.put(summaryLine, storedRecordIdCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for steps
+    *******************************************************************************/
+   public List<ProcessTraceStep> getSteps()
+   {
+      return (this.steps);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for steps
+    *******************************************************************************/
+   public ProcessTraceWrite withSteps(List<ProcessTraceStep> steps)
+   {
+      this.steps = steps;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for etlPageTimeline
+    *******************************************************************************/
+   public ProcessTraceEtlPageTimeline getEtlPageTimeline()
+   {
+      return (this.etlPageTimeline);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for etlPageTimeline
+    *******************************************************************************/
+   public ProcessTraceWrite withEtlPageTimeline(ProcessTraceEtlPageTimeline etlPageTimeline)
+   {
+      this.etlPageTimeline = etlPageTimeline;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for backendActivityStats
+    *******************************************************************************/
+   public List<ProcessTraceBackendActivityStats> getBackendActivityStats()
+   {
+      return (this.backendActivityStats);
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for backendActivityStats
+    *******************************************************************************/
+   public ProcessTraceWrite withBackendActivityStats(List<ProcessTraceBackendActivityStats> backendActivityStats)
+   {
+      this.backendActivityStats = backendActivityStats;
+      return (this);
+   }
+
+}
@@ -0,0 +1,860 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceEtlPageTimeline;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordIdSet;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordLong;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordString;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceWrite.SummaryLineRecordIds;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSystemUserSession;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+import com.kingsrook.qqq.backend.core.utils.PrefixedDefaultThreadFactory;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ * Singleton that stores {@link ProcessTraceWrite} objects (e.g., the records
+ * built by a {@link StandardProcessTracer} when a process finishes).
+ *
+ * <p>By default, traces are written immediately, by the thread that submits
+ * them.  If {@link StandardProcessTraceQBitConfig#withUseWriteBehindWriter(boolean)}
+ * is turned on, then traces are instead put into a bounded in-memory queue, and
+ * a dedicated writer thread drains that queue, combining the traces from many
+ * processes into a small number of multi-row insert and update actions.</p>
+ *
+ * <p>If the queue is full, a trace is dropped, rather than making a process
+ * wait - see {@link #getDroppedCount()}.  The queue is also bounded by the
+ * number of summary line record ids its traces hold (as each keeps its lines'
+ * full lists of ids) - a trace that would go over that bound is written by the
+ * thread that submits it, instead of being queued.</p>
+ *
+ * <p>Call {@link #shutdown()} (which is also done by a JVM shutdown hook) to
+ * flush any queued traces.  Shutting down is final - traces submitted after
+ * it are written by the thread that submits them, as nothing would be left
+ * to flush a restarted queue.</p>
+ *******************************************************************************/
+public class ProcessTraceWriter
+{
+   private static final QLogger LOG = QLogger.getLogger(ProcessTraceWriter.class);
+
+   private static ProcessTraceWriter processTraceWriter = null;
+
+   private static final long POLL_MILLIS               = 100;
+   private static final long SHUTDOWN_TIMEOUT_MILLIS   = 30 * 1000;
+   private static final long DROP_WARN_INTERVAL_MILLIS = 60 * 1000;
+
+   private static final int DEFAULT_RECORD_INT_PAGE_SIZE = 1000;
+
+   private BlockingQueue<ProcessTraceWrite> queue;
+   private ExecutorService                  executorService;
+
+   private volatile boolean running                = false;
+   private volatile boolean shutDown               = false;
+   private boolean          shutdownHookRegistered = false;
+
+   ///////////////////////////////////////////////////////////////////////
+   // held while offering to the queue, and while stopping - so a trace //
+   // can't be put in the queue after the writer thread has drained it. //
+   ///////////////////////////////////////////////////////////////////////
+   private final Object queueLock = new Object();
+
+   private int maxBatchSize  = 500;
+   private int maxWaitMillis = 250;
+   private int maxRecordIds  = 1_000_000;
+
+   private final AtomicInteger inFlightCount       = new AtomicInteger();
+   private final AtomicLong    queuedRecordIdCount = new AtomicLong();
+   private final AtomicLong    enqueuedCount       = new AtomicLong();
+   private final AtomicLong    droppedCount        = new AtomicLong();
+   private final AtomicLong    writtenCount        = new AtomicLong();
+   private final AtomicLong    failedCount         = new AtomicLong();
+   private final AtomicLong    lastDropWarnMillis  = new AtomicLong();
+   private final AtomicLong    droppedSinceWarn    = new AtomicLong();
+
+
+
+   /*******************************************************************************
+    ** Singleton constructor
+    *******************************************************************************/
+   private ProcessTraceWriter()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Singleton accessor
+    *******************************************************************************/
+   public static synchronized ProcessTraceWriter getInstance()
+   {
+      if(processTraceWriter == null)
+      {
+         processTraceWriter = new ProcessTraceWriter();
+      }
+      return (processTraceWriter);
+   }
+
+
+
+   /*******************************************************************************
+    ** replace the singleton with a new writer, that isn't shut down - as a
+    ** restart of the JVM would.  For tests.
+    *******************************************************************************/
+   static synchronized void resetInstance()
+   {
+      processTraceWriter = new ProcessTraceWriter();
+   }
+
+
+
+   /***************************************************************************
+    * store the records for a process trace - either right now, or, if the
+    * write-behind writer is enabled (and not shut down), by putting them in
+    * the queue, for the writer thread to store later.
+    ***************************************************************************/
+   public void submit(ProcessTraceWrite processTraceWrite) throws QException
+   {
+      StandardProcessTraceQBitConfig config = StandardProcessTracer.getStandardProcessTraceQBitConfig();
+      if(config == null || !config.getUseWriteBehindWriter() || shutDown)
+      {
+         write(List.of(processTraceWrite));
+         return;
+      }
+
+      if(!running)
+      {
+         start(config);
+      }
+
+      long recordIdCount = processTraceWrite.getRecordIdCount();
+      synchronized(queueLock)
+      {
+         //////////////////////////////////////////////////////////////////////////
+         // each queued trace holds its summary lines' lists of record ids - so  //
+         // a trace that would put too many of them in the queue is written here //
+         // instead (below), keeping the queue's memory bounded.                 //
+         //////////////////////////////////////////////////////////////////////////
+         boolean tooManyRecordIds = recordIdCount > 0 && queuedRecordIdCount.get() + recordIdCount > maxRecordIds;
+         if(running && !tooManyRecordIds)
+         {
+            ////////////////////////////////////////////////////////////////////////////////
+            // count it as in-flight before offering it, so that a concurrent flush can't //
+            // see an empty queue & zero in-flight while this trace is being handed off.  //
+            ////////////////////////////////////////////////////////////////////////////////
+            inFlightCount.incrementAndGet();
+            if(queue.offer(processTraceWrite))
+            {
+               enqueuedCount.incrementAndGet();
+               queuedRecordIdCount.addAndGet(recordIdCount);
+            }
+            else
+            {
+               inFlightCount.decrementAndGet();
+               droppedCount.incrementAndGet();
+               warnOfDrop();
+            }
+            return;
+         }
+      }
+
+      ///////////////////////////////////////////////////////////////////////
+      // too big to queue - or, the writer was shut down (racing with this //
+      // submit), so nothing would take this trace off the queue.  either  //
+      // way, write it right here.                                         //
+      ///////////////////////////////////////////////////////////////////////
+      write(List.of(processTraceWrite));
+   }
+
+
+
+   /***************************************************************************
+    * log (at most once per interval, with the count since the last time) that
+    * traces were dropped, as their data is lost.
+    ***************************************************************************/
+   private void warnOfDrop()
+   {
+      droppedSinceWarn.incrementAndGet();
+
+      long now      = System.currentTimeMillis();
+      long lastWarn = lastDropWarnMillis.get();
+      if(now - lastWarn >= DROP_WARN_INTERVAL_MILLIS && lastDropWarnMillis.compareAndSet(lastWarn, now))
+      {
+         LOG.warn("Dropped process traces - write-behind queue is full", logPair("droppedSinceLastWarning", droppedSinceWarn.getAndSet(0)), logPair("droppedCount", getDroppedCount()), logPair("queueCapacity", queue.size() + queue.remainingCapacity()));
+      }
+   }
+
+
+
+   /***************************************************************************
+    * start the writer thread (unless it is already running, or has been shut
+    * down), with a new queue, sized per the config.
+    ***************************************************************************/
+   private synchronized void start(StandardProcessTraceQBitConfig config)
+   {
+      if(running || shutDown)
+      {
+         return;
+      }
+
+      queue = new ArrayBlockingQueue<>(Math.max(1, config.getWriteBehindQueueCapacity()));
+
+      maxBatchSize = Math.max(1, config.getWriteBehindMaxBatchSize());
+      maxWaitMillis = Math.max(0, config.getWriteBehindMaxWaitMillis());
+      maxRecordIds = Math.max(0, config.getWriteBehindMaxRecordIds());
+
+      running = true;
+      executorService = Executors.newSingleThreadExecutor(new PrefixedDefaultThreadFactory("ProcessTraceWriter"));
+      executorService.submit(this::runWriterLoop);
+
+      if(!shutdownHookRegistered)
+      {
+         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "ProcessTraceWriter-shutdown"));
+         shutdownHookRegistered = true;
+      }
+
+      LOG.info("Started process trace write-behind writer", logPair("queueCapacity", queue.remainingCapacity()), logPair("maxBatchSize", maxBatchSize));
+   }
+
+
+
+   /***************************************************************************
+    * body of the writer thread - take batches of traces off the queue, and
+    * write them - until shutdown, at which point, whatever is left in the
+    * queue is written too.
+    ***************************************************************************/
+   private void runWriterLoop()
+   {
+      List<ProcessTraceWrite> batch = new ArrayList<>();
+      while(running || !queue.isEmpty())
+      {
+         try
+         {
+            ProcessTraceWrite first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if(first == null)
+            {
+               continue;
+            }
+
+            /////////////////////////////////////////////////////////////////////////////
+            // wait (up to maxWaitMillis) for more traces to arrive, to fill the batch //
+            /////////////////////////////////////////////////////////////////////////////
+            batch.add(first);
+            long deadline = System.currentTimeMillis() + maxWaitMillis;
+            while(batch.size() < maxBatchSize)
+            {
+               queue.drainTo(batch, maxBatchSize - batch.size());
+               long waitMillis = deadline - System.currentTimeMillis();
+               if(batch.size() >= maxBatchSize || waitMillis <= 0 || !running)
+               {
+                  break;
+               }
+
+               ProcessTraceWrite next = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+               if(next == null)
+               {
+                  break;
+               }
+               batch.add(next);
+            }
+
+            writeBatch(batch);
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            writeBatch(batch);
+            return;
+         }
+         finally
+         {
+            batch.clear();
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * write a batch of traces from the queue.  Runs in the writer thread, so it
+    * has to set up the QContext for each QInstance that the traces came from.
+    ***************************************************************************/
+   private void writeBatch(List<ProcessTraceWrite> batch)
+   {
+      if(batch.isEmpty())
+      {
+         return;
+      }
+
+      Map<QInstance, List<ProcessTraceWrite>> batchByInstance = new IdentityHashMap<>();
+      for(ProcessTraceWrite processTraceWrite : batch)
+      {
+         batchByInstance.computeIfAbsent(processTraceWrite.getQInstance(), k -> new ArrayList<>()).add(processTraceWrite);
+      }
+
+      for(Map.Entry<QInstance, List<ProcessTraceWrite>> entry : batchByInstance.entrySet())
+      {
+         int  size          = entry.getValue().size();
+         long recordIdCount = entry.getValue().stream().mapToLong(ProcessTraceWrite::getRecordIdCount).sum();
+         try
+         {
+            QContext.init(entry.getKey(), new QSystemUserSession());
+            write(entry.getValue());
+            writtenCount.addAndGet(size);
+         }
+         catch(Exception e)
+         {
+            if(size == 1)
+            {
+               failedCount.incrementAndGet();
+               LOG.warn("Error writing process trace records", e);
+            }
+            else
+            {
+               ///////////////////////////////////////////////////////////////////////////
+               // one bad trace shouldn't cost the whole batch - so write each trace on //
+               // its own, carrying on from whatever the batch had stored of it (which  //
+               // write clears from the trace as it goes), so nothing is stored twice.  //
+               ///////////////////////////////////////////////////////////////////////////
+               LOG.info("Error writing batch of process trace records - retrying each trace on its own", e, logPair("count", size));
+               for(ProcessTraceWrite processTraceWrite : entry.getValue())
+               {
+                  try
+                  {
+                     write(List.of(processTraceWrite));
+                     writtenCount.incrementAndGet();
+                  }
+                  catch(Exception retryException)
+                  {
+                     failedCount.incrementAndGet();
+                     LOG.warn("Error writing process trace records", retryException);
+                  }
+               }
+            }
+         }
+         finally
+         {
+            QContext.clear();
+            inFlightCount.addAndGet(-size);
+            queuedRecordIdCount.addAndGet(-recordIdCount);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * store the records for a list of process traces, using one action per table
+    * (except for summary line record ids, which are stored in pages, to keep
+    * memory use and transaction sizes bounded).  Requires the QContext to be
+    * set up by the caller.
+    *
+    * <p>As each part of the traces is stored, it is cleared from them (and
+    * summary lines get their ids) - so that if this fails part-way, the traces
+    * can be written again (e.g., each on its own), without storing any part of
+    * them twice.</p>
+    ***************************************************************************/
+   public static void write(List<ProcessTraceWrite> processTraceWrites) throws QException
+   {
+      insertHeaders(processTraceWrites);
+
+      List<QRecord>                          headerUpdates        = new ArrayList<>();
+      List<ProcessTraceSummaryLine>          summaryLines         = new ArrayList<>();
+      List<ProcessTraceStep>                 steps                = new ArrayList<>();
+      List<ProcessTraceEtlPageTimeline>      etlPageTimelines     = new ArrayList<>();
+      List<ProcessTraceBackendActivityStats> backendActivityStats = new ArrayList<>();
+
+      for(ProcessTraceWrite processTraceWrite : processTraceWrites)
+      {
+         if(processTraceWrite.getHeaderUpdate() != null)
+         {
+            headerUpdates.add(processTraceWrite.getHeaderUpdate());
+         }
+
+         if(processTraceWrite.getSummaryLines() != null)
+         {
+            for(ProcessTraceSummaryLine summaryLine : processTraceWrite.getSummaryLines())
+            {
+               if(summaryLine.getId() == null)
+               {
+                  summaryLines.add(summaryLine);
+               }
+            }
+         }
+
+         if(processTraceWrite.getSteps() != null)
+         {
+            steps.addAll(processTraceWrite.getSteps());
+         }
+
+         if(processTraceWrite.getEtlPageTimeline() != null)
+         {
+            etlPageTimelines.add(processTraceWrite.getEtlPageTimeline());
+         }
+
+         if(processTraceWrite.getBackendActivityStats() != null)
+         {
+            backendActivityStats.addAll(processTraceWrite.getBackendActivityStats());
+         }
+      }
+
+      if(!headerUpdates.isEmpty())
+      {
+         new UpdateAction().execute(new UpdateInput(ProcessTrace.TABLE_NAME).withRecords(headerUpdates));
+         processTraceWrites.forEach(processTraceWrite -> processTraceWrite.withHeaderUpdate(null));
+      }
+
+      if(!summaryLines.isEmpty())
+      {
+         InsertOutput insertOutput = new InsertAction().execute(new InsertInput(ProcessTraceSummaryLine.TABLE_NAME).withRecordEntities(summaryLines));
+         for(int i = 0; i < summaryLines.size(); i++)
+         {
+            summaryLines.get(i).setId(insertOutput.getRecords().get(i).getValueLong("id"));
+         }
+      }
+
+      insertSummaryLineRecordIds(processTraceWrites);
+      processTraceWrites.forEach(processTraceWrite -> processTraceWrite.withSummaryLines(null));
+
+      if(!steps.isEmpty())
+      {
+         new InsertAction().execute(new InsertInput(ProcessTraceStep.TABLE_NAME).withRecordEntities(steps));
+         processTraceWrites.forEach(processTraceWrite -> processTraceWrite.withSteps(null));
+      }
+
+      if(!etlPageTimelines.isEmpty())
+      {
+         new InsertAction().execute(new InsertInput(ProcessTraceEtlPageTimeline.TABLE_NAME).withRecordEntities(etlPageTimelines));
+         processTraceWrites.forEach(processTraceWrite -> processTraceWrite.withEtlPageTimeline(null));
+      }
+
+      if(!backendActivityStats.isEmpty())
+      {
+         new InsertAction().execute(new InsertInput(ProcessTraceBackendActivityStats.TABLE_NAME).withRecordEntities(backendActivityStats));
+         processTraceWrites.forEach(processTraceWrite -> processTraceWrite.withBackendActivityStats(null));
+      }
+   }
+
+
+
+   /***************************************************************************
+    * insert the record id records for the traces' summary lines (which must
+    * have been inserted, to have ids) - walking each line's primary keys, and
+    * inserting a page of records at a time, so that only one page (per type)
+    * is ever in memory.
+    *
+    * <p>Each line's keys are stored according to the type of its table's
+    * primary key (resolved once, by the tracer) - as processTraceSummaryLineRecordInt
+    * records (or, an encoded processTraceSummaryLineRecordIdSet), or, if typed
+    * record ids are configured, processTraceSummaryLineRecordLong or -String
+    * records.  Otherwise, only keys that are integers are stored.</p>
+    *
+    * <p>As each page is inserted, the traces are told how many of each line's
+    * keys are stored - and keys that already are (by an earlier attempt) are
+    * skipped.</p>
+    ***************************************************************************/
+   private static void insertSummaryLineRecordIds(List<ProcessTraceWrite> processTraceWrites) throws QException
+   {
+      StandardProcessTraceQBitConfig config    = StandardProcessTracer.getStandardProcessTraceQBitConfig();
+      QInstance                      qInstance = QContext.getQInstance();
+
+      boolean useRecordIdSets  = config != null && config.getUseEncodedSummaryLineRecordIds() && qInstance.getTable(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME) != null;
+      boolean useRecordLongs   = config != null && config.getUseTypedSummaryLineRecordIds() && qInstance.getTable(ProcessTraceSummaryLineRecordLong.TABLE_NAME) != null;
+      boolean useRecordStrings = config != null && config.getUseTypedSummaryLineRecordIds() && qInstance.getTable(ProcessTraceSummaryLineRecordString.TABLE_NAME) != null;
+
+      int pageSize = config == null ? DEFAULT_RECORD_INT_PAGE_SIZE : config.getSummaryLineRecordIdPageSize();
+
+      RecordIdPage recordIdSets = new RecordIdPage(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME, Integer.MAX_VALUE);
+      RecordIdPage intPage      = new RecordIdPage(ProcessTraceSummaryLineRecordInt.TABLE_NAME, pageSize);
+      RecordIdPage longPage     = new RecordIdPage(ProcessTraceSummaryLineRecordLong.TABLE_NAME, pageSize);
+      RecordIdPage stringPage   = new RecordIdPage(ProcessTraceSummaryLineRecordString.TABLE_NAME, pageSize);
+
+      for(ProcessTraceWrite processTraceWrite : processTraceWrites)
+      {
+         for(ProcessTraceSummaryLine summaryLine : CollectionUtils.nonNullList(processTraceWrite.getSummaryLines()))
+         {
+            SummaryLineRecordIds recordIds     = processTraceWrite.getSummaryLineRecordIds(summaryLine);
+            Long                 summaryLineId = summaryLine.getId();
+            if(recordIds == null || summaryLineId == null || recordIds.primaryKeys() == null)
+            {
+               continue;
+            }
+
+            int storedCount = processTraceWrite.getStoredRecordIdCount(summaryLine);
+            if(storedCount >= recordIds.primaryKeys().size())
+            {
+               continue;
+            }
+
+            /////////////////////////////////////////////////////////////////////////
+            // types without their own table (e.g., when not configured) fall back //
+            // to integer - storing just the keys that can be converted to ints    //
+            /////////////////////////////////////////////////////////////////////////
+            ProcessTraceRecordIdType recordIdType = Objects.requireNonNullElse(recordIds.recordIdType(), ProcessTraceRecordIdType.INTEGER);
+            if((recordIdType == ProcessTraceRecordIdType.LONG && !useRecordLongs) || (recordIdType == ProcessTraceRecordIdType.STRING && !useRecordStrings))
+            {
+               recordIdType = ProcessTraceRecordIdType.INTEGER;
+            }
+
+            if(recordIdType == ProcessTraceRecordIdType.INTEGER && useRecordIdSets)
+            {
+               recordIdSets.add(buildRecordIdSet(summaryLineId, recordIds), processTraceWrite, summaryLine, recordIds.primaryKeys().size());
+               continue;
+            }
+
+            ListIterator<Serializable> iterator = recordIds.primaryKeys().listIterator(storedCount);
+            while(iterator.hasNext())
+            {
+               int          keyCount   = iterator.nextIndex() + 1;
+               Serializable primaryKey = iterator.next();
+               switch(recordIdType)
+               {
+                  case INTEGER ->
+                  {
+                     Integer recordId = ProcessTraceRecordIdType.toInteger(primaryKey);
+                     if(recordId != null)
+                     {
+                        intPage.add(new ProcessTraceSummaryLineRecordInt().withProcessTraceSummaryLineId(summaryLineId).withQqqTableId(recordIds.qqqTableId()).withRecordId(recordId), processTraceWrite, summaryLine, keyCount);
+                     }
+                  }
+                  case LONG ->
+                  {
+                     Long recordId = ProcessTraceRecordIdType.toLong(primaryKey);
+                     if(recordId != null)
+                     {
+                        longPage.add(new ProcessTraceSummaryLineRecordLong().withProcessTraceSummaryLineId(summaryLineId).withQqqTableId(recordIds.qqqTableId()).withRecordId(recordId), processTraceWrite, summaryLine, keyCount);
+                     }
+                  }
+                  case STRING ->
+                  {
+                     if(primaryKey != null)
+                     {
+                        stringPage.add(new ProcessTraceSummaryLineRecordString().withProcessTraceSummaryLineId(summaryLineId).withQqqTableId(recordIds.qqqTableId()).withRecordId(String.valueOf(primaryKey)), processTraceWrite, summaryLine, keyCount);
+                     }
+                  }
+                  default -> throw new IllegalStateException("Unexpected record id type: " + recordIdType);
+               }
+            }
+         }
+      }
+
+      intPage.insert();
+      longPage.insert();
+      stringPage.insert();
+      recordIdSets.insert();
+   }
+
+
+
+   /***************************************************************************
+    * a page of summary line record id records, which inserts itself when it
+    * fills up - and then tells the traces the records came from how many of
+    * each line's keys are stored.
+    ***************************************************************************/
+   private static class RecordIdPage
+   {
+      private final String tableName;
+      private final int    pageSize;
+
+      private final List<QRecordEntity>       records      = new ArrayList<>();
+      private final List<StoredRecordIdCount> storedCounts = new ArrayList<>();
+
+
+
+      /***************************************************************************
+       * how many keys of a trace's summary line are stored, once a record is.
+       ***************************************************************************/
+      private record StoredRecordIdCount(ProcessTraceWrite processTraceWrite, ProcessTraceSummaryLine summaryLine, int keyCount)
+      {
+      }
+
+
+
+      /*******************************************************************************
+       ** Constructor
+       **
+       *******************************************************************************/
+      RecordIdPage(String tableName, int pageSize)
+      {
+         this.tableName = tableName;
+         this.pageSize = pageSize;
+      }
+
+
+
+      /***************************************************************************
+       * add a record to the page (inserting the page, if it is then full).
+       *
+       * @param keyCount how many of the line's keys are stored, once this record is.
+       ***************************************************************************/
+      void add(QRecordEntity record, ProcessTraceWrite processTraceWrite, ProcessTraceSummaryLine summaryLine, int keyCount) throws QException
+      {
+         records.add(record);
+         storedCounts.add(new StoredRecordIdCount(processTraceWrite, summaryLine, keyCount));
+         if(records.size() >= pageSize)
+         {
+            insert();
+         }
+      }
+
+
+
+      /***************************************************************************
+       * insert the records in the page (if it has any), and clear it (so the
+       * caller can keep adding to it).
+       ***************************************************************************/
+      void insert() throws QException
+      {
+         if(!records.isEmpty())
+         {
+            new InsertAction().execute(new InsertInput(tableName).withRecordEntities(records));
+            for(StoredRecordIdCount storedCount : storedCounts)
+            {
+               storedCount.processTraceWrite().setStoredRecordIdCount(storedCount.summaryLine(), storedCount.keyCount());
+            }
+            records.clear();
+            storedCounts.clear();
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * alternative to processTraceSummaryLineRecordInt records - build one
+    * processTraceSummaryLineRecordIdSet record for a summary line, holding all
+    * of its record ids, encoded.
+    ***************************************************************************/
+   private static ProcessTraceSummaryLineRecordIdSet buildRecordIdSet(Long summaryLineId, SummaryLineRecordIds recordIds)
+   {
+      EncodedRecordIdSet encodedRecordIdSet = EncodedRecordIdSet.of(recordIds.primaryKeys());
+      return (new ProcessTraceSummaryLineRecordIdSet()
+         .withProcessTraceSummaryLineId(summaryLineId)
+         .withQqqTableId(recordIds.qqqTableId())
+         .withRecordCount(encodedRecordIdSet.size())
+         .withRunCount(encodedRecordIdSet.getRunCount())
+         .withEncodedRecordIds(encodedRecordIdSet.encode()));
+   }
+
+
+
+   /***************************************************************************
+    * insert the header records for any traces that have them (e.g., from
+    * single-write header mode), in one insert action - then pass the ids that
+    * they got down to their child records.
+    ***************************************************************************/
+   private static void insertHeaders(List<ProcessTraceWrite> processTraceWrites) throws QException
+   {
+      List<ProcessTraceWrite> writesWithHeaderInserts = new ArrayList<>();
+      List<QRecord>           headerInserts           = new ArrayList<>();
+      for(ProcessTraceWrite processTraceWrite : processTraceWrites)
+      {
+         if(processTraceWrite.getHeaderInsert() != null)
+         {
+            writesWithHeaderInserts.add(processTraceWrite);
+            headerInserts.add(processTraceWrite.getHeaderInsert());
+         }
+      }
+
+      if(headerInserts.isEmpty())
+      {
+         return;
+      }
+
+      InsertOutput insertOutput = new InsertAction().execute(new InsertInput(ProcessTrace.TABLE_NAME).withRecords(headerInserts));
+      for(int i = 0; i < writesWithHeaderInserts.size(); i++)
+      {
+         ProcessTraceWrite processTraceWrite = writesWithHeaderInserts.get(i);
+         QRecord           insertedHeader    = insertOutput.getRecords().get(i);
+         Long              processTraceId    = insertedHeader.getValueLong("id");
+         processTraceWrite.withHeaderInsert(null);
+
+         if(processTraceId == null || CollectionUtils.nullSafeHasContents(insertedHeader.getErrors()))
+         {
+            ////////////////////////////////////////////////////////////////////////
+            // without a header, there's nothing for the child records to join to //
+            ////////////////////////////////////////////////////////////////////////
+            LOG.warn("Error inserting processTrace header record", logPair("processUUID", insertedHeader.getValueString("processUUID")), logPair("errors", insertedHeader.getErrors()));
+            processTraceWrite.withSummaryLines(null).withSteps(null).withEtlPageTimeline(null).withBackendActivityStats(null);
+            continue;
+         }
+
+         processTraceWrite.applyProcessTraceId(processTraceId);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * wait for all traces that have been submitted to the write-behind queue to
+    * be written.
+    *
+    * @param timeoutMillis max time to wait
+    * @return true if everything was written; false if timed out.
+    ***************************************************************************/
+   public boolean flush(long timeoutMillis)
+   {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      while(inFlightCount.get() > 0)
+      {
+         if(System.currentTimeMillis() > deadline)
+         {
+            return (false);
+         }
+         SleepUtils.sleep(10, TimeUnit.MILLISECONDS);
+      }
+      return (true);
+   }
+
+
+
+   /***************************************************************************
+    * stop the writer thread - after it writes everything in the queue (waiting
+    * up to 30 seconds for that to happen).  From then on, traces are written
+    * by the threads that submit them - the writer is not started again.
+    ***************************************************************************/
+   public synchronized void shutdown()
+   {
+      synchronized(queueLock)
+      {
+         shutDown = true;
+         running = false;
+      }
+
+      if(executorService == null)
+      {
+         return;
+      }
+      executorService.shutdown();
+      try
+      {
+         if(!executorService.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+         {
+            LOG.warn("Timed out waiting for process trace writer to flush its queue", logPair("queueDepth", getQueueDepth()));
+            executorService.shutdownNow();
+         }
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         executorService.shutdownNow();
+      }
+
+      executorService = null;
+      LOG.info("Stopped process trace write-behind writer", logPair("writtenCount", getWrittenCount()), logPair("droppedCount", getDroppedCount()), logPair("failedCount", getFailedCount()));
+   }
+
+
+
+   /***************************************************************************
+    * number of traces currently waiting in the write-behind queue.
+    ***************************************************************************/
+   public int getQueueDepth()
+   {
+      return (queue == null ? 0 : queue.size());
+   }
+
+
+
+   /***************************************************************************
+    * number of summary line record ids held by the traces in (or being written
+    * from) the write-behind queue.
+    ***************************************************************************/
+   public long getQueuedRecordIdCount()
+   {
+      return (queuedRecordIdCount.get());
+   }
+
+
+
+   /***************************************************************************
+    * number of traces that have been put into the write-behind queue.
+    ***************************************************************************/
+   public long getEnqueuedCount()
+   {
+      return (enqueuedCount.get());
+   }
+
+
+
+   /***************************************************************************
+    * number of traces that were dropped, because the write-behind queue was full.
+    ***************************************************************************/
+   public long getDroppedCount()
+   {
+      return (droppedCount.get());
+   }
+
+
+
+   /***************************************************************************
+    * number of traces from the write-behind queue that have been written.
+    ***************************************************************************/
+   public long getWrittenCount()
+   {
+      return (writtenCount.get());
+   }
+
+
+
+   /***************************************************************************
+    * number of traces from the write-behind queue that failed to be written.
+    ***************************************************************************/
+   public long getFailedCount()
+   {
+      return (failedCount.get());
+   }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.net.InetAddress;
+import java.time.Instant;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ * "Snowflake" style implementation of ProcessTraceIdGeneratorInterface.
+ *
+ * <p>Ids are positive longs, made up of (from high bits to low):</p>
+ * <ul>
+ *    <li>41 bits - milliseconds since {@link #EPOCH} (good for ~69 years)</li>
+ *    <li>10 bits - node id (0-1023) - which must be unique across all of the
+ *    JVMs writing to the same processTrace table</li>
+ *    <li>12 bits - sequence within the millisecond (up to 4096 ids per
+ *    millisecond, per node)</li>
+ * </ul>
+ *
+ * <p>If the node id isn't given, one is derived from a hash of the host name
+ * and process id - which is usually, but not certainly, unique - so deployments
+ * with more than a few nodes should assign them explicitly.</p>
+ *
+ * <p>If the system clock moves backward (or if a millisecond's sequence is
+ * used up), ids continue to be issued from the last-used timestamp (or the one
+ * after it), so they never repeat and never decrease.</p>
+ *******************************************************************************/
+public class SnowflakeProcessTraceIdGenerator implements ProcessTraceIdGeneratorInterface
+{
+   private static final QLogger LOG = QLogger.getLogger(SnowflakeProcessTraceIdGenerator.class);
+
+   public static final long EPOCH = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+   private static final int NODE_ID_BITS  = 10;
+   private static final int SEQUENCE_BITS = 12;
+
+   public static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+
+   private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+   private final int nodeId;
+
+   private long lastMillis = -1;
+   private long sequence   = 0;
+
+
+
+   /*******************************************************************************
+    ** Constructor - deriving the node id from this host & process.
+    *******************************************************************************/
+   public SnowflakeProcessTraceIdGenerator()
+   {
+      this(deriveNodeId());
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param nodeId id (0 to {@link #MAX_NODE_ID}) that is unique to this JVM
+    ** amongst all of the ones that write to the same processTrace table.
+    *******************************************************************************/
+   public SnowflakeProcessTraceIdGenerator(int nodeId)
+   {
+      if(nodeId < 0 || nodeId > MAX_NODE_ID)
+      {
+         throw (new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + " (was " + nodeId + ")"));
+      }
+
+      this.nodeId = nodeId;
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   @Override
+   public synchronized Long nextId()
+   {
+      long millis = Math.max(System.currentTimeMillis() - EPOCH, lastMillis);
+
+      if(millis == lastMillis)
+      {
+         sequence = (sequence + 1) & SEQUENCE_MASK;
+         if(sequence == 0)
+         {
+            ////////////////////////////////////////////////////////////////////////
+            // used up this millisecond's sequence - so borrow the next one.  the //
+            // clock catches up (and the Math.max above keeps us from reusing it) //
+            ////////////////////////////////////////////////////////////////////////
+            millis = lastMillis + 1;
+         }
+      }
+      else
+      {
+         sequence = 0;
+      }
+
+      lastMillis = millis;
+      return ((millis << (NODE_ID_BITS + SEQUENCE_BITS)) | ((long) nodeId << SEQUENCE_BITS) | sequence);
+   }
+
+
+
+   /***************************************************************************
+    * get the time that an id from this generator was issued.
+    ***************************************************************************/
+   public static Instant getInstantFromId(long id)
+   {
+      return (Instant.ofEpochMilli((id >>> (NODE_ID_BITS + SEQUENCE_BITS)) + EPOCH));
+   }
+
+
+
+   /***************************************************************************
+    * get the node id that an id from this generator was issued by.
+    ***************************************************************************/
+   public static int getNodeIdFromId(long id)
+   {
+      return ((int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID));
+   }
+
+
+
+   /***************************************************************************
+    * make a node id from a hash of this host's name and this process's id.
+    ***************************************************************************/
+   static int deriveNodeId()
+   {
+      String hostName;
+      try
+      {
+         hostName = InetAddress.getLocalHost().getHostName();
+      }
+      catch(Exception e)
+      {
+         hostName = "unknown";
+      }
+
+      int nodeId = (hostName + ":" + ProcessHandle.current().pid()).hashCode() & MAX_NODE_ID;
+      LOG.info("Derived node id for processTrace id generator", logPair("hostName", hostName), logPair("nodeId", nodeId));
+      return (nodeId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for nodeId
+    *******************************************************************************/
+   public int getNodeId()
+   {
+      return (this.nodeId);
+   }
+
+}
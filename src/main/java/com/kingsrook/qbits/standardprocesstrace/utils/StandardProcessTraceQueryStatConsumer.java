@@ -22,6 +22,8 @@
 package com.kingsrook.qbits.standardprocesstrace.utils;
 
 
+import java.time.Instant;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
 import com.kingsrook.qqq.backend.core.actions.tables.helpers.QueryStatConsumerInterface;
 import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
@@ -32,8 +34,9 @@ import com.kingsrook.qqq.backend.core.model.querystats.QueryStat;
  * Standard Process Trace's implementation of a QueryStat consumer.
  *
  * <p>That is, to accumulate them in the {@link ProcessTraceBackendActivityStatsManager},
- * associated with the processTraceId in the user's session, so they can be stored
- * when the process trace is stored.</p>
+ * associated with the process trace bound to the current thread (see
+ * {@link ProcessTraceContext}) - or else, the processTraceId in the user's
+ * session - so they can be stored when the process trace is stored.</p>
  *******************************************************************************/
 public class StandardProcessTraceQueryStatConsumer implements QueryStatConsumerInterface
 {
@@ -45,23 +48,88 @@ public class StandardProcessTraceQueryStatConsumer implements QueryStatConsumerI
    @Override
    public void accept(QueryStat queryStat)
    {
+      ////////////////////////////////////////////////////////////////////////
+      // the QueryStatManager gives us the stat as the action finishes (see //
+      // getDurationMillis) - so take that as its end, before anything else //
+      ////////////////////////////////////////////////////////////////////////
+      long finishedMillis = System.currentTimeMillis();
+
       try
       {
-         String processTraceId = QContext.getQSession().getValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY);
-         if(processTraceId == null)
+         /////////////////////////////////////////////////////////////////////
+         // normally, the thread running the process has its trace context  //
+         // bound - so the stats go straight to that process's accumulator. //
+         // else (e.g., a thread that the context wasn't carried over to),  //
+         // fall back to the processTraceId in the session.                 //
+         /////////////////////////////////////////////////////////////////////
+         ProcessTraceContext context        = ProcessTraceContext.current();
+         String              processTraceId = null;
+         if(context == null)
          {
-            return;
+            processTraceId = QContext.getQSession() == null ? null : QContext.getQSession().getValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY);
+            if(processTraceId == null)
+            {
+               return;
+            }
          }
 
-         String backendName = QContext.getQInstance().getBackendForTable(queryStat.getTableName()).getName();
-         String backendAction = queryStat.getBackendAction();
+         ///////////////////////////////////////////////////////////////////////
+         // in batched mode, just buffer the stat (on this thread) - it'll be //
+         // added to the process's stats when the buffer is drained           //
+         ///////////////////////////////////////////////////////////////////////
+         StandardProcessTraceQBitConfig config = StandardProcessTracer.getStandardProcessTraceQBitConfig();
+         if(context != null && config != null && config.getUseBatchedQueryStatIngestion())
+         {
+            ProcessTraceQueryStatBuffer.append(context, QContext.getQInstance(), queryStat, getDurationMillis(queryStat, finishedMillis), config.getQueryStatBatchSize());
+            return;
+         }
 
-         ProcessTraceBackendActivityStatsManager.Key key = new ProcessTraceBackendActivityStatsManager.Key(backendName, queryStat.getTableName(), backendAction);
-         ProcessTraceBackendActivityStatsManager.getInstance().add(Long.valueOf(processTraceId), key, 1, queryStat.getRecordCount(), queryStat.getFirstResultMillis());
+         //////////////////////////////////////////////////////////////////
+         // use the interned key for the table & action (which knows its //
+         // backend) - so nothing is looked up in the instance, or       //
+         // allocated, per query stat                                    //
+         //////////////////////////////////////////////////////////////////
+         ProcessTraceBackendActivityStatsManager     manager = ProcessTraceBackendActivityStatsManager.getInstance();
+         ProcessTraceBackendActivityStatsManager.Key key     = manager.getKey(QContext.getQInstance(), queryStat.getTableName(), queryStat.getBackendAction());
+         if(context != null)
+         {
+            manager.add(context, key, 1, queryStat.getRecordCount(), getDurationMillis(queryStat, finishedMillis), queryStat.getFirstResultMillis());
+         }
+         else
+         {
+            manager.add(Long.parseLong(processTraceId), key, 1, queryStat.getRecordCount(), getDurationMillis(queryStat, finishedMillis), queryStat.getFirstResultMillis());
+         }
       }
       catch(Exception e)
       {
          LOG.warn("Error accepting query stats for process trace", e);
       }
    }
+
+
+
+   /***************************************************************************
+    * get the full duration of a query - from its start until it finished -
+    * rather than just the time to its first result, which understates streamed
+    * queries and large inserts.  Falls back to the first-result millis if the
+    * stat has no start.
+    *
+    * <p>QueryStat has no end timestamp (or duration) - so the end is the time
+    * the stat was given to {@link #accept(QueryStat)}, which the
+    * QueryStatManager does synchronously, in the thread that ran the action,
+    * as it finishes (e.g., after the last page of a streamed query has gone
+    * through its pipe).  That end is taken once, on the way in, and passed
+    * along - never re-taken later (e.g., when buffered stats are drained).</p>
+    ***************************************************************************/
+   static Integer getDurationMillis(QueryStat queryStat, long finishedMillis)
+   {
+      Instant startTimestamp = queryStat.getStartTimestamp();
+      if(startTimestamp == null)
+      {
+         return (queryStat.getFirstResultMillis());
+      }
+
+      long durationMillis = finishedMillis - startTimestamp.toEpochMilli();
+      return ((int) Math.max(0, Math.min(durationMillis, Integer.MAX_VALUE)));
+   }
 }
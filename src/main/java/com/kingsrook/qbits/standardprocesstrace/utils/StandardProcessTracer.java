@@ -28,14 +28,18 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceEtlPageTimeline;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
-import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
 import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
 import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
-import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
 import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
@@ -47,12 +51,12 @@ import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessInput;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessOutput;
 import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
 import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertOutput;
-import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
-import com.kingsrook.qqq.backend.core.model.processes.QQQProcessTableManager;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QProcessMetaData;
 import com.kingsrook.qqq.backend.core.model.session.QSession;
 import com.kingsrook.qqq.backend.core.model.session.QUser;
-import com.kingsrook.qqq.backend.core.model.tables.QQQTableTableManager;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.StreamedETLWithFrontendProcess;
 import com.kingsrook.qqq.backend.core.processes.tracing.ProcessTracerInterface;
 import com.kingsrook.qqq.backend.core.processes.tracing.ProcessTracerKeyRecordMessage;
@@ -78,8 +82,69 @@ public class StandardProcessTracer implements ProcessTracerInterface
 
    public static final String PROCESS_TRACE_ID_SESSION_KEY = StandardProcessTracer.class.getName() + ".processTraceId";
 
-   private Instant startTime;
-   private Long    processTraceId;
+   ////////////////////////////////////////////////////////////////////////////////
+   // header fields that aren't written until the process finishes (e.g., all of //
+   // them in single-write header mode; else the key record) are held in process //
+   // values under these keys, so they survive a process breaking & resuming.    //
+   ////////////////////////////////////////////////////////////////////////////////
+   private static final String HEADER_STATE_PREFIX                  = StandardProcessTracer.class.getName() + ".header.";
+   private static final String HEADER_STATE_PROCESS_TRACE_ID        = HEADER_STATE_PREFIX + "processTraceId";
+   private static final String HEADER_STATE_START_TIMESTAMP         = HEADER_STATE_PREFIX + "startTimestamp";
+   private static final String HEADER_STATE_QQQ_PROCESS_ID          = HEADER_STATE_PREFIX + "qqqProcessId";
+   private static final String HEADER_STATE_USER_ID                 = HEADER_STATE_PREFIX + "userId";
+   private static final String HEADER_STATE_KEY_RECORD_QQQ_TABLE_ID = HEADER_STATE_PREFIX + "keyRecordQqqTableId";
+   private static final String HEADER_STATE_KEY_RECORD_ID           = HEADER_STATE_PREFIX + "keyRecordId";
+   private static final String HEADER_STATE_UNSAMPLED_BEHAVIOR      = HEADER_STATE_PREFIX + "unsampledBehavior";
+   private static final String HEADER_STATE_BREAK_COUNT             = HEADER_STATE_PREFIX + "breakCount";
+   private static final String HEADER_STATE_BREAK_TIMESTAMP         = HEADER_STATE_PREFIX + "breakTimestamp";
+   private static final String HEADER_STATE_WAITING_MILLIS          = HEADER_STATE_PREFIX + "waitingMillis";
+
+   ///////////////////////////////////////////////////////////////////////////////////
+   // source of provisional (negative, so they can't collide with real ids) ids for //
+   // traces whose header isn't inserted until the process finishes.  they're kept  //
+   // in process state across a break, so they mustn't repeat after a restart -     //
+   // hence, negated snowflake ids (time-based), from a node id picked per JVM.     //
+   ///////////////////////////////////////////////////////////////////////////////////
+   private static SnowflakeProcessTraceIdGenerator provisionalProcessTraceIdGenerator = newProvisionalProcessTraceIdGenerator();
+
+   private Instant      startTime;
+   private Long         processTraceId;
+   private ProcessTrace pendingHeader;
+
+   private Integer keyRecordQqqTableId;
+   private Integer keyRecordId;
+
+   ///////////////////////////////////////////////////////////////////////////
+   // null if this run is being traced - else, what to do since it was not  //
+   // sampled (by the head-based sampling policy, when the process started) //
+   ///////////////////////////////////////////////////////////////////////////
+   private ProcessTraceSamplingPolicy.UnsampledBehavior unsampledBehavior;
+
+   ////////////////////////////////////////////////////////////////////////////
+   // whether this tracer has bound a trace context to the process's thread, //
+   // and what was bound before it (and what processTraceId was in the       //
+   // session before it) - restored when the process breaks or finishes.     //
+   ////////////////////////////////////////////////////////////////////////////
+   private boolean             contextBound;
+   private ProcessTraceContext previousContext;
+   private String              previousSessionProcessTraceId;
+
+   //////////////////////////////////////////////////////////////////////////
+   // the step that's running (if steps are being traced) - when it began, //
+   // and the process's backend activity totals at that time               //
+   //////////////////////////////////////////////////////////////////////////
+   private String                                         currentStepName;
+   private long                                           currentStepStartMillis;
+   private ProcessTraceBackendActivityStatsManager.Totals currentStepStartTotals;
+
+   ///////////////////////////////////////////////////////////////////////////
+   // pages reported by a streamed ETL's steps (if ETL page timelines are   //
+   // being stored) - and when the last one finished (or the step started), //
+   // which is when the next one started waiting to be extracted            //
+   ///////////////////////////////////////////////////////////////////////////
+   private EtlPageTimeline etlPageTimeline;
+   private long            etlPageTimelineStartMillis;
+   private long            lastEtlPageEndMillis;
 
 
 
@@ -89,29 +154,82 @@ public class StandardProcessTracer implements ProcessTracerInterface
    @Override
    public void handleProcessStart(RunProcessInput runProcessInput)
    {
+      ////////////////////////////////////////////////////////////////////////
+      // the advised page size is for the process, not for its trace - so   //
+      // it's published before sampling, whether this run is traced or not. //
+      ////////////////////////////////////////////////////////////////////////
+      publishRecommendedPageSize(runProcessInput);
+
       try
       {
+         //////////////////////////////////////////////////////////////////////////////
+         // head-based sampling - decided before doing any other work, so that a run //
+         // which isn't traced costs next to nothing.  the decision is kept in the   //
+         // process state, so it applies to the rest of the run, even after a break. //
+         //////////////////////////////////////////////////////////////////////////////
+         unsampledBehavior = applySamplingPolicy(runProcessInput);
+         if(unsampledBehavior != null)
+         {
+            runProcessInput.addValue(HEADER_STATE_UNSAMPLED_BEHAVIOR, unsampledBehavior.name());
+            if(unsampledBehavior == ProcessTraceSamplingPolicy.UnsampledBehavior.SKIP)
+            {
+               return;
+            }
+         }
+
          startTime = Instant.now();
          QRecord userRecord = getUser();
 
-         InsertOutput insertOutput = new InsertAction().execute(new InsertInput(ProcessTrace.TABLE_NAME).withRecordEntity(new ProcessTrace()
-            .withQqqProcessId(QQQProcessTableManager.getQQQProcessId(QContext.getQInstance(), runProcessInput.getProcessName()))
+         ProcessTrace processTrace = new ProcessTrace()
+            .withQqqProcessId(ProcessTraceQQQIdCache.getQQQProcessId(QContext.getQInstance(), runProcessInput.getProcessName()))
             .withStartTimestamp(startTime)
             .withUserId(userRecord == null ? null : userRecord.getValueInteger("id"))
-            .withProcessUUID(runProcessInput.getProcessUUID())));
+            .withProcessUUID(runProcessInput.getProcessUUID());
+
+         ///////////////////////////////////////////////////////////////////////////////
+         // if configured with an id generator, the trace's id is known right now, so //
+         // work can be attributed to it without waiting for the header to be stored  //
+         ///////////////////////////////////////////////////////////////////////////////
+         ProcessTraceIdGeneratorInterface processTraceIdGenerator = standardProcessTraceQBitConfig == null ? null : standardProcessTraceQBitConfig.getProcessTraceIdGenerator();
+         if(processTraceIdGenerator != null)
+         {
+            processTrace.setId(processTraceIdGenerator.nextId());
+         }
 
-         processTraceId = insertOutput.getRecords().get(0).getValueLong("id");
+         if(isSingleWriteHeader(runProcessInput.getProcessName()))
+         {
+            ////////////////////////////////////////////////////////////////////////////
+            // don't insert the header now - rather, hold it (here and in the process //
+            // state) until the process finishes.  without a generated id, use a      //
+            // provisional one that stats can be gathered by; the writer replaces it  //
+            // with the real id when the header is stored.                            //
+            ////////////////////////////////////////////////////////////////////////////
+            if(processTrace.getId() == null)
+            {
+               processTrace.setId(-provisionalProcessTraceIdGenerator.nextId());
+            }
+
+            processTraceId = processTrace.getId();
+            pendingHeader = processTrace;
+            storeHeaderState(runProcessInput::addValue);
+         }
+         else
+         {
+            InsertOutput insertOutput = new InsertAction().execute(new InsertInput(ProcessTrace.TABLE_NAME).withRecordEntity(processTrace));
+            processTraceId = insertOutput.getRecords().get(0).getValueLong("id");
+         }
 
          ////////////////////////////////////////////////////////////////////////////////////
-         // store the processTraceId in the session.  this will be used by the             //
-         // ProcessTraceQueryStatConsumer to associated QueryStats with this process trace //
+         // bind a trace context to this thread, and store the processTraceId in the       //
+         // session.  these will be used by the ProcessTraceQueryStatConsumer to associate //
+         // QueryStats with this process trace - the context on this thread, the session   //
+         // on any others (but not for light traces, which don't include stats).           //
          ////////////////////////////////////////////////////////////////////////////////////
-         if(QContext.getQSession() != null)
+         if(unsampledBehavior == null)
          {
-            QContext.getQSession().setValue(PROCESS_TRACE_ID_SESSION_KEY, String.valueOf(processTraceId));
+            ProcessTraceBackendActivityStatsManager.getInstance().initProcess(processTraceId);
+            bindContext();
          }
-
-         ProcessTraceBackendActivityStatsManager.getInstance().initProcess(processTraceId);
       }
       catch(QException e)
       {
@@ -129,9 +247,22 @@ public class StandardProcessTracer implements ProcessTracerInterface
    {
       try
       {
+         restoreUnsampledBehavior(runProcessInput::getValue);
+         if(unsampledBehavior == ProcessTraceSamplingPolicy.UnsampledBehavior.SKIP)
+         {
+            return;
+         }
+
+         recordResume(runProcessInput);
+
          //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
          // if a user is resuming a process, e.g., from a frontend, then we want to put that processTraceId in their session //
          //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+         if(processTraceId == null)
+         {
+            restoreHeaderState(runProcessInput::getValue, runProcessInput.getProcessUUID());
+         }
+
          if(processTraceId == null)
          {
             QRecord processTrace = GetAction.execute(ProcessTrace.TABLE_NAME, Map.of("processUUID", runProcessInput.getProcessUUID()));
@@ -141,9 +272,9 @@ public class StandardProcessTracer implements ProcessTracerInterface
             }
          }
 
-         if(processTraceId != null && QContext.getQSession() != null)
+         if(processTraceId != null && unsampledBehavior == null)
          {
-            QContext.getQSession().setValue(PROCESS_TRACE_ID_SESSION_KEY, String.valueOf(processTraceId));
+            bindContext();
          }
       }
       catch(Exception e)
@@ -189,9 +320,37 @@ public class StandardProcessTracer implements ProcessTracerInterface
    @Override
    public void handleStepStart(RunBackendStepInput runBackendStepInput)
    {
-      /////////////////////////////////
-      // noop in this implementation //
-      /////////////////////////////////
+      try
+      {
+         if(unsampledBehavior != null || processTraceId == null)
+         {
+            return;
+         }
+
+         ///////////////////////////////////////////////////////////////
+         // attribute the process's backend activity to this step, in //
+         // its backend activity stats, until the step finishes       //
+         ///////////////////////////////////////////////////////////////
+         ProcessTraceBackendActivityStatsManager.getInstance().setCurrentStep(processTraceId, runBackendStepInput.getStepName());
+         lastEtlPageEndMillis = System.currentTimeMillis();
+
+         if(!isTracingSteps())
+         {
+            return;
+         }
+
+         //////////////////////////////////////////////////////////////////////
+         // just note the time & totals - the step's record is built when it //
+         // finishes, and held with the process's stats until it finishes    //
+         //////////////////////////////////////////////////////////////////////
+         currentStepName = runBackendStepInput.getStepName();
+         currentStepStartMillis = System.currentTimeMillis();
+         currentStepStartTotals = ProcessTraceBackendActivityStatsManager.getInstance().getTotals(processTraceId);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error handling processTrace step start.", e);
+      }
    }
 
 
@@ -204,15 +363,33 @@ public class StandardProcessTracer implements ProcessTracerInterface
    {
       try
       {
+         if(unsampledBehavior == ProcessTraceSamplingPolicy.UnsampledBehavior.SKIP)
+         {
+            return;
+         }
+
          if(message instanceof ProcessTracerKeyRecordMessage keyRecordMessage)
          {
-            Integer keyTableId = QQQTableTableManager.getQQQTableId(QContext.getQInstance(), keyRecordMessage.getTableName());
+            ///////////////////////////////////////////////////////////////////////////////
+            // rather than updating the header for every message, just keep the latest   //
+            // key record (here, and in the process state, in case the process breaks),  //
+            // to be written along with the rest of the header when the process finishes //
+            ///////////////////////////////////////////////////////////////////////////////
+            keyRecordQqqTableId = ProcessTraceQQQIdCache.getQQQTableId(QContext.getQInstance(), keyRecordMessage.getTableName());
+            keyRecordId = keyRecordMessage.getRecordId();
+            runBackendStepInput.addValue(HEADER_STATE_KEY_RECORD_QQQ_TABLE_ID, keyRecordQqqTableId);
+            runBackendStepInput.addValue(HEADER_STATE_KEY_RECORD_ID, keyRecordId);
 
-            new UpdateAction().execute(new UpdateInput(ProcessTrace.TABLE_NAME).withRecord(new ProcessTrace()
-               .withId(processTraceId)
-               .withKeyRecordQqqTableId(keyTableId)
-               .withKeyRecordId(keyRecordMessage.getRecordId())
-               .toQRecordOnlyChangedFields(true)));
+            if(pendingHeader != null)
+            {
+               pendingHeader
+                  .withKeyRecordQqqTableId(keyRecordQqqTableId)
+                  .withKeyRecordId(keyRecordId);
+            }
+         }
+         else if(message instanceof ProcessTraceEtlPageMessage etlPageMessage)
+         {
+            addEtlPage(etlPageMessage);
          }
       }
       catch(Exception e)
@@ -229,9 +406,18 @@ public class StandardProcessTracer implements ProcessTracerInterface
    @Override
    public void handleStepFinish(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput)
    {
-      /////////////////////////////////
-      // noop in this implementation //
-      /////////////////////////////////
+      /////////////////////////////////////////////////////////////////
+      // step boundary - add any query stats buffered on this thread //
+      // (in batched ingestion mode) to the process's stats          //
+      /////////////////////////////////////////////////////////////////
+      ProcessTraceQueryStatBuffer.drainCurrentThread();
+
+      finishStep();
+
+      if(unsampledBehavior == null && processTraceId != null)
+      {
+         ProcessTraceBackendActivityStatsManager.getInstance().setCurrentStep(processTraceId, null);
+      }
    }
 
 
@@ -242,9 +428,24 @@ public class StandardProcessTracer implements ProcessTracerInterface
    @Override
    public void handleProcessBreak(RunProcessInput runProcessInput, RunProcessOutput runProcessOutput, Exception processException)
    {
-      /////////////////////////////////
-      // noop in this implementation //
-      /////////////////////////////////
+      ///////////////////////////////////////////////////////////////////////////
+      // the thread may go on to do other work (e.g., a pooled request thread) //
+      // while the process waits - so stop attributing its work to this trace  //
+      ///////////////////////////////////////////////////////////////////////////
+      unbindContext();
+
+      try
+      {
+         restoreUnsampledBehavior(runProcessInput::getValue);
+         if(unsampledBehavior != ProcessTraceSamplingPolicy.UnsampledBehavior.SKIP)
+         {
+            recordBreak(runProcessInput);
+         }
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error recording process break in trace", e, logPair("processUUID", () -> runProcessInput.getProcessUUID()));
+      }
    }
 
 
@@ -257,6 +458,29 @@ public class StandardProcessTracer implements ProcessTracerInterface
    {
       try
       {
+         ///////////////////////////////////////////////////////////////////
+         // make sure any query stats buffered on this thread (in batched //
+         // ingestion mode) are in the process's stats before they're     //
+         // collected                                                     //
+         ///////////////////////////////////////////////////////////////////
+         ProcessTraceQueryStatBuffer.drainCurrentThread();
+
+         ////////////////////////////////////////////////////////////////////
+         // in case a step didn't get its finish callback (e.g., it threw) //
+         ////////////////////////////////////////////////////////////////////
+         finishStep();
+
+         restoreUnsampledBehavior(runProcessInput::getValue);
+         if(unsampledBehavior == ProcessTraceSamplingPolicy.UnsampledBehavior.SKIP)
+         {
+            return;
+         }
+
+         if(processTraceId == null)
+         {
+            restoreHeaderState(runProcessInput::getValue, runProcessInput.getProcessUUID());
+         }
+
          if(processTraceId == null)
          {
             QRecord processTrace = GetAction.execute(ProcessTrace.TABLE_NAME, Map.of("processUUID", runProcessInput.getProcessUUID()));
@@ -279,6 +503,15 @@ public class StandardProcessTracer implements ProcessTracerInterface
             Instant endTimestamp = Instant.now();
             Long    millis       = startTime == null ? null : endTimestamp.toEpochMilli() - startTime.toEpochMilli();
 
+            ///////////////////////////////////////////////////////////////////////////
+            // split the runtime into the time the process was actively running, vs. //
+            // waiting (e.g., for a user at a review screen) between its breaks and  //
+            // resumes - each resume having added its wait to the process state.     //
+            ///////////////////////////////////////////////////////////////////////////
+            int  breakCount    = Objects.requireNonNullElse(ValueUtils.getValueAsInteger(runProcessInput.getValue(HEADER_STATE_BREAK_COUNT)), 0);
+            long waitingMillis = Objects.requireNonNullElse(ValueUtils.getValueAsLong(runProcessInput.getValue(HEADER_STATE_WAITING_MILLIS)), 0L);
+            Long activeMillis  = millis == null ? null : Math.max(0, millis - waitingMillis);
+
             ///////////////////////////////////
             // include record count if known //
             ///////////////////////////////////
@@ -288,14 +521,69 @@ public class StandardProcessTracer implements ProcessTracerInterface
                recordCount = runProcessOutput.getValueInteger("recordCount");
             }
 
-            new UpdateAction().execute(new UpdateInput(ProcessTrace.TABLE_NAME).withRecord(new ProcessTrace()
-               .withId(processTraceId)
-               .withEndTimestamp(endTimestamp)
-               .withRuntimeMillis(millis == null ? null : millis.intValue())
-               .withRecordCount(recordCount)
-               .withExceptionMessage(processException == null ? null : processException.getMessage())
-               .toQRecordOnlyChangedFields(true)
-            ));
+            //////////////////////////////////////////////////////////////////////////////
+            // tail-based sampling - now that the whole trace is known (and, since it's //
+            // been buffered, nothing written yet), decide if it's worth storing.  if   //
+            // not, just discard its stats.                                             //
+            //////////////////////////////////////////////////////////////////////////////
+            ProcessTraceTailSamplingPolicy tailSamplingPolicy = standardProcessTraceQBitConfig == null ? null : standardProcessTraceQBitConfig.getTailSamplingPolicy(runProcessInput.getProcessName());
+            if(tailSamplingPolicy != null && pendingHeader != null && !tailSamplingPolicy.shouldKeep(runProcessInput.getProcessName(), activeMillis, recordCount, processException))
+            {
+               ProcessTraceBackendActivityStatsManager.getInstance().removeStats(processTraceId);
+               return;
+            }
+
+            ProcessTraceWrite processTraceWrite = new ProcessTraceWrite(QContext.getQInstance());
+            if(pendingHeader != null)
+            {
+               ////////////////////////////////////////////////////////////////////////////////
+               // single-write header mode - insert the full header (without the provisional //
+               // id), and the writer will give its real id to the child records             //
+               ////////////////////////////////////////////////////////////////////////////////
+               QRecord headerInsert = pendingHeader
+                  .withEndTimestamp(endTimestamp)
+                  .withRuntimeMillis(millis == null ? null : millis.intValue())
+                  .withActiveRuntimeMillis(activeMillis == null ? null : activeMillis.intValue())
+                  .withWaitingMillis((int) Math.min(waitingMillis, Integer.MAX_VALUE))
+                  .withBreakCount(breakCount)
+                  .withRecordCount(recordCount)
+                  .withExceptionMessage(processException == null ? null : processException.getMessage())
+                  .toQRecord();
+               if(processTraceId < 0)
+               {
+                  headerInsert.removeValue("id");
+               }
+               processTraceWrite.withHeaderInsert(headerInsert);
+            }
+            else
+            {
+               ProcessTrace headerUpdate = new ProcessTrace()
+                  .withId(processTraceId)
+                  .withEndTimestamp(endTimestamp)
+                  .withRuntimeMillis(millis == null ? null : millis.intValue())
+                  .withActiveRuntimeMillis(activeMillis == null ? null : activeMillis.intValue())
+                  .withWaitingMillis((int) Math.min(waitingMillis, Integer.MAX_VALUE))
+                  .withBreakCount(breakCount)
+                  .withRecordCount(recordCount)
+                  .withExceptionMessage(processException == null ? null : processException.getMessage());
+
+               ////////////////////////////////////////////////////////////////////////////
+               // include the key record if one was given (possibly to an earlier tracer //
+               // instance, before the process broke - in which case it's in the state)  //
+               ////////////////////////////////////////////////////////////////////////////
+               if(keyRecordId == null)
+               {
+                  keyRecordQqqTableId = ValueUtils.getValueAsInteger(runProcessInput.getValue(HEADER_STATE_KEY_RECORD_QQQ_TABLE_ID));
+                  keyRecordId = ValueUtils.getValueAsInteger(runProcessInput.getValue(HEADER_STATE_KEY_RECORD_ID));
+               }
+
+               if(keyRecordId != null)
+               {
+                  headerUpdate.withKeyRecordQqqTableId(keyRecordQqqTableId).withKeyRecordId(keyRecordId);
+               }
+
+               processTraceWrite.withHeaderUpdate(headerUpdate.toQRecordOnlyChangedFields(true));
+            }
 
             /////////////////////////
             // build summary lines //
@@ -317,37 +605,47 @@ public class StandardProcessTracer implements ProcessTracerInterface
                         .withMessage((count == null ? "" : (count + " ")) + processSummaryLine.getMessage());
                      summaryLines.add(traceSummaryLine);
 
-                     if(CollectionUtils.nullSafeHasContents(processSummaryLine.getPrimaryKeys()))
+                     /////////////////////////////////////////////////////////////////////////////
+                     // apply the configured capture policy (e.g., cap or sample the ids of big //
+                     // OK lines) - noting on the line if any of its ids were left out          //
+                     /////////////////////////////////////////////////////////////////////////////
+                     List<Serializable> primaryKeys = processSummaryLine.getPrimaryKeys();
+                     if(unsampledBehavior == ProcessTraceSamplingPolicy.UnsampledBehavior.LIGHT && CollectionUtils.nullSafeHasContents(primaryKeys))
+                     {
+                        ////////////////////////////////////////////////////
+                        // light traces (from sampling) get no record ids //
+                        ////////////////////////////////////////////////////
+                        traceSummaryLine.setRecordIdsTruncated(true);
+                        primaryKeys = null;
+                     }
+                     else if(standardProcessTraceQBitConfig != null && CollectionUtils.nullSafeHasContents(primaryKeys))
+                     {
+                        ProcessTraceRecordIdCapturePolicy capturePolicy = standardProcessTraceQBitConfig.getRecordIdCapturePolicy(runProcessInput.getProcessName(), processSummaryLine.getStatus());
+                        List<Serializable>                capturedKeys  = capturePolicy.apply(primaryKeys);
+                        traceSummaryLine.setRecordIdsTruncated(capturedKeys.size() < primaryKeys.size());
+                        primaryKeys = capturedKeys;
+                     }
+
+                     if(CollectionUtils.nullSafeHasContents(primaryKeys))
                      {
                         String tableName = runProcessOutput.getValueString(StreamedETLWithFrontendProcess.FIELD_DESTINATION_TABLE);
                         if(!StringUtils.hasContent(tableName))
                         {
                            tableName = runProcessOutput.getValueString("tableName");
                         }
-                        Integer qqqTableId = QQQTableTableManager.getQQQTableId(QContext.getQInstance(), tableName);
+                        Integer qqqTableId = ProcessTraceQQQIdCache.getQQQTableId(QContext.getQInstance(), tableName);
 
-                        List<ProcessTraceSummaryLineRecordInt> recordIntList = new ArrayList<>();
-                        traceSummaryLine.setProcessTraceSummaryLineRecordIntList(recordIntList);
+                        //////////////////////////////////////////////////////////////////////
+                        // resolve the table's primary key type once per line - so the keys //
+                        // can be stored as what they are, without converting each one      //
+                        //////////////////////////////////////////////////////////////////////
+                        ProcessTraceRecordIdType recordIdType = ProcessTraceRecordIdType.forTable(StringUtils.hasContent(tableName) ? QContext.getQInstance().getTable(tableName) : null);
 
-                        for(Serializable primaryKey : processSummaryLine.getPrimaryKeys())
-                        {
-                           try
-                           {
-                              Integer recordId = ValueUtils.getValueAsInteger(primaryKey);
-                              if(recordId != null)
-                              {
-                                 recordIntList.add(new ProcessTraceSummaryLineRecordInt()
-                                    .withQqqTableId(qqqTableId)
-                                    .withRecordId(recordId));
-                              }
-                           }
-                           catch(Exception e)
-                           {
-                              /////////////////////////////////////////////////////////////////////
-                              // todo log (would be loud)?  or, let not be integer maybe better? //
-                              /////////////////////////////////////////////////////////////////////
-                           }
-                        }
+                        ///////////////////////////////////////////////////////////////////////////////
+                        // don't build the record-int records here - the writer stores them in pages //
+                        // from the line's list of primary keys, so memory use stays bounded         //
+                        ///////////////////////////////////////////////////////////////////////////////
+                        processTraceWrite.withSummaryLineRecordIds(traceSummaryLine, qqqTableId, recordIdType, primaryKeys);
                      }
                   }
                   else
@@ -360,17 +658,41 @@ public class StandardProcessTracer implements ProcessTracerInterface
                   }
                }
 
-               new InsertAction().execute(new InsertInput(ProcessTraceSummaryLine.TABLE_NAME).withRecordEntities(summaryLines));
+               processTraceWrite.withSummaryLines(summaryLines);
             }
 
-            //////////////////////////////////////////
-            // build and store backend stat records //
-            //////////////////////////////////////////
-            if(QContext.getQInstance().getTable(ProcessTraceBackendActivityStats.TABLE_NAME) != null)
+            /////////////////////////////////////////////////////////////////
+            // collect the steps (before the stats, which drop the process //
+            // from the manager), numbered in the order they finished      //
+            /////////////////////////////////////////////////////////////////
+            if(unsampledBehavior == null && isTracingSteps())
             {
-               List<ProcessTraceBackendActivityStats> stats = ProcessTraceBackendActivityStatsManager.getInstance().getAndRemoveStats(processTraceId);
-               new InsertAction().execute(new InsertInput(ProcessTraceBackendActivityStats.TABLE_NAME).withRecordEntities(stats));
+               List<ProcessTraceStep> steps = ProcessTraceBackendActivityStatsManager.getInstance().getAndRemoveSteps(processTraceId);
+               for(int i = 0; i < steps.size(); i++)
+               {
+                  steps.get(i).setStepNo(i + 1);
+               }
+               processTraceWrite.withSteps(steps);
             }
+
+            if(unsampledBehavior == null && etlPageTimeline != null)
+            {
+               processTraceWrite.withEtlPageTimeline(new ProcessTraceEtlPageTimeline(etlPageTimeline));
+            }
+
+            ////////////////////////////////
+            // build backend stat records //
+            ////////////////////////////////
+            if(unsampledBehavior == null && QContext.getQInstance().getTable(ProcessTraceBackendActivityStats.TABLE_NAME) != null)
+            {
+               processTraceWrite.withBackendActivityStats(ProcessTraceBackendActivityStatsManager.getInstance().getAndRemoveStats(processTraceId));
+            }
+
+            ////////////////////////////////////////////////////////////////////////////////
+            // hand the records off to the writer - which, depending on config, may store //
+            // them right now, or may queue them up, to be stored in a background thread  //
+            ////////////////////////////////////////////////////////////////////////////////
+            ProcessTraceWriter.getInstance().submit(processTraceWrite);
          }
       }
       catch(Exception e)
@@ -379,15 +701,432 @@ public class StandardProcessTracer implements ProcessTracerInterface
       }
       finally
       {
-         if(QContext.getQSession() != null)
+         unbindContext();
+      }
+   }
+
+
+
+   /***************************************************************************
+    * build the record for the step that's running (if any), with its timing,
+    * and the backend activity since it started - and hold it with the
+    * process's stats, to be written when the process finishes.
+    ***************************************************************************/
+   private void finishStep()
+   {
+      if(currentStepName == null)
+      {
+         return;
+      }
+
+      try
+      {
+         long                                           endMillis = System.currentTimeMillis();
+         ProcessTraceBackendActivityStatsManager        manager   = ProcessTraceBackendActivityStatsManager.getInstance();
+         ProcessTraceBackendActivityStatsManager.Totals endTotals = manager.getTotals(processTraceId);
+
+         ProcessTraceStep step = new ProcessTraceStep()
+            .withProcessTraceId(processTraceId)
+            .withStepName(currentStepName)
+            .withStartTimestamp(Instant.ofEpochMilli(currentStepStartMillis))
+            .withEndTimestamp(Instant.ofEpochMilli(endMillis))
+            .withRuntimeMillis((int) Math.min(endMillis - currentStepStartMillis, Integer.MAX_VALUE));
+
+         if(endTotals != null)
+         {
+            ProcessTraceBackendActivityStatsManager.Totals stepTotals = endTotals.minus(currentStepStartTotals);
+            step.withBackendCallCount((int) Math.min(stepTotals.callCount(), Integer.MAX_VALUE))
+               .withBackendRecordCount((int) Math.min(stepTotals.recordCount(), Integer.MAX_VALUE))
+               .withBackendRuntimeMillis((int) Math.min(stepTotals.runtimeMillis(), Integer.MAX_VALUE));
+         }
+
+         manager.addStep(processTraceId, step);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error handling processTrace step finish.", e);
+      }
+      finally
+      {
+         currentStepName = null;
+         currentStepStartTotals = null;
+      }
+   }
+
+
+
+   /***************************************************************************
+    * add a page reported by a streamed ETL's steps to this trace's timeline -
+    * its extract wait being the time from the end of the previous page (or
+    * the start of the step) to the start of its transform.
+    ***************************************************************************/
+   private void addEtlPage(ProcessTraceEtlPageMessage etlPageMessage)
+   {
+      if(unsampledBehavior != null || processTraceId == null || !isTracingEtlPages())
+      {
+         return;
+      }
+
+      long pageStartMillis = lastEtlPageEndMillis > 0 ? Math.min(lastEtlPageEndMillis, etlPageMessage.getTransformStartMillis()) : etlPageMessage.getTransformStartMillis();
+      if(etlPageTimeline == null)
+      {
+         etlPageTimeline = new EtlPageTimeline();
+         etlPageTimelineStartMillis = pageStartMillis;
+      }
+
+      etlPageTimeline.addPage(
+         etlPageMessage.getTransformStartMillis() - pageStartMillis,
+         etlPageMessage.getLoadStartMillis() - etlPageMessage.getTransformStartMillis(),
+         etlPageMessage.getLoadEndMillis() - etlPageMessage.getLoadStartMillis(),
+         etlPageMessage.getRecordCount(),
+         etlPageMessage.getLoadEndMillis() - etlPageTimelineStartMillis);
+
+      lastEtlPageEndMillis = etlPageMessage.getLoadEndMillis();
+   }
+
+
+
+   /***************************************************************************
+    * make a generator for provisional ids - with a random node id, so that
+    * JVMs running at the same time are unlikely to share one.
+    ***************************************************************************/
+   private static SnowflakeProcessTraceIdGenerator newProvisionalProcessTraceIdGenerator()
+   {
+      return (new SnowflakeProcessTraceIdGenerator(ThreadLocalRandom.current().nextInt(SnowflakeProcessTraceIdGenerator.MAX_NODE_ID + 1)));
+   }
+
+
+
+   /***************************************************************************
+    * replace the generator for provisional ids with a new one - as a restart of
+    * the JVM would.  For tests.
+    ***************************************************************************/
+   static void resetProvisionalProcessTraceIdGenerator()
+   {
+      provisionalProcessTraceIdGenerator = newProvisionalProcessTraceIdGenerator();
+   }
+
+
+
+   /***************************************************************************
+    * count a break of the process, and note when it started waiting - in the
+    * process state, as it may be resumed by another tracer instance (or JVM).
+    ***************************************************************************/
+   private static void recordBreak(RunProcessInput runProcessInput)
+   {
+      Integer breakCount = ValueUtils.getValueAsInteger(runProcessInput.getValue(HEADER_STATE_BREAK_COUNT));
+      runProcessInput.addValue(HEADER_STATE_BREAK_COUNT, breakCount == null ? 1 : breakCount + 1);
+      runProcessInput.addValue(HEADER_STATE_BREAK_TIMESTAMP, System.currentTimeMillis());
+   }
+
+
+
+   /***************************************************************************
+    * add the time the process waited since its last break to its total waiting
+    * time, in the process state.
+    ***************************************************************************/
+   private static void recordResume(RunProcessInput runProcessInput)
+   {
+      Long breakMillis = ValueUtils.getValueAsLong(runProcessInput.getValue(HEADER_STATE_BREAK_TIMESTAMP));
+      if(breakMillis == null)
+      {
+         return;
+      }
+
+      Long waitingMillis = ValueUtils.getValueAsLong(runProcessInput.getValue(HEADER_STATE_WAITING_MILLIS));
+      runProcessInput.addValue(HEADER_STATE_WAITING_MILLIS, (waitingMillis == null ? 0 : waitingMillis) + Math.max(0, System.currentTimeMillis() - breakMillis));
+      runProcessInput.addValue(HEADER_STATE_BREAK_TIMESTAMP, null);
+   }
+
+
+
+   /***************************************************************************
+    * if configured to, put the page size that the advisor recommends for this
+    * process &amp; its destination table into the process's values, for its
+    * steps to read.
+    ***************************************************************************/
+   private void publishRecommendedPageSize(RunProcessInput runProcessInput)
+   {
+      if(standardProcessTraceQBitConfig == null || !standardProcessTraceQBitConfig.getPublishRecommendedPageSizes())
+      {
+         return;
+      }
+
+      try
+      {
+         QInstance qInstance = QContext.getQInstance();
+         if(qInstance == null || qInstance.getTable(ProcessTraceBackendActivityStats.TABLE_NAME) == null)
+         {
+            return;
+         }
+
+         String tableName = getDestinationTableName(qInstance, runProcessInput);
+         if(!StringUtils.hasContent(tableName))
+         {
+            return;
+         }
+
+         Integer pageSize = ProcessTracePageSizeAdvisor.getRecommendedPageSize(runProcessInput.getProcessName(), tableName);
+         if(pageSize != null)
+         {
+            runProcessInput.addValue(ProcessTracePageSizeAdvisor.FIELD_RECOMMENDED_PAGE_SIZE, pageSize);
+         }
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error publishing recommended page size.", e, logPair("processName", runProcessInput.getProcessName()));
+      }
+   }
+
+
+
+   /***************************************************************************
+    * get the destination table of a process at its start - from its values if
+    * it was given one, else the default of its destinationTable input field
+    * (as streamed ETL processes have; defaults aren't applied to the values
+    * until its first backend step runs).
+    ***************************************************************************/
+   private static String getDestinationTableName(QInstance qInstance, RunProcessInput runProcessInput)
+   {
+      String tableName = runProcessInput.getValueString(StreamedETLWithFrontendProcess.FIELD_DESTINATION_TABLE);
+      if(StringUtils.hasContent(tableName))
+      {
+         return (tableName);
+      }
+
+      QProcessMetaData process = qInstance.getProcess(runProcessInput.getProcessName());
+      if(process != null)
+      {
+         for(QFieldMetaData field : CollectionUtils.nonNullList(process.getInputFields()))
+         {
+            if(StreamedETLWithFrontendProcess.FIELD_DESTINATION_TABLE.equals(field.getName()) && field.getDefaultValue() != null)
+            {
+               return (ValueUtils.getValueAsString(field.getDefaultValue()));
+            }
+         }
+      }
+
+      return (null);
+   }
+
+
+
+   /***************************************************************************
+    * whether ETL page timelines are stored - i.e., if their table is in the
+    * instance.
+    ***************************************************************************/
+   private static boolean isTracingEtlPages()
+   {
+      QInstance qInstance = QContext.getQInstance();
+      return (qInstance != null && qInstance.getTable(ProcessTraceEtlPageTimeline.TABLE_NAME) != null);
+   }
+
+
+
+   /***************************************************************************
+    * whether steps are traced - i.e., if the step table is in the instance.
+    ***************************************************************************/
+   private static boolean isTracingSteps()
+   {
+      QInstance qInstance = QContext.getQInstance();
+      return (qInstance != null && qInstance.getTable(ProcessTraceStep.TABLE_NAME) != null);
+   }
+
+
+
+   /***************************************************************************
+    * bind a context for this trace to the current thread, and put its id in
+    * the session (for threads the context isn't carried to) - remembering what
+    * was there before (the first time), to restore in {@link #unbindContext()}.
+    ***************************************************************************/
+   private void bindContext()
+   {
+      ProcessTraceContext previous      = ProcessTraceContext.bind(ProcessTraceBackendActivityStatsManager.getInstance().getContext(processTraceId));
+      QSession            session       = QContext.getQSession();
+      String              sessionValue  = String.valueOf(processTraceId);
+      String              previousValue = session == null ? null : session.getValue(PROCESS_TRACE_ID_SESSION_KEY);
+      if(!contextBound)
+      {
+         previousContext = previous;
+
+         ////////////////////////////////////////////////////////////////
+         // a run resuming in the session it broke in may find its own //
+         // id there - which isn't anything to put back.               //
+         ////////////////////////////////////////////////////////////////
+         previousSessionProcessTraceId = sessionValue.equals(previousValue) ? null : previousValue;
+         contextBound = true;
+      }
+
+      if(session != null)
+      {
+         session.setValue(PROCESS_TRACE_ID_SESSION_KEY, sessionValue);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * put back the context (and session value) that were there before {@link
+    * #bindContext()} - but the session value only if it's still this trace's,
+    * so that a run that started since (e.g., a sub-process) keeps its own, and
+    * one run ending never takes away another's.
+    ***************************************************************************/
+   private void unbindContext()
+   {
+      if(contextBound)
+      {
+         ProcessTraceContext.bind(previousContext);
+
+         QSession session = QContext.getQSession();
+         if(session != null && String.valueOf(processTraceId).equals(session.getValue(PROCESS_TRACE_ID_SESSION_KEY)))
          {
-            QContext.getQSession().removeValue(PROCESS_TRACE_ID_SESSION_KEY);
+            if(previousSessionProcessTraceId == null)
+            {
+               session.removeValue(PROCESS_TRACE_ID_SESSION_KEY);
+            }
+            else
+            {
+               session.setValue(PROCESS_TRACE_ID_SESSION_KEY, previousSessionProcessTraceId);
+            }
          }
+
+         previousContext = null;
+         previousSessionProcessTraceId = null;
+         contextBound = false;
       }
    }
 
 
 
+   /***************************************************************************
+    * apply the configured sampling policy (if any) to a run of a process that
+    * is starting - returning null if the run should be traced, else what to do
+    * with it, since it isn't.
+    ***************************************************************************/
+   private static ProcessTraceSamplingPolicy.UnsampledBehavior applySamplingPolicy(RunProcessInput runProcessInput)
+   {
+      ProcessTraceSamplingPolicy samplingPolicy = standardProcessTraceQBitConfig == null ? null : standardProcessTraceQBitConfig.getSamplingPolicy(runProcessInput.getProcessName());
+      if(samplingPolicy == null)
+      {
+         return (null);
+      }
+
+      /////////////////////////////////////////////////////////////////////////
+      // the key record isn't known yet (that comes from messages, while the //
+      // process runs) - so, for consistent hashing, use the records it was  //
+      // started on, if any.  without any, runs are sampled at random.       //
+      /////////////////////////////////////////////////////////////////////////
+      String samplingKey = null;
+      if(samplingPolicy.getHashOnKeyRecord())
+      {
+         Serializable recordIds = runProcessInput.getValue("recordIds");
+         if(recordIds != null)
+         {
+            samplingKey = runProcessInput.getValueString("tableName") + ":" + recordIds;
+         }
+      }
+
+      return (samplingPolicy.sample(runProcessInput.getProcessName(), samplingKey) ? null : samplingPolicy.getUnsampledBehavior());
+   }
+
+
+
+   /***************************************************************************
+    * read the sampling decision from the process values (via the given getter)
+    * that it was stored in when the process started.
+    ***************************************************************************/
+   private void restoreUnsampledBehavior(Function<String, Serializable> valueGetter)
+   {
+      if(unsampledBehavior == null)
+      {
+         String value = ValueUtils.getValueAsString(valueGetter.apply(HEADER_STATE_UNSAMPLED_BEHAVIOR));
+         if(StringUtils.hasContent(value))
+         {
+            unsampledBehavior = ProcessTraceSamplingPolicy.UnsampledBehavior.valueOf(value);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * check if the config says to use single-write header mode for a process -
+    * either for all processes, or because the process has a tail sampling
+    * policy (so nothing can be written until the process finishes).
+    ***************************************************************************/
+   private static boolean isSingleWriteHeader(String processName)
+   {
+      if(standardProcessTraceQBitConfig == null)
+      {
+         return (false);
+      }
+
+      return (standardProcessTraceQBitConfig.getUseSingleWriteHeader() || standardProcessTraceQBitConfig.getTailSamplingPolicy(processName) != null);
+   }
+
+
+
+   /***************************************************************************
+    * put the fields of the pending (not-yet-inserted) header into process
+    * values, via the given setter (e.g., from a RunProcessInput or a
+    * RunBackendStepInput).  Only simple values are stored, so they survive any
+    * process state provider's serialization.
+    ***************************************************************************/
+   private void storeHeaderState(BiConsumer<String, Serializable> valueSetter)
+   {
+      valueSetter.accept(HEADER_STATE_PROCESS_TRACE_ID, pendingHeader.getId());
+      valueSetter.accept(HEADER_STATE_START_TIMESTAMP, pendingHeader.getStartTimestamp() == null ? null : pendingHeader.getStartTimestamp().toEpochMilli());
+      valueSetter.accept(HEADER_STATE_QQQ_PROCESS_ID, pendingHeader.getQqqProcessId());
+      valueSetter.accept(HEADER_STATE_USER_ID, pendingHeader.getUserId());
+      valueSetter.accept(HEADER_STATE_KEY_RECORD_QQQ_TABLE_ID, pendingHeader.getKeyRecordQqqTableId());
+      valueSetter.accept(HEADER_STATE_KEY_RECORD_ID, pendingHeader.getKeyRecordId());
+   }
+
+
+
+   /***************************************************************************
+    * if the process values (read via the given getter) contain a pending
+    * header (e.g., from single-write header mode, before the process broke),
+    * rebuild it, and set this tracer's fields from it.
+    ***************************************************************************/
+   private void restoreHeaderState(Function<String, Serializable> valueGetter, String processUUID)
+   {
+      Long provisionalProcessTraceId = ValueUtils.getValueAsLong(valueGetter.apply(HEADER_STATE_PROCESS_TRACE_ID));
+      if(provisionalProcessTraceId == null)
+      {
+         return;
+      }
+
+      Long startMillis = ValueUtils.getValueAsLong(valueGetter.apply(HEADER_STATE_START_TIMESTAMP));
+      if(startMillis != null && startTime == null)
+      {
+         startTime = Instant.ofEpochMilli(startMillis);
+      }
+
+      processTraceId = provisionalProcessTraceId;
+      pendingHeader = new ProcessTrace()
+         .withId(provisionalProcessTraceId)
+         .withStartTimestamp(startTime)
+         .withProcessUUID(processUUID)
+         .withQqqProcessId(ValueUtils.getValueAsInteger(valueGetter.apply(HEADER_STATE_QQQ_PROCESS_ID)))
+         .withUserId(ValueUtils.getValueAsInteger(valueGetter.apply(HEADER_STATE_USER_ID)))
+         .withKeyRecordQqqTableId(ValueUtils.getValueAsInteger(valueGetter.apply(HEADER_STATE_KEY_RECORD_QQQ_TABLE_ID)))
+         .withKeyRecordId(ValueUtils.getValueAsInteger(valueGetter.apply(HEADER_STATE_KEY_RECORD_ID)));
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for standardProcessTraceQBitConfig
+    **
+    *******************************************************************************/
+   public static StandardProcessTraceQBitConfig getStandardProcessTraceQBitConfig()
+   {
+      return (StandardProcessTracer.standardProcessTraceQBitConfig);
+   }
+
+
+
    /*******************************************************************************
     ** Setter for standardProcessTraceQBitConfig
     **
@@ -0,0 +1,90 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.ByteArrayOutputStream;
+
+
+/*******************************************************************************
+ * Unsigned variable-length integers (7 bits per byte, with the high bit set on
+ * all but the last byte) - as used by the compact encodings in this package
+ * ({@link EncodedRecordIdSet}, {@link LatencyHistogram}, and
+ * {@link EtlPageTimeline}).
+ *******************************************************************************/
+final class VarLongCodec
+{
+
+   /*******************************************************************************
+    ** private constructor, as this class only has static methods.
+    *******************************************************************************/
+   private VarLongCodec()
+   {
+   }
+
+
+
+   /***************************************************************************
+    * write an unsigned variable-length integer.
+    ***************************************************************************/
+   static void writeVarLong(ByteArrayOutputStream outputStream, long value)
+   {
+      while((value & ~0x7FL) != 0)
+      {
+         outputStream.write((int) ((value & 0x7F) | 0x80));
+         value >>>= 7;
+      }
+      outputStream.write((int) value);
+   }
+
+
+
+   /***************************************************************************
+    * read an unsigned variable-length integer, starting at position[0] - which
+    * is advanced past it.
+    *
+    * @param encodingName what is being decoded, for the message of the
+    * IllegalArgumentException thrown if the bytes run out (or the value is too
+    * long).
+    ***************************************************************************/
+   static long readVarLong(byte[] bytes, int[] position, String encodingName)
+   {
+      long value = 0;
+      int  shift = 0;
+      while(true)
+      {
+         if(position[0] >= bytes.length || shift > 63)
+         {
+            throw (new IllegalArgumentException("Malformed encoded " + encodingName));
+         }
+
+         byte b = bytes[position[0]++];
+         value |= (long) (b & 0x7F) << shift;
+         if((b & 0x80) == 0)
+         {
+            return (value);
+         }
+         shift += 7;
+      }
+   }
+
+}
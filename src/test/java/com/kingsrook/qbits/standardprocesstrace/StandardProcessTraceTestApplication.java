@@ -25,6 +25,7 @@ package com.kingsrook.qbits.standardprocesstrace;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import com.kingsrook.qbits.standardprocesstrace.utils.ProcessTraceEtlPageTimer;
 import com.kingsrook.qbits.standardprocesstrace.utils.StandardProcessTracer;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.instances.AbstractQQQApplication;
@@ -57,6 +58,7 @@ import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwith
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.ExtractViaQueryStep;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.LoadViaInsertStep;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.StreamedETLWithFrontendProcess;
+import com.kingsrook.qqq.backend.core.processes.tracing.ProcessTracerKeyRecordMessage;
 
 
 /*******************************************************************************
@@ -104,7 +106,11 @@ public class StandardProcessTraceTestApplication extends AbstractQQQApplication
                table.setBackendName(MEMORY_BACKEND_NAME);
                return (table);
             })
-            .withIncludeBackendActivityStats(true));
+            .withIncludeBackendActivityStats(true)
+            .withIncludeProcessTraceSteps(true)
+            .withIncludeEtlPageTimeline(true)
+            .withUseEncodedSummaryLineRecordIds(true)
+            .withUseTypedSummaryLineRecordIds(true));
 
       MetaDataProducerMultiOutput allQBitMetaData = producer.produce(qInstance);
       allQBitMetaData.addSelfToInstance(qInstance);
@@ -141,7 +147,7 @@ public class StandardProcessTraceTestApplication extends AbstractQQQApplication
          .withDestinationTable(TABLE_NAME_ORDER)
          .withExtractStepClass(ExtractViaQueryStep.class)
          .withTransformStepClass(PlaceOrdersProcessTransformStep.class)
-         .withLoadStepClass(LoadViaInsertStep.class)
+         .withLoadStepClass(PlaceOrdersProcessLoadStep.class)
          .getProcessMetaData()
          .withProcessTracerCodeReference(new QCodeReference(StandardProcessTracer.class))
       );
@@ -212,8 +218,15 @@ public class StandardProcessTraceTestApplication extends AbstractQQQApplication
       @Override
       public void runOnePage(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
       {
+         ProcessTraceEtlPageTimer.markTransformStart(runBackendStepInput);
+
          for(QRecord personRecord : runBackendStepInput.getRecords())
          {
+            ///////////////////////////////////////////////////////////////////////
+            // send a key-record message for every person (the last one is kept) //
+            ///////////////////////////////////////////////////////////////////////
+            runBackendStepInput.traceMessage(new ProcessTracerKeyRecordMessage(TABLE_NAME_PERSON, personRecord.getValueInteger("id")));
+
             ////////////////////////////////////////
             // don't let Mr. Burns order anything //
             ////////////////////////////////////////
@@ -231,4 +244,25 @@ public class StandardProcessTraceTestApplication extends AbstractQQQApplication
          }
       }
    }
+
+
+
+   /***************************************************************************
+    * test process loader - inserts the orders, reporting each page's timing
+    * for the ETL page timeline.
+    ***************************************************************************/
+   public static class PlaceOrdersProcessLoadStep extends LoadViaInsertStep
+   {
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public void runOnePage(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
+      {
+         ProcessTraceEtlPageTimer.markLoadStart();
+         super.runOnePage(runBackendStepInput, runBackendStepOutput);
+         ProcessTraceEtlPageTimer.markLoadEnd(runBackendStepInput);
+      }
+   }
 }
@@ -0,0 +1,233 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for ConcurrentLongMap 
+ *******************************************************************************/
+class ConcurrentLongMapTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testBasics()
+   {
+      ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+      assertNull(map.get(1));
+      assertEquals(0, map.size());
+
+      ///////////////////////////////////////////////////////////
+      // including keys that a sentinel-based table might trip //
+      // on - zero, negatives, and the extremes                //
+      ///////////////////////////////////////////////////////////
+      for(long key : new long[] { 0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE })
+      {
+         assertNull(map.put(key, "v" + key));
+      }
+      assertEquals(5, map.size());
+      assertEquals("v0", map.get(0));
+      assertEquals("v-1", map.get(-1));
+      assertEquals("v" + Long.MIN_VALUE, map.get(Long.MIN_VALUE));
+
+      assertEquals("v1", map.put(1, "one"));
+      assertEquals("one", map.get(1));
+      assertEquals(5, map.size());
+
+      assertEquals("one", map.remove(1));
+      assertNull(map.remove(1));
+      assertNull(map.get(1));
+      assertEquals(4, map.size());
+
+      map.clear();
+      assertEquals(0, map.size());
+      assertNull(map.get(0));
+
+      assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testComputeIfAbsent()
+   {
+      ConcurrentLongMap<Object> map   = new ConcurrentLongMap<>();
+      AtomicInteger             calls = new AtomicInteger();
+
+      Object first = map.computeIfAbsent(47, k -> new Object[] { calls.incrementAndGet() });
+      assertSame(first, map.computeIfAbsent(47, k -> new Object[] { calls.incrementAndGet() }));
+      assertEquals(1, calls.get());
+
+      ////////////////////////////////////////////////////
+      // a null from the function means nothing is put //
+      ////////////////////////////////////////////////////
+      assertNull(map.computeIfAbsent(48, k -> null));
+      assertEquals(1, map.size());
+   }
+
+
+
+   /*******************************************************************************
+    ** run a random mix of puts & removes (over a small key range, so there are
+    ** lots of collisions, resizes, and backward-shift deletes), checking
+    ** against a HashMap.
+    *******************************************************************************/
+   @Test
+   void testAgainstHashMap()
+   {
+      ConcurrentLongMap<Long> map       = new ConcurrentLongMap<>();
+      Map<Long, Long>         reference = new HashMap<>();
+      Random                  random    = new Random(47);
+
+      for(int i = 0; i < 200_000; i++)
+      {
+         long key = random.nextInt(5_000) - 2_500;
+         if(random.nextInt(3) == 0)
+         {
+            assertEquals(reference.remove(key), map.remove(key));
+         }
+         else
+         {
+            assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+         }
+      }
+
+      assertEquals(reference.size(), map.size());
+      for(long key = -2_500; key < 2_500; key++)
+      {
+         assertEquals(reference.get(key), map.get(key));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRemoveIfValue()
+   {
+      ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+      for(long key = 0; key < 1_000; key++)
+      {
+         map.put(key, key);
+      }
+
+      assertEquals(500, map.removeIfValue(value -> value % 2 == 0));
+      assertEquals(500, map.size());
+
+      long[] sum = new long[] { 0 };
+      map.forEachValue(value -> sum[0] += value);
+      assertEquals(250_000, sum[0]);
+      for(long key = 0; key < 1_000; key++)
+      {
+         assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** threads each putting, getting, and removing their own keys, while reading
+    ** a shared set of keys that never change - all of which must always be
+    ** found (i.e., even while other threads are resizing their segments).
+    *******************************************************************************/
+   @Test
+   void testConcurrentAccess() throws Exception
+   {
+      ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+      for(long key = 0; key < 100; key++)
+      {
+         map.put(-key - 1, key);
+      }
+
+      int            threadCount = 16;
+      List<Thread>   threads     = new ArrayList<>();
+      List<String>   failures    = new ArrayList<>();
+      CountDownLatch start       = new CountDownLatch(1);
+      for(int t = 0; t < threadCount; t++)
+      {
+         long base = t * 1_000_000L;
+         Thread thread = new Thread(() ->
+         {
+            try
+            {
+               start.await();
+               for(long key = base; key < base + 20_000; key++)
+               {
+                  map.put(key, key);
+                  Long shared = map.get(-(key % 100) - 1);
+                  if(shared == null || shared != key % 100)
+                  {
+                     synchronized(failures)
+                     {
+                        failures.add("shared key lost at " + key);
+                     }
+                  }
+                  if(key % 2 == 0)
+                  {
+                     map.remove(key);
+                  }
+               }
+            }
+            catch(Exception e)
+            {
+               synchronized(failures)
+               {
+                  failures.add(e.toString());
+               }
+            }
+         });
+         threads.add(thread);
+         thread.start();
+      }
+
+      start.countDown();
+      for(Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertEquals(List.of(), failures);
+      assertEquals(100 + threadCount * 10_000, map.size());
+   }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for EncodedRecordIdSet 
+ *******************************************************************************/
+class EncodedRecordIdSetTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEmpty()
+   {
+      assertEquals(0, EncodedRecordIdSet.of(null).size());
+      assertEquals(0, EncodedRecordIdSet.of(List.of()).size());
+      assertEquals(0, EncodedRecordIdSet.decode(null).size());
+      assertEquals(0, EncodedRecordIdSet.decode(EncodedRecordIdSet.of(List.of()).encode()).size());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testConsecutiveIdsAreOneSmallRun()
+   {
+      List<Serializable> ids = new ArrayList<>();
+      for(int i = 1_000_000; i > 0; i--)
+      {
+         ids.add(i);
+      }
+
+      EncodedRecordIdSet recordIdSet = EncodedRecordIdSet.of(ids);
+      assertEquals(1_000_000, recordIdSet.size());
+      assertEquals(1, recordIdSet.getRunCount());
+      assertThat(recordIdSet.encode().length()).isLessThan(20);
+
+      EncodedRecordIdSet decoded = EncodedRecordIdSet.decode(recordIdSet.encode());
+      assertEquals(1_000_000, decoded.size());
+      assertTrue(decoded.contains(1));
+      assertTrue(decoded.contains(1_000_000));
+      assertFalse(decoded.contains(0));
+      assertFalse(decoded.contains(1_000_001));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRoundTripRandomIds()
+   {
+      Random            random   = new Random(47);
+      TreeSet<Integer>  expected = new TreeSet<>();
+      List<Serializable> ids     = new ArrayList<>();
+      for(int i = 0; i < 10_000; i++)
+      {
+         int id = random.nextInt(20_000) - 5_000;
+         expected.add(id);
+         ids.add(id);
+      }
+      ids.add(Integer.MAX_VALUE);
+      ids.add(Integer.MIN_VALUE);
+      expected.add(Integer.MAX_VALUE);
+      expected.add(Integer.MIN_VALUE);
+
+      EncodedRecordIdSet decoded = EncodedRecordIdSet.decode(EncodedRecordIdSet.of(ids).encode());
+      assertEquals(expected.size(), decoded.size());
+
+      List<Integer> decodedIds = new ArrayList<>();
+      decoded.forEach(decodedIds::add);
+      assertEquals(new ArrayList<>(expected), decodedIds);
+
+      for(int id = -6_000; id < 16_000; id++)
+      {
+         assertEquals(expected.contains(id), decoded.contains(id));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testNonIntegerKeysAreSkipped()
+   {
+      EncodedRecordIdSet recordIdSet = EncodedRecordIdSet.of(List.of(1, "2", "three", 4L));
+      assertEquals(3, recordIdSet.size());
+      assertTrue(recordIdSet.contains(2));
+      assertFalse(recordIdSet.contains(3));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testWholeNumbersOfOtherTypes()
+   {
+      EncodedRecordIdSet recordIdSet = EncodedRecordIdSet.of(List.of(new BigDecimal("1.00"), BigInteger.TWO, 3.0, 4.5, new BigDecimal("5.5")));
+      assertEquals(3, recordIdSet.size());
+      assertTrue(recordIdSet.contains(1));
+      assertTrue(recordIdSet.contains(2));
+      assertTrue(recordIdSet.contains(3));
+      assertFalse(recordIdSet.contains(4));
+      assertFalse(recordIdSet.contains(5));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testBadInput()
+   {
+      assertThrows(IllegalArgumentException.class, () -> EncodedRecordIdSet.decode("AA=="));
+      assertThrows(IllegalArgumentException.class, () -> EncodedRecordIdSet.decode("AQ=="));
+
+      /////////////////////////////////////////////////////////////////////
+      // run counts far past what the bytes could hold - including one   //
+      // that would be negative as an int - are rejected, not allocated. //
+      /////////////////////////////////////////////////////////////////////
+      String hugeRunCount     = Base64.getEncoder().encodeToString(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+      String negativeRunCount = Base64.getEncoder().encodeToString(new byte[] { 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08 });
+      String truncatedRuns    = Base64.getEncoder().encodeToString(new byte[] { 1, 3, 2, 0 });
+      assertEquals("Malformed encoded record id set", assertThrows(IllegalArgumentException.class, () -> EncodedRecordIdSet.decode(hugeRunCount)).getMessage());
+      assertEquals("Malformed encoded record id set", assertThrows(IllegalArgumentException.class, () -> EncodedRecordIdSet.decode(negativeRunCount)).getMessage());
+      assertEquals("Malformed encoded record id set", assertThrows(IllegalArgumentException.class, () -> EncodedRecordIdSet.decode(truncatedRuns)).getMessage());
+   }
+
+}
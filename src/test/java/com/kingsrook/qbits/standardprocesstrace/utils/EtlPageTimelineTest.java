@@ -0,0 +1,144 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for EtlPageTimeline 
+ *******************************************************************************/
+class EtlPageTimelineTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEmpty()
+   {
+      EtlPageTimeline timeline = new EtlPageTimeline();
+      assertEquals(0, timeline.getPageCount());
+      assertNull(timeline.getBottleneck());
+      assertNull(timeline.getBottleneckDescription());
+      assertEquals(0, EtlPageTimeline.decode(null).getPageCount());
+      assertEquals(0, EtlPageTimeline.decode(timeline.encode()).getBuckets().size());
+   }
+
+
+
+   /*******************************************************************************
+    ** totals over the pages say which side of the pipe was the constraint.
+    *******************************************************************************/
+   @Test
+   void testTotalsAndBottleneck()
+   {
+      EtlPageTimeline timeline = new EtlPageTimeline();
+      timeline.addPage(10, 12, 78, 100, 100);
+      timeline.addPage(0, 0, 0, 0, 100);
+
+      assertEquals(2, timeline.getPageCount());
+      assertEquals(100, timeline.getRecordCount());
+      assertEquals(EtlPageTimeline.Bottleneck.LOAD, timeline.getBottleneck());
+      assertEquals(78, timeline.getBottleneckPercent());
+      assertEquals("load-bound 78%", timeline.getBottleneckDescription());
+
+      timeline.addPage(500, 0, 0, 100, 600);
+      assertEquals("extract-bound 85%", timeline.getBottleneckDescription());
+
+      /////////////////////////////////////
+      // negative times are counted as 0 //
+      /////////////////////////////////////
+      timeline.addPage(-5, 600, -1, 100, 1000);
+      assertEquals(EtlPageTimeline.Bottleneck.TRANSFORM, timeline.getBottleneck());
+      assertEquals(510, timeline.getExtractWaitMillis());
+   }
+
+
+
+   /*******************************************************************************
+    ** past its max buckets, pairs of buckets merge - so the whole run is still
+    ** covered, and the totals don't change.
+    *******************************************************************************/
+   @Test
+   void testBucketsMerge()
+   {
+      EtlPageTimeline timeline = new EtlPageTimeline(4);
+      for(int i = 1; i <= 9; i++)
+      {
+         timeline.addPage(1, 2, 3, 10, i * 6);
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // 4 buckets of 1 page, merged to 2 of 2, to 4 of 2, then to 2 of 4 //
+      // (plus the 9th page in a 3rd bucket)                              //
+      //////////////////////////////////////////////////////////////////////
+      assertEquals(4, timeline.getPagesPerBucket());
+      List<EtlPageTimeline.Bucket> buckets = timeline.getBuckets();
+      assertEquals(List.of(4L, 4L, 1L), buckets.stream().map(EtlPageTimeline.Bucket::pageCount).toList());
+      assertEquals(List.of(24L, 48L, 54L), buckets.stream().map(EtlPageTimeline.Bucket::endOffsetMillis).toList());
+      assertEquals(List.of(40L, 40L, 10L), buckets.stream().map(EtlPageTimeline.Bucket::recordCount).toList());
+      assertEquals(24, buckets.get(0).totalMillis());
+      assertEquals(40 * 1000.0 / 24, buckets.get(0).recordsPerSecond());
+
+      assertEquals(9, timeline.getPageCount());
+      assertEquals(90, timeline.getRecordCount());
+      assertEquals(27, timeline.getLoadMillis());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEncodeDecode()
+   {
+      EtlPageTimeline timeline = new EtlPageTimeline(8);
+      for(int i = 1; i <= 100; i++)
+      {
+         timeline.addPage(i, i * 2, i * 3, 1000, i * 100_000L);
+      }
+
+      EtlPageTimeline decoded = EtlPageTimeline.decode(timeline.encode());
+      assertEquals(timeline.getBuckets(), decoded.getBuckets());
+      assertEquals(timeline.getPagesPerBucket(), decoded.getPagesPerBucket());
+      assertEquals(100, decoded.getPageCount());
+      assertEquals(100_000, decoded.getRecordCount());
+      assertEquals(timeline.getBottleneckDescription(), decoded.getBottleneckDescription());
+
+      //////////////////////////////////////////////////////////////
+      // and adding to a decoded timeline carries on where it was //
+      //////////////////////////////////////////////////////////////
+      decoded.addPage(1, 1, 1, 1, 10_000_001L);
+      assertEquals(101, decoded.getPageCount());
+
+      assertThrows(IllegalArgumentException.class, () -> EtlPageTimeline.decode("AA=="));
+      assertThrows(IllegalArgumentException.class, () -> EtlPageTimeline.decode("AQ=="));
+   }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ExpiryWheel 
+ *******************************************************************************/
+class ExpiryWheelTest
+{
+
+   /*******************************************************************************
+    ** items are only handed over once their deadlines have passed.
+    *******************************************************************************/
+   @Test
+   void testExpiresWhenDue()
+   {
+      ExpiryWheel<String> wheel   = new ExpiryWheel<>(10, 16, 1000);
+      List<String>        expired = new ArrayList<>();
+
+      wheel.schedule("a", 1025);
+      wheel.schedule("b", 1055);
+
+      assertEquals(0, wheel.advance(1020, item -> drop(expired, item)));
+      assertEquals(List.of(), expired);
+
+      assertEquals(1, wheel.advance(1030, item -> drop(expired, item)));
+      assertEquals(List.of("a"), expired);
+
+      ////////////////////////////////////////////////////////
+      // advancing again at the same time does nothing more //
+      ////////////////////////////////////////////////////////
+      assertEquals(0, wheel.advance(1030, item -> drop(expired, item)));
+
+      wheel.advance(1060, item -> drop(expired, item));
+      assertEquals(List.of("a", "b"), expired);
+   }
+
+
+
+   /*******************************************************************************
+    ** a handler that returns a later deadline gets the item back then.
+    *******************************************************************************/
+   @Test
+   void testReschedule()
+   {
+      ExpiryWheel<String>  wheel     = new ExpiryWheel<>(10, 16, 0);
+      Map<String, Integer> handedOver = new HashMap<>();
+
+      wheel.schedule("a", 15);
+      wheel.advance(20, item ->
+      {
+         handedOver.merge(item, 1, Integer::sum);
+         return (55);
+      });
+      assertEquals(1, handedOver.get("a"));
+
+      wheel.advance(50, item ->
+      {
+         handedOver.merge(item, 1, Integer::sum);
+         return (0);
+      });
+      assertEquals(1, handedOver.get("a"));
+
+      wheel.advance(60, item ->
+      {
+         handedOver.merge(item, 1, Integer::sum);
+         return (0);
+      });
+      assertEquals(2, handedOver.get("a"));
+   }
+
+
+
+   /*******************************************************************************
+    ** deadlines past a full rotation of the wheel, and advancing past more than
+    ** a full rotation at once.
+    *******************************************************************************/
+   @Test
+   void testMoreThanOneRotation()
+   {
+      ExpiryWheel<Integer> wheel   = new ExpiryWheel<>(1, 4, 0);
+      List<Integer>        expired = new ArrayList<>();
+
+      for(int i = 1; i <= 20; i++)
+      {
+         wheel.schedule(i, i);
+      }
+
+      ////////////////////////////////////////////////////////////////////////
+      // items further out than the wheel's 4 slots are handed over early - //
+      // the handler returns their (future) deadline, to re-schedule them   //
+      ////////////////////////////////////////////////////////////////////////
+      long[] now = new long[] { 0 };
+      for(now[0] = 1; now[0] <= 10; now[0]++)
+      {
+         wheel.advance(now[0], item -> item > now[0] ? item : drop(expired, item));
+      }
+      assertEquals(9, expired.size());
+      assertTrue(expired.stream().allMatch(i -> i < 10));
+
+      now[0] = 1000;
+      wheel.advance(now[0], item -> item > now[0] ? item : drop(expired, item));
+      assertEquals(20, expired.size());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   private static <T> long drop(List<T> expired, T item)
+   {
+      expired.add(item);
+      return (0);
+   }
+
+}
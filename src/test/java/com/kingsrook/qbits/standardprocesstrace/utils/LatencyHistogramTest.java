@@ -0,0 +1,159 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for LatencyHistogram 
+ *******************************************************************************/
+class LatencyHistogramTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEmpty()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals(0, histogram.getTotalCount());
+      assertNull(histogram.getMax());
+      assertNull(histogram.getPercentile(0.5));
+      assertNull(LatencyHistogram.decode(null).getMax());
+      assertEquals(0, LatencyHistogram.decode(histogram.encode()).getTotalCount());
+   }
+
+
+
+   /*******************************************************************************
+    ** every value's bucket should hold it, and the buckets should be contiguous.
+    *******************************************************************************/
+   @Test
+   void testBuckets()
+   {
+      long previousUpperBound = -1;
+      for(int index = 0; index <= LatencyHistogram.bucketIndex(Integer.MAX_VALUE); index++)
+      {
+         long upperBound = LatencyHistogram.bucketUpperBound(index);
+         assertEquals(index, LatencyHistogram.bucketIndex(previousUpperBound + 1));
+         assertEquals(index, LatencyHistogram.bucketIndex(upperBound));
+         previousUpperBound = upperBound;
+      }
+      assertEquals(Integer.MAX_VALUE, previousUpperBound);
+   }
+
+
+
+   /*******************************************************************************
+    ** one slow call shouldn't hide in the median, but should show up as the max
+    ** (and, with enough of them, in the tail percentiles).
+    *******************************************************************************/
+   @Test
+   void testPercentiles()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for(int i = 0; i < 1000; i++)
+      {
+         histogram.record(30);
+      }
+      histogram.record(30_000);
+
+      assertEquals(1001, histogram.getTotalCount());
+      assertThat(histogram.getPercentile(0.5)).isBetween(30, 31);
+      assertThat(histogram.getPercentile(0.99)).isBetween(30, 31);
+      assertEquals(30_000, histogram.getMax());
+      assertEquals(30_000, histogram.getPercentile(1.0));
+
+      for(int i = 0; i < 20; i++)
+      {
+         histogram.record(30_000);
+      }
+      assertEquals(30_000, histogram.getPercentile(0.99));
+   }
+
+
+
+   /*******************************************************************************
+    ** percentiles should be within the histogram's precision (12.5%) of exact.
+    *******************************************************************************/
+   @Test
+   void testPrecision()
+   {
+      Random           random    = new Random(19);
+      LatencyHistogram histogram = new LatencyHistogram();
+      int[]            values    = new int[10_000];
+      for(int i = 0; i < values.length; i++)
+      {
+         values[i] = (int) Math.exp(random.nextDouble() * 12);
+         histogram.record(values[i]);
+      }
+      Arrays.sort(values);
+
+      for(double percentile : new double[] { 0.5, 0.95, 0.99 })
+      {
+         int exact = values[(int) Math.ceil(percentile * values.length) - 1];
+         assertThat(histogram.getPercentile(percentile)).isBetween(exact, (int) Math.ceil(exact * 1.125));
+      }
+      assertEquals(values[values.length - 1], histogram.getMax());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEncodeDecodeAndMerge()
+   {
+      LatencyHistogram a = new LatencyHistogram();
+      LatencyHistogram b = new LatencyHistogram();
+      for(int i = 0; i < 100; i++)
+      {
+         a.record(i);
+         b.record(i * 100L);
+      }
+      b.record(-5);
+      b.record(Long.MAX_VALUE);
+
+      LatencyHistogram decoded = LatencyHistogram.decode(b.encode());
+      assertEquals(b.getTotalCount(), decoded.getTotalCount());
+      assertEquals(Integer.MAX_VALUE, decoded.getMax());
+      assertEquals(b.getPercentile(0.5), decoded.getPercentile(0.5));
+      assertEquals(b.encode(), decoded.encode());
+
+      decoded.merge(a);
+      assertEquals(202, decoded.getTotalCount());
+      assertEquals(Integer.MAX_VALUE, decoded.getMax());
+
+      assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode("AA=="));
+   }
+
+}
@@ -22,17 +22,36 @@
 package com.kingsrook.qbits.standardprocesstrace.utils;
 
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QCollectingLogger;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSystemUserSession;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.memory.MemoryRecordStore;
 import com.kingsrook.qqq.backend.core.utils.SleepUtils;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /*******************************************************************************
@@ -40,10 +59,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  *******************************************************************************/
 class ProcessTraceBackendActivityStatsManagerTest
 {
+   private static final QLogger LOG = QLogger.getLogger(ProcessTraceBackendActivityStatsManagerTest.class);
+
    ProcessTraceBackendActivityStatsManager.Key key = new ProcessTraceBackendActivityStatsManager.Key("b", "t", "a");
 
 
 
+   /*******************************************************************************
+    ** start from empty (e.g., of anything left by other test classes)
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach()
+   {
+      ProcessTraceBackendActivityStatsManager.getInstance().shutdown();
+   }
+
+
+
    /*******************************************************************************
     **
     *******************************************************************************/
@@ -52,6 +84,263 @@ class ProcessTraceBackendActivityStatsManagerTest
    {
       ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
       manager.shutdown();
+      manager.setMaxProcesses(ProcessTraceBackendActivityStatsManager.DEFAULT_MAX_PROCESSES);
+      manager.setMaxKeysPerProcess(ProcessTraceBackendActivityStatsManager.DEFAULT_MAX_KEYS_PER_PROCESS);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testInternedKeys() throws QException
+   {
+      QInstance qInstance = new StandardProcessTraceTestApplication().defineQInstance();
+      QContext.init(qInstance, new QSystemUserSession());
+      MemoryRecordStore.fullReset();
+
+      try
+      {
+         ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+
+         ProcessTraceBackendActivityStatsManager.Key personQuery = manager.getKey(qInstance, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, "query");
+         assertEquals(StandardProcessTraceTestApplication.MEMORY_BACKEND_NAME, personQuery.backendName());
+         assertEquals(StandardProcessTraceTestApplication.TABLE_NAME_PERSON, personQuery.tableName());
+         assertEquals("query", personQuery.actionName());
+
+         ///////////////////////////////////////////////////////////////////
+         // same table & action gives the same object; others don't - but //
+         // still equal to a plain key with the same names                //
+         ///////////////////////////////////////////////////////////////////
+         assertSame(personQuery, manager.getKey(qInstance, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, "query"));
+         assertNotSame(personQuery, manager.getKey(qInstance, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, "insert"));
+         assertNotSame(personQuery, manager.getKey(qInstance, StandardProcessTraceTestApplication.TABLE_NAME_ORDER, "query"));
+         assertEquals(new ProcessTraceBackendActivityStatsManager.Key(StandardProcessTraceTestApplication.MEMORY_BACKEND_NAME, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, "query"), personQuery);
+
+         //////////////////////////////////////
+         // a new instance gets its own keys //
+         //////////////////////////////////////
+         QInstance otherInstance = new StandardProcessTraceTestApplication().defineQInstance();
+         assertNotSame(personQuery, manager.getKey(otherInstance, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, "query"));
+
+         //////////////////////////////////////////////////////////////////
+         // stats for an interned key get the backend & table ids (which //
+         // the key then keeps, for the next process)                    //
+         //////////////////////////////////////////////////////////////////
+         for(long processTraceId = 3L; processTraceId <= 4L; processTraceId++)
+         {
+            manager.initProcess(processTraceId);
+            manager.add(processTraceId, personQuery, 1, 2, 3);
+
+            List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+            assertEquals(1, stats.size());
+            assertEquals(ProcessTraceQQQIdCache.getQQQBackendId(qInstance, StandardProcessTraceTestApplication.MEMORY_BACKEND_NAME), stats.get(0).getQqqBackendId());
+            assertEquals(ProcessTraceQQQIdCache.getQQQTableId(qInstance, StandardProcessTraceTestApplication.TABLE_NAME_PERSON), stats.get(0).getQqqTableId());
+            assertEquals("query", stats.get(0).getActionName());
+         }
+      }
+      finally
+      {
+         MemoryRecordStore.fullReset();
+         QContext.clear();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testMaxKeysPerProcess() throws QException
+   {
+      ProcessTraceBackendActivityStatsManager         manager        = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceBackendActivityStatsManager.Metrics before         = manager.getMetrics();
+      long                                            processTraceId = 5L;
+      manager.setMaxKeysPerProcess(2);
+
+      manager.initProcess(processTraceId);
+      for(String tableName : List.of("t1", "t2", "t3", "t4"))
+      {
+         manager.add(processTraceId, new ProcessTraceBackendActivityStatsManager.Key("b", tableName, "a"), 1, 2, 3);
+      }
+      manager.add(processTraceId, new ProcessTraceBackendActivityStatsManager.Key("b", "t1", "a"), 1, 2, 3);
+
+      assertEquals(2, manager.getMetrics().overflowedStats() - before.overflowedStats());
+
+      ///////////////////////////////////////////////////////////////
+      // t1 & t2 keep their own stats; t3 & t4 share the other key //
+      ///////////////////////////////////////////////////////////////
+      List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+      assertEquals(3, stats.size());
+      ProcessTraceBackendActivityStats other = stats.stream().filter(s -> ProcessTraceBackendActivityStatsManager.OTHER_KEY.actionName().equals(s.getActionName())).findFirst().orElseThrow();
+      assertEquals(2, other.getCallCount());
+      assertEquals(4, other.getRecordCount());
+      assertThat(stats).anyMatch(s -> "a".equals(s.getActionName()) && s.getCallCount() == 2);
+   }
+
+
+
+   /*******************************************************************************
+    ** overflowed stats within steps go to a per-step other key for each step
+    ** - one per process, so nothing about them outlives the process.
+    *******************************************************************************/
+   @Test
+   void testMaxKeysPerProcessInSteps() throws QException
+   {
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      manager.setMaxKeysPerProcess(1);
+
+      for(long processTraceId : new long[] { 6L, 7L })
+      {
+         manager.initProcess(processTraceId);
+         for(String stepName : List.of("s1", "s2"))
+         {
+            manager.setCurrentStep(processTraceId, stepName);
+            manager.add(processTraceId, new ProcessTraceBackendActivityStatsManager.Key("b", "t1", "a"), 1, 2, 3);
+            manager.add(processTraceId, new ProcessTraceBackendActivityStatsManager.Key("b", "t2", "a"), 1, 2, 3);
+         }
+
+         List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+         assertEquals(List.of("s1", "s2"), stats.stream()
+            .filter(s -> ProcessTraceBackendActivityStatsManager.OTHER_KEY.actionName().equals(s.getActionName()))
+            .map(ProcessTraceBackendActivityStats::getStepName)
+            .toList());
+      }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testMaxProcesses() throws QException
+   {
+      ProcessTraceBackendActivityStatsManager         manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceBackendActivityStatsManager.Metrics before  = manager.getMetrics();
+      manager.setMaxProcesses(10);
+
+      for(long processTraceId = 1; processTraceId <= 10; processTraceId++)
+      {
+         manager.initProcess(processTraceId);
+         manager.add(processTraceId, key, 1, 2, 3);
+      }
+      assertEquals(10, manager.getMetrics().processCount());
+
+      //////////////////////////////////////////////////////////////
+      // one more (via add, without init) evicts the oldest (10%) //
+      //////////////////////////////////////////////////////////////
+      manager.add(11L, key, 1, 2, 3);
+      ProcessTraceBackendActivityStatsManager.Metrics after = manager.getMetrics();
+      assertEquals(10, after.processCount());
+      assertEquals(1, after.evictedByCapacity() - before.evictedByCapacity());
+      assertThat(manager.getAndRemoveStats(1L)).isEmpty();
+      assertThat(manager.getAndRemoveStats(2L)).hasSize(1);
+      assertThat(manager.getAndRemoveStats(11L)).hasSize(1);
+   }
+
+
+
+   /*******************************************************************************
+    ** at the cap, it's the processes that have gone quiet that are evicted - not
+    ** the first ones created, if they're still adding stats.
+    *******************************************************************************/
+   @Test
+   void testMaxProcessesEvictsLeastRecentlyActive() throws QException
+   {
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      manager.setMaxProcesses(10);
+      manager.setCleanupMaxAge(1000);
+
+      for(long processTraceId = 1; processTraceId <= 10; processTraceId++)
+      {
+         manager.initProcess(processTraceId);
+      }
+
+      //////////////////////////////////////////////////////////////
+      // process 1 (the first created) is still active - past the //
+      // resolution of activity times (a tenth of the max age)    //
+      //////////////////////////////////////////////////////////////
+      SleepUtils.sleep(150, TimeUnit.MILLISECONDS);
+      manager.add(1L, key, 1, 2, 3);
+
+      manager.add(11L, key, 1, 2, 3);
+      assertThat(manager.getAndRemoveStats(1L)).hasSize(1);
+      assertThat(manager.getAndRemoveStats(11L)).hasSize(1);
+      assertEquals(8, manager.getMetrics().processCount());
+   }
+
+
+
+   /*******************************************************************************
+    ** stats added through a context after its process's stats were collected
+    ** are counted (and warned about, once) - rather than silently lost.
+    *******************************************************************************/
+   @Test
+   void testAddThroughReleasedContext() throws QException
+   {
+      QCollectingLogger collectingLogger = QLogger.activateCollectingLoggerForClass(ProcessTraceBackendActivityStatsManager.class);
+
+      ProcessTraceBackendActivityStatsManager         manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceBackendActivityStatsManager.Metrics before  = manager.getMetrics();
+      ProcessTraceContext                             context = manager.getContext(12L);
+      manager.add(context, key, 1, 2, 3);
+      assertThat(manager.getAndRemoveStats(12L)).hasSize(1);
+
+      manager.add(context, key, 1, 2, 3);
+      manager.add(context, key, 1, 2, 3);
+      QLogger.deactivateCollectingLoggerForClass(ProcessTraceBackendActivityStatsManager.class);
+
+      assertEquals(2, manager.getMetrics().releasedContextStats() - before.releasedContextStats());
+      assertEquals(1, collectingLogger.getCollectedMessages().stream().filter(clm -> clm.getMessage().contains("no longer held")).count());
+      assertEquals(0, manager.getMetrics().processCount());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testMemoryPressureAndMetrics()
+   {
+      ProcessTraceBackendActivityStatsManager         manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceBackendActivityStatsManager.Metrics before  = manager.getMetrics();
+
+      for(long processTraceId = 1; processTraceId <= 10; processTraceId++)
+      {
+         manager.add(processTraceId, key, 1, 2, 3);
+         manager.add(processTraceId, new ProcessTraceBackendActivityStatsManager.Key("b", "t2", "a"), 1, 2, 3);
+      }
+
+      ProcessTraceBackendActivityStatsManager.Metrics metrics = manager.getMetrics();
+      assertEquals(10, metrics.processCount());
+      assertEquals(20, metrics.keyCount());
+      assertThat(metrics.estimatedBytes()).isGreaterThan(0);
+
+      manager.handleMemoryPressure();
+      metrics = manager.getMetrics();
+      assertEquals(5, metrics.processCount());
+      assertEquals(5, metrics.evictedByMemoryPressure() - before.evictedByMemoryPressure());
+
+      assertThrows(IllegalArgumentException.class, () -> manager.setMemoryPressureThreshold(1.5));
+
+      ///////////////////////////////////////////////////////////////////////
+      // shutting down clears the (JVM-wide) thresholds that were set, and //
+      // a new threshold isn't applied to any pools after that.            //
+      ///////////////////////////////////////////////////////////////////////
+      manager.shutdown();
+      manager.setMemoryPressureThreshold(0.5);
+      for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      {
+         if(pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+         {
+            assertEquals(0, pool.getCollectionUsageThreshold());
+         }
+      }
+      manager.setMemoryPressureThreshold(ProcessTraceBackendActivityStatsManager.DEFAULT_MEMORY_PRESSURE_THRESHOLD);
    }
 
 
@@ -112,4 +401,258 @@ class ProcessTraceBackendActivityStatsManagerTest
       assertEquals(1, stats.size());
    }
 
+
+
+
+   /*******************************************************************************
+    ** a process that's still having stats added shouldn't expire, even once it's
+    ** older than the max age - but one that's gone quiet should.
+    *******************************************************************************/
+   @Test
+   void testExpiryIsByLastActivity() throws QException
+   {
+      long activeProcessTraceId = 3L;
+      long idleProcessTraceId   = 4L;
+
+      ProcessTraceBackendActivityStatsManager         manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceBackendActivityStatsManager.Metrics before  = manager.getMetrics();
+      manager.setCleanupIntervalMillis(5);
+      manager.setCleanupMaxAge(40);
+
+      manager.initProcess(activeProcessTraceId);
+      manager.initProcess(idleProcessTraceId);
+      manager.add(idleProcessTraceId, key, 1, 2, 3);
+
+      long start = System.currentTimeMillis();
+      while(System.currentTimeMillis() - start < 150)
+      {
+         manager.add(activeProcessTraceId, key, 1, 2, 3);
+         SleepUtils.sleep(5, TimeUnit.MILLISECONDS);
+      }
+
+      assertEquals(1, manager.getMetrics().processCount());
+      assertEquals(1, manager.getMetrics().evictedByAge() - before.evictedByAge());
+      assertEquals(0, manager.getAndRemoveStats(idleProcessTraceId).size());
+      assertEquals(1, manager.getAndRemoveStats(activeProcessTraceId).size());
+   }
+
+
+
+   /*******************************************************************************
+    ** stats rows should carry latency percentiles - so one slow call stands out
+    ** from many fast ones, rather than just adding to the sum.
+    *******************************************************************************/
+   @Test
+   void testLatencyPercentiles() throws QException
+   {
+      long processTraceId = 5L;
+
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      manager.initProcess(processTraceId);
+      for(int i = 0; i < 99; i++)
+      {
+         manager.add(processTraceId, key, 1, 1, 10);
+      }
+      manager.add(processTraceId, key, 1, 1, 5000);
+
+      ////////////////////////////////////////////////////////////////////////
+      // a pre-aggregated add counts towards the sum, but not the histogram //
+      ////////////////////////////////////////////////////////////////////////
+      manager.add(processTraceId, key, 10, 10, 100_000);
+
+      List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+      assertEquals(1, stats.size());
+      assertEquals(110, stats.get(0).getCallCount());
+      assertEquals(99 * 10 + 5000 + 100_000, stats.get(0).getRuntimeMillis());
+      assertEquals(10, stats.get(0).getP50Millis());
+      assertEquals(10, stats.get(0).getP95Millis());
+      assertEquals(10, stats.get(0).getP99Millis());
+      assertEquals(5000, stats.get(0).getMaxMillis());
+      assertEquals(100, LatencyHistogram.decode(stats.get(0).getLatencyHistogram()).getTotalCount());
+   }
+
+
+
+   /*******************************************************************************
+    ** contention benchmark - threads (from 1 to 64) all adding to the same
+    ** process and key, logging throughput at each thread count.  With striped
+    ** counters, throughput should scale with the number of cores, rather than
+    ** flattening out (or dropping) as it did behind a single lock - so 64
+    ** threads must get at least half of a linear speedup (up to the number of
+    ** cores) over 1 thread.
+    **
+    ** Only runs with -DprocessTraceBenchmarks=true
+    *******************************************************************************/
+   @Test
+   @EnabledIfSystemProperty(named = "processTraceBenchmarks", matches = "true")
+   void benchmarkContention() throws Exception
+   {
+      long processTraceId = 4L;
+      int  addsPerThread  = 1_000_000;
+
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+
+      ////////////////////////////////////////////////////////////
+      // warm up first, so the 1-thread baseline isn't run cold //
+      ////////////////////////////////////////////////////////////
+      measureAddsPerSecond(manager, processTraceId, 4, addsPerThread);
+
+      double singleThreadAddsPerSecond = 0;
+      double addsPerSecond             = 0;
+      for(int threadCount = 1; threadCount <= 64; threadCount *= 2)
+      {
+         addsPerSecond = measureAddsPerSecond(manager, processTraceId, threadCount, addsPerThread);
+         if(threadCount == 1)
+         {
+            singleThreadAddsPerSecond = addsPerSecond;
+         }
+
+         LOG.info("Contention benchmark", logPair("threads", threadCount), logPair("addsPerSecond", Math.round(addsPerSecond)), logPair("speedup", addsPerSecond / singleThreadAddsPerSecond));
+      }
+
+      double speedup    = addsPerSecond / singleThreadAddsPerSecond;
+      double minSpeedup = Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors()) / 2.0);
+      assertTrue(speedup >= minSpeedup, "Expected 64 threads to be at least " + minSpeedup + "x faster than 1 thread, but were " + speedup + "x");
+   }
+
+
+
+   /*******************************************************************************
+    ** time a number of threads all adding to the same process and key, and
+    ** return the total adds per second they achieved.
+    *******************************************************************************/
+   private double measureAddsPerSecond(ProcessTraceBackendActivityStatsManager manager, long processTraceId, int threadCount, int addsPerThread) throws Exception
+   {
+      manager.initProcess(processTraceId);
+
+      long start = System.nanoTime();
+      runConcurrently(threadCount, threadNo ->
+      {
+         for(int i = 0; i < addsPerThread; i++)
+         {
+            manager.add(processTraceId, key, 1, 1, 1);
+         }
+      });
+      long elapsedNanos = System.nanoTime() - start;
+
+      manager.getAndRemoveStats(processTraceId);
+      return ((double) threadCount * addsPerThread / elapsedNanos * 1_000_000_000);
+   }
+
+
+
+   /*******************************************************************************
+    ** stats added while a step is running are kept separately per step, and
+    ** come out grouped by step, in the order the steps started.
+    *******************************************************************************/
+   @Test
+   void testStepAttribution() throws QException
+   {
+      long processTraceId = 6L;
+
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      manager.initProcess(processTraceId);
+      manager.add(processTraceId, key, 1, 1, 1);
+
+      manager.setCurrentStep(processTraceId, "transform");
+      manager.add(processTraceId, key, 1, 10, 10);
+      manager.add(processTraceId, key, 1, 10, 10);
+      manager.setCurrentStep(processTraceId, null);
+
+      manager.setCurrentStep(processTraceId, "load");
+      manager.add(processTraceId, key, 1, 100, 100);
+      manager.setCurrentStep(processTraceId, null);
+
+      manager.setCurrentStep(processTraceId, "transform");
+      manager.add(processTraceId, key, 1, 10, 10);
+      manager.setCurrentStep(processTraceId, null);
+
+      /////////////////////////////////////////////////////////////
+      // step keys are interned on the step-less key they're for //
+      /////////////////////////////////////////////////////////////
+      assertSame(key.forStep("load"), key.forStep("load"));
+      assertSame(key.forStep("transform"), key.forStep("transform"));
+      assertEquals(new ProcessTraceBackendActivityStatsManager.Key("b", "t", "a", "load"), key.forStep("load"));
+
+      List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+      assertEquals(Arrays.asList(null, "transform", "load"), stats.stream().map(ProcessTraceBackendActivityStats::getStepName).toList());
+      assertEquals(List.of(0, 1, 2), stats.stream().map(ProcessTraceBackendActivityStats::getStepNo).toList());
+      assertEquals(List.of(1, 3, 1), stats.stream().map(ProcessTraceBackendActivityStats::getCallCount).toList());
+      assertEquals(List.of(1, 30, 100), stats.stream().map(ProcessTraceBackendActivityStats::getRecordCount).toList());
+   }
+
+
+
+   /*******************************************************************************
+    ** many threads adding to the same process & keys at once should lose nothing.
+    *******************************************************************************/
+   @Test
+   void testConcurrentAdds() throws Exception
+   {
+      long processTraceId = 3L;
+      int  threadCount    = 64;
+      int  addsPerThread  = 10_000;
+
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      manager.initProcess(processTraceId);
+
+      List<ProcessTraceBackendActivityStatsManager.Key> keys = List.of(
+         new ProcessTraceBackendActivityStatsManager.Key("b", "t1", "a"),
+         new ProcessTraceBackendActivityStatsManager.Key("b", "t2", "a"),
+         new ProcessTraceBackendActivityStatsManager.Key("b", "t3", "a"),
+         new ProcessTraceBackendActivityStatsManager.Key("b", "t4", "a"));
+
+      runConcurrently(threadCount, threadNo ->
+      {
+         for(int i = 0; i < addsPerThread; i++)
+         {
+            manager.add(processTraceId, keys.get(i % keys.size()), 1, 2, 3);
+         }
+      });
+
+      List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(processTraceId);
+      assertEquals(keys.size(), stats.size());
+
+      int expectedCallsPerKey = threadCount * addsPerThread / keys.size();
+      assertThat(stats).allMatch(s -> s.getCallCount() == expectedCallsPerKey);
+      assertThat(stats).allMatch(s -> s.getRecordCount() == 2 * expectedCallsPerKey);
+      assertThat(stats).allMatch(s -> s.getRuntimeMillis() == 3 * expectedCallsPerKey);
+   }
+
+
+
+   /***************************************************************************
+    * run a body of code in a number of threads, all started at once, and wait
+    * for them all to finish.
+    ***************************************************************************/
+   private static void runConcurrently(int threadCount, IntConsumer body) throws Exception
+   {
+      CountDownLatch startLatch = new CountDownLatch(1);
+      List<Thread>   threads    = new ArrayList<>();
+      for(int t = 0; t < threadCount; t++)
+      {
+         int threadNo = t;
+         Thread thread = new Thread(() ->
+         {
+            try
+            {
+               startLatch.await();
+               body.accept(threadNo);
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+            }
+         });
+         thread.start();
+         threads.add(thread);
+      }
+
+      startLatch.countDown();
+      for(Thread thread : threads)
+      {
+         thread.join();
+      }
+   }
+
 }
\ No newline at end of file
@@ -0,0 +1,266 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.querystats.QueryStat;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.model.session.QSystemUserSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceContext 
+ *******************************************************************************/
+class ProcessTraceContextTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachUnbind()
+   {
+      ProcessTraceContext.bind(null);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testBindAndRestore()
+   {
+      ProcessTraceBackendActivityStatsManager manager = ProcessTraceBackendActivityStatsManager.getInstance();
+      ProcessTraceContext                     outer   = manager.getContext(1);
+      ProcessTraceContext                     inner   = manager.getContext(2);
+      assertNull(ProcessTraceContext.current());
+
+      assertNull(ProcessTraceContext.bind(outer));
+      assertSame(outer, ProcessTraceContext.current());
+
+      ProcessTraceContext previous = ProcessTraceContext.bind(inner);
+      assertSame(outer, previous);
+      assertSame(inner, ProcessTraceContext.current());
+      assertEquals(2, inner.getProcessTraceId());
+
+      ProcessTraceContext.bind(previous);
+      assertSame(outer, ProcessTraceContext.current());
+
+      ProcessTraceContext.bind(null);
+      assertNull(ProcessTraceContext.current());
+
+      manager.removeStats(1L);
+      manager.removeStats(2L);
+   }
+
+
+
+   /*******************************************************************************
+    ** threads sharing one session, each with their own context bound, should
+    ** each get their own stats - and a thread without one should fall back to
+    ** the processTraceId in the session.
+    *******************************************************************************/
+   @Test
+   void testAttributionPerThreadInSharedSession() throws Exception
+   {
+      QInstance                               qInstance = QContext.getQInstance();
+      QSession                                session   = new QSystemUserSession();
+      ProcessTraceBackendActivityStatsManager manager   = ProcessTraceBackendActivityStatsManager.getInstance();
+      session.setValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY, "103");
+
+      List<Thread> threads = new ArrayList<>();
+      for(long processTraceId = 101; processTraceId <= 103; processTraceId++)
+      {
+         long   id        = processTraceId;
+         int    statCount = (int) (processTraceId - 100) * 10;
+         Thread thread    = new Thread(() ->
+         {
+            QContext.init(qInstance, session);
+            if(id != 103)
+            {
+               ProcessTraceContext.bind(manager.getContext(id));
+            }
+
+            StandardProcessTraceQueryStatConsumer consumer = new StandardProcessTraceQueryStatConsumer();
+            for(int i = 0; i < statCount; i++)
+            {
+               consumer.accept(newQueryStat());
+            }
+
+            ProcessTraceContext.bind(null);
+            QContext.clear();
+         });
+         threads.add(thread);
+         thread.start();
+      }
+
+      for(Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertEquals(10, getCallCount(101));
+      assertEquals(20, getCallCount(102));
+      assertEquals(30, getCallCount(103));
+   }
+
+
+
+   /*******************************************************************************
+    ** tasks run through a wrapped executor get the submitting thread's context
+    ** (even though the executor's threads have no session value) - and the
+    ** executor's threads don't keep it afterward.
+    *******************************************************************************/
+   @Test
+   void testWrappedExecutorService() throws Exception
+   {
+      QInstance                               qInstance = QContext.getQInstance();
+      ProcessTraceBackendActivityStatsManager manager   = ProcessTraceBackendActivityStatsManager.getInstance();
+      ExecutorService                         pool      = Executors.newFixedThreadPool(4);
+      ExecutorService                         wrapped   = ProcessTraceContext.wrap(pool);
+
+      Runnable task = () ->
+      {
+         QContext.init(qInstance, new QSystemUserSession());
+         new StandardProcessTraceQueryStatConsumer().accept(newQueryStat());
+         QContext.clear();
+      };
+
+      try
+      {
+         ProcessTraceContext.bind(manager.getContext(201));
+
+         List<Future<?>> futures = new ArrayList<>();
+         for(int i = 0; i < 10; i++)
+         {
+            futures.add(wrapped.submit(task));
+         }
+         wrapped.invokeAll(List.of(Executors.callable(task), Executors.callable(task)));
+         for(Future<?> future : futures)
+         {
+            future.get();
+         }
+
+         ProcessTraceContext.bind(null);
+         assertEquals(12, getCallCount(201));
+
+         //////////////////////////////////////////////////////////
+         // the pool's threads are back to having no context, so //
+         // tasks submitted without one don't get one            //
+         //////////////////////////////////////////////////////////
+         Callable<ProcessTraceContext> getContext = ProcessTraceContext::current;
+         for(int i = 0; i < 8; i++)
+         {
+            assertNull(pool.submit(getContext).get());
+            assertNull(wrapped.submit(getContext).get());
+         }
+      }
+      finally
+      {
+         wrapped.shutdown();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** e.g., for a task given to a thread that's started directly (such as a
+    ** virtual thread).
+    *******************************************************************************/
+   @Test
+   void testWrapTasks() throws Exception
+   {
+      Runnable                      runnable = () -> new StandardProcessTraceQueryStatConsumer().accept(newQueryStat());
+      Callable<ProcessTraceContext> callable = ProcessTraceContext::current;
+
+      /////////////////////////////////////////////////
+      // with no context bound, tasks aren't wrapped //
+      /////////////////////////////////////////////////
+      assertSame(runnable, ProcessTraceContext.wrap(runnable));
+      assertSame(callable, ProcessTraceContext.wrap(callable));
+
+      ProcessTraceContext context = ProcessTraceBackendActivityStatsManager.getInstance().getContext(202);
+      ProcessTraceContext.bind(context);
+      assertSame(context, ProcessTraceContext.wrap(callable).call());
+
+      QInstance qInstance       = QContext.getQInstance();
+      Runnable  wrappedRunnable = ProcessTraceContext.wrap(() ->
+      {
+         QContext.init(qInstance, new QSystemUserSession());
+         runnable.run();
+         QContext.clear();
+      });
+      ProcessTraceContext.bind(null);
+
+      Thread thread = new Thread(wrappedRunnable);
+      thread.start();
+      thread.join();
+
+      assertEquals(1, getCallCount(202));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static QueryStat newQueryStat()
+   {
+      QueryStat queryStat = new QueryStat();
+      queryStat.setTableName(StandardProcessTraceTestApplication.TABLE_NAME_PERSON);
+      queryStat.setBackendAction("query");
+      queryStat.setRecordCount(1);
+      queryStat.setFirstResultMillis(1);
+      return (queryStat);
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static int getCallCount(long processTraceId) throws QException
+   {
+      List<ProcessTraceBackendActivityStats> stats = ProcessTraceBackendActivityStatsManager.getInstance().getAndRemoveStats(processTraceId);
+      assertEquals(1, stats.size());
+      return (stats.get(0).getCallCount());
+   }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.util.List;
+import java.util.Optional;
+import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStatsAction;
+import com.kingsrook.qqq.backend.core.actions.processes.QProcessCallbackFactory;
+import com.kingsrook.qqq.backend.core.actions.processes.RunProcessAction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessInput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTracePageSizeAdvisor 
+ *******************************************************************************/
+class ProcessTracePageSizeAdvisorTest extends BaseTest
+{
+   private static final String PROCESS_NAME = StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS;
+   private static final String TABLE_NAME   = StandardProcessTraceTestApplication.TABLE_NAME_ORDER;
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach()
+   {
+      ProcessTracePageSizeAdvisor.clearCache();
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachResetConfig()
+   {
+      ProcessTraceWriter.getInstance().shutdown();
+      ProcessTraceWriter.resetInstance();
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(null);
+      ProcessTracePageSizeAdvisor.clearCache();
+   }
+
+
+
+   /*******************************************************************************
+    ** of the page sizes with enough runs, the fastest one is recommended.
+    *******************************************************************************/
+   @Test
+   void testRecommendation() throws QException
+   {
+      insertHistory();
+
+      //////////////////////////////////////////////////////////////////////
+      // traces are read as the system user, then the caller's session is //
+      // put back in place.                                               //
+      //////////////////////////////////////////////////////////////////////
+      QSession callerSession = QContext.getQSession();
+      Optional<ProcessTracePageSizeAdvisor.Recommendation> recommendation = ProcessTracePageSizeAdvisor.getRecommendation(PROCESS_NAME, TABLE_NAME);
+      assertSame(callerSession, QContext.getQSession());
+      assertTrue(recommendation.isPresent());
+      assertEquals(500, recommendation.get().pageSize());
+      assertEquals(1000, recommendation.get().recordsPerSecond(), 0.001);
+      assertEquals(3, recommendation.get().traceCount());
+
+      ////////////////////////////////////////////////////////////////////////
+      // the failed run isn't a candidate; the lone fast run at 250 is one, //
+      // but doesn't have enough runs to be recommended.                    //
+      ////////////////////////////////////////////////////////////////////////
+      List<ProcessTracePageSizeAdvisor.Candidate> candidates = recommendation.get().candidates();
+      assertEquals(List.of(100, 250, 500, 1000), candidates.stream().map(ProcessTracePageSizeAdvisor.Candidate::pageSize).toList());
+      assertEquals(List.of(3, 1, 3, 3), candidates.stream().map(ProcessTracePageSizeAdvisor.Candidate::traceCount).toList());
+      assertEquals(500, candidates.get(0).recordsPerSecond(), 0.001);
+
+      assertEquals(500, ProcessTracePageSizeAdvisor.getRecommendedPageSize(PROCESS_NAME, TABLE_NAME));
+   }
+
+
+
+   /*******************************************************************************
+    ** no recommendation without enough runs, or without any writes to the table.
+    *******************************************************************************/
+   @Test
+   void testNoRecommendation() throws QException
+   {
+      assertNull(ProcessTracePageSizeAdvisor.getRecommendedPageSize(PROCESS_NAME, TABLE_NAME));
+
+      insertHistory();
+      assertTrue(ProcessTracePageSizeAdvisor.computeRecommendation(QContext.getQInstance(), PROCESS_NAME, TABLE_NAME, 100, 4).isEmpty());
+      assertTrue(ProcessTracePageSizeAdvisor.computeRecommendation(QContext.getQInstance(), PROCESS_NAME, StandardProcessTraceTestApplication.TABLE_NAME_PERSON, 100, 1).isEmpty());
+      assertNull(ProcessTracePageSizeAdvisor.getRecommendedPageSize(PROCESS_NAME, null));
+
+      /////////////////////////////////////////////////////////////
+      // only looking at the most recent 3 traces (the 1000's) - //
+      // which leaves 1000 as the only page size to recommend.   //
+      /////////////////////////////////////////////////////////////
+      assertEquals(1000, ProcessTracePageSizeAdvisor.computeRecommendation(QContext.getQInstance(), PROCESS_NAME, TABLE_NAME, 3, 3).orElseThrow().pageSize());
+   }
+
+
+
+   /*******************************************************************************
+    ** when configured to, the tracer puts the recommendation into the process's
+    ** values at its start - finding the destination table from the process's
+    ** meta-data.
+    *******************************************************************************/
+   @Test
+   void testPublishedByTracer() throws QException
+   {
+      insertHistory();
+
+      assertNull(runProcess().getValue(ProcessTracePageSizeAdvisor.FIELD_RECOMMENDED_PAGE_SIZE));
+
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withIncludeBackendActivityStats(true)
+         .withPublishRecommendedPageSizes(true));
+      assertEquals(500, runProcess().getValueInteger(ProcessTracePageSizeAdvisor.FIELD_RECOMMENDED_PAGE_SIZE));
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static RunProcessOutput runProcess() throws QException
+   {
+      RunProcessInput input = new RunProcessInput();
+      input.setProcessName(PROCESS_NAME);
+      input.setCallback(QProcessCallbackFactory.forFilter(new QQueryFilter()));
+      input.setFrontendStepBehavior(RunProcessInput.FrontendStepBehavior.SKIP);
+      return (new RunProcessAction().execute(input));
+   }
+
+
+
+   /***************************************************************************
+    * runs of 1000 records each:  3 at page size 100 (500 records/second), 3 at
+    * 500 (1000/s), 3 at 1000 (800/s), 1 at 250 (10000/s), and a failed one at
+    * 250 (also very fast).
+    ***************************************************************************/
+   private static void insertHistory() throws QException
+   {
+      for(int i = 0; i < 3; i++)
+      {
+         insertTrace(100, 2000, null);
+      }
+      insertTrace(250, 100, null);
+      insertTrace(250, 50, "Failed");
+      for(int i = 0; i < 3; i++)
+      {
+         insertTrace(500, 1000, null);
+      }
+      for(int i = 0; i < 3; i++)
+      {
+         insertTrace(1000, 1250, null);
+      }
+   }
+
+
+
+   /***************************************************************************
+    * insert a trace of 1000 records, written to the order table at a page
+    * size, along with a query of the person table (which should be ignored).
+    ***************************************************************************/
+   private static void insertTrace(int pageSize, int runtimeMillis, String exceptionMessage) throws QException
+   {
+      ProcessTrace processTrace = new ProcessTrace()
+         .withQqqProcessId(ProcessTraceQQQIdCache.getQQQProcessId(QContext.getQInstance(), PROCESS_NAME))
+         .withRecordCount(1000)
+         .withRuntimeMillis(runtimeMillis)
+         .withExceptionMessage(exceptionMessage);
+      Long processTraceId = new InsertAction().execute(new InsertInput(ProcessTrace.TABLE_NAME).withRecordEntity(processTrace)).getRecords().get(0).getValueLong("id");
+
+      new InsertAction().execute(new InsertInput(ProcessTraceBackendActivityStats.TABLE_NAME).withRecordEntities(List.of(
+         new ProcessTraceBackendActivityStats()
+            .withProcessTraceId(processTraceId)
+            .withQqqTableId(ProcessTraceQQQIdCache.getQQQTableId(QContext.getQInstance(), TABLE_NAME))
+            .withActionName(ProcessTraceBackendActivityStatsAction.INSERT.getId())
+            .withCallCount(1000 / pageSize)
+            .withRecordCount(1000)
+            .withRuntimeMillis(runtimeMillis / 2),
+         new ProcessTraceBackendActivityStats()
+            .withProcessTraceId(processTraceId)
+            .withQqqTableId(ProcessTraceQQQIdCache.getQQQTableId(QContext.getQInstance(), StandardProcessTraceTestApplication.TABLE_NAME_PERSON))
+            .withActionName(ProcessTraceBackendActivityStatsAction.QUERY.getId())
+            .withCallCount(1)
+            .withRecordCount(1000)
+            .withRuntimeMillis(10))));
+   }
+
+}
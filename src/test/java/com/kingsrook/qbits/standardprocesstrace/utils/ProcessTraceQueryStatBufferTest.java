@@ -0,0 +1,295 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QCollectingLogger;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.querystats.QueryStat;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceQueryStatBuffer 
+ *******************************************************************************/
+class ProcessTraceQueryStatBufferTest extends BaseTest
+{
+   private final ProcessTraceBackendActivityStatsManager manager  = ProcessTraceBackendActivityStatsManager.getInstance();
+   private final StandardProcessTraceQueryStatConsumer   consumer = new StandardProcessTraceQueryStatConsumer();
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach()
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseBatchedQueryStatIngestion(true)
+         .withQueryStatBatchSize(5));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachReset()
+   {
+      ProcessTraceContext.bind(null);
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(null);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testDrainedWhenFull() throws QException
+   {
+      ProcessTraceContext.bind(manager.getContext(301));
+      for(int i = 0; i < 7; i++)
+      {
+         consumer.accept(newQueryStat(10));
+      }
+
+      ////////////////////////////////////////////////////////////////
+      // the first 5 were drained when the buffer filled - the rest //
+      // are still buffered                                         //
+      ////////////////////////////////////////////////////////////////
+      List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(301L);
+      assertEquals(1, stats.size());
+      assertEquals(5, stats.get(0).getCallCount());
+      assertEquals(50, stats.get(0).getRecordCount());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testDrainedAtBoundaries() throws QException
+   {
+      //////////////////////////////////////////////////
+      // explicit drain (as at a step or process end) //
+      //////////////////////////////////////////////////
+      ProcessTraceContext.bind(manager.getContext(302));
+      consumer.accept(newQueryStat(1));
+      consumer.accept(newQueryStat(1));
+      ProcessTraceQueryStatBuffer.drainCurrentThread();
+      assertEquals(2, manager.getAndRemoveStats(302L).get(0).getCallCount());
+
+      //////////////////////////////////////////////////////////////
+      // changing the thread's context drains to the outgoing one //
+      //////////////////////////////////////////////////////////////
+      ProcessTraceContext.bind(manager.getContext(303));
+      consumer.accept(newQueryStat(1));
+      ProcessTraceContext.bind(manager.getContext(304));
+      consumer.accept(newQueryStat(1));
+      consumer.accept(newQueryStat(1));
+      ProcessTraceContext.bind(null);
+
+      assertEquals(1, manager.getAndRemoveStats(303L).get(0).getCallCount());
+      assertEquals(2, manager.getAndRemoveStats(304L).get(0).getCallCount());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testNotBufferedWithoutContextOrWhenOff() throws QException
+   {
+      /////////////////////////////////////////////////////////
+      // session fallback (no context) goes straight through //
+      /////////////////////////////////////////////////////////
+      manager.initProcess(305L);
+      QContext.getQSession().setValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY, "305");
+      consumer.accept(newQueryStat(1));
+      QContext.getQSession().removeValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY);
+      assertEquals(1, manager.getAndRemoveStats(305L).get(0).getCallCount());
+
+      ///////////////////////////////////////////////
+      // and, with batching off, so does a context //
+      ///////////////////////////////////////////////
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig());
+      ProcessTraceContext.bind(manager.getContext(306));
+      consumer.accept(newQueryStat(1));
+      assertThat(manager.getAndRemoveStats(306L)).hasSize(1);
+   }
+
+
+
+   /*******************************************************************************
+    ** stats still buffered for a process whose stats have been collected are
+    ** dropped (and counted, and logged) - not added to the released stats, nor
+    ** to a new process with the same id.
+    *******************************************************************************/
+   @Test
+   void testReleasedContextSkipped() throws QException
+   {
+      QCollectingLogger                               collectingLogger = QLogger.activateCollectingLoggerForClass(ProcessTraceBackendActivityStatsManager.class);
+      ProcessTraceBackendActivityStatsManager.Metrics before           = manager.getMetrics();
+
+      ProcessTraceContext context = manager.getContext(308);
+      ProcessTraceContext.bind(context);
+      consumer.accept(newQueryStat(1));
+      consumer.accept(newQueryStat(1));
+
+      manager.getAndRemoveStats(308L);
+      assertTrue(context.isReleased());
+
+      manager.initProcess(308L);
+      ProcessTraceQueryStatBuffer.drainCurrentThread();
+      QLogger.deactivateCollectingLoggerForClass(ProcessTraceBackendActivityStatsManager.class);
+
+      assertThat(manager.getAndRemoveStats(308L)).isEmpty();
+      assertEquals(2, manager.getMetrics().releasedContextStats() - before.releasedContextStats());
+      assertThat(collectingLogger.getCollectedMessages()).anyMatch(clm -> clm.getMessage().contains("no longer held") && clm.getMessage().contains("\"count\":2"));
+   }
+
+
+
+   /*******************************************************************************
+    ** runtime should be the query's full duration (from its start), kept apart
+    ** from the time to its first result - buffered or not.
+    *******************************************************************************/
+   @Test
+   void testFullDurationAndFirstResult() throws QException
+   {
+      for(boolean batched : new boolean[] { true, false })
+      {
+         StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig().withUseBatchedQueryStatIngestion(batched));
+         ProcessTraceContext.bind(manager.getContext(307));
+
+         QueryStat queryStat = newQueryStat(1);
+         queryStat.setStartTimestamp(Instant.now().minusMillis(500));
+         queryStat.setFirstResultMillis(20);
+         consumer.accept(queryStat);
+         consumer.accept(newQueryStat(1));
+         ProcessTraceContext.bind(null);
+
+         ProcessTraceBackendActivityStats stats = manager.getAndRemoveStats(307L).get(0);
+         assertThat(stats.getRuntimeMillis()).isGreaterThanOrEqualTo(501);
+         assertThat(stats.getMaxMillis()).isGreaterThanOrEqualTo(500);
+         assertEquals(21, stats.getFirstResultMillis());
+         assertEquals(20, stats.getMaxFirstResultMillis());
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** a streamed query's stat is given to the consumer once its last page is
+    ** done - so its runtime includes the streaming after the first result (and
+    ** buffering it doesn't add the time until it's drained).
+    *******************************************************************************/
+   @Test
+   void testStreamedQueryDuration() throws QException
+   {
+      for(boolean batched : new boolean[] { true, false })
+      {
+         StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig().withUseBatchedQueryStatIngestion(batched));
+         ProcessTraceContext.bind(manager.getContext(309));
+
+         ///////////////////////////////////////////////////////////////////
+         // first page back after 10ms, then the rest streamed for ~100ms //
+         ///////////////////////////////////////////////////////////////////
+         QueryStat queryStat = newQueryStat(1000);
+         queryStat.setStartTimestamp(Instant.now());
+         queryStat.setFirstResultMillis(10);
+         SleepUtils.sleep(100, TimeUnit.MILLISECONDS);
+         consumer.accept(queryStat);
+
+         SleepUtils.sleep(400, TimeUnit.MILLISECONDS);
+         ProcessTraceContext.bind(null);
+
+         ProcessTraceBackendActivityStats stats = manager.getAndRemoveStats(309L).get(0);
+         assertEquals(10, stats.getFirstResultMillis());
+         assertThat(stats.getRuntimeMillis()).isGreaterThanOrEqualTo(100).isLessThan(400);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** query durations end when the consumer is given the stat - which relies
+    ** on the QueryStatManager giving it over synchronously, as the action
+    ** finishes.  So, with no waiting, the stat must already be counted by the
+    ** time the action returns.
+    *******************************************************************************/
+   @Test
+   void testQueryStatGivenOverAsActionFinishes() throws QException
+   {
+      for(boolean batched : new boolean[] { true, false })
+      {
+         StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig().withUseBatchedQueryStatIngestion(batched));
+         ProcessTraceContext.bind(manager.getContext(310));
+
+         QueryAction.execute(StandardProcessTraceTestApplication.TABLE_NAME_PERSON, new QQueryFilter());
+
+         ProcessTraceContext.bind(null);
+         List<ProcessTraceBackendActivityStats> stats = manager.getAndRemoveStats(310L);
+         assertEquals(1, stats.size());
+         assertEquals(1, stats.get(0).getCallCount());
+         assertEquals(QueryAction.class.getSimpleName(), stats.get(0).getActionName());
+      }
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static QueryStat newQueryStat(int recordCount)
+   {
+      QueryStat queryStat = new QueryStat();
+      queryStat.setTableName(StandardProcessTraceTestApplication.TABLE_NAME_PERSON);
+      queryStat.setBackendAction("query");
+      queryStat.setRecordCount(recordCount);
+      queryStat.setFirstResultMillis(1);
+      return (queryStat);
+   }
+
+}
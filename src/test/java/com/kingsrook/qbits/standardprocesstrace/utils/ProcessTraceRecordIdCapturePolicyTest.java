@@ -0,0 +1,122 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceRecordIdCapturePolicy 
+ *******************************************************************************/
+class ProcessTraceRecordIdCapturePolicyTest
+{
+   private static final List<Serializable> PRIMARY_KEYS = makePrimaryKeys(1000);
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testModes()
+   {
+      assertSame(PRIMARY_KEYS, ProcessTraceRecordIdCapturePolicy.all().apply(PRIMARY_KEYS));
+      assertEquals(0, ProcessTraceRecordIdCapturePolicy.none().apply(PRIMARY_KEYS).size());
+      assertEquals(PRIMARY_KEYS.subList(0, 10), ProcessTraceRecordIdCapturePolicy.cap(10).apply(PRIMARY_KEYS));
+      assertSame(PRIMARY_KEYS, ProcessTraceRecordIdCapturePolicy.cap(5000).apply(PRIMARY_KEYS));
+
+      List<Serializable> sample = ProcessTraceRecordIdCapturePolicy.sample(10).apply(PRIMARY_KEYS);
+      assertEquals(10, sample.size());
+      assertEquals(10, new HashSet<>(sample).size());
+      assertThat(sample).allMatch(PRIMARY_KEYS::contains);
+
+      assertThrows(IllegalArgumentException.class, () -> ProcessTraceRecordIdCapturePolicy.cap(-1));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testConfigResolution()
+   {
+      StandardProcessTraceQBitConfig config = new StandardProcessTraceQBitConfig()
+         .withDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy.cap(100))
+         .withRecordIdCapturePolicy(Status.OK, ProcessTraceRecordIdCapturePolicy.sample(10))
+         .withRecordIdCapturePolicy(Status.INFO, ProcessTraceRecordIdCapturePolicy.none())
+         .withRecordIdCapturePolicy("myProcess", Status.OK, ProcessTraceRecordIdCapturePolicy.all());
+
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.ALL, config.getRecordIdCapturePolicy("myProcess", Status.OK).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.SAMPLE, config.getRecordIdCapturePolicy("otherProcess", Status.OK).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.NONE, config.getRecordIdCapturePolicy("myProcess", Status.INFO).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.CAP, config.getRecordIdCapturePolicy("myProcess", Status.ERROR).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.ALL, new StandardProcessTraceQBitConfig().getRecordIdCapturePolicy("myProcess", Status.ERROR).getMode());
+   }
+
+
+
+   /*******************************************************************************
+    ** a null policy (for a process or a status) falls through to the next less
+    ** specific one, rather than being returned.
+    *******************************************************************************/
+   @Test
+   void testNullPolicyFallsThrough()
+   {
+      StandardProcessTraceQBitConfig config = new StandardProcessTraceQBitConfig()
+         .withDefaultRecordIdCapturePolicy(ProcessTraceRecordIdCapturePolicy.cap(100))
+         .withRecordIdCapturePolicy(Status.OK, ProcessTraceRecordIdCapturePolicy.sample(10))
+         .withRecordIdCapturePolicy(Status.ERROR, null)
+         .withRecordIdCapturePolicy("myProcess", Status.OK, null);
+
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.SAMPLE, config.getRecordIdCapturePolicy("myProcess", Status.OK).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.CAP, config.getRecordIdCapturePolicy("myProcess", Status.ERROR).getMode());
+      assertEquals(ProcessTraceRecordIdCapturePolicy.Mode.ALL, new StandardProcessTraceQBitConfig().withRecordIdCapturePolicy(Status.ERROR, null).getRecordIdCapturePolicy("myProcess", Status.ERROR).getMode());
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static List<Serializable> makePrimaryKeys(int count)
+   {
+      List<Serializable> primaryKeys = new ArrayList<>();
+      for(int i = 0; i < count; i++)
+      {
+         primaryKeys.add(i);
+      }
+      return (primaryKeys);
+   }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordLong;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordString;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldType;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceRecordIdType 
+ *******************************************************************************/
+class ProcessTraceRecordIdTypeTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachTest()
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(null);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testForTable()
+   {
+      assertEquals(ProcessTraceRecordIdType.INTEGER, ProcessTraceRecordIdType.forTable(QContext.getQInstance().getTable(StandardProcessTraceTestApplication.TABLE_NAME_ORDER)));
+      assertEquals(ProcessTraceRecordIdType.INTEGER, ProcessTraceRecordIdType.forTable(null));
+      assertEquals(ProcessTraceRecordIdType.LONG, ProcessTraceRecordIdType.forTable(makeTable(QFieldType.LONG)));
+      assertEquals(ProcessTraceRecordIdType.STRING, ProcessTraceRecordIdType.forTable(makeTable(QFieldType.STRING)));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testConversions()
+   {
+      assertEquals(1, ProcessTraceRecordIdType.toInteger(1));
+      assertEquals(2, ProcessTraceRecordIdType.toInteger(2L));
+      assertEquals(3, ProcessTraceRecordIdType.toInteger(" 3 "));
+      assertEquals(-4, ProcessTraceRecordIdType.toInteger("-4"));
+      assertNull(ProcessTraceRecordIdType.toInteger(5_000_000_000L));
+      assertNull(ProcessTraceRecordIdType.toInteger("abc"));
+      assertNull(ProcessTraceRecordIdType.toInteger(""));
+      assertNull(ProcessTraceRecordIdType.toInteger(null));
+
+      assertEquals(Long.valueOf(5_000_000_000L), ProcessTraceRecordIdType.toLong(5_000_000_000L));
+      assertEquals(Long.valueOf(5_000_000_000L), ProcessTraceRecordIdType.toLong("5000000000"));
+      assertEquals(Long.valueOf(6), ProcessTraceRecordIdType.toLong(6));
+      assertNull(ProcessTraceRecordIdType.toLong("12345678901234567890"));
+      assertNull(ProcessTraceRecordIdType.toLong("1-2"));
+   }
+
+
+
+   /*******************************************************************************
+    ** numbers of other types - as some backends return for numeric keys - are
+    ** converted only if they're whole, and in range.
+    *******************************************************************************/
+   @Test
+   void testOtherNumberConversions()
+   {
+      assertEquals(Long.valueOf(7), ProcessTraceRecordIdType.toLong(new BigDecimal("7.00")));
+      assertEquals(Long.valueOf(0), ProcessTraceRecordIdType.toLong(new BigDecimal("0.000")));
+      assertEquals(Long.valueOf(700), ProcessTraceRecordIdType.toLong(new BigDecimal("7E+2")));
+      assertEquals(Long.valueOf(Long.MAX_VALUE), ProcessTraceRecordIdType.toLong(BigDecimal.valueOf(Long.MAX_VALUE)));
+      assertNull(ProcessTraceRecordIdType.toLong(new BigDecimal("7.5")));
+      assertNull(ProcessTraceRecordIdType.toLong(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE)));
+
+      assertEquals(Long.valueOf(8), ProcessTraceRecordIdType.toLong(BigInteger.valueOf(8)));
+      assertEquals(Long.valueOf(Long.MIN_VALUE), ProcessTraceRecordIdType.toLong(BigInteger.valueOf(Long.MIN_VALUE)));
+      assertNull(ProcessTraceRecordIdType.toLong(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)));
+
+      assertEquals(Long.valueOf(9), ProcessTraceRecordIdType.toLong(9.0));
+      assertEquals(Long.valueOf(-10), ProcessTraceRecordIdType.toLong(-10.0f));
+      assertNull(ProcessTraceRecordIdType.toLong(9.5));
+      assertNull(ProcessTraceRecordIdType.toLong(Double.NaN));
+      assertNull(ProcessTraceRecordIdType.toLong(Double.POSITIVE_INFINITY));
+      assertNull(ProcessTraceRecordIdType.toLong(1e19));
+
+      assertEquals(Long.valueOf(11), ProcessTraceRecordIdType.toLong(new AtomicLong(11)));
+
+      assertEquals(12, ProcessTraceRecordIdType.toInteger(new BigDecimal("12.0")));
+      assertEquals(13, ProcessTraceRecordIdType.toInteger(13.0));
+      assertNull(ProcessTraceRecordIdType.toInteger(new BigDecimal("5000000000")));
+      assertNull(ProcessTraceRecordIdType.toInteger(13.25f));
+   }
+
+
+
+   /*******************************************************************************
+    ** make sure the writer sends each summary line's ids to the table for its type
+    *******************************************************************************/
+   @Test
+   void testWriterRoutesByType() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseTypedSummaryLineRecordIds(true));
+
+      ProcessTraceSummaryLine intLine    = new ProcessTraceSummaryLine().withProcessTraceId(1L).withStatus(Status.OK.name()).withRecordCount(3);
+      ProcessTraceSummaryLine longLine   = new ProcessTraceSummaryLine().withProcessTraceId(1L).withStatus(Status.OK.name()).withRecordCount(2);
+      ProcessTraceSummaryLine stringLine = new ProcessTraceSummaryLine().withProcessTraceId(1L).withStatus(Status.OK.name()).withRecordCount(2);
+
+      ProcessTraceWriter.write(List.of(new ProcessTraceWrite(QContext.getQInstance())
+         .withSummaryLines(List.of(intLine, longLine, stringLine))
+         .withSummaryLineRecordIds(intLine, 1, ProcessTraceRecordIdType.INTEGER, List.of(1, "2", "three"))
+         .withSummaryLineRecordIds(longLine, 2, ProcessTraceRecordIdType.LONG, List.of(5_000_000_000L, 6))
+         .withSummaryLineRecordIds(stringLine, 3, ProcessTraceRecordIdType.STRING, List.of("abc-123", 7))));
+
+      //////////////////////////////////////////////////////////////////////
+      // the int line's non-integer key is skipped (rather than throwing) //
+      //////////////////////////////////////////////////////////////////////
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter()).stream().map(r -> r.getValueInteger("recordId")).toList())
+         .containsExactlyInAnyOrder(1, 2);
+
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordLong.TABLE_NAME, new QQueryFilter()).stream().map(r -> r.getValueLong("recordId")).toList())
+         .containsExactlyInAnyOrder(5_000_000_000L, 6L);
+
+      List<QRecord> recordStrings = QueryAction.execute(ProcessTraceSummaryLineRecordString.TABLE_NAME, new QQueryFilter());
+      assertThat(recordStrings.stream().map(r -> r.getValueString("recordId")).toList())
+         .containsExactlyInAnyOrder("abc-123", "7");
+      assertThat(recordStrings).allMatch(r -> r.getValueInteger("qqqTableId").equals(3));
+   }
+
+
+
+   /*******************************************************************************
+    ** without typed record ids configured, all lines go to the int table (with
+    ** only their integer-convertible keys).
+    *******************************************************************************/
+   @Test
+   void testWriterWithoutTypedRecordIds() throws QException
+   {
+      ProcessTraceSummaryLine longLine = new ProcessTraceSummaryLine().withProcessTraceId(1L).withStatus(Status.OK.name()).withRecordCount(2);
+
+      ProcessTraceWriter.write(List.of(new ProcessTraceWrite(QContext.getQInstance())
+         .withSummaryLines(List.of(longLine))
+         .withSummaryLineRecordIds(longLine, 2, ProcessTraceRecordIdType.LONG, List.of(5_000_000_000L, 6L))));
+
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter()).stream().map(r -> r.getValueInteger("recordId")).toList())
+         .containsExactly(6);
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordLong.TABLE_NAME, new QQueryFilter())).isEmpty();
+   }
+
+
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static QTableMetaData makeTable(QFieldType primaryKeyType)
+   {
+      return (new QTableMetaData()
+         .withName("someTable")
+         .withPrimaryKeyField("id")
+         .withField(new QFieldMetaData("id", primaryKeyType)));
+   }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceSamplingPolicy 
+ *******************************************************************************/
+class ProcessTraceSamplingPolicyTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRate()
+   {
+      assertTrue(new ProcessTraceSamplingPolicy().sample("p", null));
+      assertFalse(ProcessTraceSamplingPolicy.rate(0).sample("p", null));
+
+      ProcessTraceSamplingPolicy halfPolicy = ProcessTraceSamplingPolicy.rate(0.5);
+      int                        sampled    = 0;
+      for(int i = 0; i < 10_000; i++)
+      {
+         sampled += halfPolicy.sample("p", null) ? 1 : 0;
+      }
+      assertThat(sampled).isBetween(4_500, 5_500);
+
+      assertThrows(IllegalArgumentException.class, () -> ProcessTraceSamplingPolicy.rate(1.5));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testHashOnKeyRecord()
+   {
+      ProcessTraceSamplingPolicy policy = ProcessTraceSamplingPolicy.rate(0.5).withHashOnKeyRecord(true);
+
+      ////////////////////////////////////////////////
+      // the same key always gets the same decision //
+      ////////////////////////////////////////////////
+      for(int i = 0; i < 100; i++)
+      {
+         boolean decision = policy.sample("p", "person:" + i);
+         for(int j = 0; j < 10; j++)
+         {
+            assertEquals(decision, policy.sample("p", "person:" + i));
+         }
+      }
+
+      ////////////////////////////////////////////////////////////
+      // and, across many keys, about the rate of them are kept //
+      ////////////////////////////////////////////////////////////
+      int sampled = 0;
+      for(int i = 0; i < 10_000; i++)
+      {
+         sampled += policy.sample("p", "person:" + i) ? 1 : 0;
+      }
+      assertThat(sampled).isBetween(4_500, 5_500);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testMaxTracesPerMinute()
+   {
+      ProcessTraceSamplingPolicy policy = ProcessTraceSamplingPolicy.maxTracesPerMinute(5);
+
+      int sampled = 0;
+      for(int i = 0; i < 100; i++)
+      {
+         sampled += policy.sample("p", null) ? 1 : 0;
+      }
+      assertEquals(5, sampled);
+
+      //////////////////////////////////////
+      // each process gets its own bucket //
+      //////////////////////////////////////
+      assertTrue(policy.sample("q", null));
+   }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceTailSamplingPolicy 
+ *******************************************************************************/
+class ProcessTraceTailSamplingPolicyTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testExceptionAndRecordCountRules()
+   {
+      ProcessTraceTailSamplingPolicy policy = new ProcessTraceTailSamplingPolicy()
+         .withMinRecordCount(100);
+
+      assertFalse(policy.shouldKeep("p", 10L, 5, null));
+      assertTrue(policy.shouldKeep("p", 10L, 5, new Exception("oops")));
+      assertTrue(policy.shouldKeep("p", 10L, 100, null));
+
+      assertFalse(policy.withKeepOnException(false).shouldKeep("p", 10L, 5, new Exception("oops")));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRuntimePercentileRule()
+   {
+      ProcessTraceTailSamplingPolicy policy = new ProcessTraceTailSamplingPolicy()
+         .withRuntimePercentile(0.9)
+         .withMinRuntimeHistorySize(10);
+
+      //////////////////////////////////////////////////////
+      // until there's enough history, everything is kept //
+      //////////////////////////////////////////////////////
+      for(int i = 1; i <= 10; i++)
+      {
+         assertTrue(policy.shouldKeep("p", (long) i, null, null));
+      }
+
+      ////////////////////////////////////////////////////////////////////
+      // then, only runs slower than the 90th percentile (9ms) are kept //
+      ////////////////////////////////////////////////////////////////////
+      assertFalse(policy.shouldKeep("p", 5L, null, null));
+      assertTrue(policy.shouldKeep("p", 1000L, null, null));
+
+      /////////////////////////////////
+      // and, history is per-process //
+      /////////////////////////////////
+      assertTrue(policy.shouldKeep("q", 5L, null, null));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testKeepRate()
+   {
+      assertFalse(new ProcessTraceTailSamplingPolicy().shouldKeep("p", 10L, 5, null));
+      assertTrue(new ProcessTraceTailSamplingPolicy().withKeepRate(1).shouldKeep("p", 10L, 5, null));
+      assertThrows(IllegalArgumentException.class, () -> new ProcessTraceTailSamplingPolicy().withKeepRate(2));
+   }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSystemUserSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for ProcessTraceWriter 
+ *******************************************************************************/
+class ProcessTraceWriterTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachResetConfig()
+   {
+      ProcessTraceWriter.getInstance().shutdown();
+      ProcessTraceWriter.resetInstance();
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(null);
+   }
+
+
+
+   /*******************************************************************************
+    ** a trace that fails to be written shouldn't cost the others in its batch -
+    ** nor should they get any of their records stored twice, by the retry.
+    *******************************************************************************/
+   @Test
+   void testOneBadTraceInBatch() throws QException
+   {
+      ///////////////////////////////////////////////////////////////////////
+      // a long wait & batch of 2, so both traces go in one batch; and one //
+      // record id per page, so the good trace's ids are stored before the //
+      // bad one fails.                                                    //
+      ///////////////////////////////////////////////////////////////////////
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseWriteBehindWriter(true)
+         .withWriteBehindMaxBatchSize(2)
+         .withWriteBehindMaxWaitMillis(5000)
+         .withSummaryLineRecordIdPageSize(1));
+
+      ProcessTraceWriter processTraceWriter = ProcessTraceWriter.getInstance();
+      long               writtenBefore      = processTraceWriter.getWrittenCount();
+      long               failedBefore       = processTraceWriter.getFailedCount();
+
+      processTraceWriter.submit(buildWrite("good", new ArrayList<>(List.of(1, 2, 3))));
+      processTraceWriter.submit(buildWrite("bad", new FailingList()));
+      assertTrue(processTraceWriter.flush(10_000));
+
+      assertEquals(1, processTraceWriter.getWrittenCount() - writtenBefore);
+      assertEquals(1, processTraceWriter.getFailedCount() - failedBefore);
+
+      Long goodProcessTraceId = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter().withCriteria("processUUID", QCriteriaOperator.EQUALS, "good")).get(0).getValueLong("id");
+      assertEquals(2, QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter()).size());
+
+      List<QRecord> backendActivityStats = QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter());
+      assertEquals(1, backendActivityStats.size());
+      assertEquals(goodProcessTraceId, backendActivityStats.get(0).getValueLong("processTraceId"));
+
+      List<QRecord> recordInts = QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter());
+      assertEquals(List.of(1, 2, 3), recordInts.stream().map(r -> r.getValueInteger("recordId")).sorted().toList());
+   }
+
+
+
+   /*******************************************************************************
+    ** traces submitted while the writer is being shut down must still all be
+    ** written (and none left counted as in-flight, which would stall flush).
+    *******************************************************************************/
+   @Test
+   void testSubmitRacingShutdown() throws Exception
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseWriteBehindWriter(true));
+
+      ProcessTraceWriter         processTraceWriter = ProcessTraceWriter.getInstance();
+      QInstance                  qInstance          = QContext.getQInstance();
+      int                        count              = 200;
+      AtomicReference<Exception> submitException    = new AtomicReference<>();
+
+      Thread submitter = new Thread(() ->
+      {
+         try
+         {
+            QContext.init(qInstance, new QSystemUserSession());
+            for(int i = 0; i < count; i++)
+            {
+               processTraceWriter.submit(buildWrite("race-" + i, new ArrayList<>(List.of(i))));
+            }
+         }
+         catch(Exception e)
+         {
+            submitException.set(e);
+         }
+         finally
+         {
+            QContext.clear();
+         }
+      });
+      submitter.start();
+
+      ///////////////////////////////////////////////////////////////////////
+      // shut down while the submitter runs - submits racing the shutdown, //
+      // and all of those after it, are written by the submitting thread.  //
+      ///////////////////////////////////////////////////////////////////////
+      while(submitter.isAlive())
+      {
+         processTraceWriter.shutdown();
+      }
+      submitter.join();
+
+      assertNull(submitException.get());
+      assertTrue(processTraceWriter.flush(5000));
+      processTraceWriter.shutdown();
+      assertEquals(count, QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    ** after a shutdown, the writer isn't started again - traces are written by
+    ** the thread that submits them, instead of going in a queue that nothing
+    ** would flush.
+    *******************************************************************************/
+   @Test
+   void testSubmitAfterShutdown() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseWriteBehindWriter(true)
+         .withWriteBehindMaxWaitMillis(5000));
+
+      ProcessTraceWriter processTraceWriter = ProcessTraceWriter.getInstance();
+      long               enqueuedBefore     = processTraceWriter.getEnqueuedCount();
+      processTraceWriter.submit(buildWrite("before", new ArrayList<>(List.of(1))));
+      assertEquals(1, processTraceWriter.getEnqueuedCount() - enqueuedBefore);
+
+      processTraceWriter.shutdown();
+      assertEquals(1, QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).size());
+
+      processTraceWriter.submit(buildWrite("after", new ArrayList<>(List.of(2))));
+      assertEquals(1, processTraceWriter.getEnqueuedCount() - enqueuedBefore);
+      assertEquals(0, processTraceWriter.getQueueDepth());
+      assertEquals(2, QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    ** the queue is bounded by the record ids its traces hold - a trace that
+    ** would go over is written by the submitting thread instead.
+    *******************************************************************************/
+   @Test
+   void testMaxRecordIds() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseWriteBehindWriter(true)
+         .withWriteBehindMaxWaitMillis(5000)
+         .withWriteBehindMaxRecordIds(5));
+
+      ProcessTraceWriter processTraceWriter = ProcessTraceWriter.getInstance();
+      processTraceWriter.submit(buildWrite("small", new ArrayList<>(List.of(1, 2, 3))));
+      assertEquals(3, processTraceWriter.getQueuedRecordIdCount());
+
+      processTraceWriter.submit(buildWrite("big", new ArrayList<>(List.of(4, 5, 6))));
+      assertEquals(3, processTraceWriter.getQueuedRecordIdCount());
+      assertEquals(List.of("big"), QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).stream().map(r -> r.getValueString("processUUID")).toList());
+
+      assertTrue(processTraceWriter.flush(10_000));
+      assertEquals(0, processTraceWriter.getQueuedRecordIdCount());
+      assertEquals(2, QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).size());
+      assertEquals(6, QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /***************************************************************************
+    * build a trace with a header insert, one summary line with the given
+    * record ids, and one backend activity stats record.
+    ***************************************************************************/
+   private static ProcessTraceWrite buildWrite(String processUUID, List<Serializable> primaryKeys)
+   {
+      ProcessTraceSummaryLine summaryLine = new ProcessTraceSummaryLine()
+         .withStatus("OK")
+         .withRecordCount(primaryKeys.size())
+         .withMessage("records were processed");
+
+      return (new ProcessTraceWrite(QContext.getQInstance())
+         .withHeaderInsert(new ProcessTrace().withProcessUUID(processUUID).withStartTimestamp(Instant.now()).toQRecord())
+         .withSummaryLines(new ArrayList<>(List.of(summaryLine)))
+         .withSummaryLineRecordIds(summaryLine, 1, ProcessTraceRecordIdType.INTEGER, primaryKeys)
+         .withBackendActivityStats(new ArrayList<>(List.of(new ProcessTraceBackendActivityStats()
+            .withActionName("InsertAction")
+            .withCallCount(1)
+            .withRecordCount(1)))));
+   }
+
+
+
+   /***************************************************************************
+    * list of primary keys that can't be read - to make a trace fail while its
+    * record ids are being stored.
+    ***************************************************************************/
+   private static class FailingList extends AbstractList<Serializable>
+   {
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public Serializable get(int index)
+      {
+         throw (new IllegalStateException("Test exception reading primary key"));
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      public int size()
+      {
+         return (1);
+      }
+   }
+
+}
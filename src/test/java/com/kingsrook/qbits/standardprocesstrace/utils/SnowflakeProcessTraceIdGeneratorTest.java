@@ -0,0 +1,114 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.standardprocesstrace.utils;
+
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for SnowflakeProcessTraceIdGenerator 
+ *******************************************************************************/
+class SnowflakeProcessTraceIdGeneratorTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testIdsIncreaseAndDecode()
+   {
+      Instant                          before    = Instant.now();
+      SnowflakeProcessTraceIdGenerator generator = new SnowflakeProcessTraceIdGenerator(37);
+
+      ///////////////////////////////////////////////////////////////////////////
+      // more than one millisecond's sequence, to make sure rolling over works //
+      ///////////////////////////////////////////////////////////////////////////
+      long lastId = 0;
+      for(int i = 0; i < 10_000; i++)
+      {
+         long id = generator.nextId();
+         assertThat(id).isGreaterThan(lastId);
+         lastId = id;
+      }
+
+      assertEquals(37, SnowflakeProcessTraceIdGenerator.getNodeIdFromId(lastId));
+      assertThat(SnowflakeProcessTraceIdGenerator.getInstantFromId(lastId).toEpochMilli()).isGreaterThanOrEqualTo(before.toEpochMilli());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testUniqueAcrossThreads() throws Exception
+   {
+      SnowflakeProcessTraceIdGenerator generator = new SnowflakeProcessTraceIdGenerator();
+      Set<Long>                        ids       = ConcurrentHashMap.newKeySet();
+
+      ExecutorService executorService = Executors.newFixedThreadPool(8);
+      List<Future<?>> futures         = new ArrayList<>();
+      for(int thread = 0; thread < 8; thread++)
+      {
+         futures.add(executorService.submit(() ->
+         {
+            for(int i = 0; i < 5_000; i++)
+            {
+               ids.add(generator.nextId());
+            }
+         }));
+      }
+
+      for(Future<?> future : futures)
+      {
+         future.get();
+      }
+      executorService.shutdown();
+
+      assertEquals(8 * 5_000, ids.size());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testBadNodeId()
+   {
+      assertThrows(IllegalArgumentException.class, () -> new SnowflakeProcessTraceIdGenerator(-1));
+      assertThrows(IllegalArgumentException.class, () -> new SnowflakeProcessTraceIdGenerator(SnowflakeProcessTraceIdGenerator.MAX_NODE_ID + 1));
+   }
+
+}
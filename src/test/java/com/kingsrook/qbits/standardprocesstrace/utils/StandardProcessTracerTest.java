@@ -23,31 +23,48 @@ package com.kingsrook.qbits.standardprocesstrace.utils;
 
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import com.kingsrook.qbits.standardprocesstrace.BaseTest;
+import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceQBitConfig;
 import com.kingsrook.qbits.standardprocesstrace.StandardProcessTraceTestApplication;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTrace;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceBackendActivityStats;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceEtlPageTimeline;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceStep;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLine;
+import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordIdSet;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryLineRecordInt;
 import com.kingsrook.qbits.standardprocesstrace.model.ProcessTraceSummaryStatusEnum;
 import com.kingsrook.qqq.backend.core.actions.processes.QProcessCallbackFactory;
 import com.kingsrook.qqq.backend.core.actions.processes.RunProcessAction;
+import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
 import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
 import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessInput;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessOutput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
 import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.model.tables.QQQTableTableManager;
+import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.StreamedETLWithFrontendProcess;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import com.kingsrook.qqq.backend.core.utils.ValueUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /*******************************************************************************
@@ -56,6 +73,19 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 class StandardProcessTracerTest extends BaseTest
 {
 
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @AfterEach
+   void afterEachResetConfig()
+   {
+      ProcessTraceWriter.getInstance().shutdown();
+      ProcessTraceWriter.resetInstance();
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(null);
+   }
+
+
+
    /*******************************************************************************
     **
     *******************************************************************************/
@@ -67,11 +97,7 @@ class StandardProcessTracerTest extends BaseTest
       ////////////////////////////////////////
       // run process skipping backend steps //
       ////////////////////////////////////////
-      RunProcessInput input = new RunProcessInput();
-      input.setProcessName(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS);
-      input.setCallback(QProcessCallbackFactory.forFilter(new QQueryFilter()));
-      input.setFrontendStepBehavior(RunProcessInput.FrontendStepBehavior.SKIP);
-      new RunProcessAction().execute(input);
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
 
       baseAssertionsAfterProcess();
 
@@ -83,6 +109,13 @@ class StandardProcessTracerTest extends BaseTest
          .hasSizeGreaterThanOrEqualTo(2)
          .anyMatch(r -> r.getValue("qqqTableId").equals(personTableId) && r.getValue("actionName").equals(QueryAction.class.getSimpleName()) && r.getValueInteger("callCount").equals(1) && r.getValueInteger("recordCount").equals(3))
          .anyMatch(r -> r.getValue("qqqTableId").equals(orderTableId) && r.getValue("actionName").equals(InsertAction.class.getSimpleName()) && r.getValueInteger("callCount").equals(1) && r.getValueInteger("recordCount").equals(2));
+
+      //////////////////////////////////////////////////////////
+      // the inserts are attributed to the step that did them //
+      //////////////////////////////////////////////////////////
+      assertThat(processTraceBackendActivityStatRecords)
+         .filteredOn(r -> r.getValue("qqqTableId").equals(orderTableId) && r.getValue("actionName").equals(InsertAction.class.getSimpleName()))
+         .allMatch(r -> StreamedETLWithFrontendProcess.STEP_NAME_EXECUTE.equals(r.getValueString("stepName")));
    }
 
 
@@ -98,18 +131,12 @@ class StandardProcessTracerTest extends BaseTest
       //////////////////////////////////////
       // start process - break at preview //
       //////////////////////////////////////
-      RunProcessInput input = new RunProcessInput();
-      input.setProcessName(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS);
-      input.setCallback(QProcessCallbackFactory.forFilter(new QQueryFilter()));
-      input.setFrontendStepBehavior(RunProcessInput.FrontendStepBehavior.BREAK);
-      RunProcessOutput output = new RunProcessAction().execute(input);
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
 
       /////////////////////////////////////
       // continue to execute the process //
       /////////////////////////////////////
-      input.setProcessUUID(output.getProcessUUID());
-      input.setStartAfterStep(output.getProcessState().getNextStepName().get());
-      new RunProcessAction().execute(input);
+      resumePlaceOrdersProcess(output);
 
       baseAssertionsAfterProcess();
 
@@ -128,6 +155,511 @@ class StandardProcessTracerTest extends BaseTest
 
 
 
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testWriteBehindWriter() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseWriteBehindWriter(true));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      //////////////////////////////////////////////////////////////////////////
+      // the trace is written by the writer thread - so wait for it to finish //
+      //////////////////////////////////////////////////////////////////////////
+      ProcessTraceWriter processTraceWriter = ProcessTraceWriter.getInstance();
+      assertTrue(processTraceWriter.flush(5000));
+      assertEquals(0, processTraceWriter.getQueueDepth());
+      assertEquals(0, processTraceWriter.getDroppedCount());
+      assertThat(processTraceWriter.getWrittenCount()).isGreaterThanOrEqualTo(1);
+
+      baseAssertionsAfterProcess();
+
+      List<QRecord> processTraceRecords = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter());
+      assertNotNull(processTraceRecords.get(0).getValue("endTimestamp"));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSingleWriteHeader() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseSingleWriteHeader(true));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      baseAssertionsAfterProcess();
+
+      List<QRecord> processTraceRecords = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter());
+      QRecord       processTraceRecord  = processTraceRecords.get(0);
+      assertThat(processTraceRecord.getValueLong("id")).isPositive();
+      assertNotNull(processTraceRecord.getValue("startTimestamp"));
+      assertNotNull(processTraceRecord.getValue("endTimestamp"));
+      assertNotNull(processTraceRecord.getValue("qqqProcessId"));
+
+      //////////////////////////////////////////////////////////////////
+      // child records should all point at the real (inserted) header //
+      //////////////////////////////////////////////////////////////////
+      assertThat(QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter()))
+         .allMatch(r -> r.getValueLong("processTraceId").equals(processTraceRecord.getValueLong("id")));
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter()))
+         .isNotEmpty()
+         .allMatch(r -> r.getValueLong("processTraceId").equals(processTraceRecord.getValueLong("id")));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSingleWriteHeaderResumingFrontendProcess() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseSingleWriteHeader(true));
+
+      insertHomerMargeAndMrBurns();
+
+      //////////////////////////////////////////////////////////////////
+      // start process - break at preview - and there's no header yet //
+      //////////////////////////////////////////////////////////////////
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+      assertThat(QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter())).isEmpty();
+
+      /////////////////////////////////////
+      // continue to execute the process //
+      /////////////////////////////////////
+      resumePlaceOrdersProcess(output);
+
+      baseAssertionsAfterProcess();
+
+      QRecord processTraceRecord = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).get(0);
+      assertEquals(output.getProcessUUID(), processTraceRecord.getValueString("processUUID"));
+      assertNotNull(processTraceRecord.getValue("startTimestamp"));
+      assertNotNull(processTraceRecord.getValue("endTimestamp"));
+   }
+
+
+
+   /*******************************************************************************
+    ** provisional ids are kept in process state across a break - so a run that
+    ** resumes after a restart must not share its id with one started after it.
+    *******************************************************************************/
+   @Test
+   void testSingleWriteHeaderProvisionalIdsAcrossRestart() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseSingleWriteHeader(true));
+
+      insertHomerMargeAndMrBurns();
+
+      ////////////////////////////////////////////////////////////////
+      // start a run that breaks; "restart"; then start another one //
+      ////////////////////////////////////////////////////////////////
+      RunProcessOutput outputA = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+
+      StandardProcessTracer.resetProvisionalProcessTraceIdGenerator();
+
+      RunProcessOutput outputB = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+
+      String provisionalIdKey = StandardProcessTracer.class.getName() + ".header.processTraceId";
+      Long   provisionalIdA   = ValueUtils.getValueAsLong(outputA.getValue(provisionalIdKey));
+      Long   provisionalIdB   = ValueUtils.getValueAsLong(outputB.getValue(provisionalIdKey));
+      assertTrue(provisionalIdA < 0);
+      assertTrue(provisionalIdB < 0);
+      assertNotEquals(provisionalIdA, provisionalIdB);
+
+      //////////////////////////////////////////////////////////////
+      // resume both - each header gets its own run's stats, only //
+      //////////////////////////////////////////////////////////////
+      resumePlaceOrdersProcess(outputA);
+      resumePlaceOrdersProcess(outputB);
+
+      List<QRecord> processTraces = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter());
+      assertEquals(2, processTraces.size());
+      for(QRecord processTrace : processTraces)
+      {
+         List<QRecord> orderInserts = QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter()
+            .withCriteria("processTraceId", QCriteriaOperator.EQUALS, processTrace.getValueLong("id"))
+            .withCriteria("qqqTableId", QCriteriaOperator.EQUALS, QQQTableTableManager.getQQQTableId(QContext.getQInstance(), StandardProcessTraceTestApplication.TABLE_NAME_ORDER))
+            .withCriteria("actionName", QCriteriaOperator.EQUALS, InsertAction.class.getSimpleName()));
+         assertEquals(1, orderInserts.size());
+         assertEquals(2, orderInserts.get(0).getValueInteger("recordCount"));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** a run puts its id in the session (for threads its context isn't carried
+    ** to) - and when it finishes, puts back what was there, rather than taking
+    ** away another run's (e.g., that of a process running this one).
+    *******************************************************************************/
+   @Test
+   void testSessionProcessTraceIdRestoredAfterFinish() throws QException
+   {
+      insertHomerMargeAndMrBurns();
+
+      QContext.getQSession().setValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY, "999");
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+      assertEquals("999", QContext.getQSession().getValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY));
+
+      QContext.getQSession().removeValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY);
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+      assertNull(QContext.getQSession().getValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY));
+
+      resumePlaceOrdersProcess(output);
+      assertNull(QContext.getQSession().getValue(StandardProcessTracer.PROCESS_TRACE_ID_SESSION_KEY));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testIdGenerator() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withProcessTraceIdGenerator(new SnowflakeProcessTraceIdGenerator(1))
+         .withUseSingleWriteHeader(true));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      ////////////////////////////////////////////////////////////////////
+      // the header (and its children) should have the id the generator //
+      // made - which is much larger than a backend-assigned one        //
+      ////////////////////////////////////////////////////////////////////
+      Long processTraceId = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).get(0).getValueLong("id");
+      assertEquals(1, SnowflakeProcessTraceIdGenerator.getNodeIdFromId(processTraceId));
+      assertThat(processTraceId).isGreaterThan(Integer.MAX_VALUE);
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter()))
+         .isNotEmpty()
+         .allMatch(r -> r.getValueLong("processTraceId").equals(processTraceId));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSmallRecordIdPageSize() throws QException
+   {
+      /////////////////////////////////////////////////////////////////////////
+      // with a page size of 1, every record-int is its own insert - and the //
+      // records that make up each summary line should all still be there    //
+      /////////////////////////////////////////////////////////////////////////
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withSummaryLineRecordIdPageSize(1));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      baseAssertionsAfterProcess();
+
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter()))
+         .hasSize(3)
+         .allMatch(r -> r.getValueInteger("qqqTableId") != null);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testEncodedSummaryLineRecordIds() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseEncodedSummaryLineRecordIds(true));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      /////////////////////////////////////////////////////////////////
+      // no record-int rows - rather, one record id set row per line //
+      /////////////////////////////////////////////////////////////////
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter())).isEmpty();
+
+      List<QRecord> processTraceSummaryLineRecords = QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter());
+      assertEquals(2, processTraceSummaryLineRecords.size());
+
+      QRecord okSummaryLineRecord = processTraceSummaryLineRecords.stream().filter(r -> r.getValueString("status").equals(ProcessTraceSummaryStatusEnum.OK.getPossibleValueId())).findFirst().get();
+      QRecord okRecordIdSet       = GetAction.execute(ProcessTraceSummaryLineRecordIdSet.TABLE_NAME, Map.of("processTraceSummaryLineId", okSummaryLineRecord.getValueLong("id")));
+      assertNotNull(okRecordIdSet);
+      assertEquals(2, okRecordIdSet.getValueInteger("recordCount"));
+      assertEquals(1, okRecordIdSet.getValueInteger("runCount"));
+
+      EncodedRecordIdSet okIds = EncodedRecordIdSet.decode(okRecordIdSet.getValueString("encodedRecordIds"));
+      assertTrue(okIds.contains(100));
+      assertTrue(okIds.contains(101));
+      assertFalse(okIds.contains(102));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRecordIdCapturePolicies() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withRecordIdCapturePolicy(Status.OK, ProcessTraceRecordIdCapturePolicy.cap(1))
+         .withRecordIdCapturePolicy(Status.ERROR, ProcessTraceRecordIdCapturePolicy.all()));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      ////////////////////////////////////////////////////////////////////////
+      // OK line keeps its full count, but only 1 record id, and is flagged //
+      ////////////////////////////////////////////////////////////////////////
+      List<QRecord> processTraceSummaryLineRecords = QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter());
+      QRecord       okSummaryLineRecord            = processTraceSummaryLineRecords.stream().filter(r -> r.getValueString("status").equals(ProcessTraceSummaryStatusEnum.OK.getPossibleValueId())).findFirst().get();
+      assertEquals(2, okSummaryLineRecord.getValueInteger("recordCount"));
+      assertTrue(okSummaryLineRecord.getValueBoolean("recordIdsTruncated"));
+      assertEquals(1, QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter(new QFilterCriteria("processTraceSummaryLineId", QCriteriaOperator.EQUALS, okSummaryLineRecord.getValueLong("id")))).size());
+
+      QRecord errorSummaryLineRecord = processTraceSummaryLineRecords.stream().filter(r -> r.getValueString("status").equals(ProcessTraceSummaryStatusEnum.ERROR.getPossibleValueId())).findFirst().get();
+      assertFalse(errorSummaryLineRecord.getValueBoolean("recordIdsTruncated"));
+      assertEquals(1, QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter(new QFilterCriteria("processTraceSummaryLineId", QCriteriaOperator.EQUALS, errorSummaryLineRecord.getValueLong("id")))).size());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSamplingSkip() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withSamplingPolicy(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS, ProcessTraceSamplingPolicy.rate(0)));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      /////////////////////////////////////////////
+      // an unsampled run leaves no trace at all //
+      /////////////////////////////////////////////
+      assertThat(QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter())).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSamplingLightResumingFrontendProcess() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseSingleWriteHeader(true)
+         .withDefaultSamplingPolicy(ProcessTraceSamplingPolicy.rate(0).withUnsampledBehavior(ProcessTraceSamplingPolicy.UnsampledBehavior.LIGHT)));
+
+      insertHomerMargeAndMrBurns();
+
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+
+      resumePlaceOrdersProcess(output);
+
+      /////////////////////////////////////////////////////////////////////////
+      // a light trace has its header and summary lines (with their counts), //
+      // but no record ids or backend activity stats - even after resuming   //
+      /////////////////////////////////////////////////////////////////////////
+      assertEquals(1, QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).size());
+
+      List<QRecord> processTraceSummaryLineRecords = QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter());
+      assertEquals(2, processTraceSummaryLineRecords.size());
+      assertThat(processTraceSummaryLineRecords).allMatch(r -> r.getValueBoolean("recordIdsTruncated"));
+
+      assertThat(QueryAction.execute(ProcessTraceSummaryLineRecordInt.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter())).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testTailSamplingDrop() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withTailSamplingPolicy(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS, new ProcessTraceTailSamplingPolicy()));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      ////////////////////////////////////////////////////////////////////
+      // a routine run (no exception, and no other rule matching) isn't //
+      // kept - and nothing was written for it along the way            //
+      ////////////////////////////////////////////////////////////////////
+      assertThat(QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter())).isEmpty();
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter())).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testTailSamplingKeep() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withDefaultTailSamplingPolicy(new ProcessTraceTailSamplingPolicy().withKeepRate(1)));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      baseAssertionsAfterProcess();
+   }
+
+
+
+   /*******************************************************************************
+    ** with a batch size bigger than the process's number of query stats, they
+    ** are only added at step & process boundaries - but all still get there.
+    *******************************************************************************/
+   @Test
+   void testBatchedQueryStatIngestion() throws QException
+   {
+      StandardProcessTracer.setStandardProcessTraceQBitConfig(new StandardProcessTraceQBitConfig()
+         .withUseBatchedQueryStatIngestion(true)
+         .withQueryStatBatchSize(1000));
+
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      Integer personTableId = QQQTableTableManager.getQQQTableId(QContext.getQInstance(), StandardProcessTraceTestApplication.TABLE_NAME_PERSON);
+      Integer orderTableId  = QQQTableTableManager.getQQQTableId(QContext.getQInstance(), StandardProcessTraceTestApplication.TABLE_NAME_ORDER);
+      assertThat(QueryAction.execute(ProcessTraceBackendActivityStats.TABLE_NAME, new QQueryFilter()))
+         .anyMatch(r -> r.getValue("qqqTableId").equals(personTableId) && r.getValue("actionName").equals(QueryAction.class.getSimpleName()) && r.getValueInteger("callCount").equals(1) && r.getValueInteger("recordCount").equals(3))
+         .anyMatch(r -> r.getValue("qqqTableId").equals(orderTableId) && r.getValue("actionName").equals(InsertAction.class.getSimpleName()) && r.getValueInteger("callCount").equals(1) && r.getValueInteger("recordCount").equals(2));
+   }
+
+
+
+   /*******************************************************************************
+    ** each backend step gets a step record, with its timing and the backend
+    ** activity during it - including steps from before a break.
+    *******************************************************************************/
+   @Test
+   void testProcessTraceSteps() throws QException
+   {
+      insertHomerMargeAndMrBurns();
+
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+
+      resumePlaceOrdersProcess(output);
+
+      Long          processTraceId = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).get(0).getValueLong("id");
+      List<QRecord> steps          = QueryAction.execute(ProcessTraceStep.TABLE_NAME, new QQueryFilter());
+      assertThat(steps)
+         .allMatch(r -> r.getValueLong("processTraceId").equals(processTraceId))
+         .allMatch(r -> !r.getValueInstant("endTimestamp").isBefore(r.getValueInstant("startTimestamp")))
+         .allMatch(r -> r.getValueInteger("runtimeMillis") >= 0)
+         .anyMatch(r -> r.getValueString("stepName").equals(StreamedETLWithFrontendProcess.STEP_NAME_PREVIEW))
+         .anyMatch(r -> r.getValueString("stepName").equals(StreamedETLWithFrontendProcess.STEP_NAME_EXECUTE) && r.getValueInteger("backendCallCount") > 0);
+
+      ////////////////////////////////////////////////
+      // numbered in order, across the break/resume //
+      ////////////////////////////////////////////////
+      assertEquals(IntStream.rangeClosed(1, steps.size()).boxed().toList(), steps.stream().map(r -> r.getValueInteger("stepNo")).sorted().toList());
+   }
+
+
+
+   /*******************************************************************************
+    ** a process that breaks & resumes should have its time waiting at the
+    ** break kept out of its active runtime.
+    *******************************************************************************/
+   @Test
+   void testBreakAndResumeTimes() throws QException
+   {
+      insertHomerMargeAndMrBurns();
+
+      ////////////////////////////////////////////////////////////////////
+      // without breaking, all of a process's runtime is active runtime //
+      ////////////////////////////////////////////////////////////////////
+      RunProcessOutput output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      ProcessTrace processTrace = new ProcessTrace(GetAction.execute(ProcessTrace.TABLE_NAME, Map.of("processUUID", output.getProcessUUID())));
+      assertEquals(0, processTrace.getBreakCount());
+      assertEquals(0, processTrace.getWaitingMillis());
+      assertEquals(processTrace.getRuntimeMillis(), processTrace.getActiveRuntimeMillis());
+
+      /////////////////////////////////////////////////////////////////////
+      // break at the review screen, and wait there a while, then resume //
+      /////////////////////////////////////////////////////////////////////
+      output = runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.BREAK);
+
+      SleepUtils.sleep(100, TimeUnit.MILLISECONDS);
+
+      resumePlaceOrdersProcess(output);
+
+      processTrace = new ProcessTrace(GetAction.execute(ProcessTrace.TABLE_NAME, Map.of("processUUID", output.getProcessUUID())));
+      assertEquals(1, processTrace.getBreakCount());
+      assertTrue(processTrace.getWaitingMillis() >= 100);
+      assertEquals((int) processTrace.getRuntimeMillis(), processTrace.getActiveRuntimeMillis() + processTrace.getWaitingMillis());
+      assertTrue(processTrace.getActiveRuntimeMillis() < processTrace.getRuntimeMillis());
+   }
+
+
+
+   /*******************************************************************************
+    ** the test process's transform & load steps report their pages - which
+    ** should be stored as one timeline record for the trace.
+    *******************************************************************************/
+   @Test
+   void testEtlPageTimeline() throws QException
+   {
+      insertHomerMargeAndMrBurns();
+
+      runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior.SKIP);
+
+      Long          processTraceId = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter()).get(0).getValueLong("id");
+      List<QRecord> timelines      = QueryAction.execute(ProcessTraceEtlPageTimeline.TABLE_NAME, new QQueryFilter());
+      assertEquals(1, timelines.size());
+
+      ProcessTraceEtlPageTimeline timeline = new ProcessTraceEtlPageTimeline(timelines.get(0));
+      assertEquals(processTraceId, timeline.getProcessTraceId());
+      assertThat(timeline.getPageCount()).isGreaterThanOrEqualTo(1);
+      assertEquals(3, timeline.getRecordCount());
+      assertNotNull(timeline.getTimeline());
+
+      EtlPageTimeline decoded = EtlPageTimeline.decode(timeline.getTimeline());
+      assertEquals(decoded.getPageCount(), (long) timeline.getPageCount());
+      assertEquals(decoded.getLoadMillis(), (long) timeline.getLoadMillis());
+   }
+
+
+
    /***************************************************************************
     *
     ***************************************************************************/
@@ -146,6 +678,37 @@ class StandardProcessTracerTest extends BaseTest
 
 
 
+   /***************************************************************************
+    * run the place-orders process over all people, with the given behavior at
+    * its frontend steps.
+    ***************************************************************************/
+   private static RunProcessOutput runPlaceOrdersProcess(RunProcessInput.FrontendStepBehavior frontendStepBehavior) throws QException
+   {
+      RunProcessInput input = new RunProcessInput();
+      input.setProcessName(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS);
+      input.setCallback(QProcessCallbackFactory.forFilter(new QQueryFilter()));
+      input.setFrontendStepBehavior(frontendStepBehavior);
+      return (new RunProcessAction().execute(input));
+   }
+
+
+
+   /***************************************************************************
+    * resume a run of the place-orders process that broke at a frontend step.
+    ***************************************************************************/
+   private static RunProcessOutput resumePlaceOrdersProcess(RunProcessOutput brokenOutput) throws QException
+   {
+      RunProcessInput input = new RunProcessInput();
+      input.setProcessName(StandardProcessTraceTestApplication.PROCESS_NAME_PLACE_ORDERS);
+      input.setCallback(QProcessCallbackFactory.forFilter(new QQueryFilter()));
+      input.setFrontendStepBehavior(RunProcessInput.FrontendStepBehavior.BREAK);
+      input.setProcessUUID(brokenOutput.getProcessUUID());
+      input.setStartAfterStep(brokenOutput.getProcessState().getNextStepName().get());
+      return (new RunProcessAction().execute(input));
+   }
+
+
+
    /***************************************************************************
     *
     ***************************************************************************/
@@ -154,6 +717,13 @@ class StandardProcessTracerTest extends BaseTest
       List<QRecord> processTraceRecords = QueryAction.execute(ProcessTrace.TABLE_NAME, new QQueryFilter());
       assertEquals(1, processTraceRecords.size());
 
+      //////////////////////////////////////////////////////////////////////////
+      // the process sends a key-record message per person - the last is kept //
+      //////////////////////////////////////////////////////////////////////////
+      Integer personTableId = QQQTableTableManager.getQQQTableId(QContext.getQInstance(), StandardProcessTraceTestApplication.TABLE_NAME_PERSON);
+      assertEquals(personTableId, processTraceRecords.get(0).getValueInteger("keyRecordQqqTableId"));
+      assertEquals(102, processTraceRecords.get(0).getValueInteger("keyRecordId"));
+
       List<QRecord> processTraceSummaryLineRecords = QueryAction.execute(ProcessTraceSummaryLine.TABLE_NAME, new QQueryFilter());
       assertEquals(2, processTraceSummaryLineRecords.size());
 